@@ -19,46 +19,185 @@
 
 package ai.susi;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
 import org.eclipse.jetty.util.log.Log;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ai.susi.tools.Metrics;
 
 
 /**
- * The caretaker class is a concurrent thread which does peer-to-peer operations
- * and data transmission asynchronously.
+ * The caretaker class is a concurrent thread which runs the maintenance tasks of the server:
+ * the cleanup of caches and of the structures which hold client data. Each task has a period,
+ * a time budget and a jitter. The jitter spreads the tasks over time, so tasks with the same period
+ * do not run at the same moment. A task which needs more time than its budget is run less often:
+ * its period is stretched by the ratio of runtime and budget.
  */
 public class Caretaker extends Thread {
-    
-    private boolean shallRun = true;
-    
+
+    private final static Metrics.Family<Metrics.Histogram> taskDuration = Metrics.histogram("susi_caretaker_task_duration_seconds", "Runtime of a caretaker task", "task");
+    private final static Metrics.Family<Metrics.Counter> taskOverrun = Metrics.counter("susi_caretaker_task_overrun_total", "Number of runs of a caretaker task which exceeded the time budget", "task");
+    private final static Metrics.Family<Metrics.Counter> taskFailure = Metrics.counter("susi_caretaker_task_failure_total", "Number of runs of a caretaker task which failed", "task");
+    private final static Metrics.Family<Metrics.Counter> taskRemoved = Metrics.counter("susi_caretaker_task_removed_total", "Number of entries which were removed by a caretaker task", "task");
+
+    private final static int MAX_STRETCH = 8; // a task which is over budget runs at least once in this number of periods
+
+    private volatile boolean shallRun = true;
+    private final PriorityQueue<Task> queue;
+    private final List<Task> tasks;
+
     public  final static long startupTime = System.currentTimeMillis();
-    
+
+    /**
+     * A maintenance job
+     */
+    @FunctionalInterface
+    public interface Job {
+        /**
+         * run the job once
+         * @return the number of entries which were removed
+         * @throws Exception
+         */
+        public int run() throws Exception;
+    }
+
+    private static class Task {
+        private final String name;
+        private final long period, budget;
+        private final double jitter;
+        private final Job job;
+        private long next, runs, removed, lastRuntime;
+
+        private Task(String name, long period, long budget, double jitter, Job job) {
+            this.name = name;
+            this.period = period;
+            this.budget = budget;
+            this.jitter = jitter;
+            this.job = job;
+        }
+
+        /**
+         * compute the time of the next run
+         * @param now the end of the latest run
+         * @param stretch the factor for the period
+         */
+        private void schedule(long now, long stretch) {
+            long j = (long) (this.period * this.jitter);
+            this.next = now + this.period * stretch + (j > 0 ? ThreadLocalRandom.current().nextLong(-j, j + 1) : 0);
+        }
+    }
+
+    public Caretaker() {
+        super("Caretaker");
+        this.queue = new PriorityQueue<>((a, b) -> Long.compare(a.next, b.next));
+        this.tasks = new ArrayList<>();
+    }
+
     /**
-     * ask the thread to shut down
+     * register a maintenance task. The first run happens after a random time within the first period.
+     * @param name the name of the task, used in logs and metrics
+     * @param period the time between two runs in milliseconds
+     * @param budget the time which a run should not exceed in milliseconds
+     * @param jitter the maximum deviation of the period as fraction of the period, i.e. 0.1 for 10%
+     * @param job the job of the task
+     * @return self
+     */
+    public Caretaker register(String name, long period, long budget, double jitter, Job job) {
+        Task task = new Task(name, Math.max(1, period), Math.max(1, budget), Math.max(0.0d, Math.min(1.0d, jitter)), job);
+        task.next = System.currentTimeMillis() + ThreadLocalRandom.current().nextLong(task.period) + 1;
+        synchronized (this.queue) {
+            this.tasks.add(task);
+            this.queue.add(task);
+            this.queue.notify();
+        }
+        return this;
+    }
+
+    /**
+     * ask the thread to shut down. A running job is not interrupted, it finishes before the thread terminates.
      */
     public void shutdown() {
-        this.shallRun = false;
-        this.interrupt();
+        synchronized (this.queue) {
+            this.shallRun = false;
+            this.queue.notifyAll();
+        }
         Log.getLog().info("catched caretaker termination signal");
     }
-    
+
+    /**
+     * the state of all tasks
+     * @return a json array with one object for each task
+     */
+    public JSONArray toJSON() {
+        JSONArray a = new JSONArray();
+        synchronized (this.queue) {
+            for (Task task: this.tasks) a.put(new JSONObject(true)
+                    .put("name", task.name)
+                    .put("period", task.period)
+                    .put("budget", task.budget)
+                    .put("runs", task.runs)
+                    .put("removed", task.removed)
+                    .put("runtime", task.lastRuntime)
+                    .put("next", task.next));
+        }
+        return a;
+    }
+
     @Override
     public void run() {
-        
-        boolean busy = false;
+
         // work loop
         beat: while (this.shallRun) try {
-            
-            
-            // sleep a bit to prevent that the DoS limit fires at backend server
-            try {Thread.sleep(busy ? 1000 : 5000);} catch (InterruptedException e) {}
+
+            // wait for the next task
+            Task task;
+            synchronized (this.queue) {
+                task = this.queue.peek();
+                long delay = task == null ? 5000 : task.next - System.currentTimeMillis();
+                if (delay > 0) {
+                    try {this.queue.wait(delay);} catch (InterruptedException e) {}
+                    continue beat;
+                }
+                this.queue.poll();
+            }
             if (!this.shallRun) break beat;
-            busy = false;
-            
+
+            long start = System.nanoTime();
+            int removed = 0;
+            try {
+                removed = task.job.run();
+                taskRemoved.labels(task.name).add(removed);
+            } catch (Throwable e) {
+                taskFailure.labels(task.name).inc();
+                Log.getLog().warn("CARETAKER TASK " + task.name, e);
+            }
+            long nanos = System.nanoTime() - start;
+            long millis = nanos / 1000000L;
+            taskDuration.labels(task.name).observeNanos(nanos);
+            long stretch = 1;
+            if (millis > task.budget) {
+                taskOverrun.labels(task.name).inc();
+                stretch = Math.min(MAX_STRETCH, (millis + task.budget - 1) / task.budget);
+                Log.getLog().info("caretaker task " + task.name + " took " + millis + " ms, budget is " + task.budget + " ms");
+            }
+            synchronized (this.queue) {
+                task.runs++;
+                task.removed += removed;
+                task.lastRuntime = millis;
+                task.schedule(System.currentTimeMillis(), stretch);
+                this.queue.add(task);
+            }
+
         } catch (Throwable e) {
             Log.getLog().warn("CARETAKER THREAD", e);
         }
 
         Log.getLog().info("caretaker terminated");
     }
-    
+
 }
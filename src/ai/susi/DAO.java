@@ -25,6 +25,7 @@ import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
@@ -36,8 +37,13 @@ import ai.susi.json.JsonTray;
 import ai.susi.mind.SusiMind;
 import ai.susi.server.AccessTracker;
 import ai.susi.server.Accounting;
+import ai.susi.server.AccountingStore;
+import ai.susi.server.AsyncExecutor;
+import ai.susi.server.RateLimiter;
+import ai.susi.server.RemoteAccess;
 import ai.susi.server.Settings;
 import ai.susi.server.UserRoles;
+import ai.susi.tools.Metrics;
 import ai.susi.tools.OS;
 
 import org.eclipse.jetty.util.log.Log;
@@ -77,11 +83,12 @@ public class DAO {
     public static JsonTray accounting;
     public static UserRoles userRoles;
     public static JsonTray passwordreset;
-    public static Map<String, Accounting> accounting_temporary = new HashMap<>();
+    public static AccountingStore accounting_temporary = new AccountingStore(10000, Accounting.ONE_HOUR_MILLIS);
     public static JsonFile login_keys;
     
     // built-in artificial intelligence
     public static SusiMind susi;
+    public static AsyncExecutor mind_executor;
     
     /**
      * initialize the DAO
@@ -161,6 +168,9 @@ public class DAO {
         accounting = new JsonTray(accounting_path_per.toFile(), accounting_path_vol.toFile(), 10000);
         OS.protectPath(accounting_path_per);
         OS.protectPath(accounting_path_vol);
+        RemoteAccess.limiter = new RateLimiter((int) getConfig("DoS.maxclients", (long) RateLimiter.DEFAULT_MAX_CLIENTS));
+        mind_executor = new AsyncExecutor("mind", (int) getConfig("mind.executor.threads", 32L), (int) getConfig("mind.executor.queue", 1000L), getConfig("mind.executor.timeout", 30000L), getConfig("mind.executor.processingtimeout", 60000L));
+        accounting_temporary = new AccountingStore((int) getConfig("accounting.temporary.maxsize", 10000L), getConfig("accounting.temporary.expiry", Accounting.ONE_HOUR_MILLIS));
         Path login_keys_path = settings_dir.resolve("login-keys.json");
         login_keys = new JsonFile(login_keys_path.toFile());
         OS.protectPath(login_keys_path);
@@ -197,6 +207,24 @@ public class DAO {
         access = new AccessTracker(log_dump_dir.toFile(), ACCESS_DUMP_FILE_PREFIX, 60000, 3000);
         access.start(); // start monitor
 
+        // metrics of the components which are exported at /metrics
+        Metrics.gauge("susi_jsontray_entries", "Number of entries in the json trays", "tray", () -> {
+            Map<String, Number> m = new LinkedHashMap<>();
+            if (authentication != null) m.put("authentication", authentication.size());
+            if (authorization != null) m.put("authorization", authorization.size());
+            if (passwordreset != null) m.put("passwordreset", passwordreset.size());
+            if (accounting != null) m.put("accounting", accounting.size());
+            return m;
+        });
+        Metrics.gauge("susi_accounting_temporary_entries", "Number of temporary accounting entries", () -> accounting_temporary == null ? null : accounting_temporary.size());
+        Metrics.gauge("susi_access_pending", "Number of access tracks which are not yet written to the log", () -> access == null ? null : access.getPendingCount());
+        Metrics.gauge("susi_access_queue", "Number of finished access tracks which wait for the log writer", () -> access == null ? null : access.getQueueCount());
+        Metrics.gauge("susi_memory_identities", "Number of identities in the memory cache", () -> susi == null ? null : susi.getMemories().getIdentityCacheSize());
+        Metrics.gauge("susi_skills", "Number of learned skills", () -> susi == null ? null : susi.getSkillCount());
+        Metrics.gauge("susi_skill_triggers", "Number of skill trigger words", () -> susi == null ? null : susi.getTriggerCount());
+        Metrics.gauge("susi_mind_executor_queue_size", "Number of chat requests waiting for the mind executor", () -> mind_executor == null ? null : mind_executor.getQueueSize());
+        Metrics.gauge("susi_mind_executor_active", "Number of chat requests processed by the mind executor", () -> mind_executor == null ? null : mind_executor.getActiveCount());
+
         log("finished DAO initialization");
     }
     
@@ -213,6 +241,9 @@ public class DAO {
     public static void close() {
         Log.getLog().info("closing DAO");
         
+        // stop accepting new chats
+        if (mind_executor != null) mind_executor.shutdown();
+
         // close the tracker
         access.close();
         
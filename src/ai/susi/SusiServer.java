@@ -78,9 +78,12 @@ import org.eclipse.jetty.security.ConstraintSecurityHandler;
 import org.eclipse.jetty.security.authentication.BasicAuthenticator;
 
 import ai.susi.server.APIHandler;
+import ai.susi.server.AdmissionControl;
+import ai.susi.server.Authentication;
 import ai.susi.server.FileHandler;
 import ai.susi.server.HttpsMode;
 import ai.susi.server.RemoteAccess;
+import ai.susi.server.api.aaa.AccessLogService;
 import ai.susi.server.api.aaa.AccessServlet;
 import ai.susi.server.api.aaa.AuthorizationDemoService;
 import ai.susi.server.api.aaa.LoginService;
@@ -92,10 +95,13 @@ import ai.susi.server.api.aaa.UserAccountPermissions;
 import ai.susi.server.api.aaa.UserManagementService;
 import ai.susi.server.api.cms.AppsService;
 import ai.susi.server.api.cms.Sitemap;
+import ai.susi.server.api.cms.MetricsServlet;
 import ai.susi.server.api.cms.ThreaddumpServlet;
 import ai.susi.server.api.cms.TopMenuService;
 import ai.susi.server.api.learning.ConsoleLearning;
 import ai.susi.server.api.service.EmailSenderService;
+import ai.susi.server.api.susi.BatchServlet;
+import ai.susi.server.api.susi.ChatWebSocketServlet;
 import ai.susi.server.api.susi.ConsoleService;
 import ai.susi.server.api.susi.GenericScraper;
 import ai.susi.server.api.susi.JsonPathTestService;
@@ -107,6 +113,7 @@ import ai.susi.server.api.susi.UnansweredServlet;
 import ai.susi.server.api.vis.MapServlet;
 import ai.susi.server.api.vis.MarkdownServlet;
 import ai.susi.server.api.vis.PieChartServlet;
+import ai.susi.tools.Metrics;
 import ai.susi.tools.OS;
 
 
@@ -116,9 +123,29 @@ public class SusiServer {
 
     private static Server server = null;
     private static Caretaker caretaker = null;
+    private static FileHandler fileHandler = null;
     private static HttpsMode httpsMode = HttpsMode.OFF;
     public static Class<? extends Servlet>[] services;
 
+    /**
+     * register the cleanup of all structures which grow with the number of clients. The period and the
+     * time budget of each task can be set with caretaker.<name>.period and caretaker.<name>.budget in milliseconds.
+     * @param caretaker
+     */
+    private static void registerMaintenance(Caretaker caretaker) {
+        maintain(caretaker, "accounting", 60000L, 1000L, () -> DAO.accounting_temporary.cleanup());
+        maintain(caretaker, "ratelimiter", 60000L, 1000L, () -> RemoteAccess.limiter.cleanup());
+        maintain(caretaker, "peers", 600000L, 100L, () -> RemoteAccess.cleanup(RemoteAccess.PEER_EXPIRY));
+        maintain(caretaker, "authentication", 600000L, 2000L, () -> DAO.authentication.removeIf(Authentication::isExpired) + DAO.passwordreset.removeIf(Authentication::isExpired));
+        maintain(caretaker, "filecache", 60000L, 500L, () -> fileHandler.cleanup());
+        maintain(caretaker, "identities", 60000L, 1000L, () -> DAO.susi.getMemories().cleanupIdentities(DAO.getConfig("memory.identity.idle", 3600000L)));
+        maintain(caretaker, "unanswered", 3600000L, 1000L, () -> DAO.susi.getMemories().limitUnanswered((int) DAO.getConfig("memory.unanswered.maxsize", 10000L)));
+    }
+
+    private static void maintain(Caretaker caretaker, String name, long period, long budget, Caretaker.Job job) {
+        caretaker.register(name, DAO.getConfig("caretaker." + name + ".period", period), DAO.getConfig("caretaker." + name + ".budget", budget), 0.1d, job);
+    }
+
     public static Map<String, String> readConfig(Path data) throws IOException {
         File conf_dir = new File("conf");
         Properties prop = new Properties();
@@ -232,6 +259,7 @@ public class SusiServer {
         
         SusiServer.server.start();
         SusiServer.caretaker = new Caretaker();
+        registerMaintenance(SusiServer.caretaker);
         SusiServer.caretaker.start();
         
         // if this is not headless, we can open a browser automatically
@@ -279,6 +307,10 @@ public class SusiServer {
     private static void setupHttpServer(int httpPort, int httpsPort) throws Exception{
     	QueuedThreadPool pool = new QueuedThreadPool();
         pool.setMaxThreads(500);
+        Metrics.gauge("jetty_threads", "Number of threads in the server pool", () -> pool.getThreads());
+        Metrics.gauge("jetty_threads_idle", "Number of idle threads in the server pool", () -> pool.getIdleThreads());
+        Metrics.gauge("jetty_threads_max", "Maximum number of threads in the server pool", () -> pool.getMaxThreads());
+        Metrics.gauge("jetty_queue_size", "Number of jobs waiting for a thread of the server pool", () -> pool.getQueueSize());
         SusiServer.server = new Server(pool);
         SusiServer.server.setStopAtShutdown(true);
         
@@ -474,6 +506,7 @@ public class SusiServer {
                 SignUpService.class,
                 TopMenuService.class,
                 UserManagementService.class,
+                AccessLogService.class,
                 UserAccountPermissions.class,
                 JsonPathTestService.class,
 
@@ -491,7 +524,7 @@ public class SusiServer {
         };
         for (Class<? extends Servlet> service: services)
             try {
-                servletHandler.addServlet(service, ((APIHandler) (service.newInstance())).getAPIPath());
+                servletHandler.addServlet(service, ((APIHandler) (service.newInstance())).getAPIPath()).setAsyncSupported(true);
             } catch (InstantiationException | IllegalAccessException e) {
                 Log.getLog().warn(service.getName() + " instantiation error", e);
                 e.printStackTrace();
@@ -499,6 +532,8 @@ public class SusiServer {
         
         // susi api
         servletHandler.addServlet(UnansweredServlet.class, "/susi/unanswered.txt");
+        servletHandler.addServlet(BatchServlet.class, "/susi/batch.json").setAsyncSupported(true);
+        servletHandler.addServlet(ChatWebSocketServlet.class, "/susi/chat.ws");
         
         // aaa api
         servletHandler.addServlet(AccessServlet.class, "/aaa/access.json");
@@ -506,6 +541,7 @@ public class SusiServer {
         servletHandler.addServlet(AccessServlet.class, "/aaa/access.txt");
         servletHandler.addServlet(Sitemap.class, "/sitemap.xml");
         servletHandler.addServlet(ThreaddumpServlet.class, "/threaddump.txt");
+        servletHandler.addServlet(MetricsServlet.class, "/metrics");
         
         // aggregation api
         servletHandler.addServlet(GenericScraper.class, "/susi/genericscraper.json");
@@ -530,7 +566,7 @@ public class SusiServer {
         errorHandler.setShowStacks(true);
         servletHandler.setErrorHandler(errorHandler);
         
-        FileHandler fileHandler = new FileHandler(Integer.parseInt(DAO.getConfig("www.expires","600")));
+        fileHandler = new FileHandler(Integer.parseInt(DAO.getConfig("www.expires","600")));
         fileHandler.setDirectoriesListed(true);
         fileHandler.setWelcomeFiles(new String[]{ "index.html" });
         fileHandler.setResourceBase(DAO.getConfig("www.path","html"));
@@ -554,7 +590,9 @@ public class SusiServer {
         HashSessionIdManager idmanager = new HashSessionIdManager();
         SusiServer.server.setSessionIdManager(idmanager);
         SessionHandler sessions = new SessionHandler(new HashSessionManager());
-        sessions.setHandler(gzipHandler);
+        AdmissionControl admissionControl = new AdmissionControl();
+        admissionControl.setHandler(gzipHandler);
+        sessions.setHandler(admissionControl);
         securityHandler.setHandler(sessions);
         ipaccess.setHandler(securityHandler);
         
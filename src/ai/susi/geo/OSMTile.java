@@ -28,12 +28,17 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.imageio.ImageIO;
 
@@ -45,6 +50,28 @@ public class OSMTile {
 
     // helper methods to load map images from openstreetmap.org
 
+    private final static String[] OSM_SERVERS = new String[]{"http://a.tile.openstreetmap.org", "http://b.tile.openstreetmap.org", "http://c.tile.openstreetmap.org", "http://tile.openstreetmap.org"};
+
+    private static TileCache cache = null;
+
+    /**
+     * get the tile cache of the server. The tiles are stored in DATA/tiles; the cache can be configured
+     * with the map.* attributes of the configuration.
+     * @return the tile cache
+     */
+    public static synchronized TileCache getCache() {
+        if (cache == null) {
+            cache = new TileCache(
+                    DAO.data_dir == null ? null : new File(DAO.data_dir, "tiles"),
+                    DAO.getConfig("map.tileserver", OSM_SERVERS, ","),
+                    (int) DAO.getConfig("map.cache.ram", 256L),
+                    DAO.getConfig("map.cache.expiry", 7L * 24L * 60L * 60L * 1000L),
+                    (int) DAO.getConfig("map.fetch.threads", 4L),
+                    (int) DAO.getConfig("map.fetch.timeout", 5000L));
+        }
+        return cache;
+    }
+
     /**
      * generate a image according to a given coordinate of a middle tile
      * and a width and height of tile numbers. The tile number width and height must
@@ -55,47 +82,43 @@ public class OSMTile {
      * @return the image
      */
     public static RasterPlotter getCombinedTiles(final TileCoordinates t, int width, int height) {
+        return getCombinedTiles(getCache(), t, width, height);
+    }
+
+    /**
+     * generate a image with the tiles of a tile cache
+     * @param cache the tile cache
+     * @param t the middle tile
+     * @param width number of tiles
+     * @param height number of tiles
+     * @return the image; tiles which cannot be loaded are white
+     */
+    public static RasterPlotter getCombinedTiles(final TileCache cache, final TileCoordinates t, int width, int height) {
         final int w = (width - 1) / 2;
         width = w * 2 + 1;
         final int h = (height - 1) / 2;
         height = h * 2 + 1;
         final RasterPlotter m = new RasterPlotter(256 * width, 256 * height, RasterPlotter.DrawMode.MODE_REPLACE, "FFFFFF");
-        final List<Place> tileLoader = new ArrayList<Place>();
-        Place place;
         // start tile loading concurrently
+        final List<CompletableFuture<BufferedImage>> tiles = new ArrayList<>(width * height);
         for (int i = 0; i < width; i++) {
             for (int j = 0; j < height; j++) {
-                place = new Place(m, t.xtile - w + i, t.ytile - h + j, 256 * i, 256 * j, t.zoom);
-                place.start();
-                tileLoader.add(place);
-                if (t.zoom >= 17) try {Thread.sleep(100);} catch (final InterruptedException e) {} // be nice with tile server for uncached tiles
+                tiles.add(cache.get(new TileCoordinates(t.xtile - w + i, t.ytile - h + j, t.zoom)));
             }
         }
-        // wait until all tiles are loaded
-        for (final Place p: tileLoader) try { p.join(); } catch (final InterruptedException e) {}
-        return m;
-    }
-
-    static class Place extends Thread {
-        RasterPlotter m;
-        int xt, yt, xc, yc, z;
-        public Place(final RasterPlotter m, final int xt, final int yt, final int xc, final int yc, final int z) {
-            this.m = m; this.xt = xt; this.yt = yt; this.xc = xc; this.yc = yc; this.z = z;
-        }
-        @Override
-        public void run() {
-            final TileCoordinates t = new TileCoordinates(this.xt, this.yt, this.z);
-            BufferedImage bi = null;
-            for (int i = 0; i < 5; i++) {
-                bi = getSingleTile(t, i);
-                if (bi != null) {
-                    this.m.insertBitmap(bi, this.xc, this.yc);
-                    return;
+        // wait until all tiles are loaded; the tiles are inserted in this thread
+        long deadline = System.currentTimeMillis() + DAO.getConfig("map.render.timeout", 30000L);
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                try {
+                    BufferedImage bi = tiles.get(i * height + j).get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    if (bi != null) m.insertBitmap(bi, 256 * i, 256 * j);
+                } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                    DAO.log("OSMTile: tile not available: " + e.getMessage());
                 }
-                // don't DoS OSM when trying again
-                try {Thread.sleep(300 + 100 * i);} catch (final InterruptedException e) {}
             }
         }
+        return m;
     }
 
     public static BufferedImage getSingleTile(final TileCoordinates tile, final int retry) {
@@ -0,0 +1,229 @@
+/**
+ *  TileCache
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.geo;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import ai.susi.DAO;
+import ai.susi.server.ClientConnection;
+import ai.susi.tools.Metrics;
+
+/**
+ * A two-level cache for map tiles: the decoded images of the latest tiles are kept in RAM, the
+ * downloaded png files are stored on disk in z/x/y.png files. Tiles on disk are loaded again from the
+ * tile server when they are older than the expiry time; if that fails, the old tile is used.
+ * Tiles are loaded by a pool of threads, which limits the number of concurrent requests to the tile
+ * server. Concurrent requests for the same tile wait for the same download.
+ */
+public class TileCache {
+
+    private final static Metrics.Family<Metrics.Counter> tiles = Metrics.counter("susi_map_tiles_total", "Number of requested map tiles by the source of the tile", "source");
+    private final static Metrics.Counter ramHits = tiles.labels("ram");
+    private final static Metrics.Counter diskHits = tiles.labels("disk");
+    private final static Metrics.Counter downloads = tiles.labels("download");
+    private final static Metrics.Counter staleHits = tiles.labels("stale");
+    private final static Metrics.Counter failures = tiles.labels("failed");
+
+    private final static int RETRIES = 3;
+
+    static {
+        ImageIO.setUseCache(false); // do not write a cache to disc; keep in RAM
+    }
+
+    private final File dir;
+    private final String[] servers;
+    private final long expiry;
+    private final int timeout;
+    private final int ramSize;
+    private final LinkedHashMap<String, BufferedImage> ram;
+    private final Map<String, CompletableFuture<BufferedImage>> loading;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * create a tile cache
+     * @param dir the directory of the tile files or null if tiles shall not be stored on disk
+     * @param servers the urls of the tile servers without the path of the tiles, i.e. http://a.tile.openstreetmap.org
+     * @param ramSize the maximum number of decoded tiles in RAM
+     * @param expiry the time in milliseconds after which a tile on disk is loaded again
+     * @param threads the number of concurrent downloads
+     * @param timeout the connect and read timeout of a download in milliseconds
+     */
+    public TileCache(File dir, String[] servers, int ramSize, long expiry, int threads, int timeout) {
+        this.dir = dir;
+        this.servers = servers;
+        this.expiry = expiry;
+        this.timeout = timeout;
+        this.ramSize = ramSize;
+        this.ram = new LinkedHashMap<>(16, 0.75f, true); // access order
+        this.loading = new ConcurrentHashMap<>();
+        final AtomicInteger count = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1000), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "TileCache-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static String key(OSMTile.TileCoordinates t) {
+        return t.zoom + "/" + t.xtile + "/" + t.ytile;
+    }
+
+    /**
+     * the url of a tile; each retry uses another server
+     */
+    private String url(OSMTile.TileCoordinates t, int retry) {
+        int hash = Math.abs(t.xtile + 7 * t.ytile + 13 * t.zoom + retry) % this.servers.length;
+        return this.servers[hash] + "/" + key(t) + ".png";
+    }
+
+    private File file(OSMTile.TileCoordinates t) {
+        return this.dir == null ? null : new File(this.dir, key(t) + ".png");
+    }
+
+    /**
+     * get a tile. The tile is taken from RAM if possible, otherwise it is loaded from disk or the tile server
+     * by the threads of the cache.
+     * @param t the tile coordinates
+     * @return a future of the tile image; the image is null if the tile cannot be loaded
+     */
+    public CompletableFuture<BufferedImage> get(final OSMTile.TileCoordinates t) {
+        final String key = key(t);
+        BufferedImage image;
+        synchronized (this.ram) {
+            image = this.ram.get(key);
+        }
+        if (image != null) {
+            ramHits.inc();
+            return CompletableFuture.completedFuture(image);
+        }
+        final CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> running = this.loading.putIfAbsent(key, future);
+        if (running != null) return running; // the tile is loaded by another request
+        try {
+            this.executor.execute(() -> {
+                BufferedImage bi = null;
+                try {
+                    bi = load(t);
+                    if (bi != null) synchronized (this.ram) {
+                        this.ram.put(key, bi);
+                        if (this.ram.size() > this.ramSize) {
+                            this.ram.remove(this.ram.keySet().iterator().next());
+                        }
+                    }
+                } catch (Throwable e) {
+                    DAO.log("OSMTile: cannot load tile " + key + ": " + e.getMessage());
+                } finally {
+                    this.loading.remove(key, future); // the tile is in RAM before it is removed here
+                    future.complete(bi);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.loading.remove(key, future);
+            future.complete(null);
+        }
+        return future;
+    }
+
+    /**
+     * load a tile from disk or from the tile server
+     * @param t the tile coordinates
+     * @return the image or null if the tile cannot be loaded
+     */
+    private BufferedImage load(OSMTile.TileCoordinates t) throws IOException {
+        File f = file(t);
+        boolean exists = f != null && f.exists();
+        if (exists && System.currentTimeMillis() - f.lastModified() < this.expiry) {
+            BufferedImage bi = ImageIO.read(f);
+            if (bi != null) {
+                diskHits.inc();
+                return bi;
+            }
+        }
+        for (int retry = 0; retry < RETRIES; retry++) {
+            if (retry > 0) try {Thread.sleep(300 + 100 * retry);} catch (InterruptedException e) {} // don't DoS the tile server when trying again
+            byte[] b = ClientConnection.download(url(t, retry), false, this.timeout);
+            if (b == null || b.length == 0) continue;
+            BufferedImage bi = ImageIO.read(new ByteArrayInputStream(b));
+            if (bi == null) continue;
+            downloads.inc();
+            if (f != null) {
+                f.getParentFile().mkdirs();
+                File tmp = new File(f.getParentFile(), f.getName() + "." + Thread.currentThread().getId());
+                Files.write(tmp.toPath(), b);
+                if (!tmp.renameTo(f)) {
+                    f.delete();
+                    if (!tmp.renameTo(f)) tmp.delete();
+                }
+            }
+            return bi;
+        }
+        // use an expired tile if the tile server is not available
+        if (exists) {
+            BufferedImage bi = ImageIO.read(f);
+            if (bi != null) {
+                staleHits.inc();
+                return bi;
+            }
+        }
+        failures.inc();
+        return null;
+    }
+
+    /**
+     * @return the number of decoded tiles in RAM
+     */
+    public int getRamSize() {
+        synchronized (this.ram) {
+            return this.ram.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (this.ram) {
+            this.ram.clear();
+        }
+    }
+
+    public void close() {
+        this.executor.shutdown();
+        clear();
+    }
+
+}
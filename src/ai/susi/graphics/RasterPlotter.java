@@ -41,6 +41,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.stream.IntStream;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
@@ -70,6 +71,9 @@ public class RasterPlotter {
     public static final long BLUE   = 0x0000FF;
     public static final long GREY   = 0x888888;
 
+    private static final int BAND_ROWS = 32; // the number of rows which are processed by one task of a parallel filter
+    private static final int PARALLEL_PIXELS = 1 << 16; // smaller areas are processed by the calling thread
+
     public static enum DrawMode {
         MODE_REPLACE, MODE_ADD, MODE_SUB;
     }
@@ -79,7 +83,6 @@ public class RasterPlotter {
     }
 
     protected final int            width, height;
-    private final   int[]          cc;
     private         BufferedImage  image;
     private         WritableRaster grid;
     private         int            defaultColR, defaultColG, defaultColB;
@@ -92,7 +95,6 @@ public class RasterPlotter {
     }
 
     public RasterPlotter(final int width, final int height, final DrawMode drawMode, final long backgroundColor) {
-        this.cc = new int[3];
         this.width = width;
         this.height = height;
         this.backgroundCol = backgroundColor;
@@ -233,62 +235,54 @@ public class RasterPlotter {
     	plot(x, y, 100);
     }
 
+    /**
+     * plot a pixel with the current color and draw mode. The pixel is computed in local variables
+     * and written to the frame buffer without a lock, so concurrent drawing into different areas of
+     * the same plotter does not block.
+     * @param x x-value of the pixel
+     * @param y y-value of the pixel
+     * @param intensity the intensity of the color in percent
+     */
     public void plot(final int x, final int y, final int intensity) {
         if ((x < 0) || (x >= this.width)) return;
         if ((y < 0) || (y >= this.height)) return;
-        try {
-        if (this.defaultMode == DrawMode.MODE_REPLACE) {
-            if (intensity == 100) synchronized (this.cc) {
-                this.cc[0] = this.defaultColR;
-                this.cc[1] = this.defaultColG;
-                this.cc[2] = this.defaultColB;
-                setPixel(x, y, this.cc);
-            } else synchronized (this.cc) {
-                final int[] c = getPixel(x, y, this.cc);
-                c[0] = (intensity * this.defaultColR + (100 - intensity) * c[0]) / 100;
-                c[1] = (intensity * this.defaultColG + (100 - intensity) * c[1]) / 100;
-                c[2] = (intensity * this.defaultColB + (100 - intensity) * c[2]) / 100;
-                setPixel(x, y, c);
-            }
-        } else if (this.defaultMode == DrawMode.MODE_ADD) synchronized (this.cc) {
-            int[] c = null;
-            try {
-                c = getPixel(x, y, this.cc);
-            }   catch (final ArrayIndexOutOfBoundsException e) {
-                // catch "Coordinate out of bounds"
-                return;
-            }
-            if (intensity == 100) {
-                c[0] = (0xff & c[0]) + this.defaultColR; if (this.cc[0] > 255) this.cc[0] = 255;
-                c[1] = (0xff & c[1]) + this.defaultColG; if (this.cc[1] > 255) this.cc[1] = 255;
-                c[2] = (0xff & c[2]) + this.defaultColB; if (this.cc[2] > 255) this.cc[2] = 255;
-            } else {
-                c[0] = (0xff & c[0]) + (intensity * this.defaultColR / 100); if (this.cc[0] > 255) this.cc[0] = 255;
-                c[1] = (0xff & c[1]) + (intensity * this.defaultColG / 100); if (this.cc[1] > 255) this.cc[1] = 255;
-                c[2] = (0xff & c[2]) + (intensity * this.defaultColB / 100); if (this.cc[2] > 255) this.cc[2] = 255;
-            }
-            setPixel(x, y, c);
-        } else if (this.defaultMode == DrawMode.MODE_SUB) synchronized (this.cc) {
-            int[] c = null;
-            try {
-                c = getPixel(x, y, this.cc);
-            }   catch (final ArrayIndexOutOfBoundsException e) {
-                // catch "Coordinate out of bounds"
-                return;
-            }
-            if (intensity == 100) {
-                c[0] = (0xff & c[0]) - this.defaultColR; if (this.cc[0] < 0) this.cc[0] = 0;
-                c[1] = (0xff & c[1]) - this.defaultColG; if (this.cc[1] < 0) this.cc[1] = 0;
-                c[2] = (0xff & c[2]) - this.defaultColB; if (this.cc[2] < 0) this.cc[2] = 0;
-            } else {
-                c[0] = (0xff & c[0]) - (intensity * this.defaultColR / 100); if (this.cc[0] < 0) this.cc[0] = 0;
-                c[1] = (0xff & c[1]) - (intensity * this.defaultColG / 100); if (this.cc[1] < 0) this.cc[1] = 0;
-                c[2] = (0xff & c[2]) - (intensity * this.defaultColB / 100); if (this.cc[2] < 0) this.cc[2] = 0;
-            }
-            setPixel(x, y, c);
+        final DrawMode mode = this.defaultMode;
+        if (this.frame == null) {
+            // the fallback image after an OutOfMemoryError may be smaller than width x height
+            if (x >= this.grid.getWidth() || y >= this.grid.getHeight()) return;
+            final int[] c = this.grid.getPixel(x, y, new int[3]);
+            c[0] = blend(mode, c[0], this.defaultColR, intensity);
+            c[1] = blend(mode, c[1], this.defaultColG, intensity);
+            c[2] = blend(mode, c[2], this.defaultColB, intensity);
+            this.grid.setPixel(x, y, c);
+            return;
+        }
+        final int cell = (this.width * y + x) * 3;
+        if (mode == DrawMode.MODE_REPLACE && intensity == 100) {
+            this.frame[cell    ] = (byte) this.defaultColR;
+            this.frame[cell + 1] = (byte) this.defaultColG;
+            this.frame[cell + 2] = (byte) this.defaultColB;
+        } else {
+            this.frame[cell    ] = (byte) blend(mode, this.frame[cell    ] & 0xff, this.defaultColR, intensity);
+            this.frame[cell + 1] = (byte) blend(mode, this.frame[cell + 1] & 0xff, this.defaultColG, intensity);
+            this.frame[cell + 2] = (byte) blend(mode, this.frame[cell + 2] & 0xff, this.defaultColB, intensity);
+        }
+    }
+
+    /**
+     * compute the blend of one color channel
+     * @param mode the draw mode
+     * @param old the current value of the channel, 0..255
+     * @param col the value of the drawing color, 0..255
+     * @param intensity the intensity of the drawing color in percent
+     * @return the new value of the channel, 0..255
+     */
+    private static int blend(final DrawMode mode, final int old, final int col, final int intensity) {
+        switch (mode) {
+        case MODE_ADD: return Math.min(255, old + (intensity == 100 ? col : intensity * col / 100));
+        case MODE_SUB: return Math.max(0, old - (intensity == 100 ? col : intensity * col / 100));
+        default: return intensity == 100 ? col : (intensity * col + (100 - intensity) * old) / 100;
         }
-        } catch (final ArrayIndexOutOfBoundsException e) {
-        } // may appear when pixel coordinate is out of bounds
     }
 
     public void line(final int Ax, final int Ay, final int Bx, final int By, final int intensity) {
@@ -631,23 +625,54 @@ public class RasterPlotter {
      * @param rgb RGB value which will be transparent
      */
     public void insertBitmap(final BufferedImage bitmap, final int x, final int y, final int transRGB) {
-        final int heightSrc = bitmap.getHeight();
-        final int widthSrc  = bitmap.getWidth();
-        final int heightTgt = this.height;
-        final int widthTgt  = this.width;
-
-        int rgb;
-        for (int i = 0; i < heightSrc; i++) {
-            for (int j = 0; j < widthSrc; j++) {
-                // pixel in legal area?
-                if (j + x >= 0 && i + y >= 0 && i + y < heightTgt && j + x < widthTgt) {
-                    rgb = bitmap.getRGB(j, i);
-                    if (rgb != transRGB) {
-                        this.image.setRGB(j + x, i + y, rgb);
-                    }
+        // the part of the bitmap which lies inside the image
+        final int left = Math.max(0, -x);
+        final int top = Math.max(0, -y);
+        final int right = Math.min(bitmap.getWidth(), this.width - x);
+        final int bottom = Math.min(bitmap.getHeight(), this.height - y);
+        final int w = right - left;
+        if (w <= 0) return;
+        bands(top, bottom, w, (from, to) -> {
+            final int[] row = new int[w];
+            for (int i = from; i < to; i++) {
+                bitmap.getRGB(left, i, w, 1, row, 0, w);
+                for (int j = 0; j < w; j++) {
+                    if (row[j] != transRGB) setRGB(left + j + x, i + y, row[j]);
                 }
             }
-        }
+        });
+    }
+
+    /**
+     * blends an image into this image with a draw mode: MODE_ADD adds the color channels of the bitmap to the
+     * pixels, MODE_SUB subtracts them and MODE_REPLACE mixes the bitmap with the pixels according to the intensity
+     * @param bitmap bitmap to be inserted
+     * @param x x-value of upper left coordinate where bitmap will be placed
+     * @param y y-value of upper left coordinate where bitmap will be placed
+     * @param mode the draw mode
+     * @param intensity the intensity of the bitmap in percent
+     */
+    public void insertBitmap(final BufferedImage bitmap, final int x, final int y, final DrawMode mode, final int intensity) {
+        final int left = Math.max(0, -x);
+        final int top = Math.max(0, -y);
+        final int right = Math.min(bitmap.getWidth(), this.width - x);
+        final int bottom = Math.min(bitmap.getHeight(), this.height - y);
+        final int w = right - left;
+        if (w <= 0) return;
+        bands(top, bottom, w, (from, to) -> {
+            final int[] row = new int[w];
+            for (int i = from; i < to; i++) {
+                bitmap.getRGB(left, i, w, 1, row, 0, w);
+                for (int j = 0; j < w; j++) {
+                    final int rgb = getRGB(left + j + x, i + y);
+                    final int b = row[j];
+                    setRGB(left + j + x, i + y,
+                            blend(mode, rgb >> 16 & 0xff, b >> 16 & 0xff, intensity) << 16 |
+                            blend(mode, rgb >> 8 & 0xff, b >> 8 & 0xff, intensity) << 8 |
+                            blend(mode, rgb & 0xff, b & 0xff, intensity));
+                }
+            }
+        });
     }
 
     /**
@@ -754,102 +779,151 @@ public class RasterPlotter {
         final int rux = Math.min(Math.max(Math.max(ulx, lrx), 0), this.width - 1);
         final int ruy = Math.min(Math.max(Math.max(uly, lry), 0), this.height -1);
 
-        int numberOfNeighbours = 0;
-        int rgbR = 0;
-        int rgbG = 0;
-        int rgbB = 0;
-        int rgb = 0;
         final int width2 = rux - lox + 1;
         final int height2 = ruy - loy + 1;
-        boolean border = false;
-        final BufferedImage image2 = new BufferedImage(width2, height2, BufferedImage.TYPE_INT_RGB);
-
-        for (int i = lox; i < rux + 1; i++) {
-            for (int j = loy; j < ruy + 1; j++) {
-
-                numberOfNeighbours = 0;
-                rgbR = 0;
-                rgbG = 0;
-                rgbB = 0;
-
-                if (filter == FilterMode.FILTER_ANTIALIASING || filter == FilterMode.FILTER_BLUR) {
-                    // taking samples from neighbouring pixel
-                    if (i > lox) {
-                        rgb = this.image.getRGB(i - 1, j);
-                        border = (rgb == bgcolor);
-                        rgbR += rgb >> 16 & 0xff;
-                        rgbG += rgb >> 8 & 0xff;
-                        rgbB += rgb & 0xff;
-                        numberOfNeighbours++;
+        final int[] image2 = new int[width2 * height2];
+
+        // compute the new version of the area; the bands only read from the image
+        bands(loy, ruy + 1, width2, (from, to) -> {
+            for (int j = from; j < to; j++) {
+                for (int i = lox; i < rux + 1; i++) {
+
+                    int numberOfNeighbours = 0;
+                    int rgbR = 0;
+                    int rgbG = 0;
+                    int rgbB = 0;
+                    int rgb;
+                    boolean border = false;
+
+                    if (filter == FilterMode.FILTER_ANTIALIASING || filter == FilterMode.FILTER_BLUR) {
+                        // taking samples from neighbouring pixel
+                        if (i > lox) {
+                            rgb = getRGB(i - 1, j);
+                            border = (rgb == bgcolor);
+                            rgbR += rgb >> 16 & 0xff;
+                            rgbG += rgb >> 8 & 0xff;
+                            rgbB += rgb & 0xff;
+                            numberOfNeighbours++;
+                        }
+                        if (j > loy) {
+                            rgb = getRGB(i, j - 1);
+                            border = border || (rgb == bgcolor);
+                            rgbR += rgb >> 16 & 0xff;
+                            rgbG += rgb >> 8 & 0xff;
+                            rgbB += rgb & 0xff;
+                            numberOfNeighbours++;
+                        }
+                        if (i < this.width - 1) {
+                            rgb = getRGB(i + 1, j);
+                            border = border || (rgb == bgcolor);
+                            rgbR += rgb >> 16 & 0xff;
+                            rgbG += rgb >> 8 & 0xff;
+                            rgbB += rgb & 0xff;
+                            numberOfNeighbours++;
+                        }
+                        if (j < this.height - 1) {
+                            rgb = getRGB(i, j + 1);
+                            border = border || (rgb == bgcolor);
+                            rgbR += rgb >> 16 & 0xff;
+                            rgbG += rgb >> 8 & 0xff;
+                            rgbB += rgb & 0xff;
+                            numberOfNeighbours++;
+                        }
                     }
-                    if (j > loy) {
-                        rgb = this.image.getRGB(i, j - 1);
-                        border = border || (rgb == bgcolor);
-                        rgbR += rgb >> 16 & 0xff;
-                        rgbG += rgb >> 8 & 0xff;
-                        rgbB += rgb & 0xff;
+
+                    rgb = getRGB(i, j);
+
+                    // add value of pixel
+                    // in case filter is used for antialiasing this will only be done if
+                    // the pixel is on the edge to the background color
+                    if (filter == FilterMode.FILTER_ANTIALIASING && border || filter == FilterMode.FILTER_BLUR) {
+                        rgbR += (rgb >> 16 & 0xff);
+                        rgbG += (rgb >> 8 & 0xff);
+                        rgbB += (rgb & 0xff);
                         numberOfNeighbours++;
                     }
-                    if (i < this.width - 1) {
-                        rgb = this.image.getRGB(i + 1, j);
-                        border = border || (rgb == bgcolor);
-                        rgbR += rgb >> 16 & 0xff;
-                        rgbG += rgb >> 8 & 0xff;
-                        rgbB += rgb & 0xff;
-                        numberOfNeighbours++;
+                    // set to value of pixel => keep value
+                    else if (filter == FilterMode.FILTER_ANTIALIASING) {
+                        rgbR = (rgb >> 16 & 0xff);
+                        rgbG = (rgb >> 8 & 0xff);
+                        rgbB = (rgb & 0xff);
+                        numberOfNeighbours = 1;
                     }
-                    if (i < this.height - 1) {
-                        rgb = this.image.getRGB(i, j + 1);
-                        border = border || (rgb == bgcolor);
-                        rgbR += rgb >> 16 & 0xff;
-                        rgbG += rgb >> 8 & 0xff;
-                        rgbB += rgb & 0xff;
-                        numberOfNeighbours++;
+                    // set value of pixel to inverted value (using XOR)
+                    else if (filter == FilterMode.FILTER_INVERT) {
+                        rgb = rgb ^ 0xffffff;
+                        rgbR = (rgb >> 16 & 0xff);
+                        rgbG = (rgb >> 8 & 0xff);
+                        rgbB = (rgb & 0xff);
+                        numberOfNeighbours = 1;
                     }
 
-                }
+                    // calculating the average
+                    rgbR = (rgbR / numberOfNeighbours);
+                    rgbG = (rgbG / numberOfNeighbours);
+                    rgbB = (rgbB / numberOfNeighbours);
 
-                rgb = this.image.getRGB(i, j);
-
-                // add value of pixel
-                // in case filter is used for antialiasing this will only be done if
-                // the pixel is on the edge to the background color
-                if (filter == FilterMode.FILTER_ANTIALIASING && border || filter == FilterMode.FILTER_BLUR) {
-                    rgbR += (rgb >> 16 & 0xff);
-                    rgbG += (rgb >> 8 & 0xff);
-                    rgbB += (rgb & 0xff);
-                    numberOfNeighbours++;
-                    border = false;
-                }
-                // set to value of pixel => keep value
-                else if (filter == FilterMode.FILTER_ANTIALIASING) {
-                    rgbR = (rgb >> 16 & 0xff);
-                    rgbG = (rgb >> 8 & 0xff);
-                    rgbB = (rgb & 0xff);
-                    numberOfNeighbours = 1;
-                }
-                // set value of pixel to inverted value (using XOR)
-                else if (filter == FilterMode.FILTER_INVERT) {
-                    rgb = rgb ^ 0xffffff;
-                    rgbR = (rgb >> 16 & 0xff);
-                    rgbG = (rgb >> 8 & 0xff);
-                    rgbB = (rgb & 0xff);
-                    numberOfNeighbours = 1;
+                    image2[(j - loy) * width2 + i - lox] = (rgbR << 16) | (rgbG << 8) | rgbB;
                 }
+            }
+        });
 
-                // calculating the average
-                rgbR = (rgbR / numberOfNeighbours);
-                rgbG = (rgbG / numberOfNeighbours);
-                rgbB = (rgbB / numberOfNeighbours);
+        // insert new version of area into image
+        bands(loy, ruy + 1, width2, (from, to) -> {
+            for (int j = from; j < to; j++) {
+                for (int i = lox; i < rux + 1; i++) setRGB(i, j, image2[(j - loy) * width2 + i - lox]);
+            }
+        });
+    }
 
-                rgb = (rgbR << 16) | (rgbG << 8) | rgbB;
+    /**
+     * A band of rows of an area of the image
+     */
+    @FunctionalInterface
+    private interface Band {
+        public void rows(int from, int to);
+    }
 
-                image2.setRGB(i-lox, j-loy, rgb);
-            }
+    /**
+     * process the rows of an area in bands. Large areas of the frame buffer are processed in parallel,
+     * so the bands must not write to the same pixels; the pixels of other images share bytes and are
+     * processed by the calling thread.
+     * @param from the first row
+     * @param to the row after the last row
+     * @param columns the width of the area
+     * @param band the processing of a band
+     */
+    private void bands(final int from, final int to, final int columns, final Band band) {
+        final int rows = to - from;
+        if (rows <= 0 || columns <= 0) return;
+        if (this.frame == null || rows <= BAND_ROWS || (long) rows * columns < PARALLEL_PIXELS) {
+            band.rows(from, to);
+            return;
         }
+        IntStream.range(0, (rows + BAND_ROWS - 1) / BAND_ROWS).parallel().forEach(b -> band.rows(from + b * BAND_ROWS, Math.min(to, from + (b + 1) * BAND_ROWS)));
+    }
 
-        // insert new version of area into image
-        insertBitmap(image2, lox, loy);
+    /**
+     * get a pixel as RGB value with alpha, like BufferedImage.getRGB
+     */
+    private int getRGB(final int x, final int y) {
+        if (this.frame == null) return this.image.getRGB(x, y);
+        final int cell = (this.width * y + x) * 3;
+        return 0xff000000 | (this.frame[cell] & 0xff) << 16 | (this.frame[cell + 1] & 0xff) << 8 | (this.frame[cell + 2] & 0xff);
+    }
+
+    /**
+     * set a pixel from a RGB value, like BufferedImage.setRGB
+     */
+    private void setRGB(final int x, final int y, final int rgb) {
+        if (this.frame == null) {
+            this.image.setRGB(x, y, rgb);
+            return;
+        }
+        final int cell = (this.width * y + x) * 3;
+        this.frame[cell    ] = (byte) (rgb >> 16);
+        this.frame[cell + 1] = (byte) (rgb >> 8);
+        this.frame[cell + 2] = (byte) rgb;
     }
 
     public static void demoPaint(final RasterPlotter m) {
@@ -25,9 +25,11 @@ import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -40,7 +42,10 @@ public class JsonDataset {
     
     private final JsonRepository indexDump; // a directory containing dump, import and imported subdirectories
     final Map<String, JsonFactoryIndex> index; // a mapping from a search key to the search index
+    final List<MappedDump> mapped; // the dumps with a persistent index, latest dump first
+    private final File indexDir; // the directory of the persistent indexes
     private final JsonMinifier minifier; // a minifier for json which learns about json mapping key names
+    private final File minifierState; // the key mapping and compression dictionaries of the minifier
     private final Map<String, Boolean> columns; // a mapping from the column key to a boolean which is true if the column value is case-insensitive
     private final String dateFieldName; // a name of a date field which shows the update time of the record
     private final DateFormat dateFieldFormat; 
@@ -55,7 +60,21 @@ public class JsonDataset {
     }
     
     /**
-     * define a data set: an indexed JsonDump where the index is held in RAM
+     * A dump which is not appended any more and has a persistent index for each column
+     */
+    static class MappedDump {
+        final JsonRandomAccessFile reader;
+        final Map<String, JsonMappedIndex> index;
+        MappedDump(JsonRandomAccessFile reader, Map<String, JsonMappedIndex> index) {
+            this.reader = reader;
+            this.index = index;
+        }
+    }
+    
+    /**
+     * define a data set: an indexed JsonDump where the index is held in RAM. In REWRITABLE mode, all dumps
+     * except the current dump get a persistent index in memory-mapped files which is written once and
+     * is used again when the data set is opened the next time.
      * @param dump_dir the path where the subdirectories for this data set shall be stored
      * @param dump_file_prefix a prefix for the file names
      * @param index_keys the names of the json property keys where their content shall be indexed by this field
@@ -73,7 +92,11 @@ public class JsonDataset {
         int concurrency = Runtime.getRuntime().availableProcessors();
         this.indexDump = new JsonRepository(dump_dir, dump_file_prefix, null, mode, dailyDump, concurrency);
         this.index = new ConcurrentHashMap<>();
-        this.minifier = new JsonMinifier();
+        this.mapped = new ArrayList<>();
+        this.indexDir = new File(dump_dir, "index");
+        this.minifierState = new File(dump_dir, "minifier.json");
+        this.minifier = mode == JsonRepository.COMPRESSED_MODE ?
+                new JsonMinifier(this.minifierState, JsonMinifier.DEFAULT_LEVEL, JsonMinifier.DEFAULT_TRAINING_SIZE) : new JsonMinifier();
         this.columns = new HashMap<>();
         this.dateFieldName = dateFieldName == null ? "" : dateFieldName;
         this.dateFieldFormat = this.dateFieldName.length() == 0 ? null : new SimpleDateFormat(dateFieldFormat);
@@ -87,60 +110,121 @@ public class JsonDataset {
 
         // for each reader one threqd is started which does Json parsing and indexing
         if (dumps != null) for (final File dump: dumps) {
+            if (mode == JsonRepository.REWRITABLE_MODE && dump.getName().endsWith(".txt") &&
+                !dump.getAbsolutePath().equals(this.indexDump.json_log.file.getName())) {
+                MappedDump m = openMapped(dump);
+                if (m == null) {
+                    // read the dump once and write the persistent index
+                    Map<String, JsonMappedIndex.Builder> builders = new HashMap<>();
+                    for (String key: this.columns.keySet()) builders.put(key, new JsonMappedIndex.Builder());
+                    JsonReader reader = indexDump.getDumpReader(dump);
+                    DAO.log("indexing " + reader.getName());
+                    load(reader, concurrency, builders);
+                    ((JsonRandomAccessFile) reader).close();
+                    this.indexDir.mkdirs();
+                    boolean written = true;
+                    for (Map.Entry<String, JsonMappedIndex.Builder> builder: builders.entrySet()) {
+                        written = written && builder.getValue().write(indexFile(dump, builder.getKey()), dump, this.columns.get(builder.getKey()));
+                    }
+                    if (written) m = openMapped(dump);
+                    if (m == null) {
+                        // the index does not fit into a mapped file
+                        load(indexDump.getDumpReader(dump), concurrency, null);
+                        continue;
+                    }
+                }
+                this.mapped.add(0, m);
+                continue;
+            }
             final JsonReader reader = indexDump.getDumpReader(dump);
             DAO.log("loading " + reader.getName());
-            Thread[] indexerThreads = new Thread[concurrency];
-            for (int i = 0; i < concurrency; i++) {
-                indexerThreads[i] = new Thread() {
-                    public void run() {
-                        JsonFactory jsonHandle;
-                        try {
-                            while ((jsonHandle = reader.take()) != JsonStreamReader.POISON_JSON_MAP) {
-                                JSONObject op = jsonHandle.getJSON();
-                                JsonFactory jsonFactory;
-                                if (jsonHandle instanceof JsonRandomAccessFile.JsonHandle) {
-                                    JsonRandomAccessFile.JsonHandle handle = (JsonRandomAccessFile.JsonHandle) jsonHandle;
-                                    assert reader instanceof JsonRandomAccessFile;
-                                    // create the file json handle which does not contain the json any more
-                                    // but only the file handle
-                                    jsonFactory = ((JsonRandomAccessFile) reader).getJsonFactory(handle.getIndex(), handle.getLength());
-                                } else {
-                                    assert JsonDataset.this.indexDump.getMode() == JsonRepository.COMPRESSED_MODE;
-                                    // create the json minifier object which contains the json in minified version
-                                    // before we create the minifier, we remove the meta keys from the json to further minify it
-                                    for (byte[] meta_key: JsonRepository.META_KEYS) {
-                                        op.remove(new String(meta_key, StandardCharsets.US_ASCII));
+            load(reader, concurrency, null);
+        }
+        if (mode == JsonRepository.COMPRESSED_MODE) this.minifier.store(this.minifierState);
+    }
+    
+    private File indexFile(File dump, String column) {
+        return new File(this.indexDir, dump.getName() + "." + column.replaceAll("[^A-Za-z0-9_-]", "_") + ".idx");
+    }
+    
+    private MappedDump openMapped(File dump) throws IOException {
+        Map<String, JsonMappedIndex> index = new HashMap<>();
+        for (Map.Entry<String, Boolean> column: this.columns.entrySet()) {
+            JsonMappedIndex mi = JsonMappedIndex.open(indexFile(dump, column.getKey()), dump, column.getValue());
+            if (mi == null) return null;
+            index.put(column.getKey(), mi);
+        }
+        return new MappedDump(new JsonRandomAccessFile(dump, 1), index);
+    }
+    
+    /**
+     * read a dump with concurrent indexer threads
+     * @param reader the started reader of the dump
+     * @param concurrency the number of indexer threads
+     * @param builders if not null, the positions of the records are collected for the persistent index instead of the RAM index
+     */
+    private void load(final JsonReader reader, final int concurrency, final Map<String, JsonMappedIndex.Builder> builders) {
+        Thread[] indexerThreads = new Thread[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            indexerThreads[i] = new Thread() {
+                public void run() {
+                    JsonFactory jsonHandle;
+                    try {
+                        while ((jsonHandle = reader.take()) != JsonStreamReader.POISON_JSON_MAP) {
+                            JSONObject op = jsonHandle.getJSON();
+                            if (builders != null) {
+                                JsonRandomAccessFile.JsonHandle handle = (JsonRandomAccessFile.JsonHandle) jsonHandle;
+                                for (Map.Entry<String, Boolean> column: JsonDataset.this.columns.entrySet()) {
+                                    Object searchValue = op.opt(column.getKey());
+                                    if (searchValue instanceof String) {
+                                        builders.get(column.getKey()).add(column.getValue() ? ((String) searchValue).toLowerCase() : (String) searchValue, handle.getIndex(), handle.getLength());
                                     }
-                                    jsonFactory = JsonDataset.this.minifier.minify(op);
                                 }
-                                // the resulting json factory is written to each search index
-                                for (Map.Entry<String, Boolean> column: JsonDataset.this.columns.entrySet()) {
-                                    String searchKey = column.getKey();
-                                    boolean case_insensitive = column.getValue();
-                                    JsonFactoryIndex factoryIndex = JsonDataset.this.index.get(searchKey);
-                                    Object searchValue = op.has(searchKey) ? op.get(searchKey) : null;
-                                    if (searchValue != null) {
-                                        if (searchValue instanceof String) {
-                                            factoryIndex.put(case_insensitive ? ((String) searchValue).toLowerCase() : (String) searchValue, jsonFactory);
-                                        } else {
-                                            factoryIndex.put(searchValue, jsonFactory);
-                                        }
+                                continue;
+                            }
+                            JsonFactory jsonFactory;
+                            if (jsonHandle instanceof JsonRandomAccessFile.JsonHandle) {
+                                JsonRandomAccessFile.JsonHandle handle = (JsonRandomAccessFile.JsonHandle) jsonHandle;
+                                assert reader instanceof JsonRandomAccessFile;
+                                // create the file json handle which does not contain the json any more
+                                // but only the file handle
+                                jsonFactory = ((JsonRandomAccessFile) reader).getJsonFactory(handle.getIndex(), handle.getLength());
+                            } else {
+                                assert JsonDataset.this.indexDump.getMode() == JsonRepository.COMPRESSED_MODE;
+                                // create the json minifier object which contains the json in minified version
+                                // before we create the minifier, we remove the meta keys from the json to further minify it
+                                for (byte[] meta_key: JsonRepository.META_KEYS) {
+                                    op.remove(new String(meta_key, StandardCharsets.US_ASCII));
+                                }
+                                jsonFactory = JsonDataset.this.minifier.minify(op);
+                            }
+                            // the resulting json factory is written to each search index
+                            for (Map.Entry<String, Boolean> column: JsonDataset.this.columns.entrySet()) {
+                                String searchKey = column.getKey();
+                                boolean case_insensitive = column.getValue();
+                                JsonFactoryIndex factoryIndex = JsonDataset.this.index.get(searchKey);
+                                Object searchValue = op.has(searchKey) ? op.get(searchKey) : null;
+                                if (searchValue != null) {
+                                    if (searchValue instanceof String) {
+                                        factoryIndex.put(case_insensitive ? ((String) searchValue).toLowerCase() : (String) searchValue, jsonFactory);
+                                    } else {
+                                        factoryIndex.put(searchValue, jsonFactory);
                                     }
                                 }
                             }
-                        } catch (InterruptedException e) {
-                        	Log.getLog().warn(e);
-                        } catch (IOException e) {
-                        	Log.getLog().warn(e);
                         }
+                    } catch (InterruptedException e) {
+                    	Log.getLog().warn(e);
+                    } catch (IOException e) {
+                    	Log.getLog().warn(e);
                     }
-                };
-                indexerThreads[i].start();
-            }
-            // wait for the completion of each task
-            for (int i = 0; i < concurrency; i++) {
-                try {indexerThreads[i].join();} catch (InterruptedException e) {}
-            }
+                }
+            };
+            indexerThreads[i].start();
+        }
+        // wait for the completion of each task
+        for (int i = 0; i < concurrency; i++) {
+            try {indexerThreads[i].join();} catch (InterruptedException e) {}
         }
     }
     
@@ -171,7 +255,16 @@ public class JsonDataset {
         if (insensitive == null) throw new RuntimeException("Column " + column + " was not declared");
         JsonFactoryIndex jfi = this.index.get(column);
         if (jfi == null) throw new RuntimeException("Column " + column + " was not defined");
-        return jfi.get(insensitive ? value.toLowerCase() : value);
+        String key = insensitive ? value.toLowerCase() : value;
+        JsonFactory jf = jfi.get(key);
+        if (jf != null) return jf;
+        // search the persistent indexes, latest dump first
+        for (MappedDump m: this.mapped) {
+            JsonMappedIndex mi = m.index.get(column);
+            int slot = mi.find(key);
+            if (slot >= 0) return m.reader.getJsonFactory(mi.getPosition(slot), mi.getLength(slot));
+        }
+        return null;
     }
     
     public Date parseDate(JSONObject json) throws ParseException {
@@ -185,6 +278,13 @@ public class JsonDataset {
     
     public void close() {
         this.indexDump.close();
+        if (this.indexDump.getMode() == JsonRepository.COMPRESSED_MODE) try {
+            this.minifier.store(this.minifierState);
+        } catch (IOException e) {
+            Log.getLog().warn(e);
+        }
+        for (MappedDump m: this.mapped) try {m.reader.close();} catch (IOException e) {}
+        this.mapped.clear();
     }
     
     public static class JsonFactoryIndex extends ConcurrentHashMap<Object, JsonFactory> implements Map<Object, JsonFactory> {
@@ -193,8 +293,10 @@ public class JsonDataset {
     
     public int size() {
         int size = 0;
-        for (JsonFactoryIndex fi: this.index.values()) {
-            size = Math.max(size, fi.size());
+        for (Map.Entry<String, JsonFactoryIndex> fi: this.index.entrySet()) {
+            int s = fi.getValue().size();
+            for (MappedDump m: this.mapped) s += m.index.get(fi.getKey()).size();
+            size = Math.max(size, s);
         }
         return size;
     }
@@ -24,12 +24,16 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.function.Predicate;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import ai.susi.tools.Metrics;
+
 /**
  * This extends JSONObject to be a file which gets loaded and written to disk
  * It also offers some key management tools
@@ -37,6 +41,8 @@ import org.json.JSONTokener;
  */
 public class JsonFile extends JSONObject {
 	
+	private final static Metrics.Family<Metrics.Histogram> commitDuration = Metrics.histogram("susi_json_commit_duration_seconds", "Time to write a json file", "file");
+
 	private final File file;
 
 	public JsonFile(File file) throws IOException {
@@ -102,10 +108,13 @@ public class JsonFile extends JSONObject {
 	 * @throws JSONException
 	 */
 	public synchronized void commit() throws JSONException {
+	    long start = System.nanoTime();
 	    try {
             writeJson(this.file, this);
 		} catch (IOException e) {
 			throw new JSONException(e.getMessage());
+		} finally {
+		    commitDuration.labels(this.file.getName()).observeNanos(System.nanoTime() - start);
 		}
 	}
 	
@@ -186,4 +195,22 @@ public class JsonFile extends JSONObject {
 		commit();
 		return this;
 	}
+	
+	/**
+	 * remove all entries which match a predicate; the file is written once if anything was removed
+	 * @param predicate a test on the value of an entry
+	 * @return the number of removed entries
+	 */
+	public synchronized int removeIf(Predicate<Object> predicate) {
+		int c = 0;
+		Iterator<String> i = this.keySet().iterator();
+		while (i.hasNext()) {
+			if (predicate.test(this.opt(i.next()))) {
+				i.remove();
+				c++;
+			}
+		}
+		if (c > 0) commit();
+		return c;
+	}
 }
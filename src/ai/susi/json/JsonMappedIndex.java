@@ -0,0 +1,190 @@
+/**
+ *  JsonMappedIndex
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A persistent index of one column of a dump file: a hash table in a memory-mapped file which maps the
+ * column value to the seek position and length of the record in the dump. The index is written once for
+ * a dump which is not appended any more and opened again without reading of the dump. Lookups read the
+ * mapped file directly; only the key of the lookup is created on the heap.
+ *
+ * The file has a header with the size and date of the dump, a table of slots with the hash of a key,
+ * the position and length of the record and the offset of the key bytes, and a key area where each key is
+ * stored with its length in front of its UTF-8 bytes.
+ */
+public class JsonMappedIndex {
+
+    private final static int MAGIC = 0x4A534958; // "JSIX"
+    private final static int VERSION = 1;
+    private final static int HEADER_SIZE = 40;
+    private final static int SLOT_SIZE = 24; // hash (long), position (long), length (int), key offset (int)
+
+    private final MappedByteBuffer buffer;
+    private final int slots, entries, keyArea;
+
+    private JsonMappedIndex(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.slots = buffer.getInt(12);
+        this.entries = buffer.getInt(16);
+        this.keyArea = HEADER_SIZE + this.slots * SLOT_SIZE;
+    }
+
+    /**
+     * open an index file
+     * @param indexFile the index file
+     * @param dump the dump file which is indexed
+     * @param caseInsensitive true if the keys are lowercase
+     * @return the index or null if the file does not exist or if it does not match to the dump
+     * @throws IOException
+     */
+    public static JsonMappedIndex open(File indexFile, File dump, boolean caseInsensitive) throws IOException {
+        if (!indexFile.exists() || indexFile.length() < HEADER_SIZE) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION ||
+                buffer.getInt(8) != (caseInsensitive ? 1 : 0) ||
+                buffer.getLong(24) != dump.length() || buffer.getLong(32) != dump.lastModified()) return null;
+            return new JsonMappedIndex(buffer);
+        }
+    }
+
+    /**
+     * the number of keys in the index
+     */
+    public int size() {
+        return this.entries;
+    }
+
+    /**
+     * find the slot of a key
+     * @param key the column value
+     * @return the slot number or -1 if the key is not in the index
+     */
+    public int find(String key) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(k);
+        int mask = this.slots - 1;
+        for (int slot = (int) hash & mask;; slot = (slot + 1) & mask) {
+            int p = HEADER_SIZE + slot * SLOT_SIZE;
+            if (this.buffer.getInt(p + 16) == 0) return -1; // empty slot
+            if (this.buffer.getLong(p) == hash && equals(this.keyArea + this.buffer.getInt(p + 20), k)) return slot;
+        }
+    }
+
+    /**
+     * the seek position of the record of a slot in the dump
+     */
+    public long getPosition(int slot) {
+        return this.buffer.getLong(HEADER_SIZE + slot * SLOT_SIZE + 8);
+    }
+
+    /**
+     * the length of the record of a slot in the dump
+     */
+    public int getLength(int slot) {
+        return this.buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE + 16);
+    }
+
+    private boolean equals(int offset, byte[] k) {
+        if (this.buffer.getInt(offset) != k.length) return false;
+        offset += 4;
+        for (int i = 0; i < k.length; i++) if (this.buffer.get(offset + i) != k[i]) return false;
+        return true;
+    }
+
+    private static long hash(byte[] k) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (byte b: k) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * A builder collects the entries of an index while a dump is read. If a key appears more than once,
+     * the latest record in the dump is indexed. The builder can be used concurrently.
+     */
+    public static class Builder {
+
+        private final Map<String, long[]> entries = new HashMap<>();
+        private long keyBytes = 0;
+
+        public synchronized void add(String key, long position, int length) {
+            long[] e = this.entries.get(key);
+            if (e == null) {
+                this.entries.put(key, new long[]{position, length});
+                this.keyBytes += 4 + key.getBytes(StandardCharsets.UTF_8).length;
+            } else if (position > e[0]) {
+                e[0] = position;
+                e[1] = length;
+            }
+        }
+
+        /**
+         * write the index file. The file is written to a temporary file first which is renamed in the end.
+         * @param indexFile the index file
+         * @param dump the dump file which was indexed
+         * @param caseInsensitive true if the keys are lowercase
+         * @return true if the index was written, false if it does not fit into one mapped file
+         * @throws IOException
+         */
+        public synchronized boolean write(File indexFile, File dump, boolean caseInsensitive) throws IOException {
+            int slots = Integer.highestOneBit(Math.max(2, this.entries.size() * 2 - 1)) * 2; // the fill rate is at most 50%
+            long size = HEADER_SIZE + (long) slots * SLOT_SIZE + this.keyBytes;
+            if (slots <= 0 || size > Integer.MAX_VALUE) return false;
+            File tmp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+            if (tmp.exists()) tmp.delete();
+            try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw"); FileChannel channel = raf.getChannel()) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, caseInsensitive ? 1 : 0).putInt(12, slots).putInt(16, this.entries.size());
+                buffer.putLong(24, dump.length()).putLong(32, dump.lastModified());
+                int keyArea = HEADER_SIZE + slots * SLOT_SIZE, keyOffset = 0;
+                for (Map.Entry<String, long[]> entry: this.entries.entrySet()) {
+                    byte[] k = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    long hash = hash(k);
+                    int slot = (int) hash & (slots - 1);
+                    while (buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE + 16) != 0) slot = (slot + 1) & (slots - 1);
+                    int p = HEADER_SIZE + slot * SLOT_SIZE;
+                    buffer.putLong(p, hash).putLong(p + 8, entry.getValue()[0]).putInt(p + 16, (int) entry.getValue()[1]).putInt(p + 20, keyOffset);
+                    ByteBuffer keys = buffer.duplicate();
+                    keys.position(keyArea + keyOffset);
+                    keys.putInt(k.length).put(k);
+                    keyOffset += 4 + k.length;
+                }
+                buffer.force();
+            }
+            if (indexFile.exists()) indexFile.delete();
+            if (!tmp.renameTo(indexFile)) throw new IOException("cannot rename " + tmp + " to " + indexFile);
+            return true;
+        }
+    }
+
+}
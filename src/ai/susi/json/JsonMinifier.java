@@ -19,29 +19,134 @@
 
 package ai.susi.json;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import ai.susi.DAO;
 import ai.susi.tools.Compression;
 import ai.susi.tools.UTF8;
 
-
+/**
+ * The minifier replaces the keys of json objects with short keys and compresses the result into a capsule.
+ * The compression uses a preset dictionary which is trained from the first records: small json records
+ * compress poorly on their own but share most of their structure and many values with each other.
+ * The dictionary and the key mapping can be stored to decode the capsules later.
+ */
 public class JsonMinifier {
 
+    public final static int DICTIONARY_SIZE = 4 * 1024; // the deflater hashes the dictionary for each record, larger dictionaries are slow
+    public final static int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+    public final static int DEFAULT_TRAINING_SIZE = 1000;
+
+    private final static Pattern tokenPattern = Pattern.compile("\"(?:[^\"\\\\]|\\\\.)*\":?|[^\",{}\\[\\]:]+");
+
+    // deflater and inflater are expensive to create, therefore they are re-used in each thread
+    private final static ThreadLocal<Deflater[]> deflaters = new ThreadLocal<Deflater[]>() {
+        @Override
+        protected Deflater[] initialValue() {
+            return new Deflater[10];
+        }
+    };
+    private final static ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+    private final static ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[4096];
+        }
+    };
+
     private final ConcurrentHashMap<String, String> key2short, short2key;
-    
+    private final Map<Integer, byte[]> dictionaries; // a mapping from the adler32 checksum of a dictionary to the dictionary
+    private final int level, trainingSize;
+    private volatile byte[] dictionary; // the dictionary for new capsules or null if there is no dictionary yet
+    private List<String> samples; // the records for the training of the dictionary
+
     public JsonMinifier() {
+        this(DEFAULT_LEVEL, DEFAULT_TRAINING_SIZE);
+    }
+
+    /**
+     * create a minifier
+     * @param level the deflate compression level, 0..9 or Deflater.DEFAULT_COMPRESSION
+     * @param trainingSize the number of records which are used to train a dictionary; 0 if no dictionary shall be trained
+     */
+    public JsonMinifier(int level, int trainingSize) {
         this.key2short = new ConcurrentHashMap<>();
         this.short2key = new ConcurrentHashMap<>();
+        this.dictionaries = new ConcurrentHashMap<>();
+        this.level = level == Deflater.DEFAULT_COMPRESSION ? 6 : level;
+        if (this.level < 0 || this.level > 9) throw new IllegalArgumentException("compression level " + level);
+        this.trainingSize = trainingSize;
+        this.dictionary = null;
+        this.samples = trainingSize > 0 ? new ArrayList<>(trainingSize) : null;
     }
-    
+
+    /**
+     * create a minifier with the key mapping and the dictionaries of a file which was written with store()
+     * @param state the file; if it does not exist, a new minifier is created
+     * @param level the deflate compression level, 0..9 or Deflater.DEFAULT_COMPRESSION
+     * @param trainingSize the number of records which are used to train a dictionary; 0 if no dictionary shall be trained
+     * @throws IOException
+     */
+    public JsonMinifier(File state, int level, int trainingSize) throws IOException {
+        this(level, trainingSize);
+        if (!state.exists()) return;
+        JSONObject json = new JSONObject(new String(Files.readAllBytes(state.toPath()), StandardCharsets.UTF_8));
+        JSONObject keys = json.getJSONObject("keys");
+        for (String s: keys.keySet()) {
+            this.short2key.put(s, keys.getString(s));
+            this.key2short.put(keys.getString(s), s);
+        }
+        JSONArray d = json.getJSONArray("dictionaries");
+        for (int i = 0; i < d.length(); i++) {
+            this.dictionary = Base64.getDecoder().decode(d.getString(i));
+            this.dictionaries.put(adler(this.dictionary), this.dictionary);
+        }
+        if (this.dictionary != null) this.samples = null;
+    }
+
+    /**
+     * write the key mapping and the dictionaries to a file. All capsules which were created with this minifier can be
+     * decoded with a minifier which is created from that file. The latest dictionary is stored last.
+     * @param state the file
+     * @throws IOException
+     */
+    public void store(File state) throws IOException {
+        JSONObject keys = new JSONObject(true);
+        for (Map.Entry<String, String> entry: this.short2key.entrySet()) keys.put(entry.getKey(), entry.getValue());
+        JSONArray d = new JSONArray();
+        byte[] current = this.dictionary;
+        for (byte[] b: this.dictionaries.values()) if (b != current) d.put(Base64.getEncoder().encodeToString(b));
+        if (current != null) d.put(Base64.getEncoder().encodeToString(current));
+        JSONObject json = new JSONObject(true).put("level", this.level).put("keys", keys).put("dictionaries", d);
+        File tmp = new File(state.getParentFile(), state.getName() + ".tmp");
+        Files.write(tmp.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+        if (state.exists()) state.delete();
+        if (!tmp.renameTo(state)) throw new IOException("cannot rename " + tmp + " to " + state);
+    }
+
     public JsonCapsuleFactory minify(JSONObject json) {
         if (json == null) return null;
         JSONObject minified = new JSONObject(true);
@@ -57,32 +162,137 @@ public class JsonMinifier {
             }
             minified.put(s, json.get(key));
         }
-        return new JsonCapsuleFactory(minified);
+        String m = minified.toString();
+        if (this.samples != null) sample(m);
+        return new JsonCapsuleFactory(UTF8.getBytes(m));
     }
-    
+
+    private void sample(String minified) {
+        List<String> training = null;
+        synchronized (this) {
+            if (this.samples == null) return;
+            this.samples.add(minified);
+            if (this.samples.size() >= this.trainingSize) {
+                training = this.samples;
+                this.samples = null;
+            }
+        }
+        if (training != null) setDictionary(dictionary(training));
+    }
+
+    /**
+     * train a dictionary from sample records; the dictionary is used for all following capsules
+     * @param samples json records in original form
+     */
+    public void train(Iterable<JSONObject> samples) {
+        List<String> training = new ArrayList<>();
+        for (JSONObject json: samples) {
+            JSONObject minified = new JSONObject(true);
+            for (String key: json.keySet()) {
+                String s = this.key2short.get(key);
+                if (s != null) minified.put(s, json.get(key));
+            }
+            training.add(minified.toString());
+        }
+        synchronized (this) {
+            this.samples = null;
+        }
+        setDictionary(dictionary(training));
+    }
+
+    private void setDictionary(byte[] d) {
+        if (d.length == 0) return;
+        this.dictionaries.put(adler(d), d);
+        this.dictionary = d;
+    }
+
+    /**
+     * compute a dictionary from minified records: the tokens which appear in more than one record, ordered by
+     * the number of bytes they would save. Deflate encodes matches in the near past with fewer bits, therefore the
+     * most valuable tokens are placed at the end of the dictionary. Remaining space is filled with the latest samples
+     * which contain the structure of the records.
+     */
+    private static byte[] dictionary(List<String> samples) {
+        final Map<String, Integer> count = new HashMap<>();
+        for (String sample: samples) {
+            Matcher m = tokenPattern.matcher(sample);
+            while (m.find()) {
+                String token = m.group();
+                if (token.length() < 3) continue;
+                Integer c = count.get(token);
+                count.put(token, c == null ? 1 : c + 1);
+            }
+        }
+        List<String> tokens = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry: count.entrySet()) if (entry.getValue() > 1) tokens.add(entry.getKey());
+        tokens.sort((a, b) -> Long.compare((long) count.get(b) * b.length(), (long) count.get(a) * a.length()));
+        List<byte[]> parts = new ArrayList<>();
+        int size = 0;
+        for (String token: tokens) {
+            byte[] b = UTF8.getBytes(token);
+            if (size + b.length > DICTIONARY_SIZE / 2) break;
+            parts.add(b);
+            size += b.length;
+        }
+        for (int i = samples.size() - 1; i >= 0; i--) {
+            byte[] b = UTF8.getBytes(samples.get(i));
+            if (size + b.length > DICTIONARY_SIZE) break;
+            parts.add(b);
+            size += b.length;
+        }
+        byte[] d = new byte[size];
+        int p = size;
+        for (byte[] b: parts) {
+            p -= b.length;
+            System.arraycopy(b, 0, d, p, b.length);
+        }
+        return d;
+    }
+
+    private static int adler(byte[] d) {
+        Adler32 a = new Adler32();
+        a.update(d);
+        return (int) a.getValue();
+    }
+
+    private Deflater deflater() {
+        Deflater[] d = deflaters.get();
+        if (d[this.level] == null) d[this.level] = new Deflater(this.level);
+        d[this.level].reset();
+        return d[this.level];
+    }
+
     public class JsonCapsuleFactory implements JsonFactory {
         
-        byte[] capsule; // byte 0 is a flag: 0 = raw json, 1 = compressed json
-
-        private JsonCapsuleFactory(JSONObject jo) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
-            GZIPOutputStream out = null; try {out = new GZIPOutputStream(baos, 1024){{def.setLevel(Deflater.BEST_COMPRESSION);}};} catch (IOException e) {}
-            OutputStreamWriter osw = new OutputStreamWriter(out);
-            jo.write(osw);
-            try {osw.close();} catch (IOException e) {}
-            //byte[] b = new ObjectMapper().writer().writeValueAsBytes(json);
-            //byte[] c = Compression.gzip(b);
-            byte[] c = baos.toByteArray();
-            //if (b.length <= c.length) {
-            //    this.capsule = new byte[b.length + 1];
-            //    this.capsule[0] = 0;
-            //    System.arraycopy(b, 0, this.capsule, 1, b.length);
-            //} else {
-                this.capsule = new byte[c.length + 1];
-                this.capsule[0] = 1;
-                System.arraycopy(c, 0, this.capsule, 1, c.length);
-            //}
-            //System.out.print("DEBUG " + this.getRawJson());
+        byte[] capsule; // byte 0 is a flag: 0 = raw json, 1 = gzipped json, 2 = deflated json with the length in front
+
+        private JsonCapsuleFactory(byte[] b) {
+            Deflater deflater = deflater();
+            byte[] d = JsonMinifier.this.dictionary;
+            if (d != null) deflater.setDictionary(d);
+            deflater.setInput(b);
+            deflater.finish();
+            byte[] buffer = buffers.get();
+            int header = 1 + varintLength(b.length);
+            int c = header;
+            while (!deflater.finished()) {
+                if (c == buffer.length) {
+                    buffer = new byte[buffer.length * 2];
+                    System.arraycopy(buffers.get(), 0, buffer, 0, c);
+                    buffers.set(buffer);
+                }
+                c += deflater.deflate(buffer, c, buffer.length - c);
+            }
+            if (c < b.length + 1) {
+                buffer[0] = 2;
+                putVarint(buffer, 1, b.length);
+                this.capsule = new byte[c];
+                System.arraycopy(buffer, 0, this.capsule, 0, c);
+            } else {
+                this.capsule = new byte[b.length + 1];
+                this.capsule[0] = 0;
+                System.arraycopy(b, 0, this.capsule, 1, b.length);
+            }
         }
         
         public JSONObject getJSON() {
@@ -95,12 +305,22 @@ public class JsonMinifier {
             }
             return original;
         }
+
+        /**
+         * the number of bytes of the capsule
+         */
+        public int length() {
+            return this.capsule.length;
+        }
         
         private JSONObject getRawJSON() {
-            byte[] x = new byte[this.capsule.length - 1];
-            System.arraycopy(this.capsule, 1, x, 0, this.capsule.length - 1);
-            if (this.capsule[0] == 1) {
-                x = Compression.gunzip(x);
+            byte[] x;
+            if (this.capsule[0] == 2) {
+                x = inflate();
+            } else {
+                x = new byte[this.capsule.length - 1];
+                System.arraycopy(this.capsule, 1, x, 0, this.capsule.length - 1);
+                if (this.capsule[0] == 1) x = Compression.gunzip(x);
             }
             try {
                 JSONObject json = new JSONObject(UTF8.String(x));
@@ -111,6 +331,53 @@ public class JsonMinifier {
             return null;
         }
 
+        private byte[] inflate() {
+            int length = 0, p = 1;
+            for (int shift = 0;; shift += 7) {
+                byte b = this.capsule[p++];
+                length |= (b & 0x7f) << shift;
+                if (b >= 0) break;
+            }
+            byte[] x = new byte[length];
+            Inflater inflater = inflaters.get();
+            inflater.reset();
+            inflater.setInput(this.capsule, p, this.capsule.length - p);
+            try {
+                int c = 0;
+                while (c < length) {
+                    int n = inflater.inflate(x, c, length - c);
+                    if (n == 0 && inflater.needsDictionary()) {
+                        byte[] d = JsonMinifier.this.dictionaries.get(inflater.getAdler());
+                        if (d == null) {
+                            DAO.log("missing dictionary for capsule");
+                            return new byte[0];
+                        }
+                        inflater.setDictionary(d);
+                    } else if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        break;
+                    }
+                    c += n;
+                }
+            } catch (DataFormatException e) {
+                DAO.log("cannot inflate capsule: " + e.getMessage());
+            }
+            return x;
+        }
+
+    }
+
+    private static int varintLength(int v) {
+        int n = 1;
+        while ((v >>>= 7) != 0) n++;
+        return n;
+    }
+
+    private static void putVarint(byte[] b, int p, int v) {
+        while ((v & ~0x7f) != 0) {
+            b[p++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        b[p] = (byte) v;
     }
     
 }
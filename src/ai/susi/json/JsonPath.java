@@ -20,16 +20,348 @@
 
 package ai.susi.json;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A JSONPath as defined by http://goessner.net/articles/JsonPath/ with the dot- and bracket-notation:
+ * $.store.book[0].title, $['store']['book'], $.store.*, $.store.book[*].author, $.store.book[1:3],
+ * $.store.book[-1], $..author and $..book[::2].
+ * A path can be evaluated on a parsed json document or on a stream: the stream evaluation reads the json with
+ * a stream parser and materializes only the selected subtrees, so huge documents never have to be held in memory.
+ * A path without wildcards, slices and recursive descent points to at most one node; the evaluation of such a
+ * definite path on a stream stops as soon as the node is found.
+ */
 public class JsonPath {
-    
+
+    private final static JsonFactory factory = new JsonFactory();
+
+    private final String path;
+    private final Step[] steps;
+    private final boolean definite;
+
+    private JsonPath(String path, Step[] steps) {
+        this.path = path;
+        this.steps = steps;
+        boolean definite = true;
+        for (Step step: steps) definite = definite && step.isDefinite();
+        this.definite = definite;
+    }
+
+    /**
+     * parse a path
+     * @param jsonPath a path starting with '$'
+     * @return the compiled path or null if the syntax is wrong
+     */
+    public static JsonPath compile(String jsonPath) {
+        String p = jsonPath.trim();
+        if (p.length() == 0 || p.charAt(0) != '$') return null; // wrong syntax of jsonPath
+        List<Step> steps = new ArrayList<>();
+        int i = 1;
+        try {
+            while (i < p.length()) {
+                boolean descent = false;
+                if (p.startsWith("..", i)) {
+                    descent = true;
+                    i += 2;
+                } else if (p.charAt(i) == '.') {
+                    i++;
+                }
+                if (i >= p.length()) return null;
+                if (p.charAt(i) == '[') {
+                    int q = p.indexOf(']', i);
+                    if (q < 0) return null;
+                    steps.add(Step.bracket(p.substring(i + 1, q).trim(), descent));
+                    i = q + 1;
+                } else {
+                    int q = i;
+                    while (q < p.length() && p.charAt(q) != '.' && p.charAt(q) != '[') q++;
+                    if (q == i) return null;
+                    String name = p.substring(i, q);
+                    steps.add(name.equals("*") ? new Step(null, true, descent) : new Step(name, false, descent));
+                    i = q;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new JsonPath(p, steps.toArray(new Step[steps.size()]));
+    }
+
+    public boolean isDefinite() {
+        return this.definite;
+    }
+
+    /**
+     * select the nodes of a parsed json document
+     * @param json the document
+     * @return the selected nodes in document order
+     */
+    public List<Object> select(Object json) {
+        List<Object> nodes = new ArrayList<>();
+        evaluate(json, 0, nodes);
+        return nodes;
+    }
+
+    /**
+     * select the nodes of a json stream. Only the selected nodes are materialized.
+     * The stream is not closed.
+     * @param stream the json document
+     * @return the selected nodes in document order
+     * @throws IOException
+     */
+    public List<Object> select(InputStream stream) throws IOException {
+        List<Object> nodes = new ArrayList<>();
+        JsonParser parser = factory.createParser(stream);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        try {
+            if (parser.nextToken() != null) stream(parser, 0, nodes);
+        } finally {
+            parser.close();
+        }
+        return nodes;
+    }
+
+    private boolean done(List<Object> nodes) {
+        return this.definite && nodes.size() > 0;
+    }
+
+    /**
+     * evaluate the steps beginning with pos on the value at the current token of the parser
+     */
+    private void stream(JsonParser parser, int pos, List<Object> nodes) throws IOException {
+        if (pos == this.steps.length) {
+            nodes.add(materialize(parser));
+            return;
+        }
+        Step step = this.steps[pos];
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (step.matches(name)) {
+                    if (step.descent) {
+                        // the node is selected and its descendants are searched as well
+                        Object node = materialize(parser);
+                        evaluate(node, pos + 1, nodes);
+                        evaluate(node, pos, nodes);
+                    } else {
+                        stream(parser, pos + 1, nodes);
+                    }
+                } else if (step.descent) {
+                    stream(parser, pos, nodes);
+                } else {
+                    parser.skipChildren();
+                }
+                if (done(nodes)) return;
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            if (step.needsLength()) {
+                // negative indexes are counted from the end: the array is required as a whole
+                evaluate(materialize(parser), pos, nodes);
+                return;
+            }
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (step.matches(index)) {
+                    if (step.descent) {
+                        Object node = materialize(parser);
+                        evaluate(node, pos + 1, nodes);
+                        evaluate(node, pos, nodes);
+                    } else {
+                        stream(parser, pos + 1, nodes);
+                    }
+                } else if (step.descent) {
+                    stream(parser, pos, nodes);
+                } else {
+                    parser.skipChildren();
+                }
+                if (done(nodes)) return;
+                index++;
+            }
+        }
+    }
+
+    /**
+     * evaluate the steps beginning with pos on a parsed node
+     */
+    private void evaluate(Object node, int pos, List<Object> nodes) {
+        if (pos == this.steps.length) {
+            nodes.add(node);
+            return;
+        }
+        Step step = this.steps[pos];
+        if (node instanceof JSONObject) {
+            JSONObject object = (JSONObject) node;
+            if (step.name != null && !step.descent) {
+                if (object.has(step.name)) evaluate(object.get(step.name), pos + 1, nodes);
+                return;
+            }
+            for (String name: object.keySet()) {
+                if (step.matches(name)) evaluate(object.get(name), pos + 1, nodes);
+                if (step.descent) evaluate(object.get(name), pos, nodes);
+            }
+        } else if (node instanceof JSONArray) {
+            JSONArray array = (JSONArray) node;
+            for (int index: step.indexes(array.length())) evaluate(array.get(index), pos + 1, nodes);
+            if (step.descent) for (int index = 0; index < array.length(); index++) evaluate(array.get(index), pos, nodes);
+        }
+    }
+
+    /**
+     * read the value at the current token of the parser
+     */
+    private static Object materialize(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case START_OBJECT:
+                JSONObject object = new JSONObject(true);
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    object.put(name, materialize(parser));
+                }
+                return object;
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+                while (parser.nextToken() != JsonToken.END_ARRAY) array.put(materialize(parser));
+                return array;
+            case VALUE_STRING: return parser.getText();
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT: return parser.getIntValue();
+                    case LONG: return parser.getLongValue();
+                    default: BigInteger b = parser.getBigIntegerValue(); return b.toString();
+                }
+            case VALUE_NUMBER_FLOAT: return parser.getDoubleValue();
+            case VALUE_TRUE: return Boolean.TRUE;
+            case VALUE_FALSE: return Boolean.FALSE;
+            case VALUE_NULL: return JSONObject.NULL;
+            default: throw new JSONException("unexpected token " + parser.getCurrentToken());
+        }
+    }
+
+    /**
+     * a step of the path: a member name, a wildcard, an index or a slice. A descent step applies to all descendants.
+     */
+    private static class Step {
+
+        private final String name; // null for wildcards, indexes and slices
+        private final boolean wildcard, descent;
+        private final int index; // for indexes, Integer.MIN_VALUE if this is not an index
+        private final Integer start, end; // for slices, null if not given
+        private final int stride; // for slices, 0 if this is not a slice
+
+        private Step(String name, boolean wildcard, boolean descent) {
+            this(name, wildcard, descent, Integer.MIN_VALUE, null, null, 0);
+        }
+
+        private Step(String name, boolean wildcard, boolean descent, int index, Integer start, Integer end, int stride) {
+            this.name = name;
+            this.wildcard = wildcard;
+            this.descent = descent;
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.stride = stride;
+        }
+
+        private static Step bracket(String b, boolean descent) {
+            if (b.equals("*")) return new Step(null, true, descent);
+            if (b.length() >= 2 && (b.charAt(0) == '\'' || b.charAt(0) == '"') && b.charAt(b.length() - 1) == b.charAt(0)) {
+                return new Step(b.substring(1, b.length() - 1), false, descent);
+            }
+            int p = b.indexOf(':');
+            if (p < 0) return new Step(null, false, descent, Integer.parseInt(b), null, null, 0);
+            String[] s = b.split(":", -1);
+            if (s.length > 3) throw new NumberFormatException(b);
+            Integer start = s[0].trim().length() == 0 ? null : Integer.valueOf(s[0].trim());
+            Integer end = s[1].trim().length() == 0 ? null : Integer.valueOf(s[1].trim());
+            int stride = s.length < 3 || s[2].trim().length() == 0 ? 1 : Integer.parseInt(s[2].trim());
+            if (stride == 0) throw new NumberFormatException(b);
+            return new Step(null, false, descent, Integer.MIN_VALUE, start, end, stride);
+        }
+
+        private boolean isDefinite() {
+            return !this.descent && !this.wildcard && this.stride == 0;
+        }
+
+        private boolean needsLength() {
+            return (this.stride == 0 && this.index < 0 && this.index != Integer.MIN_VALUE) ||
+                   this.stride < 0 || (this.start != null && this.start < 0) || (this.end != null && this.end < 0);
+        }
+
+        private boolean matches(String name) {
+            return this.wildcard || (this.name != null && this.name.equals(name));
+        }
+
+        /**
+         * test an index of an array; only for steps which do not need the length of the array
+         */
+        private boolean matches(int i) {
+            if (this.wildcard) return true;
+            if (this.stride == 0) return this.index == i;
+            int start = this.start == null ? 0 : this.start;
+            return i >= start && (this.end == null || i < this.end) && (i - start) % this.stride == 0;
+        }
+
+        /**
+         * the selected indexes of an array
+         */
+        private List<Integer> indexes(int length) {
+            List<Integer> indexes = new ArrayList<>();
+            if (this.name != null) return indexes;
+            if (this.wildcard) {
+                for (int i = 0; i < length; i++) indexes.add(i);
+            } else if (this.stride == 0) {
+                if (this.index == Integer.MIN_VALUE) return indexes;
+                int i = this.index < 0 ? length + this.index : this.index;
+                if (i >= 0 && i < length) indexes.add(i);
+            } else if (this.stride > 0) {
+                int start = this.start == null ? 0 : normalize(this.start, length);
+                int end = this.end == null ? length : normalize(this.end, length);
+                for (int i = start; i < end; i += this.stride) indexes.add(i);
+            } else {
+                int start = this.start == null ? length - 1 : Math.min(normalize(this.start, length), length - 1);
+                int end = this.end == null ? -1 : normalize(this.end, length);
+                for (int i = start; i > end; i += this.stride) indexes.add(i);
+            }
+            return indexes;
+        }
+
+        private static int normalize(int i, int length) {
+            return i < 0 ? Math.max(0, length + i) : Math.min(i, length);
+        }
+    }
 
     public static JSONArray parse(JSONTokener tokener, String jsonPath) throws JSONException {
-        JSONArray a = parseRaw(tokener, jsonPath);
+        return rows(parseRaw(tokener, jsonPath));
+    }
+
+    /**
+     * evaluate a json path on a stream and transform the selection into the data table of a thought
+     * @param stream the json; the stream is not closed
+     * @param jsonPath a path as defined by http://goessner.net/articles/JsonPath/
+     * @return a JSONArray with the data part of a console query or null if the path syntax is wrong
+     */
+    public static JSONArray parse(InputStream stream, String jsonPath) throws JSONException, IOException {
+        return rows(parseRaw(stream, jsonPath));
+    }
+
+    private static JSONArray rows(JSONArray a) throws JSONException {
+        if (a == null) return null;
         if (a.length() == 0) return a; // length == 1 will cause an empty thought. Its not wrong, it will just cause that thinking fails. May be wanted.
         Object f = a.get(0);
         if (a.length() == 1 && (!(f instanceof JSONObject))) {
@@ -52,9 +384,10 @@ public class JsonPath {
     }
 
     /**
-     * Very simple JSONPath decoder which always creates a JSONArray as result.
-     * If the jsonPath does not point to an array, but to an object, the object is
+     * JSONPath decoder which always creates a JSONArray as result.
+     * If a definite jsonPath does not point to an array, but to an object, the object is
      * placed within an array artificially. Therefore all kind of objects can be addressed.
+     * Other paths result in the array of all selected nodes.
      * Examples for JSONPaths:
      * $ - the whole json is the array
      * @param tokener contains the parsed JSON
@@ -63,28 +396,22 @@ public class JsonPath {
      */
     public static JSONArray parseRaw(JSONTokener tokener, String jsonPath) throws JSONException {
         if (tokener == null) return null;
-        String[] dompath = jsonPath.split("\\.");
-        if (dompath == null || dompath.length < 1 || !dompath[0].equals("$")) return null; // wrong syntax of jsonPath
-        if (dompath.length == 1) {
-            // the tokener contains already the data array
-            return new JSONArray(tokener);
-        }
-        Object decomposition = null;
-        for (int domc = 1; domc < dompath.length; domc++) {
-            String path = dompath[domc];
-            int p = path.indexOf('[');
-            if (p < 0) {
-                decomposition = ((decomposition == null) ? new JSONObject(tokener) : ((JSONObject) decomposition)).get(path);
-            } else if (p == 0) {
-                int idx = Integer.parseInt(path.substring(1, path.length() - 1));
-                decomposition = ((decomposition == null) ? new JSONArray(tokener) : ((JSONArray) decomposition)).get(idx);
-            } else {
-                int idx = Integer.parseInt(path.substring(p + 1, path.length() - 1));
-                path = path.substring(0, p);
-                decomposition = ((decomposition == null) ? new JSONObject(tokener) : ((JSONObject) decomposition)).get(path);
-                decomposition = ((JSONArray) decomposition).get(idx);
-            }
-        }
+        JsonPath path = compile(jsonPath);
+        if (path == null) return null; // wrong syntax of jsonPath
+        return path.decompose(path.select(tokener.nextValue()));
+    }
+
+    public static JSONArray parseRaw(InputStream stream, String jsonPath) throws JSONException, IOException {
+        if (stream == null) return null;
+        JsonPath path = compile(jsonPath);
+        if (path == null) return null; // wrong syntax of jsonPath
+        return path.decompose(path.select(stream));
+    }
+
+    private JSONArray decompose(List<Object> nodes) throws JSONException {
+        if (!this.definite) return new JSONArray(nodes);
+        if (nodes.isEmpty()) throw new JSONException("JSONPath " + this.path + " not found.");
+        Object decomposition = nodes.get(0);
         if (decomposition instanceof JSONArray) return (JSONArray) decomposition;
         if (decomposition instanceof JSONObject) {
             // enrich the decomposition with header/column entries
@@ -101,8 +428,7 @@ public class JsonPath {
             return new JSONArray().put((JSONObject) decomposition);
         }
         if (decomposition instanceof String) return new JSONArray().put(new JSONObject().put("object", (String) decomposition));
-        if (decomposition instanceof Integer) return new JSONArray().put(new JSONObject().put("object", decomposition.toString()));
-        if (decomposition instanceof Double) return new JSONArray().put(new JSONObject().put("object", decomposition.toString()));
+        if (decomposition instanceof Number || decomposition instanceof Boolean) return new JSONArray().put(new JSONObject().put("object", decomposition.toString()));
         throw new JSONException("unrecognized object type: " + decomposition.getClass().getName());
     }
     
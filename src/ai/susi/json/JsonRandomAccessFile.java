@@ -112,6 +112,13 @@ public class JsonRandomAccessFile extends BufferedRandomAccessFile implements Js
         }
     }
     
+    /**
+     * get a factory for the json at a given position. The factory reads with a positional read,
+     * therefore many factories can be resolved concurrently while the file is appended.
+     * @param index the seek position of the json
+     * @param length the number of bytes of the json
+     * @return a factory which reads the json from the file
+     */
     public JsonFactory getJsonFactory(long index, int length) {
         return new ReaderJsonFactory(index, length);
     }
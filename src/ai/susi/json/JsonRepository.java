@@ -20,20 +20,25 @@
 package ai.susi.json;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.SortedSet;
 import java.util.TimeZone;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 import org.eclipse.jetty.util.log.Log;
@@ -42,6 +47,7 @@ import org.json.JSONObject;
 
 import ai.susi.DAO;
 import ai.susi.tools.Compression;
+import ai.susi.tools.DateParser;
 import ai.susi.tools.UTF8;
 
 
@@ -56,12 +62,21 @@ public class JsonRepository {
     public static final Mode COMPRESSED_MODE = Mode.COMPRESSED;
     public static final Mode REWRITABLE_MODE = Mode.REWRITABLE;
 
+    public final static int BUFFER_FLUSH_SIZE = 1 << 20; // the number of bytes in a buffer shard which causes a flush
+    public final static long BUFFER_FLUSH_INTERVAL = 1000; // the maximum time in milliseconds until a buffered record is written
 
     private final static SimpleDateFormat dateFomatMonthly = new SimpleDateFormat("yyyyMM", Locale.US);
     private final static SimpleDateFormat dateFomatDaily = new SimpleDateFormat("yyyyMMdd", Locale.US);
     private final static SimpleDateFormat dateFomatHourly = new SimpleDateFormat("yyyyMMddHH", Locale.US);
     private final static SimpleDateFormat dateFomatMinutely = new SimpleDateFormat("yyyyMMddHHmm", Locale.US);
     
+    private final static ThreadLocal<SimpleDateFormat> dateFormatMillis = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return (SimpleDateFormat) DateParser.iso8601MillisFormat.clone();
+        }
+    };
+    
     static {
         dateFomatMonthly.setTimeZone(TimeZone.getTimeZone("GMT"));
         dateFomatDaily.setTimeZone(TimeZone.getTimeZone("GMT"));
@@ -76,10 +91,38 @@ public class JsonRepository {
    
     final File dump_dir, dump_dir_own, dump_dir_import, dump_dir_imported, dump_dir_buffer;
     final String dump_file_prefix;
-    final JsonRandomAccessFile json_log;
     final Mode mode;
+    final boolean dailyDump;
     final int concurrency;
-    final Map<String, JsonRandomAccessFile> buffers;
+    volatile Dump json_log;
+    volatile long rotation; // the time when the current dump is rotated
+    final List<Dump> rotated; // previous dumps which are still open because writers append to them or json factories point to them
+    final Shard[] buffers;
+    private Thread flusher;
+    private volatile boolean terminate;
+
+    /**
+     * A dump file with a count of the writers which still hold it. The dump is finished, and compressed in
+     * COMPRESSED mode, when the last writer releases it after the rotation.
+     */
+    static class Dump {
+        final JsonRandomAccessFile file;
+        private final AtomicInteger writers = new AtomicInteger(1); // the writers plus one reference for the current dump
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private Dump(JsonRandomAccessFile file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * A shard of the write buffer. Every thread writes to the shard of its thread id, so writers of different shards
+     * do not block each other. The lines of a shard are written in the order of their buffering.
+     */
+    private static class Shard {
+        private final ByteArrayOutputStream lines = new ByteArrayOutputStream(BUFFER_FLUSH_SIZE / 16);
+        private final Object flushLock = new Object();
+        private int count = 0;
+    }
     
     public JsonRepository(File dump_dir, String dump_file_prefix, String readme, final Mode mode, final boolean dailyDump, final int concurrency) throws IOException {
         this.dump_dir = dump_dir;
@@ -94,6 +137,7 @@ public class JsonRepository {
         this.dump_dir_imported.mkdirs();
         this.dump_dir_buffer.mkdirs();
         this.mode = mode;
+        this.dailyDump = dailyDump;
         this.concurrency = concurrency;
         if (readme != null) {
             File message_dump_dir_readme = new File(this.dump_dir, "readme.txt");
@@ -103,8 +147,13 @@ public class JsonRepository {
                 w.close();
             }
         }
-        this.json_log = new JsonRandomAccessFile(getCurrentDump(dump_dir_own, this.dump_file_prefix, mode, dailyDump), this.concurrency);
-        this.buffers = new TreeMap<>();
+        this.json_log = new Dump(new JsonRandomAccessFile(getCurrentDump(dump_dir_own, this.dump_file_prefix, mode, dailyDump, new ArrayList<File>()), this.concurrency));
+        this.rotation = nextRotation(dailyDump, System.currentTimeMillis());
+        this.rotated = new ArrayList<>();
+        this.buffers = new Shard[Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2];
+        for (int i = 0; i < this.buffers.length; i++) this.buffers[i] = new Shard();
+        this.flusher = null;
+        this.terminate = false;
     }
     
     public File getDumpDir() {
@@ -116,16 +165,110 @@ public class JsonRepository {
     }
 
     private static String dateSuffix(final boolean dailyDump, final Date d) {
-        return (dailyDump ? dateFomatDaily : dateFomatMonthly).format(d);
+        SimpleDateFormat format = dailyDump ? dateFomatDaily : dateFomatMonthly;
+        synchronized (format) {
+            return format.format(d);
+        }
+    }
+
+    /**
+     * the time when the dump file name changes because a new day or month has started
+     */
+    private static long nextRotation(final boolean dailyDump, final long now) {
+        Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT"), Locale.US);
+        c.setTimeInMillis(now);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        if (dailyDump) {
+            c.add(Calendar.DAY_OF_MONTH, 1);
+        } else {
+            c.set(Calendar.DAY_OF_MONTH, 1);
+            c.add(Calendar.MONTH, 1);
+        }
+        return c.getTimeInMillis();
+    }
+
+    /**
+     * get the current dump for a write; a new dump is opened if the date of the dump file has passed. Every dump
+     * which is returned must be given back with release() after the write.
+     * @return the dump where new records are appended
+     * @throws IOException
+     */
+    Dump acquire() throws IOException {
+        while (true) {
+            if (System.currentTimeMillis() >= this.rotation) rotate();
+            Dump dump = this.json_log;
+            dump.writers.incrementAndGet();
+            if (dump == this.json_log) return dump;
+            release(dump); // the dump was rotated in between
+        }
+    }
+
+    /**
+     * give back a dump which was returned by acquire(). When the last writer of a rotated dump is done,
+     * the dump is finished: in compressed mode it is closed and compressed. In rewritable mode it stays open
+     * until close() because the json factories which were returned by write point into that file.
+     * @param dump
+     */
+    void release(Dump dump) {
+        if (dump.writers.decrementAndGet() > 0 || !dump.finished.compareAndSet(false, true)) return;
+        if (this.mode != COMPRESSED_MODE) return;
+        synchronized (this.rotated) {
+            this.rotated.remove(dump);
+        }
+        try {dump.file.close();} catch (IOException e) {Log.getLog().warn(e);}
+        gzip(new File(dump.file.getName()));
+    }
+
+    private void rotate() throws IOException {
+        Dump previous;
+        synchronized (this.rotated) {
+            long now = System.currentTimeMillis();
+            if (now < this.rotation) return;
+            List<File> open = new ArrayList<>();
+            open.add(new File(this.json_log.file.getName()));
+            for (Dump dump: this.rotated) open.add(new File(dump.file.getName()));
+            Dump next = new Dump(new JsonRandomAccessFile(getCurrentDump(this.dump_dir_own, this.dump_file_prefix, this.mode, this.dailyDump, open), this.concurrency));
+            previous = this.json_log;
+            this.rotated.add(previous);
+            this.json_log = next;
+            this.rotation = nextRotation(this.dailyDump, now);
+        }
+        release(previous); // drop the reference of the current dump; the last writer finishes it
+    }
+
+    private static void gzip(final File source) {
+        final File dest = new File(source.getParentFile(), source.getName() + ".gz");
+        if (dest.exists()) dest.delete();
+        new Thread() {
+            public void run() {
+                try {
+                    DAO.log("starting gzip of " + source);
+                    Compression.gzip(source, dest, true);
+                    DAO.log("finished gzip of " + source);
+                } catch (IOException e) {
+                    DAO.log("gzip of " + source + " failed: " + e.getMessage());
+                }
+            }
+        }.start();
     }
     
-    private static File getCurrentDump(File path, String prefix, final Mode mode, final boolean dailyDump) {
+    /**
+     * find the dump for the current date or create a new one; other dumps are compressed or uncompressed according to the mode
+     * @param open dumps which are still open: they are neither compressed nor returned
+     */
+    private static File getCurrentDump(File path, String prefix, final Mode mode, final boolean dailyDump, final List<File> open) {
         String currentDatePart = dateSuffix(dailyDump, new Date());
         
         // if there is already a dump, use it
         String[] existingDumps = path.list();
         if (existingDumps != null) {
             for (String d: existingDumps) {
+                // dumps which are still written are finished when their last writer is done
+                if (open.contains(new File(path, d).getAbsoluteFile())) continue;
+                
                 // first check if the file is the current file: we never compress that to enable a write to the end of the file
                 if (d.startsWith(prefix + currentDatePart) && d.endsWith(".txt")) {
                     continue;
@@ -134,22 +277,7 @@ public class JsonRepository {
                 // according to the write mode, we either compress or uncompress the file on-the-fly
                 if (mode == COMPRESSED_MODE) {
                     // all files should be compressed to enable small file sizes, but contents must be in RAM after reading
-                    if (d.startsWith(prefix) && d.endsWith(".txt")) {
-                        final File source = new File(path, d);
-                        final File dest = new File(path, d + ".gz");
-                        if (dest.exists()) dest.delete();
-                        new Thread() {
-                            public void run() {
-                                try {
-                                    DAO.log("starting gzip of " + source);
-                                    Compression.gzip(source, dest, true);
-                                    DAO.log("finished gzip of " + source);
-                                } catch (IOException e) {
-                                    DAO.log("gzip of " + source + " failed: " + e.getMessage());
-                                }
-                            }
-                        }.start();
-                    }
+                    if (d.startsWith(prefix) && d.endsWith(".txt")) gzip(new File(path, d));
                 } else {
                     // all files should be uncompressed to enable random-access mode
                     if (d.startsWith(prefix) && d.endsWith(".gz")) {
@@ -170,7 +298,7 @@ public class JsonRepository {
             }
             // the latest file with the current date is the required one (and it should not be compressed)
             for (String d: existingDumps) {
-                if (d.startsWith(prefix + currentDatePart) && d.endsWith(".txt")) {
+                if (d.startsWith(prefix + currentDatePart) && d.endsWith(".txt") && !open.contains(new File(path, d).getAbsoluteFile())) {
                     return new File(path, d);
                 }
             }
@@ -186,8 +314,13 @@ public class JsonRepository {
         String line = json.toString(); // new ObjectMapper().writer().writeValueAsString(map);
         JsonFactory jf = null;
         byte[] b = UTF8.getBytes(line);
-        long seekpos = this.json_log.appendLine(b);
-        jf = this.json_log.getJsonFactory(seekpos, b.length);
+        Dump dump = acquire();
+        try {
+            long seekpos = dump.file.appendLine(b);
+            jf = dump.file.getJsonFactory(seekpos, b.length);
+        } finally {
+            release(dump);
+        }
         return jf;
     }
     
@@ -198,31 +331,146 @@ public class JsonRepository {
         sb.append('{').append('\"').append(UTF8.String(OPERATION_KEY)).append('\"').append(':').append('\"').append(opkey).append('\"').append(',');
         sb.append(line.substring(1));
         byte[] b = UTF8.getBytes(sb.toString());
-        long seekpos = this.json_log.appendLine(b);
-        jf = this.json_log.getJsonFactory(seekpos, b.length);
+        Dump dump = acquire();
+        try {
+            long seekpos = dump.file.appendLine(b);
+            jf = dump.file.getJsonFactory(seekpos, b.length);
+        } finally {
+            release(dump);
+        }
         return jf;
     }
     
+    /**
+     * Write a record to the buffer of the repository. Buffered records are written to the current dump by a
+     * background flusher at the latest after BUFFER_FLUSH_INTERVAL milliseconds or by the writer itself when
+     * its buffer shard exceeds BUFFER_FLUSH_SIZE bytes. In contrast to write, the writers do not wait for the dump
+     * file and no json factory is returned.
+     * @param created_at the date of the record; it is stored with the MOD_DATE_KEY
+     * @param map the record
+     * @throws IOException
+     */
     public void buffer(Date created_at, Map<String, Object> map) throws IOException {
-        // compute a buffer name from the created_at date
-        String bufferName = dateSuffix(true, created_at);
-        
-        synchronized (this.buffers) {
-            this.buffers.get(bufferName);
+        StringBuilder sb = new StringBuilder();
+        String date = dateFormatMillis.get().format(created_at);
+        sb.append('{').append('\"').append(UTF8.String(MOD_DATE_KEY)).append('\"').append(':').append(JSONObject.quote(date));
+        String line = new JSONObject(map).toString();
+        if (line.length() > 2) sb.append(',').append(line.substring(1)); else sb.append('}');
+        sb.append('\n');
+        byte[] b = UTF8.getBytes(sb);
+
+        Shard shard = this.buffers[(int) (Thread.currentThread().getId() & (this.buffers.length - 1))];
+        boolean full;
+        synchronized (shard) {
+            shard.lines.write(b, 0, b.length);
+            shard.count++;
+            full = shard.lines.size() >= BUFFER_FLUSH_SIZE;
+        }
+        if (this.flusher == null) startFlusher();
+        if (full) flush(shard);
+    }
+
+    private synchronized void startFlusher() {
+        if (this.flusher != null || this.terminate) return;
+        this.flusher = new Thread("JsonRepository flusher " + this.dump_file_prefix) {
+            public void run() {
+                while (!JsonRepository.this.terminate) {
+                    try {Thread.sleep(BUFFER_FLUSH_INTERVAL);} catch (InterruptedException e) {}
+                    try {
+                        flush();
+                    } catch (IOException e) {
+                        Log.getLog().warn(e);
+                    }
+                }
+            }
+        };
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * write all buffered records to the dump
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        for (Shard shard: this.buffers) flush(shard);
+    }
+
+    private void flush(Shard shard) throws IOException {
+        synchronized (shard.flushLock) {
+            byte[] b;
+            int count;
+            synchronized (shard) {
+                if (shard.count == 0) return;
+                b = shard.lines.toByteArray();
+                count = shard.count;
+                shard.lines.reset();
+                shard.count = 0;
+            }
+            try {
+                Dump dump = acquire();
+                try {
+                    dump.file.append(b);
+                } finally {
+                    release(dump);
+                }
+            } catch (IOException e) {
+                // put the lines back in front of the lines which were buffered in the meantime; the next flush retries
+                synchronized (shard) {
+                    byte[] later = shard.lines.toByteArray();
+                    shard.lines.reset();
+                    shard.lines.write(b, 0, b.length);
+                    shard.lines.write(later, 0, later.length);
+                    shard.count += count;
+                }
+                throw e;
+            }
         }
-        // TODO: THIS IS INCOMPLETE!
     }
     
+    /**
+     * get the records in the buffer which are not written yet
+     * @return the buffered records
+     */
     public JSONArray getBufferShard() {
-        return null;
+        JSONArray records = new JSONArray();
+        for (Shard shard: this.buffers) {
+            String lines;
+            synchronized (shard) {
+                if (shard.count == 0) continue;
+                lines = UTF8.String(shard.lines.toByteArray());
+            }
+            for (String line: lines.split("\n")) if (line.length() > 0) records.put(new JSONObject(line));
+        }
+        return records;
     }
     
+    /**
+     * get the number of records in the buffer which are not written yet
+     * @return the size of getBufferShard()
+     */
     public int getBufferShardCount() {
-        return 0;
+        int count = 0;
+        for (Shard shard: this.buffers) {
+            synchronized (shard) {
+                count += shard.count;
+            }
+        }
+        return count;
     }
     
     public void close() {
-        try {this.json_log.close();} catch (IOException e) {}
+        this.terminate = true;
+        Thread f;
+        synchronized (this) {
+            f = this.flusher;
+        }
+        if (f != null) try {f.interrupt(); f.join(10000);} catch (InterruptedException e) {}
+        try {this.flush();} catch (IOException e) {Log.getLog().warn(e);}
+        try {this.json_log.file.close();} catch (IOException e) {}
+        synchronized (this.rotated) {
+            for (Dump dump: this.rotated) try {dump.file.close();} catch (IOException e) {}
+        }
     }
     
     public SortedSet<File> getOwnDumps(int count) {
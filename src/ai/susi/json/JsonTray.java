@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Predicate;
 
 import org.json.JSONObject;
 
@@ -97,6 +98,33 @@ public class JsonTray {
     	return this;
     }
     
+    /**
+     * the number of entries in the tray; an entry which is stored persistent and volatile is counted twice
+     * @return the number of persistent and volatile entries
+     */
+    public int size() {
+        synchronized (this.vol) {
+            return this.per.length() + this.vol.getMap().size();
+        }
+    }
+    
+    /**
+     * remove all persistent and volatile entries which match a predicate
+     * @param predicate a test on the value of an entry
+     * @return the number of removed entries
+     */
+    public int removeIf(Predicate<JSONObject> predicate) {
+        int c;
+        synchronized (this.vol) {
+            LinkedHashMap<String, JSONObject> map = this.vol.getMap();
+            int s = map.size();
+            map.values().removeIf(predicate);
+            c = s - map.size();
+        }
+        c += this.per.removeIf(value -> value instanceof JSONObject && predicate.test((JSONObject) value));
+        return c;
+    }
+    
     public JsonTray commit() {
         this.per.commit();
         return this;
@@ -21,6 +21,7 @@ package ai.susi.mind;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Random;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -219,6 +220,33 @@ public class SusiAction {
     }
     private ArrayList<String> phrasesCache = null;
     
+    /**
+     * The phrases of an action compiled as templates. They are compiled once for the action of a skill
+     * and shared with the copies of the action.
+     * @return the action phrases as templates
+     */
+    public List<SusiTemplate> getTemplates() {
+        if (templatesCache == null) {
+            ArrayList<String> phrases = getPhrases();
+            if (phrases == null) return null;
+            List<SusiTemplate> t = new ArrayList<>(phrases.size());
+            phrases.forEach(phrase -> t.add(SusiTemplate.compile(phrase)));
+            templatesCache = t;
+        }
+        return templatesCache;
+    }
+    private List<SusiTemplate> templatesCache = null;
+    
+    /**
+     * Actions may get changed during computation, a copy must be used for the computation
+     * @return a copy of the action which shares the compiled templates
+     */
+    public SusiAction copy() {
+        SusiAction copy = new SusiAction(toJSONClone());
+        if (!this.json.has("expression")) copy.templatesCache = getTemplates();
+        return copy;
+    }
+    
     /**
      * if the action contains more String attributes where these strings are named, they can be retrieved here
      * @param attr the name of the string attribute
@@ -253,8 +281,8 @@ public class SusiAction {
     public SusiAction execution(SusiArgument thoughts, SusiMind mind, String client) {
         if ((this.getRenderType() == RenderType.answer || this.getRenderType() == RenderType.self) && this.json.has("phrases")) {
             // transform the answer according to the data
-            ArrayList<String> a = getPhrases();
-            String phrase = a.get(random.nextInt(a.size()));
+            List<SusiTemplate> a = getTemplates();
+            SusiTemplate phrase = a.get(random.nextInt(a.size()));
             String expression = thoughts.unify(phrase, false);
             if (expression != null) {
                 // transform the answer according to the data
@@ -298,6 +326,7 @@ public class SusiAction {
                     thoughts.think(reaction.getMindstate());
                     this.json.put("expression", expression);
                     this.phrasesCache = null; // important, otherwise the expression is not recognized
+                    this.templatesCache = null;
                     // patch the render type
                     this.json.put("type", RenderType.answer.name());
                     this.renderTypeCache = RenderType.answer;
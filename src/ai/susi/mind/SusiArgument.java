@@ -28,8 +28,6 @@ import java.util.stream.Collectors;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import ai.susi.tools.TimeoutMatcher;
-
 /**
  * An Argument is a series of thoughts, also known as a 'proof' in automated reasoning.
  * Within the Susi AI infrastructure this may be considered as the representation of
@@ -89,9 +87,9 @@ public class SusiArgument implements Iterable<SusiThought> {
     public SusiThought mindmeld(boolean reverse) {
         SusiThought meltedMind = new SusiThought();
         if (reverse)
-            for (int i = this.recall.size() -1; i >= 0; i--) meltedMind.mergeData(this.recall.get(i).getData());
+            for (int i = this.recall.size() -1; i >= 0; i--) meltedMind.mergeTable(this.recall.get(i).getTable());
         else 
-            for (int i = 0; i < this.recall.size(); i++) meltedMind.mergeData(this.recall.get(i).getData());
+            for (int i = 0; i < this.recall.size(); i++) meltedMind.mergeTable(this.recall.get(i).getTable());
         meltedMind.setTimes(times()); // remember the length of the argument to create a perception of time based on number of thoughts
         return meltedMind;
     }
@@ -166,19 +164,22 @@ public class SusiArgument implements Iterable<SusiThought> {
      * @return the instantiated statement with elements of the argument applied
      */
     public String unify(String statement, boolean urlencode, int depth) {
-        for (SusiThought t: this) {
-            // this uses our iterator which iterates in reverse order. That means, latest thought is first returned
-            if (depth-- < 0) break;
-            statement = t.unify(statement, urlencode);
-            if (!new TimeoutMatcher(SusiThought.variable_pattern.matcher(statement)).find()) return statement;
-        }
-        if (new TimeoutMatcher(SusiThought.variable_pattern.matcher(statement)).find()) return null; // failure!
-        return statement;
+        return SusiTemplate.compile(statement).unify(this, urlencode, depth);
     }
     
     public String unify(String statement, boolean urlencode) {
         return unify(statement, urlencode, Integer.MAX_VALUE);
     }
+    
+    /**
+     * Unification of a template which was compiled before, i.e. the phrase of an action
+     * @param template
+     * @param urlencode
+     * @return the instantiated template or null if a variable could not be found
+     */
+    public String unify(SusiTemplate template, boolean urlencode) {
+        return template.unify(this, urlencode, Integer.MAX_VALUE);
+    }
 
     /**
      * the iterator returns the thoughts in reverse order, latest thought first
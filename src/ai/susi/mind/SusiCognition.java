@@ -40,6 +40,14 @@ public class SusiCognition {
     JSONObject json;
 
     public SusiCognition(final SusiMind mind, final String query, int timezoneOffset, double latitude, double longitude, int maxcount, ClientIdentity identity) {
+        this(mind, query, timezoneOffset, latitude, longitude, maxcount, identity, null);
+    }
+    
+    /**
+     * compute a cognition with a given recall
+     * @param recall the recall of the client as computed by mind.recall(client), or null to get it here
+     */
+    public SusiCognition(final SusiMind mind, final String query, int timezoneOffset, double latitude, double longitude, int maxcount, ClientIdentity identity, SusiRecall recall) {
         this.json = new JSONObject(true);
         
         // get a response from susis mind
@@ -58,7 +66,7 @@ public class SusiCognition {
         this.json.put("query_date", DateParser.utcFormatter.print(query_date));
         
         // compute the mind reaction
-        List<SusiArgument> dispute = mind.react(query, maxcount, client, observation);
+        List<SusiArgument> dispute = recall == null ? mind.react(query, maxcount, client, observation) : mind.react(query, maxcount, client, observation, recall);
         long answer_date = System.currentTimeMillis();
         
         // store answer and actions into json
@@ -154,10 +162,10 @@ public class SusiCognition {
                 if (expressionAction != null) dispute.addObservation("answer", expressionAction.getPhrases().get(0)); // we can unify with "answer" in queries
 
                 // add all data from the old dispute
-                JSONArray clonedData = clonedThought.getData();
-                if (clonedData.length() > 0) {
-                    JSONObject row = clonedData.getJSONObject(0);
-                    row.keySet().forEach(key -> {if (key.startsWith("_")) dispute.addObservation(key, row.getString(key));});
+                SusiTable clonedData = clonedThought.getTable();
+                if (clonedData.size() > 0) {
+                    SusiTable.Row row = clonedData.getRow(0);
+                    row.keys().forEach(key -> {if (key.startsWith("_")) dispute.addObservation(key, row.get(key).toString());});
                     //data.put(clonedData.get(0));
                 }
             }
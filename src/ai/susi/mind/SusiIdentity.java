@@ -26,6 +26,7 @@ import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.json.JSONException;
 
@@ -48,6 +49,9 @@ public class SusiIdentity {
     private SusiAwareness long_term_memory, short_term_memory;
     private File memorydump;
     private int attention;
+    private final AtomicLong version;
+    private SusiRecall recall; // computed on demand and then maintained when cognitions are added
+    private volatile long lastAccess; // the time when the identity was requested from the memory the last time
     
     /**
      * Create a new identity.
@@ -61,6 +65,9 @@ public class SusiIdentity {
      */
     public SusiIdentity(File memorypath, int attention) {
         this.attention = attention;
+        this.version = new AtomicLong(0);
+        this.recall = null;
+        this.lastAccess = System.currentTimeMillis();
         this.long_term_memory = new SusiAwareness();
         this.short_term_memory = new SusiAwareness();
         memorypath.mkdirs();
@@ -74,16 +81,33 @@ public class SusiIdentity {
         }
     }
     
+    public SusiIdentity touch() {
+        this.lastAccess = System.currentTimeMillis();
+        return this;
+    }
+
+    public long getLastAccess() {
+        return this.lastAccess;
+    }
+
     /**
      * Add a cognition to the identity. This will cause that we forget cognitions after
      * the awareness threshold has passed.
      * @param cognition
      * @return self
      */
-    public SusiIdentity add(SusiCognition cognition) {
+    public synchronized SusiIdentity add(SusiCognition cognition) {
+        int shortTime = this.short_term_memory.getTime();
         this.short_term_memory.learn(cognition);
         List<SusiCognition> forgottenCognitions = this.short_term_memory.limitAwareness(this.attention);
         forgottenCognitions.forEach(c -> this.long_term_memory.learn(c)); // TODO add a rule to memorize only the most important ones
+        if (this.recall != null) {
+            // the cognitions which are removed from the short term memory are the oldest ones of the short term memory;
+            // if they are moved to the long term memory the recall is computed again when it is requested
+            int kept = this.short_term_memory.getTime() - 1;
+            this.recall = forgottenCognitions.isEmpty() ? this.recall.remember(cognition, kept, shortTime - kept) : null;
+        }
+        this.version.incrementAndGet();
         try {
             Files.write(this.memorydump.toPath(), UTF8.getBytes(cognition.getJSON().toString(0) + "\n"), StandardOpenOption.APPEND, StandardOpenOption.CREATE);
         } catch (JSONException | IOException e) {
@@ -92,13 +116,31 @@ public class SusiIdentity {
         return this;
     }
     
+    /**
+     * the version of the identity changes whenever a cognition is added
+     * @return the number of cognitions which were added since the identity was loaded
+     */
+    public long getVersion() {
+        return this.version.get();
+    }
+    
+    /**
+     * Get the recall of the current awareness. The recall is computed once and then maintained incrementally
+     * when cognitions are added.
+     * @return the recall of the cognitions, latest first
+     */
+    public synchronized SusiRecall getRecall() {
+        if (this.recall == null) this.recall = SusiRecall.recall(getCognitions());
+        return this.recall;
+    }
+    
     /**
      * To be able to increase or decrease the current attention the attention level can be set here.
      * Setting the attention to Integer.MAX_VALUE means, to be GOD
      * @param attention the next attention level
      * @return self
      */
-    public SusiIdentity setAttention(int attention) {
+    public synchronized SusiIdentity setAttention(int attention) {
         this.attention = attention;
         return this;
     }
@@ -115,7 +157,7 @@ public class SusiIdentity {
      * Get the current awareness as list of cognitions. The list is reverse ordered, latest cognitions are first
      * @return a list of cognitions, latest first
      */
-    public List<SusiCognition> getCognitions() {
+    public synchronized List<SusiCognition> getCognitions() {
         ArrayList<SusiCognition> cognitions = new ArrayList<>();
         // first put in short memory
         this.short_term_memory.getCognitions().forEach(cognition -> cognitions.add(cognition));
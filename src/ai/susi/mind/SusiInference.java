@@ -19,7 +19,6 @@
 
 package ai.susi.mind;
 
-import java.io.ByteArrayInputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.regex.Matcher;
@@ -32,10 +31,8 @@ import javax.script.ScriptEngineManager;
 import org.eclipse.jetty.util.log.Log;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.json.JSONTokener;
 
 import ai.susi.DAO;
-import ai.susi.json.JsonPath;
 import ai.susi.server.api.susi.ConsoleService;
 import ai.susi.tools.TimeoutMatcher;
 import alice.tuprolog.InvalidTheoryException;
@@ -121,13 +118,13 @@ public class SusiInference {
         flowProcedures.put(Pattern.compile("FIRST"), (flow, matcher) -> {
             // extract only the first row of a thought
             SusiThought recall = flow == null ? new SusiThought() : flow.rethink(); // removes/replaces the latest thought from the flow!
-            if (recall.getCount() > 0) recall.setData(new JSONArray().put(recall.getData().getJSONObject(0)));
+            if (recall.getCount() > 0) recall.setData(new JSONArray().put(recall.getTable().getRow(0).toJSON()));
             return recall;
         });
         flowProcedures.put(Pattern.compile("REST"), (flow, matcher) -> {
             // remove the first row of a thought and return the remaining
             SusiThought recall = flow == null ? new SusiThought() : flow.rethink(); // removes/replaces the latest thought from the flow!
-            if (recall.getCount() > 0) recall.getData().remove(0);
+            if (recall.getCount() > 0) recall.getTable().removeRow(0);
             return recall;
         });
         memoryProcedures.put(Pattern.compile("SET\\h+?([^=]*?)\\h+?=\\h+?([^=]*)\\h*?"), (flow, matcher) -> {
@@ -238,7 +235,7 @@ public class SusiInference {
             Matcher m = pattern.matcher(flow.unify(expr, false, 0));
             int gc = -1;
             if (new TimeoutMatcher(m).matches()) {
-                SusiTransfer transfer = new SusiTransfer(transferExpr);
+                SusiTransfer transfer = SusiTransfer.compile(transferExpr);
                 JSONObject choice = new JSONObject();
                 if ((gc = m.groupCount()) > 0) {
                     for (int i = 0; i < gc; i++) choice.put("%" + (i+1) + "%", m.group(i));
@@ -282,9 +279,8 @@ public class SusiInference {
                 try {
                     String url = flow.unify(definition.getString("url"), true);
                     String path = flow.unify(definition.getString("path"), false);
-                    JSONTokener serviceResponse = new JSONTokener(new ByteArrayInputStream(ConsoleService.loadData(url)));
-                    JSONArray data = JsonPath.parse(serviceResponse, path);
-                    if (data != null) json.setData(new SusiTransfer("*").conclude(data));
+                    JSONArray data = ConsoleService.loadPath(url, path);
+                    if (data != null) json.setTable(SusiTransfer.compile("*").conclude(SusiTable.fromJSON(data)));
                     json.setHits(json.getCount());
                 } catch (Throwable e) {
                     //e.printStackTrace(); // probably a time-out
@@ -34,6 +34,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import ai.susi.DAO;
@@ -73,6 +74,7 @@ public class SusiMemory {
     private Map<String, SusiIdentity> memories;
     private Map<String, Map<String, JsonTray>> skillsets;
     private Map<String, AtomicInteger> unanswered;
+    private AtomicLong unansweredVersion; // incremented whenever the unanswered map changes
     
     public SusiMemory(File storageLocation, int attention) {
         this.root = storageLocation;
@@ -80,6 +82,7 @@ public class SusiMemory {
         this.memories = new ConcurrentHashMap<>();
         this.skillsets = new ConcurrentHashMap<>();
         this.unanswered = new ConcurrentHashMap<>();
+        this.unansweredVersion = new AtomicLong(0);
         
         // initialize the unanswered list.
         if (this.root != null) for (String c: this.root.list()) {
@@ -103,6 +106,18 @@ public class SusiMemory {
         return MapTools.deatomize(this.unanswered);
     }
     
+    public long getUnansweredVersion() {
+        return this.unansweredVersion.get();
+    }
+    
+    /**
+     * the number of identities which are cached in memory
+     * @return the size of the identity cache
+     */
+    public int getIdentityCacheSize() {
+        return this.memories.size();
+    }
+    
     /**
      * transform unanswered into a statistic for the number of occurrences of words.
      * The words are computed by tokenization of all unanswered phrases.
@@ -195,6 +210,7 @@ public class SusiMemory {
     
     public boolean removeUnanswered(String s) {
         AtomicInteger removed = this.unanswered.remove(s.toLowerCase());
+        if (removed != null) this.unansweredVersion.incrementAndGet();
         return removed != null;
         //if (removed) System.out.println("** removed unanswered " + s);
     }
@@ -216,6 +232,7 @@ public class SusiMemory {
                 }
             }
         }
+        if (removed) this.unansweredVersion.incrementAndGet();
         if (removed) System.out.println("** removed unanswered pattern " + p.pattern());
     }
     
@@ -225,26 +242,73 @@ public class SusiMemory {
      * @return a list of interactions, latest cognition is first in list
      */
     public List<SusiCognition> getCognitions(String client) {
-        SusiIdentity identity = this.memories.get(client);
-        if (identity == null) {
-            if (root == null) return new ArrayList<SusiCognition>();
-            identity = new SusiIdentity(new File(root, client), attention);
-            this.memories.put(client, identity);
-        }
+        SusiIdentity identity = getIdentity(client);
+        if (identity == null) return new ArrayList<SusiCognition>();
         return identity.getCognitions();
     }
     
+    /**
+     * get the recall of a client
+     * @param client
+     * @return the recall of the latest cognitions, latest first
+     */
+    public SusiRecall getRecall(String client) {
+        SusiIdentity identity = getIdentity(client);
+        if (identity == null) return SusiRecall.EMPTY;
+        return identity.getRecall();
+    }
+    
     public SusiMemory addCognition(String client, SusiCognition si) {
-        SusiIdentity identity = this.memories.get(client);
-        if (identity == null) {
-            if (root == null) return null;
-            identity = new SusiIdentity(new File(root, client), attention);
-            this.memories.put(client, identity);
-        }
+        SusiIdentity identity = getIdentity(client);
+        if (identity == null) return null;
         identity.add(si);
         return this;
     }
     
+    /**
+     * get the identity of a client; the identity is loaded if it is not in memory
+     * @param client
+     * @return the identity or null if the memory has no storage location
+     */
+    public SusiIdentity getIdentity(String client) {
+        if (this.root == null) return null;
+        SusiIdentity identity = this.memories.get(client);
+        if (identity != null) return identity.touch();
+        return this.memories.computeIfAbsent(client, c -> new SusiIdentity(new File(this.root, c), this.attention));
+    }
+    
+    /**
+     * remove identities from the memory cache which were not requested for some time. All cognitions of an
+     * identity are written to its memory dump when they are added, so a removed identity is loaded again
+     * from the dump when it is requested.
+     * @param maxIdle the time in milliseconds
+     * @return the number of removed identities
+     */
+    public int cleanupIdentities(long maxIdle) {
+        long pivotTime = System.currentTimeMillis() - maxIdle;
+        int s = this.memories.size();
+        this.memories.values().removeIf(identity -> identity.getLastAccess() < pivotTime);
+        return s - this.memories.size();
+    }
+    
+    /**
+     * limit the size of the unanswered list: the phrases which were asked least often are removed
+     * @param maxSize the maximum number of phrases
+     * @return the number of removed phrases
+     */
+    public int limitUnanswered(int maxSize) {
+        int overflow = this.unanswered.size() - maxSize;
+        if (overflow <= 0) return 0;
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(getUnanswered().entrySet());
+        entries.sort((a, b) -> Integer.compare(a.getValue(), b.getValue()));
+        int c = 0;
+        for (int i = 0; i < overflow && i < entries.size(); i++) {
+            if (this.unanswered.remove(entries.get(i).getKey()) != null) c++;
+        }
+        if (c > 0) this.unansweredVersion.incrementAndGet();
+        return c;
+    }
+    
     /**
      * collect the complete awareness of all users in all the time
      * @return the list of full awareness, ordered by the time of the latest update of the memories (latest first)
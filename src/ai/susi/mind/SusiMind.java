@@ -66,6 +66,7 @@ public class SusiMind {
     private final Map<File, Long> observations; // a mapping of mind memory files to the time when the file was read the last time
     private final SusiReader reader; // responsible to understand written communication
     private final SusiMemory memories; // conversation logs are memories
+    private final AtomicLong version; // incremented with every learning step
     
     public SusiMind(File memorypath, File... watchpaths) {
         // initialize class objects
@@ -79,6 +80,7 @@ public class SusiMind {
         this.observations = new HashMap<>();
         this.reader = new SusiReader();
         this.memories = new SusiMemory(memorypath, ATTENTION_TIME);
+        this.version = new AtomicLong(0);
         try {observe();} catch (IOException e) {
             e.printStackTrace();
         }
@@ -385,6 +387,32 @@ public class SusiMind {
         return null;
     }
     
+    /**
+     * the version of the mind changes whenever something is learned
+     * @return a number which is incremented with every learning step
+     */
+    public long getVersion() {
+        return this.version.get();
+    }
+    
+    /**
+     * the number of trigger words of the skills
+     * @return the size of the skill trigger index
+     */
+    public int getTriggerCount() {
+        return this.skilltrigger.size();
+    }
+    
+    /**
+     * the number of distinct skills which are learned
+     * @return the number of skills
+     */
+    public int getSkillCount() {
+        Set<SusiSkill> skills = new HashSet<>();
+        this.skilltrigger.values().forEach(set -> skills.addAll(set));
+        return skills.size();
+    }
+
     public SusiMind learn(JSONObject json) {
 
         // teach the language parser
@@ -425,6 +453,8 @@ public class SusiMind {
         });
         
         
+        this.version.incrementAndGet();
+
         // finally remove patterns in the memory that are known in a background process
         new Thread(new Runnable() {
             @Override
@@ -521,6 +551,15 @@ public class SusiMind {
         return plausibleIdeas;
     }
     
+    /**
+     * recall the disputes of the latest cognitions of a client
+     * @param client
+     * @return the recall of the client; it is maintained by the identity of the client and can be shared
+     */
+    public SusiRecall recall(String client) {
+        return this.memories.getRecall(client);
+    }
+    
     /**
      * react on a user input: this causes the selection of deduction skills and the evaluation of the process steps
      * in every skill up to the moment where enough skills have been applied as consideration. The reaction may also
@@ -530,15 +569,23 @@ public class SusiMind {
      * @return
      */
     public List<SusiArgument> react(String query, int maxcount, String client, SusiThought observation) {
-        // get the history a list of thoughts
-        SusiArgument observation_argument = new SusiArgument();
-        if (observation != null && observation.length() > 0) observation_argument.think(observation);
-        List<SusiCognition> cognitions = this.memories.getCognitions(client);
-        // latest cognition is first in list
-        cognitions.forEach(cognition -> observation_argument.think(cognition.recallDispute()));
-        // perform a mindmeld to create a single thought out of the recalled argument
+        return react(query, maxcount, client, observation, recall(client));
+    }
+    
+    /**
+     * react on a query with a recall which was computed before; this can be used to share the recall
+     * among several queries of the same client
+     * @param query
+     * @param maxcount
+     * @param client
+     * @param observation
+     * @param recalled the result of recall(client)
+     * @return a list of answer arguments
+     */
+    public List<SusiArgument> react(String query, int maxcount, String client, SusiThought observation, SusiRecall recalled) {
+        // perform a mindmeld to create a single thought out of the observation and the recalled thoughts
         // the mindmeld will squash the latest thoughts into one so it does not pile up to exponential growth
-        SusiThought recall = observation_argument.mindmeld(false);
+        SusiThought recall = recalled.mindmeld(observation);
         
         // normalize the query
         query = SusiPhrase.normalizeExpression(query);
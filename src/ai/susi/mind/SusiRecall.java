@@ -0,0 +1,146 @@
+/**
+ *  SusiRecall
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.mind;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recall is the reconstruction of the disputes of the cognitions of an identity, latest first.
+ * A recall is immutable: when a cognition is added to an identity, a new recall is derived from the
+ * previous one, so the dispute of a cognition is computed only once and a recall can be shared
+ * among concurrent queries of the same client.
+ *
+ * Every row of a dispute contains the "query" observation. A mindmeld of such thoughts therefore
+ * appends the rows of each thought to the melted thought and the mindmeld of a recall is simply the
+ * concatenation of all rows. That concatenation is maintained here together with the thoughts as a
+ * columnar table, so a mindmeld is a copy of the rows instead of a merge of all thoughts.
+ * Recalls of thoughts which do not have that property fall back to a complete mindmeld.
+ */
+public class SusiRecall {
+
+    public final static SusiRecall EMPTY = new SusiRecall(new ArrayList<>(0));
+
+    private final static String CONCAT_KEY = "query";
+
+    private final List<SusiThought> thoughts; // latest first
+    private final SusiTable rows; // the rows of all thoughts in the order of the thoughts
+    private final boolean concatenation; // true if the rows are the result of a mindmeld of the thoughts
+
+    private SusiRecall(List<SusiThought> thoughts) {
+        this.thoughts = thoughts;
+        SusiTable rows = new SusiTable();
+        boolean concatenation = true;
+        for (SusiThought thought: thoughts) {
+            concatenation = concatenation && concatenates(thought);
+            if (!concatenation) break;
+            rows.appendRows(thought.getTable(), 0, thought.getCount());
+        }
+        this.rows = concatenation ? rows : null;
+        this.concatenation = concatenation;
+    }
+
+    /**
+     * compute the recall of a list of cognitions
+     * @param cognitions latest cognition first
+     * @return the recall
+     */
+    public static SusiRecall recall(List<SusiCognition> cognitions) {
+        List<SusiThought> thoughts = new ArrayList<>(cognitions.size());
+        for (SusiCognition cognition: cognitions) thoughts.add(cognition.recallDispute());
+        return new SusiRecall(thoughts);
+    }
+
+    /**
+     * derive a new recall when a cognition is added to the identity
+     * @param cognition the new cognition which becomes the latest
+     * @param keep the number of previous thoughts which are kept in front of the forgotten thoughts
+     * @param forget the number of thoughts which are forgotten after the kept ones
+     * @return a new recall, this recall is not modified
+     */
+    public SusiRecall remember(SusiCognition cognition, int keep, int forget) {
+        List<SusiThought> thoughts = new ArrayList<>(this.thoughts.size() + 1);
+        thoughts.add(cognition.recallDispute());
+        for (int i = 0; i < this.thoughts.size(); i++) {
+            if (i < keep || i >= keep + forget) thoughts.add(this.thoughts.get(i));
+        }
+        // the disputes are not computed again; the concatenation is a copy of the columns of the thoughts
+        return new SusiRecall(thoughts);
+    }
+
+    private static boolean concatenates(SusiThought thought) {
+        SusiTable table = thought.getTable();
+        for (int i = 0; i < table.size(); i++) if (!table.has(i, CONCAT_KEY)) return false;
+        return true;
+    }
+
+    /**
+     * the disputes of the cognitions
+     * @return a list of thoughts, latest first; the thoughts must not be modified because they are shared
+     */
+    public List<SusiThought> getThoughts() {
+        return Collections.unmodifiableList(this.thoughts);
+    }
+
+    public int size() {
+        return this.thoughts.size();
+    }
+
+    /**
+     * Melt an observation and the recall into one thought. The result is the same as the mindmeld(false) of
+     * an argument which thinks the observation and then all thoughts of the recall.
+     * @param observation a thought which is melted in front of the recall, or null
+     * @return a new thought which can be modified
+     */
+    public SusiThought mindmeld(SusiThought observation) {
+        boolean observe = observation != null && observation.length() > 0;
+        if (!this.concatenation || (observe && !disjoint(observation))) {
+            SusiArgument argument = new SusiArgument();
+            if (observe) argument.think(observation);
+            this.thoughts.forEach(thought -> argument.think(thought));
+            return argument.mindmeld(false);
+        }
+        // the observation does not share any key with the rows: the first row is melted into the observation
+        // and all other rows are appended because they share the "query" key with the row before
+        SusiThought meltedMind = new SusiThought();
+        if (!observe && this.thoughts.isEmpty()) return meltedMind; // nothing to melt
+        SusiTable data = meltedMind.getTable();
+        if (observe) data.appendRows(observation.getTable(), 0, observation.getCount());
+        if (this.rows.size() > 0) {
+            data.putAll(data.size() == 0 ? data.appendRow() : 0, this.rows, 0);
+            data.appendRows(this.rows, 1, this.rows.size());
+        }
+        meltedMind.setTable(data);
+        meltedMind.setTimes(this.thoughts.size() + (observe ? 1 : 0));
+        return meltedMind;
+    }
+
+    private boolean disjoint(SusiThought observation) {
+        SusiTable data = observation.getTable();
+        if (data.size() > 1) return false;
+        if (data.size() == 0) return true;
+        for (String key: data.getRow(0).keys()) {
+            if (this.rows.findRow(key) >= 0) return false;
+        }
+        return true;
+    }
+
+}
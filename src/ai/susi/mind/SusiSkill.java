@@ -106,6 +106,7 @@ public class SusiSkill {
         p = (JSONArray) json.remove("actions");
         this.actions = new ArrayList<>(p.length());
         p.forEach(q -> this.actions.add(new SusiAction((JSONObject) q)));
+        this.actions.forEach(action -> action.getTemplates()); // compile the phrases once
         
         // extract the inferences and the process subscore; there may be no inference at all
         if (json.has("process")) {
@@ -392,7 +393,7 @@ public class SusiSkill {
      */
     public List<SusiAction> getActionsClone() {
         List<SusiAction> clonedList = new ArrayList<>();
-        this.actions.forEach(action -> clonedList.add(new SusiAction(action.toJSONClone())));
+        this.actions.forEach(action -> clonedList.add(action.copy()));
         return clonedList;
     }
 
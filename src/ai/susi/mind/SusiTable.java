@@ -0,0 +1,525 @@
+/**
+ *  SusiTable
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.mind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONString;
+
+/**
+ * The data table of a thought, stored in columns.
+ * Every column has a name from the column dictionary of the table and a type: string values, integer values
+ * and double values are stored in arrays of that type, other values are stored as objects. A column changes
+ * to an object column if a value of another type is stored. A row does not need to have a value in every column.
+ *
+ * The table is converted to json only when it is written, i.e. at the response boundary; the row order of the
+ * keys in the json is the order of the column dictionary.
+ */
+public class SusiTable implements JSONString {
+
+    private final Map<String, Integer> index; // the column dictionary
+    private final List<Column> columns;
+    private int size, capacity;
+
+    public SusiTable() {
+        this(4);
+    }
+
+    private SusiTable(int capacity) {
+        this.index = new HashMap<>();
+        this.columns = new ArrayList<>();
+        this.size = 0;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * convert a json table into a columnar table
+     * @param table an array of json objects
+     * @return the table
+     */
+    public static SusiTable fromJSON(JSONArray table) {
+        SusiTable t = new SusiTable(table.length());
+        for (int i = 0; i < table.length(); i++) {
+            int row = t.appendRow();
+            JSONObject json = table.getJSONObject(i);
+            for (String key: json.keySet()) t.put(row, key, json.get(key));
+        }
+        return t;
+    }
+
+    public SusiTable copy() {
+        SusiTable t = new SusiTable(this.size);
+        t.appendRows(this, 0, this.size);
+        return t;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * the column dictionary
+     * @return the names of all columns in the order of their creation
+     */
+    public List<String> getColumns() {
+        List<String> names = new ArrayList<>(this.columns.size());
+        this.columns.forEach(column -> names.add(column.name));
+        return names;
+    }
+
+    public boolean has(int row, String key) {
+        Integer c = this.index.get(key);
+        return c != null && this.columns.get(c).has(row);
+    }
+
+    public Object get(int row, String key) {
+        Integer c = this.index.get(key);
+        return c == null ? null : this.columns.get(c).get(row);
+    }
+
+    /**
+     * find the first value of a column
+     * @param key the column name
+     * @return the value in the first row which has a value in the column or null if there is no such row
+     */
+    public Object find(String key) {
+        Integer c = this.index.get(key);
+        if (c == null) return null;
+        Column column = this.columns.get(c);
+        for (int row = 0; row < this.size; row++) if (column.has(row)) return column.get(row);
+        return null;
+    }
+
+    /**
+     * find the first row which has a value in a column
+     * @param key the column name
+     * @return the row number or -1 if no row has a value in the column
+     */
+    public int findRow(String key) {
+        Integer c = this.index.get(key);
+        if (c == null) return -1;
+        Column column = this.columns.get(c);
+        for (int row = 0; row < this.size; row++) if (column.has(row)) return row;
+        return -1;
+    }
+
+    /**
+     * set a value
+     * @param row the row number; if the row number is the size of the table, a row is appended
+     * @param key the column name
+     * @param value the value or null to remove the value
+     * @return the table
+     */
+    public SusiTable put(int row, String key, Object value) {
+        if (row == this.size) appendRow();
+        if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("row " + row + " of " + this.size);
+        Integer c = this.index.get(key);
+        if (c == null) {
+            if (value == null) return this;
+            c = this.columns.size();
+            this.index.put(key, c);
+            this.columns.add(Column.create(key, value, this.capacity));
+        }
+        Column column = this.columns.get(c);
+        if (value != null && !column.accepts(value)) {
+            column = new ObjectColumn(column, this.capacity);
+            this.columns.set(c, column);
+        }
+        column.set(row, value);
+        return this;
+    }
+
+    /**
+     * append an empty row
+     * @return the number of the new row
+     */
+    public int appendRow() {
+        ensureCapacity(this.size + 1);
+        return this.size++;
+    }
+
+    /**
+     * insert an empty row; the following rows are moved
+     * @param row the number of the new row
+     */
+    public void insertRow(int row) {
+        if (row < 0 || row > this.size) throw new IndexOutOfBoundsException("row " + row + " of " + this.size);
+        ensureCapacity(this.size + 1);
+        for (Column column: this.columns) {
+            column.move(row, row + 1, this.size - row);
+            column.set(row, null);
+        }
+        this.size++;
+    }
+
+    public void removeRow(int row) {
+        if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("row " + row + " of " + this.size);
+        for (Column column: this.columns) {
+            column.move(row + 1, row, this.size - row - 1);
+            column.set(this.size - 1, null);
+        }
+        this.size--;
+    }
+
+    /**
+     * copy all values of a row of another table into a row of this table
+     */
+    public void putAll(int row, SusiTable other, int otherRow) {
+        for (Column column: other.columns) {
+            if (column.has(otherRow)) put(row, column.name, column.get(otherRow));
+        }
+    }
+
+    /**
+     * append rows of another table; the rows are copied one after another, so new columns are created
+     * in the same order as with a sequence of putAll
+     * @param other the other table
+     * @param from the first row of the other table
+     * @param to the row after the last row of the other table
+     */
+    public void appendRows(SusiTable other, int from, int to) {
+        int offset = this.size;
+        ensureCapacity(this.size + to - from);
+        this.size += to - from;
+        for (int row = from; row < to; row++) putAll(offset + row - from, other, row);
+    }
+
+    /**
+     * test if a row of another table has a value in a column where a row of this table has a value
+     */
+    public boolean anyKeySame(int row, SusiTable other, int otherRow) {
+        for (Column column: other.columns) {
+            if (column.has(otherRow) && has(row, column.name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * get a value as a number. Strings are parsed, like with JSONObject.getDouble
+     * @throws JSONException if the row has no value in the column or the value is not a number
+     */
+    public double getDouble(int row, String key) throws JSONException {
+        Integer c = this.index.get(key);
+        if (c == null || !this.columns.get(c).has(row)) throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] not found.");
+        return this.columns.get(c).getDouble(row);
+    }
+
+    /**
+     * the sum of a column, computed in a single loop over the column array
+     * @throws JSONException if a row has no value in the column or the value is not a number
+     */
+    public double sum(String key) throws JSONException {
+        if (this.size == 0) return 0.0d;
+        return column(key).sum(this.size);
+    }
+
+    /**
+     * the maximum of a column; Double.NEGATIVE_INFINITY if the table is empty
+     * @throws JSONException if a row has no value in the column or the value is not a number
+     */
+    public double max(String key) throws JSONException {
+        if (this.size == 0) return Double.NEGATIVE_INFINITY;
+        return column(key).max(this.size);
+    }
+
+    /**
+     * the minimum of a column; Double.POSITIVE_INFINITY if the table is empty
+     * @throws JSONException if a row has no value in the column or the value is not a number
+     */
+    public double min(String key) throws JSONException {
+        if (this.size == 0) return Double.POSITIVE_INFINITY;
+        return column(key).min(this.size);
+    }
+
+    private Column column(String key) throws JSONException {
+        Integer c = this.index.get(key);
+        if (c == null) throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] not found.");
+        return this.columns.get(c);
+    }
+
+    /**
+     * a view on a row of the table
+     * @param row the row number
+     * @return the row
+     */
+    public Row getRow(int row) {
+        if (row < 0 || row >= this.size) throw new IndexOutOfBoundsException("row " + row + " of " + this.size);
+        return new Row(row);
+    }
+
+    public class Row {
+        private final int row;
+        private Row(int row) {
+            this.row = row;
+        }
+        public boolean has(String key) {
+            return SusiTable.this.has(this.row, key);
+        }
+        public Object get(String key) {
+            return SusiTable.this.get(this.row, key);
+        }
+        /**
+         * @return true if no column has a value in this row
+         */
+        public boolean isEmpty() {
+            for (Column column: SusiTable.this.columns) if (column.has(this.row)) return false;
+            return true;
+        }
+        /**
+         * @return the names of the columns which have a value in this row
+         */
+        public List<String> keys() {
+            List<String> keys = new ArrayList<>();
+            for (Column column: SusiTable.this.columns) if (column.has(this.row)) keys.add(column.name);
+            return keys;
+        }
+        public JSONObject toJSON() {
+            JSONObject json = new JSONObject(true);
+            for (Column column: SusiTable.this.columns) if (column.has(this.row)) json.put(column.name, column.get(this.row));
+            return json;
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= this.capacity) return;
+        this.capacity = Math.max(required, this.capacity * 2);
+        for (Column column: this.columns) column.grow(this.capacity);
+    }
+
+    public JSONArray toJSONArray() {
+        JSONArray table = new JSONArray();
+        for (int row = 0; row < this.size; row++) table.put(getRow(row).toJSON());
+        return table;
+    }
+
+    @Override
+    public String toJSONString() {
+        StringBuilder sb = new StringBuilder(this.size * this.columns.size() * 16 + 2);
+        sb.append('[');
+        for (int row = 0; row < this.size; row++) {
+            if (row > 0) sb.append(',');
+            sb.append('{');
+            boolean first = true;
+            for (Column column: this.columns) {
+                if (!column.has(row)) continue;
+                if (!first) sb.append(',');
+                sb.append(JSONObject.quote(column.name)).append(':');
+                column.write(row, sb);
+                first = false;
+            }
+            sb.append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    public String toString() {
+        return toJSONString();
+    }
+
+    private static abstract class Column {
+        final String name;
+        Column(String name) {
+            this.name = name;
+        }
+        static Column create(String name, Object value, int capacity) {
+            if (value instanceof String) return new StringColumn(name, capacity);
+            if (value instanceof Integer || value instanceof Long) return new LongColumn(name, capacity);
+            if (value instanceof Double) return new DoubleColumn(name, capacity);
+            return new ObjectColumn(name, capacity);
+        }
+        abstract boolean accepts(Object value);
+        abstract boolean has(int row);
+        abstract Object get(int row);
+        abstract void set(int row, Object value);
+        abstract void move(int from, int to, int length);
+        abstract void grow(int capacity);
+        void write(int row, StringBuilder sb) {
+            sb.append(JSONObject.valueToString(get(row)));
+        }
+        double getDouble(int row) {
+            Object value = get(row);
+            if (value == null) throw new JSONException("JSONObject[" + JSONObject.quote(this.name) + "] not found.");
+            try {
+                return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble((String) value);
+            } catch (Exception e) {
+                throw new JSONException("JSONObject[" + JSONObject.quote(this.name) + "] is not a number.");
+            }
+        }
+        double sum(int size) {
+            double sum = 0.0d;
+            for (int row = 0; row < size; row++) sum += getDouble(row);
+            return sum;
+        }
+        double max(int size) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int row = 0; row < size; row++) max = Math.max(max, getDouble(row));
+            return max;
+        }
+        double min(int size) {
+            double min = Double.POSITIVE_INFINITY;
+            for (int row = 0; row < size; row++) min = Math.min(min, getDouble(row));
+            return min;
+        }
+        void complete(boolean[] present, int size) {
+            for (int row = 0; row < size; row++) if (!present[row]) throw new JSONException("JSONObject[" + JSONObject.quote(this.name) + "] not found.");
+        }
+    }
+
+    private static class StringColumn extends Column {
+        private String[] values;
+        StringColumn(String name, int capacity) {
+            super(name);
+            this.values = new String[capacity];
+        }
+        boolean accepts(Object value) {return value instanceof String;}
+        boolean has(int row) {return this.values[row] != null;}
+        Object get(int row) {return this.values[row];}
+        void set(int row, Object value) {this.values[row] = (String) value;}
+        void move(int from, int to, int length) {System.arraycopy(this.values, from, this.values, to, length);}
+        void grow(int capacity) {this.values = Arrays.copyOf(this.values, capacity);}
+        void write(int row, StringBuilder sb) {sb.append(JSONObject.quote(this.values[row]));}
+    }
+
+    private static class LongColumn extends Column {
+        private long[] values;
+        private boolean[] present;
+        private boolean integers; // true if all values were given as Integer
+        LongColumn(String name, int capacity) {
+            super(name);
+            this.values = new long[capacity];
+            this.present = new boolean[capacity];
+            this.integers = true;
+        }
+        boolean accepts(Object value) {return value instanceof Integer || value instanceof Long;}
+        boolean has(int row) {return this.present[row];}
+        Object get(int row) {
+            if (!this.present[row]) return null;
+            return this.integers ? Integer.valueOf((int) this.values[row]) : Long.valueOf(this.values[row]);
+        }
+        void set(int row, Object value) {
+            this.present[row] = value != null;
+            if (value == null) return;
+            this.values[row] = ((Number) value).longValue();
+            if (!(value instanceof Integer)) this.integers = false;
+        }
+        void move(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+            System.arraycopy(this.present, from, this.present, to, length);
+        }
+        void grow(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.present = Arrays.copyOf(this.present, capacity);
+        }
+        void write(int row, StringBuilder sb) {sb.append(this.values[row]);}
+        double getDouble(int row) {return this.values[row];}
+        double sum(int size) {
+            complete(this.present, size);
+            long sum = 0;
+            for (int row = 0; row < size; row++) sum += this.values[row];
+            return sum;
+        }
+        double max(int size) {
+            complete(this.present, size);
+            long max = Long.MIN_VALUE;
+            for (int row = 0; row < size; row++) max = Math.max(max, this.values[row]);
+            return max;
+        }
+        double min(int size) {
+            complete(this.present, size);
+            long min = Long.MAX_VALUE;
+            for (int row = 0; row < size; row++) min = Math.min(min, this.values[row]);
+            return min;
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private double[] values;
+        private boolean[] present;
+        DoubleColumn(String name, int capacity) {
+            super(name);
+            this.values = new double[capacity];
+            this.present = new boolean[capacity];
+        }
+        boolean accepts(Object value) {return value instanceof Double;}
+        boolean has(int row) {return this.present[row];}
+        Object get(int row) {return this.present[row] ? Double.valueOf(this.values[row]) : null;}
+        double getDouble(int row) {return this.values[row];}
+        double sum(int size) {
+            complete(this.present, size);
+            double sum = 0.0d;
+            for (int row = 0; row < size; row++) sum += this.values[row];
+            return sum;
+        }
+        double max(int size) {
+            complete(this.present, size);
+            double max = Double.NEGATIVE_INFINITY;
+            for (int row = 0; row < size; row++) max = Math.max(max, this.values[row]);
+            return max;
+        }
+        double min(int size) {
+            complete(this.present, size);
+            double min = Double.POSITIVE_INFINITY;
+            for (int row = 0; row < size; row++) min = Math.min(min, this.values[row]);
+            return min;
+        }
+        void set(int row, Object value) {
+            this.present[row] = value != null;
+            if (value != null) this.values[row] = (Double) value;
+        }
+        void move(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+            System.arraycopy(this.present, from, this.present, to, length);
+        }
+        void grow(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.present = Arrays.copyOf(this.present, capacity);
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+        private Object[] values;
+        ObjectColumn(String name, int capacity) {
+            super(name);
+            this.values = new Object[capacity];
+        }
+        ObjectColumn(Column column, int capacity) {
+            this(column.name, capacity);
+            for (int row = 0; row < capacity; row++) this.values[row] = column.get(row);
+        }
+        boolean accepts(Object value) {return true;}
+        boolean has(int row) {return this.values[row] != null;}
+        Object get(int row) {return this.values[row];}
+        void set(int row, Object value) {this.values[row] = value;}
+        void move(int from, int to, int length) {System.arraycopy(this.values, from, this.values, to, length);}
+        void grow(int capacity) {this.values = Arrays.copyOf(this.values, capacity);}
+    }
+
+}
@@ -0,0 +1,211 @@
+/**
+ *  SusiTemplate
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.mind;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+import ai.susi.tools.TimeoutMatcher;
+
+/**
+ * A template is a statement with variables like "$1$", "$name$" or "$_history$" which is parsed once into
+ * a list of literals and variable names. Unification with a thought or an argument then looks up every variable
+ * once and renders the statement in a single pass.
+ * The variables of a template are the strings between pairs of '$' characters on the same line, like the
+ * matches of SusiThought.variable_pattern; a '$' which has no partner on its line is a literal. Templates with
+ * an unpaired '$' at the end and values which contain '$' characters are unified with search and replace,
+ * because then a substitution may change the variables of the statement.
+ */
+public class SusiTemplate {
+
+    private final static ThreadLocal<StringBuilder> buffer = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private final String statement;
+    private final String[] literals; // one more literal than variables
+    private final String[] variables; // null if the template cannot be compiled
+
+    private SusiTemplate(String statement, String[] literals, String[] variables) {
+        this.statement = statement;
+        this.literals = literals;
+        this.variables = variables;
+    }
+
+    /**
+     * parse a statement into a template
+     * @param statement
+     * @return the template
+     */
+    public static SusiTemplate compile(String statement) {
+        int p = statement.indexOf('$');
+        if (p < 0) return new SusiTemplate(statement, new String[]{statement}, new String[0]);
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int start = 0;
+        while (p >= 0) {
+            int q = statement.indexOf('$', p + 1);
+            if (q < 0) return new SusiTemplate(statement, null, null); // odd number of '$'
+            int n = statement.indexOf('\n', p + 1);
+            if (n >= 0 && n < q) {
+                // a variable does not span lines: the '$' at p is a literal, the next one may start a variable
+                p = q;
+                continue;
+            }
+            literals.add(statement.substring(start, p));
+            variables.add(statement.substring(p + 1, q));
+            start = q + 1;
+            p = statement.indexOf('$', start);
+        }
+        literals.add(statement.substring(start));
+        return new SusiTemplate(statement, literals.toArray(new String[literals.size()]), variables.toArray(new String[variables.size()]));
+    }
+
+    public String getStatement() {
+        return this.statement;
+    }
+
+    public boolean hasVariables() {
+        return this.variables == null || this.variables.length > 0;
+    }
+
+    /**
+     * unify the template with a single thought; variables which are not in the thought remain in the statement
+     * @param thought
+     * @param urlencode if true, the substitutions are url-encoded
+     * @return the instantiated statement
+     */
+    public String unify(SusiThought thought, boolean urlencode) {
+        if (this.variables == null) return substitute(thought, this.statement, urlencode);
+        if (this.variables.length == 0) return this.statement;
+        Object[] values = new Object[this.variables.length];
+        for (int i = 0; i < this.variables.length; i++) {
+            Object value = lookup(thought, this.variables[i]);
+            if (value == null) continue;
+            String s = value.toString();
+            if (s.indexOf('$') >= 0) return substitute(thought, this.statement, urlencode);
+            values[i] = s;
+        }
+        return render(values, urlencode);
+    }
+
+    /**
+     * unify the template with an argument: each variable is taken from the latest thought which contains it
+     * @param argument
+     * @param urlencode if true, the substitutions are url-encoded
+     * @param depth the maximum depth into the flow. depth == 0 means 'only the last thought'
+     * @return the instantiated statement or null if a variable could not be found
+     */
+    public String unify(SusiArgument argument, boolean urlencode, int depth) {
+        if (this.variables == null) return substitute(argument, this.statement, urlencode, depth);
+        if (this.variables.length == 0) return this.statement;
+        Object[] values = new Object[this.variables.length];
+        for (int i = 0; i < this.variables.length; i++) {
+            int d = depth;
+            for (SusiThought thought: argument) {
+                // the iterator of the argument returns the latest thought first
+                if (d-- < 0) break;
+                Object value = lookup(thought, this.variables[i]);
+                if (value == null) continue;
+                String s = value.toString();
+                if (s.indexOf('$') >= 0) return substitute(argument, this.statement, urlencode, depth);
+                values[i] = s;
+                break;
+            }
+            if (values[i] == null) return null; // failure!
+        }
+        return render(values, urlencode);
+    }
+
+    private static Object lookup(SusiThought thought, String key) {
+        return thought.getTable().find(key);
+    }
+
+    private String render(Object[] values, boolean urlencode) {
+        StringBuilder sb = buffer.get();
+        sb.setLength(0);
+        for (int i = 0; i < this.variables.length; i++) {
+            sb.append(this.literals[i]);
+            if (values[i] == null) {
+                sb.append('$').append(this.variables[i]).append('$');
+            } else if (urlencode) {
+                try {
+                    sb.append(URLEncoder.encode((String) values[i], "UTF-8"));
+                } catch (UnsupportedEncodingException e) {
+                    sb.append((String) values[i]);
+                }
+            } else {
+                sb.append((String) values[i]);
+            }
+        }
+        sb.append(this.literals[this.variables.length]);
+        return sb.toString();
+    }
+
+    /**
+     * unification by search and replace of all keys of a thought
+     */
+    static String substitute(SusiThought thought, String statement, boolean urlencode) {
+        if (statement.indexOf('$') < 0) return statement;
+        SusiTable table = thought.getTable();
+        if (table.size() > 0) {
+            for (int rownum = 0; rownum < table.size(); rownum++) {
+                SusiTable.Row row = table.getRow(rownum);
+                for (String key: row.keys()) {
+                    int i;
+                    while ((i = statement.indexOf("$" + key + "$")) >= 0) {
+                        String substitution = row.get(key).toString();
+                        if (urlencode) try {
+                            substitution = URLEncoder.encode(substitution, "UTF-8");
+                        } catch (UnsupportedEncodingException e) {}
+                        statement = statement.substring(0, i) + substitution + statement.substring(i + key.length() + 2);
+                    }
+                    if (statement.indexOf('$') < 0) break;
+                }
+                if (statement.indexOf('$') < 0) break;
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * unification by search and replace of all keys of the thoughts of an argument
+     */
+    static String substitute(SusiArgument argument, String statement, boolean urlencode, int depth) {
+        for (SusiThought t: argument) {
+            // this uses the iterator of the argument which iterates in reverse order. That means, latest thought is first returned
+            if (depth-- < 0) break;
+            statement = substitute(t, statement, urlencode);
+            if (!new TimeoutMatcher(SusiThought.variable_pattern.matcher(statement)).find()) return statement;
+        }
+        if (new TimeoutMatcher(SusiThought.variable_pattern.matcher(statement)).find()) return null; // failure!
+        return statement;
+    }
+
+    public String toString() {
+        return this.statement;
+    }
+
+}
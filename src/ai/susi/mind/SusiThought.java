@@ -20,8 +20,6 @@
 
 package ai.susi.mind;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -57,7 +55,11 @@ public class SusiThought extends JSONObject {
     public SusiThought(JSONObject json) {
         this();
         if (json.has(this.metadata_name)) this.put(this.metadata_name, json.getJSONObject(this.metadata_name));
-        if (json.has(this.data_name)) this.setData(json.getJSONArray(this.data_name));
+        if (json.has(this.data_name)) {
+            Object data = json.get(this.data_name);
+            // the table of another thought is shared like the data array was shared before
+            if (data instanceof SusiTable) this.setTable((SusiTable) data); else this.setData(json.getJSONArray(this.data_name));
+        }
         if (json.has("actions")) this.put("actions", json.getJSONArray("actions"));
     }
     
@@ -73,12 +75,12 @@ public class SusiThought extends JSONObject {
     public SusiThought(Matcher matcher) {
         this();
         this.setOffset(0).setHits(1);
-        JSONObject row = new JSONObject();
-        row.put("0", matcher.group(0));
+        SusiTable table = new SusiTable();
+        table.put(0, "0", matcher.group(0));
         for (int i = 0; i < matcher.groupCount(); i++) {
-            row.put(Integer.toString(i + 1), matcher.group(i + 1));
+            table.put(0, Integer.toString(i + 1), matcher.group(i + 1));
         }
-        this.setData(new JSONArray().put(row));
+        this.setTable(table);
     }
     
     @Deprecated
@@ -91,7 +93,7 @@ public class SusiThought extends JSONObject {
     public boolean equals(Object o) {
         if (!(o instanceof SusiThought)) return false;
         SusiThought t = (SusiThought) o;
-        return this.getData().equals(t.getData());
+        return this.getTable() == t.getTable();
     }
     
     public SusiThought setTimes(int t) {
@@ -129,11 +131,11 @@ public class SusiThought extends JSONObject {
      * @return hits number of information pieces
      */
     public int getCount() {
-        return getData().length();
+        return getTable().size();
     }
 
     public boolean isFailed() {
-        return getData().length() == 0;
+        return getTable().size() == 0;
     }
 
     public boolean hasEmptyObservation(String key) {
@@ -204,7 +206,7 @@ public class SusiThought extends JSONObject {
             md = new JSONObject();
             this.put(metadata_name, md);
         }
-        if (!md.has("count")) md.put("count", getData().length());
+        if (!md.has("count")) md.put("count", getTable().size());
         return md;
     }
     
@@ -215,21 +217,36 @@ public class SusiThought extends JSONObject {
      * @return the thought
      */
     public SusiThought setData(JSONArray table) {
+        return setTable(SusiTable.fromJSON(table));
+    }
+
+    public SusiThought setTable(SusiTable table) {
         this.put(data_name, table);
         JSONObject md = getMetadata();
-        md.put("count", getData().length());
+        md.put("count", table.size());
         return this;
     }
 
     /**
      * Information contained in this thought can get returned as a table, a set of information pieces.
+     * The table is a copy of the data of the thought: changes must be written back with setData.
      * @return a table of information pieces as a set of rows which all have the same column names.
      */
     public JSONArray getData() {
-        if (this.has(data_name)) return this.getJSONArray(data_name);
-        JSONArray a = new JSONArray();
-        this.put(data_name, a);
-        return a;
+        return getTable().toJSONArray();
+    }
+
+    /**
+     * The information of this thought is stored in a columnar table. It is converted to json only
+     * when the thought is written.
+     * @return the table of this thought; changes to the table are changes of the thought.
+     */
+    public SusiTable getTable() {
+        Object data = this.has(data_name) ? this.get(data_name) : null;
+        if (data instanceof SusiTable) return (SusiTable) data;
+        SusiTable table = data instanceof JSONArray ? SusiTable.fromJSON((JSONArray) data) : new SusiTable();
+        this.put(data_name, table);
+        return table;
     }
     
     /**
@@ -240,23 +257,21 @@ public class SusiThought extends JSONObject {
      * @return the thought
      */
     public SusiThought mergeData(JSONArray table1) {
-        JSONArray table0 = this.getData();
+        return mergeTable(SusiTable.fromJSON(table1));
+    }
+
+    public SusiThought mergeTable(SusiTable table1) {
+        SusiTable table0 = this.getTable();
         int t0c = 0;
-        for (int i = 0; i < table1.length(); i++) {
-            JSONObject j1i = table1.getJSONObject(i);
-            while (t0c < table0.length() && anyObjectKeySame(j1i, table0.getJSONObject(t0c))) {t0c++;}
-            if (t0c >= table0.length()) table0.put(new JSONObject(true));
-            table0.getJSONObject(t0c).putAll(table1.getJSONObject(i));
+        for (int i = 0; i < table1.size(); i++) {
+            while (t0c < table0.size() && table0.anyKeySame(t0c, table1, i)) {t0c++;}
+            if (t0c >= table0.size()) table0.appendRow();
+            table0.putAll(t0c, table1, i);
         }
-        setData(table0);
+        setTable(table0);
         return this;
     }
     
-    private final static boolean anyObjectKeySame(final JSONObject a, final JSONObject b) {
-        for (String k: a.keySet()) if (b.has(k)) return true;
-        return false;
-    }
-    
     /**
      * If during thinking we observe something that we want to memorize, we can memorize this here.
      * We insert the new data always in front of existing same data to make it visible as primary
@@ -268,69 +283,38 @@ public class SusiThought extends JSONObject {
      * @return the thought
      */
     public SusiThought addObservation(String featureName, String observation) {
-        JSONArray data = getData();
+        SusiTable data = getTable();
         
         // find first occurrence of key in rows
-        int rowc = 0; boolean found = false;
-        while (rowc < data.length()) {
-            JSONObject row = data.getJSONObject(rowc);
-            if (row.has(featureName)) found = true;
-            if (found) break;
-            rowc++;
-        }
-        if (found) {
+        int rowc = data.findRow(featureName);
+        if (rowc == 0) {
+            // insert a row and shift everything up
+            data.insertRow(0);
+            data.put(0, featureName, observation);
+            this.setTable(data);
+        } else if (rowc > 0) {
             // insert feature in front of row
-            if (rowc == 0) {
-                // insert a row and shift everything up
-                JSONArray newData = new JSONArray();
-                JSONObject row = new JSONObject();
-                row.put(featureName, observation);
-                newData.put(row);
-                for (Object o: data) newData.put(o);
-                this.setData(newData);
-            } else {
-                JSONObject row = data.getJSONObject(rowc - 1);
-                row.put(featureName, observation);
-            }
+            data.put(rowc - 1, featureName, observation);
         } else {
-            // insert into first line
-            if (data.length() == 0) {
-                JSONObject row = new JSONObject();
-                row.put(featureName, observation);
-                data.put(row);
-            } else {
-                JSONObject row = data.getJSONObject(0);
-                row.put(featureName, observation);
-            }
+            // insert into first line; a row is appended if the table is empty
+            data.put(0, featureName, observation);
         }
         return this;
     }
     
     public List<String> getObservations(String featureName) {
         List<String> list = new ArrayList<>();
-        JSONArray table = this.getData();
-        if (table != null && table.length() > 0) {
-            for (int rc = 0; rc < table.length(); rc++) {
-            JSONObject row = table.getJSONObject(rc);
-                for (String key: row.keySet()) {
-                    if (key.equals(featureName)) list.add(row.get(key).toString());
-                }
-            }
+        SusiTable table = this.getTable();
+        for (int rc = 0; rc < table.size(); rc++) {
+            Object value = table.get(rc, featureName);
+            if (value != null) list.add(value.toString());
         }
         return list;
     }
     
     public String getObservation(String featureName) {
-        JSONArray table = this.getData();
-        if (table != null && table.length() > 0) {
-            for (int rc = 0; rc < table.length(); rc++) {
-                JSONObject row = table.getJSONObject(rc);
-                for (String key: row.keySet()) {
-                    if (key.equals(featureName)) return row.get(key).toString();
-                }
-            }
-        }
-        return null;
+        Object value = this.getTable().find(featureName);
+        return value == null ? null : value.toString();
     }
     
     /**
@@ -381,26 +365,7 @@ public class SusiThought extends JSONObject {
      * @return the instantiated statement with elements of the argument applied as much as possible
      */
     public String unify(String statement, boolean urlencode) {
-        if (statement.indexOf('$') < 0) return statement;
-        JSONArray table = this.getData();
-        if (table != null && table.length() > 0) {
-            for (int rownum = 0; rownum < table.length(); rownum++) {
-                JSONObject row = table.getJSONObject(rownum);
-                for (String key: row.keySet()) {
-                    int i;
-                    while ((i = statement.indexOf("$" + key + "$")) >= 0) {
-                        String substitution = row.get(key).toString();
-                        if (urlencode) try {
-                            substitution = URLEncoder.encode(substitution, "UTF-8");
-                        } catch (UnsupportedEncodingException e) {}
-                        statement = statement.substring(0, i) + substitution + statement.substring(i + key.length() + 2);
-                    }
-                    if (statement.indexOf('$') < 0) break;
-                }
-                if (statement.indexOf('$') < 0) break;
-            }
-        }
-        return statement;
+        return SusiTemplate.compile(statement).unify(this, urlencode);
     }
     
     public JSONObject toJSON() {
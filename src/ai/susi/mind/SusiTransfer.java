@@ -19,23 +19,36 @@
 
 package ai.susi.mind;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
-import com.google.common.util.concurrent.AtomicDouble;
+import ai.susi.tools.CacheMap;
 
 /**
  * Transfer is the ability to perceive a given thought in a different representation
  * in such a way that it applies on a skill or a skill set.
+ * A transfer is a compiled plan of its mapping expression: the selections and the aggregation are parsed
+ * once and the plan can be applied to any number of tables. Plans are cached by their expression, so
+ * the transfer of a skill is compiled only once.
  */
 public class SusiTransfer {
     
-    private LinkedHashMap<String, String> selectionMapping;
+    private final static CacheMap<String, SusiTransfer> plans = new CacheMap<>(1000);
+
+    private enum Aggregation {COUNT, MAX, MIN, SUM, AVG, PERCENT}
+
+    private final LinkedHashMap<String, String> selectionMapping;
+    private final List<Selection> selections; // null if everything is selected
+    private final Aggregation aggregation; // null if the transfer is not an aggregation
+    private final String aggregationColumn, aggregationAs; // the aggregated column and its name in the conclusion
+    private final String percentColumn, percentAs; // the column which is concluded together with a percentage
     
     /**
      * Create a new transfer. The mapping must be given in the same way as SQL column selection
@@ -50,6 +63,57 @@ public class SusiTransfer {
      */
     public SusiTransfer(String mappingExpression) {
         this.selectionMapping = parse(mappingExpression);
+        if (this.selectionMapping == null) {
+            this.selections = null;
+        } else {
+            this.selections = new ArrayList<>(this.selectionMapping.size());
+            this.selectionMapping.forEach((key, as) -> this.selections.add(new Selection(key, as)));
+        }
+
+        // test if this has an aggregation key: AVG, COUNT, MAX, MIN, SUM or PERCENT together with a column
+        Aggregation aggregation = null;
+        String aggregationColumn = null, aggregationAs = null, percentColumn = null, percentAs = null;
+        if (this.selectionMapping != null && this.selectionMapping.size() == 1) {
+            final String aggregator = this.selectionMapping.keySet().iterator().next();
+            for (Aggregation a: new Aggregation[]{Aggregation.COUNT, Aggregation.MAX, Aggregation.MIN, Aggregation.SUM, Aggregation.AVG}) {
+                if (aggregator.startsWith(a.name() + "(") && aggregator.endsWith(")")) {
+                    aggregation = a;
+                    aggregationColumn = aggregator.substring(a.name().length() + 1, aggregator.length() - 1);
+                    aggregationAs = this.selectionMapping.get(aggregator);
+                    break;
+                }
+            }
+        }
+        if (this.selectionMapping != null && this.selectionMapping.size() == 2) {
+            Iterator<String> ci = this.selectionMapping.keySet().iterator();
+            String aggregator = ci.next(); String column = ci.next();
+            if (column.indexOf('(') >= 0) {String s = aggregator; aggregator = column; column = s;}
+            if (aggregator.startsWith("PERCENT(") && aggregator.endsWith(")")) {
+                aggregation = Aggregation.PERCENT;
+                aggregationColumn = aggregator.substring(8, aggregator.length() - 1);
+                aggregationAs = this.selectionMapping.get(aggregator);
+                percentColumn = column;
+                percentAs = this.selectionMapping.get(column);
+            }
+        }
+        this.aggregation = aggregation;
+        this.aggregationColumn = aggregationColumn;
+        this.aggregationAs = aggregationAs;
+        this.percentColumn = percentColumn;
+        this.percentAs = percentAs;
+    }
+
+    /**
+     * get the compiled plan of a mapping expression. The plans are cached, a transfer is immutable and can be shared.
+     * @param mappingExpression the mapping as in the constructor
+     * @return the plan of the transfer
+     */
+    public static SusiTransfer compile(String mappingExpression) {
+        SusiTransfer transfer = plans.get(mappingExpression);
+        if (transfer != null) return transfer;
+        transfer = new SusiTransfer(mappingExpression);
+        plans.put(mappingExpression, transfer);
+        return transfer;
     }
 
     /**
@@ -67,43 +131,12 @@ public class SusiTransfer {
      * @return a choice where the elements of the given choice are extracted according to the given mapping
      */
     public JSONObject extract(JSONObject choice) {
-        if (this.selectionMapping == null) return choice;
+        if (this.selections == null) return choice;
         JSONObject json = new JSONObject(true);
-        for (Map.Entry<String, String> c: selectionMapping.entrySet()) {
-            String key = c.getKey();
-            int p = key.indexOf('.');
-            if (p > 0) {
-                // sub-element
-                String k0 = key.substring(0,  p);
-                String k1 = key.substring(p + 1);
-                if (choice.has(k0)) {
-                    if (k1.equals("length") || k1.equals("size()")) {
-                        Object a = choice.get(k0);
-                        if (a instanceof String[]) {
-                            json.put(c.getValue(),((String[]) a).length);
-                        } else if (a instanceof JSONArray) {
-                            json.put(c.getValue(),((JSONArray) a).length());
-                        }
-                    } else {
-                        JSONObject o = choice.getJSONObject(k0);
-                        if (o.has(k1)) json.put(c.getValue(), o.get(k1));
-                    }
-                }
-            } else if ((p = key.indexOf('[')) > 0) {
-                // array
-                int q = key.indexOf("]", p);
-                if (q > 0) {
-                    String k0 = key.substring(0,  p);
-                    int i = Integer.parseInt(key.substring(p + 1, q));
-                    if (choice.has(k0)) {
-                        JSONArray a = choice.getJSONArray(k0);
-                        if (i < a.length()) json.put(c.getValue(), a.get(i));
-                    }
-                }
-            } else {
-                // flat
-                if (choice.has(key)) json.put(c.getValue(), choice.get(key));
-            }
+        for (Selection selection: this.selections) {
+            if (!choice.has(selection.column)) continue;
+            Object value = selection.select(choice.get(selection.column));
+            if (value != null) json.put(selection.as, value);
         }
         return json;
     }
@@ -115,57 +148,122 @@ public class SusiTransfer {
      * @returnan array of json objects which are the extraction of given choices according to the given mapping
      */
     public JSONArray conclude(JSONArray choices) {
-        JSONArray a = new JSONArray();
-        if (this.selectionMapping != null && this.selectionMapping.size() == 1) {
-            // test if this has an aggregation key: AVG, COUNT, MAX, MIN, SUM
-            final String aggregator = this.selectionMapping.keySet().iterator().next();
-            final String aggregator_as = this.selectionMapping.get(aggregator);
-            if (aggregator.startsWith("COUNT(") && aggregator.endsWith(")")) { // TODO: there should be a special pattern for this to make it more efficient
-                return a.put(new JSONObject().put(aggregator_as, choices.length()));
-            }
-            if (aggregator.startsWith("MAX(") && aggregator.endsWith(")")) {
-                final AtomicDouble max = new AtomicDouble(Double.MIN_VALUE); String c = aggregator.substring(4, aggregator.length() - 1);
-                choices.forEach(json -> max.set(Math.max(max.get(), ((JSONObject) json).getDouble(c))));
-                return a.put(new JSONObject().put(aggregator_as, max.get()));
-            }
-            if (aggregator.startsWith("MIN(") && aggregator.endsWith(")")) {
-                final AtomicDouble min = new AtomicDouble(Double.MAX_VALUE); String c = aggregator.substring(4, aggregator.length() - 1);
-                choices.forEach(json -> min.set(Math.min(min.get(), ((JSONObject) json).getDouble(c))));
-                return a.put(new JSONObject().put(aggregator_as, min.get()));
-            }
-            if (aggregator.startsWith("SUM(") && aggregator.endsWith(")")) {
-                final AtomicDouble sum = new AtomicDouble(0.0d); String c = aggregator.substring(4, aggregator.length() - 1);
-                choices.forEach(json -> sum.addAndGet(((JSONObject) json).getDouble(c)));
-                return a.put(new JSONObject().put(aggregator_as, sum.get()));
-            }
-            if (aggregator.startsWith("AVG(") && aggregator.endsWith(")")) {
-                final AtomicDouble sum = new AtomicDouble(0.0d); String c = aggregator.substring(4, aggregator.length() - 1);
-                choices.forEach(json -> sum.addAndGet(((JSONObject) json).getDouble(c)));
-                return a.put(new JSONObject().put(aggregator_as, sum.get() / choices.length()));
+        return conclude(SusiTable.fromJSON(choices)).toJSONArray();
+    }
+
+    /**
+     * A conclusion on a table: aggregations are computed with loops over the column arrays of the table
+     * and selections copy the selected values column by column.
+     * @param choices the table of a SusiThought
+     * @return a new table with the extraction of the given choices according to the given mapping
+     */
+    public SusiTable conclude(SusiTable choices) {
+        SusiTable table = new SusiTable();
+        if (this.aggregation != null) switch (this.aggregation) {
+            case COUNT: return table.put(0, this.aggregationAs, choices.size());
+            case MAX: return table.put(0, this.aggregationAs, valid(Math.max(Double.MIN_VALUE, choices.max(this.aggregationColumn))));
+            case MIN: return table.put(0, this.aggregationAs, valid(Math.min(Double.MAX_VALUE, choices.min(this.aggregationColumn))));
+            case SUM: return table.put(0, this.aggregationAs, valid(choices.sum(this.aggregationColumn)));
+            case AVG: return table.put(0, this.aggregationAs, valid(choices.sum(this.aggregationColumn) / choices.size()));
+            case PERCENT:
+                double sum = choices.sum(this.aggregationColumn);
+                for (int row = 0; row < choices.size(); row++) {
+                    table.put(row, this.aggregationAs, valid(100.0d * choices.getDouble(row, this.aggregationColumn) / sum));
+                    Object value = choices.get(row, this.percentColumn);
+                    if (value == null) throw new JSONException("JSONObject[" + JSONObject.quote(this.percentColumn) + "] not found.");
+                    table.put(row, this.percentAs, value);
+                }
+                return table;
+        }
+        int size = choices.size();
+        boolean[] filled = new boolean[size];
+        int count = 0;
+        if (this.selections == null) {
+            // extract everything
+            table = choices.copy();
+            for (int row = 0; row < size; row++) if (!table.getRow(row).isEmpty()) {filled[row] = true; count++;}
+        } else {
+            for (int row = 0; row < size; row++) table.appendRow();
+            for (Selection selection: this.selections) {
+                for (int row = 0; row < size; row++) {
+                    Object value = choices.get(row, selection.column);
+                    if (value == null || (value = selection.select(value)) == null) continue;
+                    table.put(row, selection.as, value);
+                    if (!filled[row]) {filled[row] = true; count++;}
+                }
             }
         }
-        if (this.selectionMapping != null && this.selectionMapping.size() == 2) {
-            Iterator<String> ci = this.selectionMapping.keySet().iterator();
-            String aggregator = ci.next(); String column = ci.next();
-            if (column.indexOf('(') >= 0) {String s = aggregator; aggregator = column; column = s;}
-            final String aggregator_as = this.selectionMapping.get(aggregator);
-            final String column_as = this.selectionMapping.get(column);
-            final String column_final = column;
-            if (aggregator.startsWith("PERCENT(") && aggregator.endsWith(")")) {
-                final AtomicDouble sum = new AtomicDouble(0.0d); String c = aggregator.substring(8, aggregator.length() - 1);
-                choices.forEach(json -> sum.addAndGet(((JSONObject) json).getDouble(c)));
-                choices.forEach(json -> a.put(new JSONObject()
-                        .put(aggregator_as, 100.0d * ((JSONObject) json).getDouble(c) / sum.get())
-                        .put(column_as, ((JSONObject) json).get(column_final))));
-                return a;
+        if (count == size) return table;
+        // remove the rows where nothing was extracted
+        SusiTable compact = new SusiTable();
+        for (int row = 0; row < size; row++) if (filled[row]) compact.appendRows(table, row, row + 1);
+        return compact;
+    }
+
+    private static Double valid(double d) {
+        JSONObject.testValidity(d);
+        return d;
+    }
+
+    /**
+     * a compiled selection of the mapping expression: a flat key, a member of an object value,
+     * the length of an array value or an element of an array value
+     */
+    private static class Selection {
+
+        private final String column, as, member;
+        private final int index; // -1 if this is not an array selection
+        private final boolean length, valid;
+
+        private Selection(String key, String as) {
+            this.as = as;
+            int p = key.indexOf('.');
+            if (p > 0) {
+                // sub-element
+                this.column = key.substring(0,  p);
+                this.member = key.substring(p + 1);
+                this.length = this.member.equals("length") || this.member.equals("size()");
+                this.index = -1;
+                this.valid = true;
+            } else if ((p = key.indexOf('[')) > 0) {
+                // array
+                int q = key.indexOf("]", p);
+                this.column = key.substring(0,  p);
+                this.member = null;
+                this.length = false;
+                this.valid = q > 0;
+                this.index = q > 0 ? Integer.parseInt(key.substring(p + 1, q)) : -1;
+            } else {
+                // flat
+                this.column = key;
+                this.member = null;
+                this.length = false;
+                this.index = -1;
+                this.valid = true;
             }
         }
-        // this.selectionMapping == null -> extract everything
-        for (Object json: choices) {
-            JSONObject extraction = this.extract((JSONObject) json);
-            if (extraction.length() > 0) a.put(extraction);
+
+        /**
+         * apply the selection to the value of the column
+         * @return the selected value or null if nothing is selected
+         */
+        private Object select(Object value) {
+            if (!this.valid) return null;
+            if (this.index >= 0) {
+                if (!(value instanceof JSONArray)) throw new JSONException("JSONObject[" + JSONObject.quote(this.column) + "] is not a JSONArray.");
+                JSONArray a = (JSONArray) value;
+                return this.index < a.length() ? a.get(this.index) : null;
+            }
+            if (this.member == null) return value;
+            if (this.length) {
+                if (value instanceof String[]) return ((String[]) value).length;
+                if (value instanceof JSONArray) return ((JSONArray) value).length();
+                return null;
+            }
+            if (!(value instanceof JSONObject)) throw new JSONException("JSONObject[" + JSONObject.quote(this.column) + "] is not a JSONObject.");
+            JSONObject o = (JSONObject) value;
+            return o.has(this.member) ? o.get(this.member) : null;
         }
-        return a;
     }
     
     private static LinkedHashMap<String, String> parse(String mapping) {
@@ -19,13 +19,34 @@
 
 package ai.susi.server;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
@@ -33,11 +54,14 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.http.client.methods.HttpGet;
 import org.eclipse.jetty.util.log.Log;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import ai.susi.DAO;
 import ai.susi.json.JsonObjectWithDefault;
+import ai.susi.tools.Metrics;
 import ai.susi.tools.UTF8;
 
 @SuppressWarnings("serial")
@@ -73,25 +97,105 @@ public abstract class AbstractAPIHandler extends HttpServlet implements APIHandl
         if (this.serverProtocolHostStub == null) return new JSONObject[]{serviceImpl(call, null, rights, rights.getPermissions(this))};
         
         // make call(s) to a remote api(s)
-        JSONObject[] results = new JSONObject[this.serverProtocolHostStub.length];
-        for (int rc = 0; rc < results.length; rc++) {
+        StringBuilder urlquery = new StringBuilder();
+        for (String key: call.getKeys()) {
+            urlquery.append(urlquery.length() == 0 ? '?' : '&').append(key).append('=').append(call.get(key, ""));
+        }
+        String[] urls = new String[this.serverProtocolHostStub.length];
+        for (int rc = 0; rc < urls.length; rc++) urls[rc] = this.serverProtocolHostStub[rc] + this.getAPIPath() + urlquery.toString();
+        return requestPeers(urls, getPeerTimeout(), isFirstPeerResultSufficient());
+    }
+
+    /**
+     * the time in milliseconds which a request to remote peers may take.
+     * Peers which do not answer within this time are not considered in the result.
+     * @return the peer timeout, by default the value of the peers.timeout configuration
+     */
+    public long getPeerTimeout() {
+        return DAO.getConfig("peers.timeout", 10000L);
+    }
+
+    /**
+     * Handlers which call remote peers get the results of all peers by default, to be merged by the caller.
+     * If any of the peer results is sufficient, the handler should return true here: then the first
+     * successful result is returned and the requests to the other peers are cancelled.
+     * @return true if the first successful peer result is sufficient
+     */
+    public boolean isFirstPeerResultSufficient() {
+        return false;
+    }
+
+    // the peer requests run in a bounded pool; requests which are outstanding at their deadline are aborted,
+    // so a late peer does not hold a thread after the deadline
+    final static ThreadPoolExecutor peerExecutor = new ThreadPoolExecutor(
+            32, 32, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(1000));
+    static {
+        peerExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Request json objects from remote peers. All peers are requested concurrently, so a slow peer does not
+     * delay the answers of the other peers; the requests end at a common deadline.
+     * Requests which are outstanding at the deadline or after the first result (if only one result is wanted)
+     * are aborted and their result is missing.
+     * @param urls the request urls for each peer
+     * @param timeout the time in milliseconds after which the results are returned
+     * @param firstResult if true, the request ends with the first successful result
+     * @return the results in the same order as the urls; failed or aborted requests have a null result
+     */
+    public static JSONObject[] requestPeers(final String[] urls, final long timeout, final boolean firstResult) {
+        final long deadline = System.currentTimeMillis() + timeout;
+        JSONObject[] results = new JSONObject[urls.length];
+        CompletionService<JSONObject> completion = new ExecutorCompletionService<>(peerExecutor);
+        List<Future<JSONObject>> requests = new ArrayList<>(urls.length);
+        List<HttpGet> gets = new ArrayList<>(urls.length);
+        int pending = 0;
+        for (final String urlstring: urls) {
+            final HttpGet get = new HttpGet(urlstring);
+            gets.add(get);
             try {
-                StringBuilder urlquery = new StringBuilder();
-                for (String key: call.getKeys()) {
-                    urlquery.append(urlquery.length() == 0 ? '?' : '&').append(key).append('=').append(call.get(key, ""));
+                requests.add(completion.submit(new Callable<JSONObject>() {
+                    @Override
+                    public JSONObject call() throws Exception {
+                        // the socket timeout limits each read; the whole request is aborted at the deadline
+                        int remaining = (int) Math.max(1, deadline - System.currentTimeMillis());
+                        byte[] jsonb = ClientConnection.download(get, true, remaining);
+                        if (jsonb == null || jsonb.length == 0) throw new IOException("empty content from " + urlstring);
+                        return new JSONObject(UTF8.String(jsonb));
+                    }
+                }));
+                pending++;
+            } catch (RejectedExecutionException e) {
+                Log.getLog().warn("peer request to " + urlstring + " rejected, too many outstanding peer requests");
+                requests.add(null);
+            }
+        }
+        try {
+            for (; pending > 0; pending--) {
+                long wait = deadline - System.currentTimeMillis();
+                Future<JSONObject> request = wait > 0 ? completion.poll(wait, TimeUnit.MILLISECONDS) : null;
+                if (request == null) {
+                    Log.getLog().warn("peer request timeout, " + pending + " of " + urls.length + " peers did not answer within " + timeout + " milliseconds");
+                    break;
+                }
+                try {
+                    JSONObject json = request.get();
+                    if (json.length() == 0) continue;
+                    results[requests.indexOf(request)] = json;
+                    if (firstResult) break;
+                } catch (ExecutionException e) {
+                    Log.getLog().warn(e.getCause());
                 }
-                String urlstring = this.serverProtocolHostStub[rc] + this.getAPIPath() + urlquery.toString();
-                byte[] jsonb = ClientConnection.download(urlstring);
-                if (jsonb == null || jsonb.length == 0) throw new IOException("empty content from " + urlstring);
-                String jsons = UTF8.String(jsonb);
-                JSONObject json = new JSONObject(jsons);
-                if (json == null || json.length() == 0) {
-                    results[rc] = null;
-                    continue;
-                };
-                results[rc] = json;
-            } catch (Throwable e) {
-            	Log.getLog().warn(e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // interrupting the thread does not stop a blocking socket read, therefore the request itself is aborted
+            for (int i = 0; i < requests.size(); i++) {
+                Future<JSONObject> request = requests.get(i);
+                if (request == null || request.isDone()) continue;
+                gets.get(i).abort();
+                request.cancel(true);
             }
         }
         return results;
@@ -99,25 +203,70 @@ public abstract class AbstractAPIHandler extends HttpServlet implements APIHandl
     
     public abstract JSONObject serviceImpl(Query call, HttpServletResponse response, Authorization rights,  final JsonObjectWithDefault permissions) throws APIException;
 
+    /**
+     * Handlers which may block for a long time should not hold a thread of the server pool.
+     * Such handlers can return an executor here; then the request is processed asynchronously by that executor.
+     * @return the executor for the request processing or null if the request is processed in the server thread (the default)
+     */
+    public AsyncExecutor getAsyncExecutor() {
+        return null;
+    }
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         Query post = RemoteAccess.evaluate(request);
-        process(request, response, post);
+        execute(request, response, post);
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         Query query = RemoteAccess.evaluate(request);
         query.initPOST(RemoteAccess.getPostMap(request));
-        process(request, response, query);
+        execute(request, response, query);
     }
     
+    private void execute(HttpServletRequest request, HttpServletResponse response, final Query query) throws ServletException, IOException {
+        AsyncExecutor executor = getAsyncExecutor();
+        if (executor == null || query.isDoS_blackout()) {
+            process(request, response, query);
+        } else {
+            executor.execute(request, response, (rq, rs) -> process(rq, rs, query));
+        }
+    }
+    
+    private final static Metrics.Family<Metrics.Counter> requestsTotal = Metrics.counter("susi_api_requests_total", "Number of api requests", "api");
+    private final static Metrics.Family<Metrics.Counter> errorsTotal = Metrics.counter("susi_api_errors_total", "Number of api requests which failed or were answered with an error status", "api");
+    private final static Metrics.Family<Metrics.Histogram> requestDuration = Metrics.histogram("susi_api_request_duration_seconds", "Processing time of api requests", "api");
+    private volatile Metrics.Counter requests = null; // assigned last, after the other meters
+    private Metrics.Counter errors = null;
+    private Metrics.Histogram duration = null;
+
     private void process(HttpServletRequest request, HttpServletResponse response, Query query) throws ServletException, IOException {
+        if (this.requests == null) {
+            // the meters are assigned lazily because the api path may depend on the construction of the subclass
+            String api = this.getAPIPath();
+            this.errors = errorsTotal.labels(api);
+            this.duration = requestDuration.labels(api);
+            this.requests = requestsTotal.labels(api);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            processRequest(request, response, query);
+            failed = response.getStatus() >= 400;
+        } finally {
+            this.duration.observeNanos(System.nanoTime() - start);
+            this.requests.inc();
+            if (failed) this.errors.inc();
+        }
+    }
+
+    private void processRequest(HttpServletRequest request, HttpServletResponse response, Query query) throws ServletException, IOException {
         
         // basic protection
         BaseUserRole minimalBaseUserRole = getMinimalBaseUserRole() != null ? getMinimalBaseUserRole() : BaseUserRole.ANONYMOUS;
 
-        if (query.isDoS_blackout()) {response.sendError(503, "your request frequency is too high"); return;} // DoS protection
+        if (query.isDoS_blackout()) {query.sendDoSError(response); return;} // DoS protection
         if (DAO.getConfig("users.admin.localonly", true) && minimalBaseUserRole == BaseUserRole.ADMIN && !query.isLocalhostAccess()) {response.sendError(503, "access only allowed from localhost, your request comes from " + query.getClientHost()); return;} // danger! do not remove this!
         
         // user identification
@@ -134,10 +283,6 @@ public abstract class AbstractAPIHandler extends HttpServlet implements APIHandl
         // user accounting: we maintain static and persistent user data; we again search the accounts using the usder identity string
         //JSONObject accounting_persistent_obj = DAO.accounting_persistent.has(user_id) ? DAO.accounting_persistent.getJSONObject(anon_id) : DAO.accounting_persistent.put(user_id, new JSONObject()).getJSONObject(user_id);
         Accounting accounting_temporary = DAO.accounting_temporary.get(identity.toString());
-        if (accounting_temporary == null) {
-            accounting_temporary = new Accounting();
-            DAO.accounting_temporary.put(identity.toString(), accounting_temporary);
-        }
         
         // the accounting data is assigned to the authorization
         authorization.setAccounting(accounting_temporary);
@@ -148,6 +293,13 @@ public abstract class AbstractAPIHandler extends HttpServlet implements APIHandl
         boolean minified = query.get("minified", false);
         
         try {
+            // cacheable results are served from the response cache
+            String validator = getCacheValidator(query);
+            if (validator != null) {
+                processCached(request, response, query, authorization, identity, validator, jsonp ? callback : null, minified);
+                return;
+            }
+
             JSONObject json = serviceImpl(query, response, authorization, authorization.getPermissions(this));
             if  (json == null) {
                 response.sendError(400, "your request does not contain the required data");
@@ -169,11 +321,7 @@ public abstract class AbstractAPIHandler extends HttpServlet implements APIHandl
             // write json
             query.setResponse(response, "application/javascript");
             response.setCharacterEncoding("UTF-8");
-            PrintWriter sos = response.getWriter();
-            if (jsonp) sos.print(callback + "(");
-            sos.print(json.toString(minified ? 0 : 2));
-            if (jsonp) sos.println(");");
-            sos.println();
+            writeJSON(response.getOutputStream(), json, jsonp ? callback : null, minified);
             query.finalize();
         } catch (APIException e) {
             response.sendError(e.getStatusCode(), e.getMessage());
@@ -181,6 +329,113 @@ public abstract class AbstractAPIHandler extends HttpServlet implements APIHandl
         }
     }
     
+    /**
+     * Handlers with results which do not change for every call may declare a validator for the current
+     * state of their result. If a validator is given, the serialized result is cached and delivered
+     * with a strong ETag; a request with a matching If-None-Match header is answered with 304.
+     * Only handlers whose result does not depend on the user identity or permissions may declare a validator:
+     * the cached result is shared among all users, only the session information is added per user.
+     * @param call the query
+     * @return a string which changes whenever the result changes, i.e. a version number or a modification time;
+     *         null if the result shall not be cached (the default)
+     */
+    public String getCacheValidator(Query call) {
+        return null;
+    }
+
+    private final static ResponseCache responseCache = new ResponseCache(64L * 1024L * 1024L);
+
+    // attributes which do not change a cacheable result: the jsonp callback and the credentials of the session;
+    // credentials must not be kept as cache keys and must not split the cache into one copy per user
+    private final static Set<String> NON_CACHE_KEY_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "callback", "access_token", "login", "password", "sessionID"));
+
+    static boolean isCacheKeyAttribute(String key) {
+        return !NON_CACHE_KEY_ATTRIBUTES.contains(key);
+    }
+
+    private void processCached(HttpServletRequest request, HttpServletResponse response, Query query, Authorization authorization, ClientIdentity identity, String validator, String callback, boolean minified) throws IOException, APIException {
+        // the cache key is made of the api path, the query attributes, the result format and the validator
+        StringBuilder key = new StringBuilder(this.getAPIPath());
+        for (String k: new TreeSet<String>(query.getKeys())) {
+            if (!isCacheKeyAttribute(k)) continue;
+            key.append('|').append(k).append('=').append(query.get(k, ""));
+        }
+        key.append('|').append(minified).append('|').append(validator);
+        ResponseCache.Entry entry = responseCache.get(key.toString());
+        if (entry == null) {
+            JSONObject json = serviceImpl(query, response, authorization, authorization.getPermissions(this));
+            if (json == null) {
+                response.sendError(400, "your request does not contain the required data");
+                return;
+            }
+            int expires = -1;
+            if (json.has("$EXPIRES")) {
+                expires = json.getInt("$EXPIRES");
+                json.remove("$EXPIRES");
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(baos, StandardCharsets.UTF_8);
+            json.write(writer, minified ? 0 : 2, 0);
+            writer.close();
+            entry = responseCache.put(key.toString(), baos.toByteArray(), expires);
+        }
+
+        // the session is added to the cached result; it is written at the same indentation as the other attributes
+        JSONObject session = new JSONObject(true);
+        session.put("identity", identity.toJSON());
+        String sessions = minified ? session.toString() : session.write(new StringWriter(), 2, 2).toString();
+        String etag = entry.etag(sessions, callback);
+
+        if (entry.expires >= 0) FileHandler.setCaching(response, entry.expires);
+        response.setHeader("ETag", etag);
+        if (ResponseCache.isNotModified(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            query.finalize();
+            return;
+        }
+
+        // write json: the closing bracket of the cached result is replaced by the session attribute
+        query.setResponse(response, "application/javascript");
+        response.setCharacterEncoding("UTF-8");
+        OutputStream os = response.getOutputStream();
+        if (callback != null) os.write(UTF8.getBytes(callback + "("));
+        int end = entry.body.length - 1; // position of the closing bracket
+        boolean empty = end == 1;
+        if (!minified && !empty && entry.body[end - 1] == '\n') end--;
+        os.write(entry.body, 0, end);
+        os.write(UTF8.getBytes((empty ? "" : ",") + (minified ? "" : "\n  ") + "\"session\":" + (minified ? "" : " ") + sessions + (minified ? "" : "\n") + "}"));
+        if (callback != null) os.write(UTF8.getBytes(");\n"));
+        os.write('\n');
+        os.flush();
+        query.finalize();
+    }
+
+    /**
+     * Write a json object to an output stream. The json is serialized incrementally into the stream,
+     * so large results are not materialized as one string before they are written.
+     * If the output stream is the servlet output stream, compression is done by the GzipHandler.
+     * @param os the output stream; this is flushed but not closed
+     * @param json the result object
+     * @param callback the JSONP callback function name or null if no JSONP is requested
+     * @param minified if true, the json is written without whitespace
+     * @throws IOException
+     */
+    public static void writeJSON(OutputStream os, JSONObject json, String callback, boolean minified) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 8192);
+        if (callback != null) writer.write(callback + "(");
+        try {
+            json.write(writer, minified ? 0 : 2, 0);
+        } catch (JSONException e) {
+            // the writer throws IOExceptions wrapped into a JSONException
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw e;
+        }
+        if (callback != null) writer.write(");\n");
+        writer.write('\n');
+        writer.flush();
+    }
+
     /**
      * Checks a request for valid login data, either a existing session, a cookie or an access token
      * @return user identity if some login is active, anonymous identity otherwise
@@ -0,0 +1,554 @@
+/**
+ *  AccessIndex
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.jetty.util.log.Log;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import ai.susi.DAO;
+
+/**
+ * A time-partitioned index of the access log: for each minute the number of requests and a histogram of the
+ * runtime per servlet and the number of requests per host. The index of each complete day is stored in a rollup
+ * file next to the access log files, so the index can be loaded without reading the access log again.
+ * Only the access log of the current day is read when the index is loaded.
+ */
+public class AccessIndex {
+
+    public final static long MINUTE = 60000L;
+    public final static long RETENTION = 8L * 24L * 60L * MINUTE; // the time span of the index
+    public final static int BUCKETS = 72; // histogram buckets of the runtime: bucket b > 0 holds runtimes up to 2^(b/4) milliseconds
+
+    private final static int MAGIC = 0x53414931; // "SAI1"
+    private final static String SUFFIX = ".idx";
+
+    private final File dir;
+    private final String prefix;
+    private final ConcurrentSkipListMap<Long, Minute> minutes; // a mapping from the minute number (time / MINUTE) to the statistics
+    private final Map<String, Integer> hostIds; // the host dictionary
+    private final List<String> hostNames;
+    private final ReadWriteLock hostLock; // the write lock is held when the host ids are renumbered
+
+    /**
+     * The statistics of one servlet in one minute
+     */
+    public static class Stat {
+        public int count, finished, dos;
+        public final int[] histogram = new int[BUCKETS];
+        private void add(Stat s) {
+            this.count += s.count;
+            this.finished += s.finished;
+            this.dos += s.dos;
+            for (int i = 0; i < BUCKETS; i++) this.histogram[i] += s.histogram[i];
+        }
+    }
+
+    /**
+     * The statistics of one minute
+     */
+    public static class Minute {
+        private final Map<String, Stat> servlets = new HashMap<>(8);
+        private int[] hostKeys = new int[16], hostCounts = new int[16]; // an open-addressing map from host id + 1 to the count
+        private int hostSize = 0;
+
+        private void addHost(int id, int count) {
+            if (this.hostSize * 2 >= this.hostKeys.length) {
+                int[] keys = this.hostKeys, counts = this.hostCounts;
+                this.hostKeys = new int[keys.length * 2];
+                this.hostCounts = new int[keys.length * 2];
+                this.hostSize = 0;
+                for (int i = 0; i < keys.length; i++) if (keys[i] != 0) addHost(keys[i] - 1, counts[i]);
+            }
+            int mask = this.hostKeys.length - 1;
+            for (int p = (id * 0x9E3779B9) >>> 1 & mask;; p = (p + 1) & mask) {
+                if (this.hostKeys[p] == id + 1) {
+                    this.hostCounts[p] += count;
+                    return;
+                }
+                if (this.hostKeys[p] == 0) {
+                    this.hostKeys[p] = id + 1;
+                    this.hostCounts[p] = count;
+                    this.hostSize++;
+                    return;
+                }
+            }
+        }
+
+        private void remapHosts(int[] map) {
+            int[] keys = this.hostKeys, counts = this.hostCounts;
+            this.hostKeys = new int[keys.length];
+            this.hostCounts = new int[keys.length];
+            this.hostSize = 0;
+            for (int i = 0; i < keys.length; i++) if (keys[i] != 0) addHost(map[keys[i] - 1], counts[i]);
+        }
+
+        private int getHost(int id) {
+            int mask = this.hostKeys.length - 1;
+            for (int p = (id * 0x9E3779B9) >>> 1 & mask;; p = (p + 1) & mask) {
+                if (this.hostKeys[p] == id + 1) return this.hostCounts[p];
+                if (this.hostKeys[p] == 0) return 0;
+            }
+        }
+
+        private Stat stat(String servlet) {
+            Stat s = this.servlets.get(servlet);
+            if (s == null) {
+                s = new Stat();
+                this.servlets.put(servlet, s);
+            }
+            return s;
+        }
+    }
+
+    /**
+     * load the index of the access log files in a directory. Rollup files are written for complete days which do not have one.
+     * @param dir the directory of the access log
+     * @param prefix the prefix of the access log files
+     * @param now the current time
+     */
+    public AccessIndex(File dir, String prefix, long now) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.minutes = new ConcurrentSkipListMap<>();
+        this.hostIds = new HashMap<>();
+        this.hostNames = new ArrayList<>();
+        this.hostLock = new ReentrantReadWriteLock();
+        String today = AccessLog.day(now), first = AccessLog.day(now - RETENTION);
+        for (String day: getDays()) {
+            if (day.compareTo(first) < 0) continue;
+            try {
+                File rollup = rollupFile(day);
+                if (isComplete(day, today) && !isCurrent(day, rollup)) writeRollup(day);
+                if (rollup.exists()) readRollup(rollup); else {
+                    for (File f: getFiles(day)) AccessLog.read(f, e -> add(e.start, e.servlet, e.host, e.busy, e.flags));
+                }
+            } catch (IOException e) {
+                Log.getLog().warn(e);
+            }
+        }
+    }
+
+    private static boolean isComplete(String day, String today) {
+        return day.compareTo(today) < 0;
+    }
+
+    private File rollupFile(String day) {
+        return new File(this.dir, this.prefix + day + SUFFIX);
+    }
+
+    private SortedSet<File> getFiles(String day) {
+        return AccessLog.getFiles(this.dir, this.prefix + day + "_");
+    }
+
+    private SortedSet<String> getDays() {
+        TreeSet<String> days = new TreeSet<>();
+        for (File f: AccessLog.getFiles(this.dir, this.prefix)) days.add(f.getName().substring(this.prefix.length(), this.prefix.length() + 8));
+        return days;
+    }
+
+    private boolean isCurrent(String day, File rollup) {
+        if (!rollup.exists()) return false;
+        for (File f: getFiles(day)) if (f.lastModified() > rollup.lastModified()) return false;
+        return true;
+    }
+
+    private int hostId(String host) {
+        synchronized (this.hostIds) {
+            Integer id = this.hostIds.get(host);
+            if (id == null) {
+                id = this.hostNames.size();
+                this.hostIds.put(host, id);
+                this.hostNames.add(host);
+            }
+            return id;
+        }
+    }
+
+    private String hostName(int id) {
+        synchronized (this.hostIds) {
+            return this.hostNames.get(id);
+        }
+    }
+
+    private Minute minute(long m) {
+        Minute minute = this.minutes.get(m);
+        if (minute == null) {
+            minute = new Minute();
+            Minute old = this.minutes.putIfAbsent(m, minute);
+            if (old != null) minute = old;
+        }
+        return minute;
+    }
+
+    public static int bucket(int runtime) {
+        if (runtime <= 0) return 0;
+        return Math.min(BUCKETS - 1, 1 + (int) (4.0d * Math.log(runtime) / Math.log(2.0d)));
+    }
+
+    /**
+     * the upper limit of the runtime of a histogram bucket in milliseconds
+     */
+    public static long bucketLimit(int bucket) {
+        return bucket == 0 ? 0 : (long) Math.ceil(Math.pow(2.0d, bucket / 4.0d));
+    }
+
+    /**
+     * add an access to the index
+     * @param start the access time
+     * @param servlet the servlet path
+     * @param host the client host
+     * @param busy the runtime or -1 if the request did not finish
+     * @param flags the flags of the access log
+     */
+    public void add(long start, String servlet, String host, int busy, int flags) {
+        Minute minute = minute(start / MINUTE);
+        this.hostLock.readLock().lock();
+        try {
+            int id = hostId(host);
+            synchronized (minute) {
+                Stat s = minute.stat(servlet);
+                s.count++;
+                if ((flags & AccessLog.FLAG_FINISHED) != 0) {
+                    s.finished++;
+                    s.histogram[bucket(busy)]++;
+                }
+                if ((flags & (AccessLog.FLAG_DOS_BLACKOUT | AccessLog.FLAG_DOS_REDUCTION)) != 0) s.dos++;
+                minute.addHost(id, 1);
+            }
+        } finally {
+            this.hostLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * remove all minutes which are older than the retention time. The host dictionary is rebuilt with the
+     * hosts of the remaining minutes.
+     * @param now the current time
+     */
+    public void evict(long now) {
+        ConcurrentNavigableMap<Long, Minute> evicted = this.minutes.headMap((now - RETENTION) / MINUTE);
+        if (evicted.isEmpty()) return;
+        evicted.clear();
+        this.hostLock.writeLock().lock();
+        try {
+            // renumber the hosts which are still used
+            int[] map = new int[this.hostNames.size()];
+            Arrays.fill(map, -1);
+            List<String> names = new ArrayList<>();
+            for (Minute minute: this.minutes.values()) {
+                synchronized (minute) {
+                    for (int key: minute.hostKeys) if (key != 0 && map[key - 1] < 0) {
+                        map[key - 1] = names.size();
+                        names.add(this.hostNames.get(key - 1));
+                    }
+                    minute.remapHosts(map);
+                }
+            }
+            synchronized (this.hostIds) {
+                this.hostIds.clear();
+                this.hostNames.clear();
+                for (String name: names) {
+                    this.hostIds.put(name, this.hostNames.size());
+                    this.hostNames.add(name);
+                }
+            }
+        } finally {
+            this.hostLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * the number of hosts in the host dictionary
+     */
+    public int hostCount() {
+        synchronized (this.hostIds) {
+            return this.hostNames.size();
+        }
+    }
+
+    /**
+     * write the rollup file of a day; this is done when the access log of that day is complete
+     * @param day the day in the format yyyyMMdd
+     * @throws IOException
+     */
+    public void writeRollup(String day) throws IOException {
+        // the rollup contains all records in the files of the day
+        final TreeMap<Long, Minute> rollup = new TreeMap<>();
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+        for (File f: getFiles(day)) AccessLog.read(f, e -> {
+            Minute minute = rollup.get(e.start / MINUTE);
+            if (minute == null) {
+                minute = new Minute();
+                rollup.put(e.start / MINUTE, minute);
+            }
+            Stat s = minute.stat(e.servlet);
+            s.count++;
+            if (e.is(AccessLog.FLAG_FINISHED)) {
+                s.finished++;
+                s.histogram[bucket(e.busy)]++;
+            }
+            if (e.is(AccessLog.FLAG_DOS_BLACKOUT) || e.is(AccessLog.FLAG_DOS_REDUCTION)) s.dos++;
+            Integer id = ids.get(e.host);
+            if (id == null) {
+                id = names.size();
+                ids.put(e.host, id);
+                names.add(e.host);
+            }
+            minute.addHost(id, 1);
+        });
+        File f = rollupFile(day);
+        File tmp = new File(this.dir, f.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(names.size());
+            for (String name: names) out.writeUTF(name);
+            out.writeInt(rollup.size());
+            for (Map.Entry<Long, Minute> entry: rollup.entrySet()) {
+                Minute minute = entry.getValue();
+                out.writeLong(entry.getKey());
+                out.writeInt(minute.servlets.size());
+                for (Map.Entry<String, Stat> s: minute.servlets.entrySet()) {
+                    out.writeUTF(s.getKey());
+                    Stat stat = s.getValue();
+                    out.writeInt(stat.count);
+                    out.writeInt(stat.finished);
+                    out.writeInt(stat.dos);
+                    int nonzero = 0;
+                    for (int c: stat.histogram) if (c != 0) nonzero++;
+                    out.writeByte(nonzero);
+                    for (int i = 0; i < BUCKETS; i++) if (stat.histogram[i] != 0) {
+                        out.writeByte(i);
+                        out.writeInt(stat.histogram[i]);
+                    }
+                }
+                out.writeInt(minute.hostSize);
+                for (int i = 0; i < minute.hostKeys.length; i++) if (minute.hostKeys[i] != 0) {
+                    out.writeInt(minute.hostKeys[i] - 1);
+                    out.writeInt(minute.hostCounts[i]);
+                }
+            }
+        }
+        if (f.exists()) f.delete();
+        if (!tmp.renameTo(f)) throw new IOException("cannot rename " + tmp + " to " + f);
+        DAO.log("wrote access index " + f);
+    }
+
+    private void readRollup(File f) throws IOException {
+        this.hostLock.readLock().lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("not an access index: " + f);
+            int[] ids = new int[in.readInt()];
+            for (int i = 0; i < ids.length; i++) ids[i] = hostId(in.readUTF());
+            for (int m = in.readInt(); m > 0; m--) {
+                Minute minute = minute(in.readLong());
+                synchronized (minute) {
+                    for (int s = in.readInt(); s > 0; s--) {
+                        Stat stat = minute.stat(in.readUTF());
+                        Stat r = new Stat();
+                        r.count = in.readInt();
+                        r.finished = in.readInt();
+                        r.dos = in.readInt();
+                        for (int n = in.readByte() & 0xff; n > 0; n--) {
+                            int b = in.readByte();
+                            r.histogram[b] = in.readInt();
+                        }
+                        stat.add(r);
+                    }
+                    for (int h = in.readInt(); h > 0; h--) {
+                        int id = ids[in.readInt()];
+                        minute.addHost(id, in.readInt());
+                    }
+                }
+            }
+        } finally {
+            this.hostLock.readLock().unlock();
+        }
+    }
+
+    private ConcurrentNavigableMap<Long, Minute> range(long from, long to) {
+        return this.minutes.subMap(from / MINUTE, true, to / MINUTE, true);
+    }
+
+    /**
+     * the number of requests per minute
+     * @param from the start of the time range
+     * @param to the end of the time range
+     * @param servlet the servlet path or null for all servlets
+     * @return for each minute with requests the time and the count per servlet
+     */
+    public JSONArray requestsPerMinute(long from, long to, String servlet) {
+        JSONArray a = new JSONArray();
+        for (Map.Entry<Long, Minute> entry: range(from, to).entrySet()) {
+            JSONObject counts = new JSONObject(true);
+            Minute minute = entry.getValue();
+            synchronized (minute) {
+                for (Map.Entry<String, Stat> s: minute.servlets.entrySet()) {
+                    if (servlet == null || servlet.equals(s.getKey())) counts.put(s.getKey(), s.getValue().count);
+                }
+            }
+            if (counts.length() > 0) a.put(new JSONObject(true).put("time", entry.getKey() * MINUTE).put("requests", counts));
+        }
+        return a;
+    }
+
+    /**
+     * the hosts with the most requests
+     * @param from the start of the time range
+     * @param to the end of the time range
+     * @param count the maximum number of hosts
+     * @return host and request count, ordered by the count
+     */
+    public JSONArray topHosts(long from, long to, int count) {
+        JSONArray a = new JSONArray();
+        if (count <= 0) return a;
+        this.hostLock.readLock().lock();
+        try {
+            topHosts(from, to, count, a);
+        } finally {
+            this.hostLock.readLock().unlock();
+        }
+        return a;
+    }
+
+    private void topHosts(long from, long to, int count, JSONArray a) {
+        int[] counts;
+        synchronized (this.hostIds) {
+            counts = new int[this.hostNames.size()];
+        }
+        for (Minute minute: range(from, to).values()) {
+            synchronized (minute) {
+                for (int i = 0; i < minute.hostKeys.length; i++) {
+                    int id = minute.hostKeys[i] - 1;
+                    if (id >= counts.length) counts = Arrays.copyOf(counts, id + 1);
+                    if (id >= 0) counts[id] += minute.hostCounts[i];
+                }
+            }
+        }
+        // select the top hosts with a sorted set of (count, id) pairs
+        TreeSet<Long> top = new TreeSet<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] == 0) continue;
+            if (top.size() < count) top.add(((long) counts[id] << 32) | id);
+            else if (counts[id] > (int) (top.first() >>> 32)) {
+                top.pollFirst();
+                top.add(((long) counts[id] << 32) | id);
+            }
+        }
+        for (Long t: top.descendingSet()) a.put(new JSONObject(true).put("host", hostName((int) (t & 0xffffffffL))).put("requests", (int) (t >>> 32)));
+    }
+
+    /**
+     * the number of requests of one host per minute
+     * @param host the client host
+     * @param from the start of the time range
+     * @param to the end of the time range
+     * @return for each minute with requests of the host the time and the count
+     */
+    public JSONArray hostPerMinute(String host, long from, long to) {
+        JSONArray a = new JSONArray();
+        this.hostLock.readLock().lock();
+        try {
+            Integer id;
+            synchronized (this.hostIds) {
+                id = this.hostIds.get(host);
+            }
+            if (id == null) return a;
+            for (Map.Entry<Long, Minute> entry: range(from, to).entrySet()) {
+                int c;
+                synchronized (entry.getValue()) {
+                    c = entry.getValue().getHost(id);
+                }
+                if (c > 0) a.put(new JSONObject(true).put("time", entry.getKey() * MINUTE).put("requests", c));
+            }
+        } finally {
+            this.hostLock.readLock().unlock();
+        }
+        return a;
+    }
+
+    /**
+     * the percentiles of the runtime of finished requests. The percentiles are upper limits of the histogram buckets
+     * and have a precision of about 19%.
+     * @param from the start of the time range
+     * @param to the end of the time range
+     * @param servlet the servlet path or null for all servlets
+     * @param percentiles the percentiles, i.e. 50, 90, 99
+     * @return the number of requests and the runtime in milliseconds for each percentile
+     */
+    public JSONObject latency(long from, long to, String servlet, double[] percentiles) {
+        Stat total = new Stat();
+        for (Minute minute: range(from, to).values()) {
+            synchronized (minute) {
+                for (Map.Entry<String, Stat> s: minute.servlets.entrySet()) {
+                    if (servlet == null || servlet.equals(s.getKey())) total.add(s.getValue());
+                }
+            }
+        }
+        JSONObject json = new JSONObject(true);
+        json.put("requests", total.count);
+        json.put("finished", total.finished);
+        json.put("dos", total.dos);
+        JSONObject p = new JSONObject(true);
+        for (double percentile: percentiles) {
+            long limit = (long) Math.ceil(total.finished * percentile / 100.0d);
+            long sum = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                sum += total.histogram[b];
+                if (sum >= limit && sum > 0) {
+                    p.put(percentile == Math.rint(percentile) ? Integer.toString((int) percentile) : Double.toString(percentile), bucketLimit(b));
+                    break;
+                }
+            }
+        }
+        json.put("percentiles", p);
+        return json;
+    }
+
+    /**
+     * the number of minutes in the index
+     */
+    public int size() {
+        return this.minutes.size();
+    }
+
+}
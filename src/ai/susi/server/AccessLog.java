@@ -0,0 +1,259 @@
+/**
+ *  AccessLog
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Locale;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * The access log is a sequence of files with binary access records of a fixed schema. The files are written
+ * in batches and rotated each day and when they reach a maximum size. The file names contain the day and a
+ * sequence number: prefix + yyyyMMdd + "_" + nnn + ".bin". The sequence number has at least three digits; it is
+ * ordered numerically, so it may grow beyond 999.
+ */
+public class AccessLog {
+
+    private final static int MAGIC = 0x53414C31; // "SAL1"
+    private final static int MAX_STRING = 16383; // modified UTF-8 has at most 3 bytes per char and writeUTF is limited to 65535 bytes
+    private final static String SUFFIX = ".bin";
+
+    public final static int FLAG_LOCAL         = 1;  // the access came from localhost
+    public final static int FLAG_DOS_BLACKOUT  = 2;  // the access was blocked
+    public final static int FLAG_DOS_REDUCTION = 4;  // the access was answered with a reduced service
+    public final static int FLAG_FINISHED      = 8;  // the request was finished; busy contains the runtime
+    public final static int FLAG_CLOSED        = 16; // the record was written when the server was closed
+    public final static int FLAG_TIMEOUT       = 32; // the record was written because the request did not finish in time
+
+    private final static SimpleDateFormat dayFormat = new SimpleDateFormat("yyyyMMdd", Locale.US);
+    static {
+        dayFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    /**
+     * An access record
+     */
+    public static class Entry {
+        public long start;     // the access time in milliseconds since epoch
+        public int busy;       // the runtime of the request in milliseconds, -1 if not finished
+        public int idle;       // the time since the last access of the client in milliseconds
+        public int flags;      // a combination of the FLAG_ constants
+        public String host;    // the client host
+        public String servlet; // the servlet path
+        public String query;   // the query as json object or an empty string
+        public String events;  // the events as json object or an empty string
+
+        public boolean is(int flag) {
+            return (this.flags & flag) != 0;
+        }
+    }
+
+    private final File dir;
+    private final String prefix;
+    private final long maxFileSize;
+    private DataOutputStream out;
+    private File current;
+    private String day;
+    private long size;
+
+    /**
+     * create an access log
+     * @param dir the directory of the log files
+     * @param prefix the prefix of the file names
+     * @param maxFileSize the size which causes a rotation of the current file
+     */
+    public AccessLog(File dir, String prefix, long maxFileSize) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.maxFileSize = maxFileSize;
+        this.out = null;
+        this.current = null;
+        this.day = null;
+        this.size = 0;
+        this.dir.mkdirs();
+    }
+
+    static String day(long time) {
+        synchronized (dayFormat) {
+            return dayFormat.format(new Date(time));
+        }
+    }
+
+    /**
+     * append records to the log. This is called by a single writer with a batch of encoded records
+     * @param batch the records, encoded with encode()
+     * @param now the current time, used for the daily rotation
+     * @throws IOException
+     */
+    public synchronized void append(byte[] batch, long now) throws IOException {
+        String today = day(now);
+        if (this.out == null || !today.equals(this.day) || (this.size > 0 && this.size + batch.length > this.maxFileSize)) rotate(today);
+        this.out.write(batch);
+        this.out.flush();
+        this.size += batch.length;
+    }
+
+    private void rotate(String today) throws IOException {
+        if (this.out != null) this.out.close();
+        // a new file is started after each restart, so a record which was not written completely is always at the end of a file
+        SortedSet<File> files = getFiles(this.dir, this.prefix + today + "_");
+        long n = files.isEmpty() ? 0 : sequence(files.last()) + 1;
+        this.day = today;
+        // an existing file is never truncated: the next free sequence number is used
+        OutputStream os = null;
+        while (os == null) {
+            this.current = new File(this.dir, this.prefix + today + "_" + String.format(Locale.US, "%03d", n++) + SUFFIX);
+            try {
+                os = Files.newOutputStream(this.current.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {}
+        }
+        this.out = new DataOutputStream(os);
+        this.out.writeInt(MAGIC);
+        this.size = 4;
+    }
+
+    /**
+     * the day of the file which is written at this time
+     * @return the day in the format yyyyMMdd or null if nothing was written
+     */
+    public synchronized String getCurrentDay() {
+        return this.day;
+    }
+
+    /**
+     * the file which is written at this time
+     * @return the current file or null if nothing was written
+     */
+    public synchronized File getCurrentFile() {
+        return this.current;
+    }
+
+    public synchronized void close() throws IOException {
+        if (this.out != null) this.out.close();
+        this.out = null;
+    }
+
+    /**
+     * encode a record
+     * @param out the stream of the batch
+     * @throws IOException
+     */
+    public static void encode(DataOutputStream out, long start, int busy, int idle, int flags, String host, String servlet, String query, String events) throws IOException {
+        out.writeLong(start);
+        out.writeInt(busy);
+        out.writeInt(idle);
+        out.writeByte(flags);
+        writeString(out, host);
+        writeString(out, servlet);
+        writeString(out, query);
+        writeString(out, events);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) s = "";
+        out.writeUTF(s.length() > MAX_STRING ? s.substring(0, MAX_STRING) : s);
+    }
+
+    /**
+     * read all records of a log file. A record which was not written completely at the end of the file is ignored.
+     * @param f the log file
+     * @param consumer the consumer of the records; the entry object is re-used for each record
+     * @return the number of records
+     * @throws IOException
+     */
+    public static int read(File f, Consumer<Entry> consumer) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("not an access log: " + f);
+            Entry entry = new Entry();
+            while (true) {
+                entry.start = in.readLong();
+                entry.busy = in.readInt();
+                entry.idle = in.readInt();
+                entry.flags = in.readByte();
+                entry.host = in.readUTF();
+                entry.servlet = in.readUTF();
+                entry.query = in.readUTF();
+                entry.events = in.readUTF();
+                consumer.accept(entry);
+                count++;
+            }
+        } catch (EOFException e) {
+            return count;
+        }
+    }
+
+    /**
+     * the sequence number of a log file
+     * @param f the log file
+     * @return the number after the last '_' or -1 if the name has no sequence number
+     */
+    static long sequence(File f) {
+        String name = f.getName();
+        int p = name.lastIndexOf('_');
+        if (p < 0 || !name.endsWith(SUFFIX)) return -1;
+        try {
+            return Long.parseLong(name.substring(p + 1, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * files are ordered by the name without the sequence number, then by the sequence number
+     */
+    private final static Comparator<File> SEQUENCE_ORDER = (f, g) -> {
+        String a = f.getName(), b = g.getName();
+        int c = a.substring(0, Math.max(0, a.lastIndexOf('_'))).compareTo(b.substring(0, Math.max(0, b.lastIndexOf('_'))));
+        if (c != 0) return c;
+        c = Long.compare(sequence(f), sequence(g));
+        return c != 0 ? c : a.compareTo(b);
+    };
+
+    /**
+     * get the log files of a directory, sorted by date and sequence number
+     * @param dir the directory
+     * @param prefix the prefix of the file names
+     * @return the log files
+     */
+    public static SortedSet<File> getFiles(File dir, String prefix) {
+        TreeSet<File> files = new TreeSet<>(SEQUENCE_ORDER);
+        String[] list = dir.list();
+        if (list != null) for (String s: list) if (s.startsWith(prefix) && s.endsWith(SUFFIX)) files.add(new File(dir, s));
+        return files;
+    }
+
+}
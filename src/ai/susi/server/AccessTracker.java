@@ -19,6 +19,8 @@
 
 package ai.susi.server;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -27,21 +29,29 @@ import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.util.log.Log;
 import org.json.JSONObject;
 
-import ai.susi.DAO;
-import ai.susi.json.JsonRepository;
 import ai.susi.tools.DateParser;
+import ai.susi.tools.Metrics;
 
+/**
+ * The access tracker records each request to the access log. A track is created when a request starts
+ * and handed to the writer when it is finished. The writer is the thread of the tracker: it encodes the
+ * finished tracks into a batch and appends the batch to the log. Tracks which are not finished within the
+ * track timeout are written with a timeout flag. If the writer cannot keep up, tracks are dropped and counted.
+ */
 public class AccessTracker extends Thread {
 
     private final static String START_DATE_KEY    = "start";
     private final static String FINISH_DATE_KEY   = "finish";
     private final static String CLIENT_KEY        = "host"; // host address of the client
+    private final static String SERVLET_KEY       = "servlet"; // the servlet path
     private final static String LOCALHOST_FLAG    = "local"; // boolean from isLocalhost
     private final static String COMMENT_KEY       = "comment"; // to write i.e. termination reason
     private final static String IDLE_TIME_KEY     = "idle";
@@ -53,23 +63,39 @@ public class AccessTracker extends Thread {
     public final static String EVENT_PREFIX = "event_";
 
     private final static String COMMENT_CLOSED = "closed";
+    private final static String COMMENT_TIMEOUT = "timeout";
     
-    public final static int MAX_FINISHED = 1000;
-    
-    private JsonRepository history;
-    private long track_timeout;
-    private long schedule_period;
-    private boolean terminate;
-    private ConcurrentSkipListMap<Date, Track> pendingQueue, finishedQueue;
+    public final static int MAX_FINISHED = 1000; // the number of finished tracks which are kept for getTracks()
+    public final static int MAX_QUEUE = 100000; // the number of finished tracks which may wait for the writer
+    public final static int MAX_BATCH = 10000; // the maximum number of tracks which are written at once
+    public final static long BATCH_DELAY = 100; // the time in milliseconds the writer waits for more tracks after the first track of a batch
+    public final static long MAX_FILE_SIZE = 256L * 1024L * 1024L; // the size of a log file which causes a rotation
+
+    private final static Metrics.Counter writtenTotal = Metrics.counter("susi_access_written_total", "Number of access tracks which were written to the log").labels();
+    private final static Metrics.Counter droppedTotal = Metrics.counter("susi_access_dropped_total", "Number of access tracks which were dropped because the writer queue was full").labels();
     
+    private final AccessLog history;
+    private final AccessIndex index;
+    private final long track_timeout;
+    private final long schedule_period;
+    private volatile boolean terminate;
+    private final AtomicLong sequence, written, dropped;
+    private final ConcurrentSkipListMap<Long, Track> pendingQueue, finishedQueue;
+    private final ArrayBlockingQueue<Track> writeQueue;
     
     public AccessTracker(File dump_dir, String dump_file_prefix, long track_timeout, long schedule_period) throws IOException {
-        this.history = new JsonRepository(dump_dir, dump_file_prefix, null, JsonRepository.Mode.COMPRESSED, false, 1);
+        this.history = new AccessLog(dump_dir, dump_file_prefix, MAX_FILE_SIZE);
+        this.index = new AccessIndex(dump_dir, dump_file_prefix, System.currentTimeMillis());
         this.track_timeout = track_timeout;
         this.schedule_period = schedule_period;
         this.terminate = false;
+        this.sequence = new AtomicLong(0);
+        this.written = new AtomicLong(0);
+        this.dropped = new AtomicLong(0);
         this.pendingQueue = new ConcurrentSkipListMap<>();
         this.finishedQueue = new ConcurrentSkipListMap<>();
+        this.writeQueue = new ArrayBlockingQueue<>(MAX_QUEUE);
+        this.setName("AccessTracker");
     }
     
     public Collection<Track> getTracks() {
@@ -79,40 +105,110 @@ public class AccessTracker extends Thread {
         return tracks;
     }
     
+    /**
+     * the number of tracks which are not finished yet and therefore not written to the history
+     * @return the size of the pending queue
+     */
+    public int getPendingCount() {
+        return this.pendingQueue.size();
+    }
+
+    /**
+     * the number of finished tracks which wait for the writer
+     * @return the size of the write queue
+     */
+    public int getQueueCount() {
+        return this.writeQueue.size();
+    }
+
+    /**
+     * the number of tracks which were written to the log
+     */
+    public long getWrittenCount() {
+        return this.written.get();
+    }
+
+    /**
+     * the number of tracks which were not written because the write queue was full
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * the access log files
+     */
+    public AccessLog getLog() {
+        return this.history;
+    }
+
+    /**
+     * the index of the access log
+     */
+    public AccessIndex getIndex() {
+        return this.index;
+    }
+    
     public void run() {
-        monitor: while (!terminate) {
-            // identify oldest track and remove it from the pending tracks if it is over timeout time
-            timeoutcheck: while (this.pendingQueue.size() > 0) {
-                Map.Entry<Date, Track> t = this.pendingQueue.firstEntry();
-                if (t == null) break timeoutcheck;
-                boolean timeout = t.getKey().getTime() + AccessTracker.this.track_timeout < System.currentTimeMillis();
-                if (timeout || t.getValue().has(FINISH_DATE_KEY)) {
-                    try {
-                        writeToHistory(t.getValue(), null);
-                        this.pendingQueue.remove(t.getKey());
-                        this.finishedQueue.put(t.getKey(), t.getValue());
-                        while (this.finishedQueue.size() > MAX_FINISHED) this.finishedQueue.remove(this.finishedQueue.firstKey());
-                        continue timeoutcheck;
-                    } catch (IOException e) {
-                    	Log.getLog().warn(e);
-                        break monitor;
-                    }
+        List<Track> batch = new ArrayList<>();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 20);
+        DataOutputStream out = new DataOutputStream(baos);
+        while (!this.terminate) {
+            try {
+                Track first = this.writeQueue.poll(this.schedule_period, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    if (this.writeQueue.size() < MAX_BATCH) Thread.sleep(BATCH_DELAY);
+                }
+            } catch (InterruptedException e) {}
+            this.writeQueue.drainTo(batch, MAX_BATCH - batch.size());
+
+            // identify the oldest tracks and remove them from the pending tracks if they are over timeout time
+            long timeout = System.currentTimeMillis() - this.track_timeout;
+            while (batch.size() < MAX_BATCH) {
+                Map.Entry<Long, Track> t = this.pendingQueue.firstEntry();
+                if (t == null || t.getValue().start > timeout) break;
+                if (this.pendingQueue.remove(t.getKey()) != null) {
+                    t.getValue().comment = COMMENT_TIMEOUT;
+                    batch.add(t.getValue());
                 }
-                break timeoutcheck;
             }
-            
-            try {Thread.sleep(this.schedule_period);} catch (InterruptedException e) {if (this.terminate) break monitor;}
-        }
-        try {
-            for (Track track: this.pendingQueue.values()) writeToHistory(track, COMMENT_CLOSED);
-        } catch (IOException e) {
-        	Log.getLog().warn(e);
+            if (batch.isEmpty()) continue;
+
+            try {
+                write(batch, baos, out);
+            } catch (IOException e) {
+                Log.getLog().warn(e);
+            }
+            for (Track track: batch.subList(Math.max(0, batch.size() - MAX_FINISHED), batch.size())) this.finishedQueue.put(track.id, track);
+            for (int excess = this.finishedQueue.size() - MAX_FINISHED; excess > 0; excess--) this.finishedQueue.pollFirstEntry();
+            batch.clear();
         }
     }
     
-    private void writeToHistory(Track track, String comment) throws IOException {
-        if (comment != null) track.put(COMMENT_KEY, comment);
-        this.history.write(track);
+    private void write(List<Track> batch, ByteArrayOutputStream baos, DataOutputStream out) throws IOException {
+        baos.reset();
+        for (Track track: batch) track.encode(out);
+        out.flush();
+        long now = System.currentTimeMillis();
+        final String day = this.history.getCurrentDay();
+        this.history.append(baos.toByteArray(), now);
+        this.written.addAndGet(batch.size());
+        writtenTotal.add(batch.size());
+        for (Track track: batch) this.index.add(track.start, track.servlet, track.clientHost, (int) Math.min(Integer.MAX_VALUE, track.runtime), track.flags());
+        if (day != null && !day.equals(this.history.getCurrentDay())) {
+            // the log of the previous day is complete: write the rollup of that day concurrently
+            this.index.evict(now);
+            new Thread("AccessIndex rollup " + day) {
+                public void run() {
+                    try {
+                        AccessTracker.this.index.writeRollup(day);
+                    } catch (IOException e) {
+                        Log.getLog().warn(e);
+                    }
+                }
+            }.start();
+        }
     }
     
     public void close() {
@@ -120,52 +216,50 @@ public class AccessTracker extends Thread {
         this.terminate = true;
         if (this.isAlive()) try {this.interrupt(); this.join(10000);} catch (InterruptedException e) {}
 
-        // write remaining tracks from pending queue
+        // write remaining tracks from the write queue and the pending queue
+        List<Track> batch = new ArrayList<>();
+        this.writeQueue.drainTo(batch);
+        for (Track track: this.pendingQueue.values()) {
+            track.comment = COMMENT_CLOSED;
+            batch.add(track);
+        }
+        this.pendingQueue.clear();
         try {
-            for (Track track: this.pendingQueue.values()) writeToHistory(track, COMMENT_CLOSED);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            if (!batch.isEmpty()) write(batch, baos, new DataOutputStream(baos));
+            this.history.close();
         } catch (IOException e) {
         	Log.getLog().warn(e);
         }
     }
     
-    public class Track extends JSONObject {
-        
-        public String getClientHost() {
-            return clientHost;
-        }
+    public class Track {
 
-        private Date accessTime;
-        private String clientHost;
+        private final long id, start;
+        private final String servlet, clientHost;
+        private final boolean isLocalhost;
         private long time_since_last_access;
-        private boolean isLocalhost;
         private boolean DoS_blackout, DoS_servicereduction;
+        private long runtime = -1;
+        private Map<String, String> query = null;
+        private Map<String, Object> events = null;
+        private String comment = null;
         
         public Track(String servlet, String clientHost) {
+            this.id = AccessTracker.this.sequence.incrementAndGet();
+            this.start = System.currentTimeMillis();
+            this.servlet = servlet;
             this.clientHost = clientHost;
-            long time = System.currentTimeMillis();
-            Date lastDate = null;
-            try {lastDate = AccessTracker.this.pendingQueue.lastKey();} catch (NoSuchElementException e) {}
-            long last = lastDate == null ? time - 1 : lastDate.getTime();
-            if (time <= last) time = last + 1;
-            this.accessTime = new Date(time);
-            this.put(START_DATE_KEY, DateParser.iso8601MillisFormat.format(accessTime));
-            this.put(CLIENT_KEY, clientHost);
             this.isLocalhost = RemoteAccess.isLocalhost(clientHost);
-            this.put(LOCALHOST_FLAG, this.isLocalhost);
-            AccessTracker.this.pendingQueue.put(accessTime, this);
+            AccessTracker.this.pendingQueue.put(this.id, this);
         }
         
-        public Track(String serialized) {
-            try {
-                JSONObject json = new JSONObject(serialized);
-                this.putAll(json);
-            } catch (Throwable e) {
-                DAO.log("cannot parse \"" + serialized + "\"");
-            } 
+        public String getClientHost() {
+            return clientHost;
         }
         
         public Date getDate() {
-            return this.accessTime;
+            return new Date(this.start);
         }
 
         public long getTimeSinceLastAccess() {
@@ -174,7 +268,6 @@ public class AccessTracker extends Thread {
 
         public void setTimeSinceLastAccess(long time_since_last_access) {
             this.time_since_last_access = time_since_last_access;
-            this.put(IDLE_TIME_KEY, time_since_last_access);
         }
 
         public boolean isDoSBlackout() {
@@ -183,7 +276,6 @@ public class AccessTracker extends Thread {
 
         public void setDoSBlackout(boolean doS_blackout) {
             DoS_blackout = doS_blackout;
-            this.put(DOS_BLACKOUT_KEY, doS_blackout);
         }
 
         public boolean isDoSServicereduction() {
@@ -192,7 +284,6 @@ public class AccessTracker extends Thread {
 
         public void setDoSServicereduction(boolean doS_servicereduction) {
             DoS_servicereduction = doS_servicereduction;
-            this.put(DOS_REDUCTION_KEY, doS_servicereduction);
         }
         
         public boolean isLocalhostAccess() {
@@ -200,21 +291,73 @@ public class AccessTracker extends Thread {
         }
         
         public void setQuery(final Map<String, String> qm) {
-            if (qm == null) return;
-            Map<String, Object> m = new LinkedHashMap<>();
-            m.putAll(qm);
-            this.put(QUERY_KEY, m);
+            this.query = qm;
+        }
+
+        public synchronized void recordEvent(String eventName, Object eventValue) {
+            if (this.events == null) this.events = new LinkedHashMap<>();
+            this.events.put(eventName, eventValue);
+        }
+        
+        /**
+         * the track in the json format of the access servlet
+         */
+        public synchronized JSONObject toJSON() {
+            JSONObject json = new JSONObject(true);
+            json.put(START_DATE_KEY, format(this.start));
+            json.put(CLIENT_KEY, this.clientHost);
+            json.put(SERVLET_KEY, this.servlet);
+            json.put(LOCALHOST_FLAG, this.isLocalhost);
+            json.put(IDLE_TIME_KEY, this.time_since_last_access);
+            json.put(DOS_BLACKOUT_KEY, this.DoS_blackout);
+            json.put(DOS_REDUCTION_KEY, this.DoS_servicereduction);
+            if (this.query != null) json.put(QUERY_KEY, new LinkedHashMap<String, Object>(this.query));
+            if (this.runtime >= 0) {
+                json.put(RUNTIME_KEY, this.runtime);
+                json.put(FINISH_DATE_KEY, format(this.start + this.runtime));
+            }
+            if (this.events != null) for (Map.Entry<String, Object> e: this.events.entrySet()) json.put(EVENT_PREFIX + e.getKey(), e.getValue());
+            if (this.comment != null) json.put(COMMENT_KEY, this.comment);
+            return json;
         }
         
         public String toString() {
-            return new JSONObject(this).toString();
+            return toJSON().toString();
+        }
+        
+        /**
+         * finish the track: the runtime is recorded and the track is handed to the writer
+         */
+        public void finish() {
+            if (AccessTracker.this.pendingQueue.remove(this.id) == null) return; // already written because of a timeout
+            this.runtime = System.currentTimeMillis() - this.start;
+            if (!AccessTracker.this.writeQueue.offer(this)) {
+                AccessTracker.this.dropped.incrementAndGet();
+                droppedTotal.inc();
+            }
+        }
+        
+        private int flags() {
+            return (this.isLocalhost ? AccessLog.FLAG_LOCAL : 0) |
+                    (this.DoS_blackout ? AccessLog.FLAG_DOS_BLACKOUT : 0) |
+                    (this.DoS_servicereduction ? AccessLog.FLAG_DOS_REDUCTION : 0) |
+                    (this.runtime >= 0 ? AccessLog.FLAG_FINISHED : 0) |
+                    (COMMENT_CLOSED.equals(this.comment) ? AccessLog.FLAG_CLOSED : 0) |
+                    (COMMENT_TIMEOUT.equals(this.comment) ? AccessLog.FLAG_TIMEOUT : 0);
         }
         
-        public void finalize() {
-            Date finishTime = new Date();
-            long runtime = finishTime.getTime() - this.accessTime.getTime();
-            this.put(RUNTIME_KEY, runtime);
-            this.put(FINISH_DATE_KEY, DateParser.iso8601MillisFormat.format(finishTime));
+        private synchronized void encode(DataOutputStream out) throws IOException {
+            AccessLog.encode(out, this.start, (int) Math.min(Integer.MAX_VALUE, this.runtime),
+                    (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, this.time_since_last_access)), flags(),
+                    this.clientHost, this.servlet,
+                    this.query == null || this.query.isEmpty() ? "" : new JSONObject(this.query).toString(),
+                    this.events == null ? "" : new JSONObject(this.events).toString());
+        }
+    }
+    
+    private static String format(long time) {
+        synchronized (DateParser.iso8601MillisFormat) {
+            return DateParser.iso8601MillisFormat.format(new Date(time));
         }
     }
 
@@ -222,5 +365,4 @@ public class AccessTracker extends Thread {
         return new Track(servlet, clientHost);
     }
     
-    
 }
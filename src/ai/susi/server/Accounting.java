@@ -19,64 +19,201 @@
 
 package ai.susi.server;
 
-import java.util.TreeMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.json.JSONObject;
 
 /**
  * Accounting asks: what has the user done. This class holds user activities.
+ * For each path, the latest requests are stored in a fixed-size ring buffer,
+ * so the memory used by one accounting object is bounded by the number of paths.
  */
-public class Accounting extends JSONObject {
+public class Accounting {
 
-    private static final JSONObject EMPTY_MAP = new JSONObject(new TreeMap<String, String>());
-    private static final long ONE_HOUR_MILLIS = 1000 * 60 * 60;
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final long ONE_HOUR_MILLIS = 1000 * 60 * 60;
+
+    private final int capacity;
+    private final Map<String, RequestRing> requests;
+    private volatile long lastAccess;
 
-    private static long uc = 0;
-    
     public Accounting() {
-        super();
+        this(DEFAULT_CAPACITY);
+    }
+
+    public Accounting(int capacity) {
+        this.capacity = capacity;
+        this.requests = new ConcurrentHashMap<>();
+        this.lastAccess = System.currentTimeMillis();
     }
-    
+
     /**
      * cleanup deletes all old entries and frees up the memory.
      * some outside process muss call this frequently
      * @return self
      */
     public Accounting cleanup() {
-        if (!this.has("requests")) return this;
-        JSONObject requests = this.getJSONObject("requests");
-        for (String path: requests.keySet()) {
-            JSONObject events = requests.getJSONObject(path);
-            // shrink that map and delete everything which is older than now minus one hour
-            long pivotTime = System.currentTimeMillis() - ONE_HOUR_MILLIS;
-            while (events.length() > 0 && Long.parseLong(events.keys().next()) < pivotTime) events.remove(events.keys().next());
-            if (events.length() == 0) requests.remove(path);
-        }
+        // delete everything which is older than now minus one hour
+        long pivotTime = System.currentTimeMillis() - ONE_HOUR_MILLIS;
+        this.requests.entrySet().removeIf(entry -> entry.getValue().latest() < pivotTime);
         return this;
     }
-    
-    public synchronized Accounting addRequest(String path, String query) {
-        if (!this.has("requests")) this.put("requests", new JSONObject());
-        JSONObject requests = this.getJSONObject("requests");
-        if (!requests.has(path)) requests.put(path, new TreeMap<String, String>());
-        JSONObject events = requests.getJSONObject(path);
-        events.put(Long.toString(System.currentTimeMillis() + ((uc ++) % 1000)), query); // the counter is used to distinguish very fast concurrent requests
+
+    public Accounting addRequest(String path, String query) {
+        this.lastAccess = System.currentTimeMillis();
+        RequestRing ring = this.requests.get(path);
+        if (ring == null) ring = this.requests.computeIfAbsent(path, p -> new RequestRing(this.capacity));
+        ring.add(query);
         return this;
     }
-    
-    public synchronized JSONObject getRequests(String path) {
-        if (!this.has("requests")) return EMPTY_MAP;
-        JSONObject requests = this.getJSONObject("requests");
-        if (!requests.has(path)) return EMPTY_MAP;
-        JSONObject events = requests.getJSONObject(path);
-        return events;
+
+    /**
+     * make sure that the ring buffer of a path can hold at least the given number of requests.
+     * Callers which compare countRequests against a limit must reserve more than that limit,
+     * otherwise the count saturates at the capacity and the limit is never exceeded.
+     * @param path
+     * @param capacity the minimum number of requests to be stored for the path
+     * @return self
+     */
+    public Accounting reserve(String path, int capacity) {
+        RequestRing ring = this.requests.get(path);
+        if (ring == null) ring = this.requests.computeIfAbsent(path, p -> new RequestRing(Math.max(this.capacity, capacity)));
+        ring.ensureCapacity(capacity);
+        return this;
     }
-    
+
+    /**
+     * count the requests to a given path within the latest time period.
+     * The count is limited by the capacity of the ring buffer, see reserve().
+     * @param path
+     * @param periodMillis
+     * @return the number of requests within the given period
+     */
+    public int countRequests(String path, long periodMillis) {
+        RequestRing ring = this.requests.get(path);
+        return ring == null ? 0 : ring.count(System.currentTimeMillis() - periodMillis);
+    }
+
+    /**
+     * @param path
+     * @return the number of all requests to the path since the path was recorded first
+     */
+    public long totalRequests(String path) {
+        RequestRing ring = this.requests.get(path);
+        return ring == null ? 0 : ring.total();
+    }
+
+    /**
+     * get the stored requests of a path as a map from the access time to the query
+     * @param path
+     * @return a json object with time keys in ascending order
+     */
+    public JSONObject getRequests(String path) {
+        RequestRing ring = this.requests.get(path);
+        if (ring == null) return new JSONObject(true);
+        return ring.toJSON();
+    }
+
+    public Accounting touch() {
+        this.lastAccess = System.currentTimeMillis();
+        return this;
+    }
+
+    public long getLastAccess() {
+        return this.lastAccess;
+    }
+
+    public boolean isEmpty() {
+        return this.requests.isEmpty();
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject(true);
+        JSONObject r = new JSONObject(true);
+        for (Map.Entry<String, RequestRing> entry: this.requests.entrySet()) r.put(entry.getKey(), entry.getValue().toJSON());
+        json.put("requests", r);
+        return json;
+    }
+
+    /**
+     * a ring buffer of request times and queries. Once the buffer is full, the oldest entry is overwritten.
+     */
+    private static class RequestRing {
+
+        private long[] times;
+        private String[] queries;
+        private int next, size;
+        private long total;
+
+        public RequestRing(int capacity) {
+            this.times = new long[capacity];
+            this.queries = new String[capacity];
+            this.next = 0;
+            this.size = 0;
+            this.total = 0;
+        }
+
+        public synchronized void add(String query) {
+            // the time is taken inside the lock to keep the times in ascending order
+            this.times[this.next] = System.currentTimeMillis();
+            this.queries[this.next] = query;
+            this.next = (this.next + 1) % this.times.length;
+            if (this.size < this.times.length) this.size++;
+            this.total++;
+        }
+
+        public synchronized void ensureCapacity(int capacity) {
+            if (capacity <= this.times.length) return;
+            long[] t = new long[capacity];
+            String[] q = new String[capacity];
+            // copy the entries in ascending order to the start of the new arrays
+            for (int i = this.size; i > 0; i--) {
+                int p = (this.next - i + this.times.length) % this.times.length;
+                t[this.size - i] = this.times[p];
+                q[this.size - i] = this.queries[p];
+            }
+            this.times = t;
+            this.queries = q;
+            this.next = this.size;
+        }
+
+        public synchronized int count(long since) {
+            int c = 0;
+            for (int i = 1; i <= this.size; i++) {
+                // walk backwards from the latest entry; times are ascending
+                if (this.times[(this.next - i + this.times.length) % this.times.length] < since) break;
+                c++;
+            }
+            return c;
+        }
+
+        public synchronized long latest() {
+            return this.size == 0 ? 0 : this.times[(this.next - 1 + this.times.length) % this.times.length];
+        }
+
+        public synchronized long total() {
+            return this.total;
+        }
+
+        public synchronized JSONObject toJSON() {
+            JSONObject events = new JSONObject(true);
+            long last = 0;
+            for (int i = this.size; i > 0; i--) {
+                int p = (this.next - i + this.times.length) % this.times.length;
+                long t = Math.max(this.times[p], last + 1); // distinguish very fast concurrent requests
+                events.put(Long.toString(t), this.queries[p]);
+                last = t;
+            }
+            return events;
+        }
+    }
+
     public static void main(String[] args) {
         Accounting a = new Accounting();
         a.addRequest("/api/test.json", "q=test");
         JSONObject r = a.getRequests("/api/test.json");
         System.out.println(r.toString());
     }
-    
+
 }
@@ -0,0 +1,119 @@
+/**
+ *  AccountingStore
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The temporary accounting store holds one Accounting object for each client identity.
+ * The store is concurrent, bounded in size and forgets clients which have not been seen
+ * for a given expiry time. Because each Accounting object is bounded as well, the memory
+ * footprint of the whole store is bounded.
+ */
+public class AccountingStore {
+
+    private final int maxSize;
+    private final long expiryMillis;
+    private final Map<String, Accounting> store;
+
+    /**
+     * create an accounting store
+     * @param maxSize the maximum number of client identities in the store
+     * @param expiryMillis the time after which an untouched accounting object is removed
+     */
+    public AccountingStore(int maxSize, long expiryMillis) {
+        this.maxSize = maxSize;
+        this.expiryMillis = expiryMillis;
+        this.store = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * get the accounting object for an identity. If the identity is not known, a new
+     * accounting object is created.
+     * @param identity the identity string of a client
+     * @return the accounting object for that client, never null
+     */
+    public Accounting get(String identity) {
+        Accounting accounting = this.store.get(identity);
+        if (accounting != null) return accounting.touch();
+        accounting = this.store.computeIfAbsent(identity, i -> new Accounting());
+        if (this.store.size() > this.maxSize) shrink();
+        return accounting.touch();
+    }
+
+    public Accounting remove(String identity) {
+        return this.store.remove(identity);
+    }
+
+    public int size() {
+        return this.store.size();
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * cleanup removes all expired accounting objects and cleans the remaining ones.
+     * This should be called periodically.
+     * @return the number of removed accounting objects
+     */
+    public int cleanup() {
+        long pivotTime = System.currentTimeMillis() - this.expiryMillis;
+        int c = 0;
+        for (Map.Entry<String, Accounting> entry: this.store.entrySet()) {
+            Accounting accounting = entry.getValue();
+            if (accounting.getLastAccess() < pivotTime) {
+                if (this.store.remove(entry.getKey(), accounting)) c++;
+            } else {
+                accounting.cleanup();
+            }
+        }
+        return c;
+    }
+
+    /**
+     * shrink the store if it is too large: first expired entries are removed, then the least recently
+     * used ones until the store has 10% headroom. Because of the headroom this happens rarely; threads
+     * which add new identities at that time wait until the store is shrinked, therefore the store
+     * cannot exceed the maximum size by more than the number of concurrent threads.
+     */
+    private synchronized void shrink() {
+        if (this.store.size() <= this.maxSize) return; // another thread did this already
+        cleanup();
+        int target = this.maxSize - this.maxSize / 10;
+        int overflow = this.store.size() - target;
+        if (overflow <= 0) return;
+        // take a snapshot of the access times because they change while we sort
+        List<Object[]> entries = new ArrayList<>(this.store.size());
+        for (Map.Entry<String, Accounting> entry: this.store.entrySet()) {
+            entries.add(new Object[]{entry.getKey(), entry.getValue(), entry.getValue().getLastAccess()});
+        }
+        entries.sort((a, b) -> Long.compare((Long) a[2], (Long) b[2]));
+        for (int i = 0; i < overflow && i < entries.size(); i++) {
+            Object[] entry = entries.get(i);
+            this.store.remove((String) entry[0], (Accounting) entry[1]);
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+/**
+ *  AdmissionControl
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import ai.susi.DAO;
+
+/**
+ * Admission control in front of the servlets. Under overload it is better to reject a request at once
+ * than to queue it until the client has given up: then the server spends its time only on answers
+ * which are read. The admission is decided for each class of endpoints separately with two criteria:
+ * - the number of requests of the class which are in-flight must be below a limit
+ * - the estimated time which the request would wait in the executor queue must be below a latency target;
+ *   the wait is estimated from the queue depth and the average service time of the class (Little's law);
+ *   the service time of a request which is processed by an executor is measured from the start of the processing,
+ *   so the waiting time in the queue is not counted twice
+ * Authenticated users are preferred: anonymous requests may only use a share of the in-flight slots
+ * and the same share of the latency target. Rejected requests get a 503 with a Retry-After header.
+ *
+ * The limits are configured for each endpoint class with the keys
+ *   admission.[class].maxinflight - the maximum number of concurrent requests
+ *   admission.[class].latency     - the latency target in milliseconds
+ *   admission.anonymous.share     - the share of the limits which is available for anonymous users
+ */
+public class AdmissionControl extends HandlerWrapper {
+
+    public enum Endpoint {
+
+        CHAT(128, 10000), CONSOLE(64, 10000), AAA(64, 2000), API(128, 5000), STATIC(256, 2000);
+
+        public final int defaultMaxInFlight;
+        public final long defaultLatency;
+
+        private Endpoint(int defaultMaxInFlight, long defaultLatency) {
+            this.defaultMaxInFlight = defaultMaxInFlight;
+            this.defaultLatency = defaultLatency;
+        }
+
+        public String getName() {
+            return this.name().toLowerCase();
+        }
+
+        public static Endpoint classify(String path) {
+            if (path == null) return STATIC;
+            if (path.startsWith("/susi/chat.json") || path.startsWith("/susi/batch.json") || path.startsWith("/susi/chat.ws")) return CHAT;
+            if (path.startsWith("/susi/console.json")) return CONSOLE;
+            if (path.startsWith("/aaa/")) return AAA;
+            if (path.endsWith(".json") || path.endsWith(".txt") || path.startsWith("/vis/") || path.startsWith("/cms/")) return API;
+            return STATIC;
+        }
+    }
+
+    public static class Gate {
+
+        private final static double ALPHA = 0.1d; // weight of a new service time in the moving average
+
+        private final int maxInFlight;
+        private final long latency;
+        private final AtomicInteger inFlight;
+        private final LongAdder admitted, rejected;
+        private volatile double serviceTime; // moving average in milliseconds; concurrent updates may be lost, which does not matter for an average
+
+        public Gate(int maxInFlight, long latency) {
+            this.maxInFlight = maxInFlight;
+            this.latency = latency;
+            this.inFlight = new AtomicInteger(0);
+            this.admitted = new LongAdder();
+            this.rejected = new LongAdder();
+            this.serviceTime = 0.0d;
+        }
+
+        public int getInFlight() {
+            return this.inFlight.get();
+        }
+
+        public long getAdmitted() {
+            return this.admitted.sum();
+        }
+
+        public long getRejected() {
+            return this.rejected.sum();
+        }
+
+        public double getServiceTime() {
+            return this.serviceTime;
+        }
+    }
+
+    private final Map<Endpoint, Gate> gates;
+    private final double anonymousShare;
+
+    public AdmissionControl() {
+        this.gates = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint: Endpoint.values()) {
+            this.gates.put(endpoint, new Gate(
+                    (int) DAO.getConfig("admission." + endpoint.getName() + ".maxinflight", (long) endpoint.defaultMaxInFlight),
+                    DAO.getConfig("admission." + endpoint.getName() + ".latency", endpoint.defaultLatency)));
+        }
+        this.anonymousShare = Math.min(1.0d, Math.max(0.0d, DAO.getConfig("admission.anonymous.share", 0.75d)));
+    }
+
+    /**
+     * set the limits for an endpoint class explicitly, overriding the configuration
+     * @param endpoint
+     * @param maxInFlight
+     * @param latency
+     * @return self
+     */
+    public AdmissionControl setLimit(Endpoint endpoint, int maxInFlight, long latency) {
+        this.gates.put(endpoint, new Gate(maxInFlight, latency));
+        return this;
+    }
+
+    public Gate getGate(Endpoint endpoint) {
+        return this.gates.get(endpoint);
+    }
+
+    /**
+     * decide if a request is admitted. An admitted request must be released when it is done.
+     * @param endpoint the class of the request
+     * @param authenticated true if the request comes from an authenticated user
+     * @param queueDepth the number of requests which wait in the queue of the executor for this request
+     * @param workers the number of threads of the executor
+     * @return 0 if the request is admitted, otherwise the number of milliseconds after which the client should try again
+     */
+    public long admit(Endpoint endpoint, boolean authenticated, int queueDepth, int workers) {
+        Gate gate = this.gates.get(endpoint);
+        double share = authenticated ? 1.0d : this.anonymousShare;
+        long wait = (long) (queueDepth * gate.serviceTime / Math.max(1, workers));
+        if (wait > gate.latency * share) {
+            gate.rejected.increment();
+            return Math.max(1000, wait);
+        }
+        int limit = Math.max(1, (int) (gate.maxInFlight * share));
+        if (gate.inFlight.incrementAndGet() > limit) {
+            gate.inFlight.decrementAndGet();
+            gate.rejected.increment();
+            return Math.max(1000, (long) gate.serviceTime);
+        }
+        gate.admitted.increment();
+        return 0;
+    }
+
+    /**
+     * release an admitted request
+     * @param endpoint the class of the request
+     * @param serviceTime the time in milliseconds which the processing of the request took
+     *        or a negative number if the request was not processed, i.e. because it timed out in the queue
+     */
+    public void release(Endpoint endpoint, long serviceTime) {
+        Gate gate = this.gates.get(endpoint);
+        gate.inFlight.decrementAndGet();
+        if (serviceTime >= 0) gate.serviceTime = gate.serviceTime + Gate.ALPHA * (serviceTime - gate.serviceTime);
+    }
+
+    @Override
+    public void handle(String target, final Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+        final Endpoint endpoint = Endpoint.classify(target);
+
+        // chat requests are queued in the mind executor, all other requests in the server thread pool
+        int queueDepth = 0, workers = 1;
+        if (endpoint == Endpoint.CHAT && DAO.mind_executor != null) {
+            queueDepth = DAO.mind_executor.getQueueSize();
+            workers = DAO.mind_executor.getThreads();
+        } else {
+            ThreadPool pool = this.getServer() == null ? null : this.getServer().getThreadPool();
+            if (pool instanceof QueuedThreadPool) {
+                queueDepth = ((QueuedThreadPool) pool).getQueueSize();
+                workers = ((QueuedThreadPool) pool).getMaxThreads();
+            }
+        }
+
+        long retryAfter = admit(endpoint, isAuthenticated(request), queueDepth, workers);
+        if (retryAfter > 0) {
+            baseRequest.setHandled(true);
+            response.setHeader("Retry-After", Long.toString((retryAfter + 999) / 1000));
+            response.sendError(503, "the server is overloaded, please try again later");
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+        boolean async = false;
+        try {
+            super.handle(target, baseRequest, request, response);
+            if (baseRequest.isAsyncStarted()) {
+                // the request is released when the asynchronous processing is completed; the service time
+                // is measured from the start of the processing, the waiting time in the executor queue is not included
+                baseRequest.getAsyncContext().addListener(new AsyncListener() {
+                    @Override public void onComplete(AsyncEvent event) {
+                        Object processingStart = baseRequest.getAttribute(AsyncExecutor.PROCESSING_START_ATTRIBUTE);
+                        release(endpoint, processingStart instanceof Long ? System.currentTimeMillis() - (Long) processingStart : -1);
+                    }
+                    @Override public void onTimeout(AsyncEvent event) {}
+                    @Override public void onError(AsyncEvent event) {}
+                    @Override public void onStartAsync(AsyncEvent event) {}
+                });
+                async = true;
+            }
+        } finally {
+            if (!async) release(endpoint, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * check if the request comes from an authenticated user: with a login session, a valid login cookie or a valid access token.
+     * This does not check the expiry time of the credentials, that is done by the servlets.
+     * @param request
+     * @return true if the user is authenticated
+     */
+    public static boolean isAuthenticated(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute("identity") != null) return true;
+        if (DAO.authentication == null) return false;
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) for (Cookie cookie: cookies) {
+            if ("login".equals(cookie.getName()) && DAO.authentication.has(new ClientCredential(ClientCredential.Type.cookie, cookie.getValue()).toString())) return true;
+        }
+        // only the query string is inspected, the body of a post request is read by the servlets
+        String query = request.getQueryString();
+        if (query == null) return false;
+        for (String attr: query.split("&")) {
+            if (attr.startsWith("access_token=")) try {
+                String token = URLDecoder.decode(attr.substring(13), "UTF-8");
+                return DAO.authentication.has(new ClientCredential(ClientCredential.Type.access_token, token).toString());
+            } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,432 @@
+/**
+ *  AsyncExecutor
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.util.log.Log;
+import org.json.JSONObject;
+
+/**
+ * An executor for servlet requests which may block for a long time, i.e. because they call external services.
+ * Such requests are put into asynchronous mode and processed by the threads of this executor, so they do not
+ * hold a thread of the server pool which is then available for static files and other apis.
+ * The executor has a bounded number of threads and a bounded queue. If the queue is full, or if a request
+ * waited in the queue for longer than the timeout, the request is answered with 503 and a Retry-After header.
+ * A request which is not answered within the processing timeout after it left the queue is answered with 504;
+ * the thread which processes it is interrupted.
+ */
+public class AsyncExecutor {
+
+    /**
+     * the request processing which is done by the executor
+     */
+    public interface Task {
+        public void process(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException;
+    }
+
+    /**
+     * the processing of one item of a batch
+     */
+    public interface Item {
+        public JSONObject process(int index) throws Exception;
+    }
+
+    /**
+     * the request attribute with the time in milliseconds when the processing of the request started,
+     * after the request waited in the queue
+     */
+    public final static String PROCESSING_START_ATTRIBUTE = "ai.susi.server.AsyncExecutor.processingStart";
+
+    private final ThreadPoolExecutor executor;
+    private final long timeout, processingTimeout;
+
+    /**
+     * create an async executor where the processing time of a request is limited by the same time as the waiting time
+     * @param name the name prefix of the executor threads
+     * @param threads the number of threads which process requests concurrently
+     * @param queueSize the maximum number of waiting requests
+     * @param timeout the maximum time in milliseconds which a request may wait in the queue
+     */
+    public AsyncExecutor(final String name, int threads, int queueSize, long timeout) {
+        this(name, threads, queueSize, timeout, timeout);
+    }
+
+    /**
+     * create an async executor
+     * @param name the name prefix of the executor threads
+     * @param threads the number of threads which process requests concurrently
+     * @param queueSize the maximum number of waiting requests
+     * @param timeout the maximum time in milliseconds which a request may wait in the queue
+     * @param processingTimeout the maximum time in milliseconds for the processing of a request (or a batch item)
+     */
+    public AsyncExecutor(final String name, int threads, int queueSize, long timeout, long processingTimeout) {
+        final AtomicInteger count = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timeout = timeout;
+        this.processingTimeout = processingTimeout;
+    }
+
+    /**
+     * process a request with the executor. If the request does not support asynchronous processing,
+     * it is processed in the calling thread.
+     * @param request
+     * @param response
+     * @param task the request processing
+     * @throws IOException
+     * @throws ServletException
+     */
+    public void execute(final HttpServletRequest request, final HttpServletResponse response, final Task task) throws IOException, ServletException {
+        if (!request.isAsyncSupported()) {
+            task.process(request, response);
+            return;
+        }
+        final AsyncContext context = request.startAsync();
+        final Call call = new Call(context);
+        // the async timeout covers the waiting time in the queue and the processing time
+        context.setTimeout(this.timeout + this.processingTimeout);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (!call.timeout()) return;
+                Log.getLog().warn("request " + request.getRequestURI() + " was not answered within " + (AsyncExecutor.this.timeout + AsyncExecutor.this.processingTimeout) + " milliseconds");
+                if (!response.isCommitted()) response.sendError(504, "the request processing took too long");
+                context.complete();
+            }
+            @Override public void onComplete(AsyncEvent event) {}
+            @Override public void onError(AsyncEvent event) {}
+            @Override public void onStartAsync(AsyncEvent event) {}
+        });
+        final long enqueued = System.currentTimeMillis();
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!call.start()) return; // the request timed out in the queue and is answered already
+                    try {
+                        long now = System.currentTimeMillis();
+                        if (now - enqueued > AsyncExecutor.this.timeout) {
+                            sendBusy(response);
+                        } else {
+                            request.setAttribute(PROCESSING_START_ATTRIBUTE, now);
+                            task.process(request, response);
+                        }
+                    } catch (Throwable e) {
+                        if (call.isTimedOut()) return;
+                        Log.getLog().warn(e);
+                        try {
+                            if (!response.isCommitted()) response.sendError(500, e.getMessage());
+                        } catch (IOException ee) {}
+                    } finally {
+                        call.finish();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            sendBusy(response);
+            context.complete();
+        }
+    }
+
+    /**
+     * the state of an asynchronous request: the request is completed exactly once, either by the
+     * thread which processed it or by the async timeout, which then interrupts the processing thread
+     */
+    private static class Call {
+
+        private final AsyncContext context;
+        private final AtomicInteger state; // 0 = waiting, 1 = running, 2 = finished, 3 = timed out
+        private volatile Thread worker;
+
+        public Call(AsyncContext context) {
+            this.context = context;
+            this.state = new AtomicInteger(0);
+            this.worker = null;
+        }
+
+        public boolean start() {
+            this.worker = Thread.currentThread();
+            return this.state.compareAndSet(0, 1);
+        }
+
+        public synchronized void finish() {
+            this.worker = null;
+            if (this.state.compareAndSet(1, 2)) this.context.complete();
+            Thread.interrupted(); // clear an interrupt of the timeout, the thread goes back to the pool
+        }
+
+        public synchronized boolean timeout() {
+            int s = this.state.get();
+            if (s >= 2 || !this.state.compareAndSet(s, 3)) return false;
+            Thread w = this.worker;
+            if (s == 1 && w != null) w.interrupt();
+            return true;
+        }
+
+        public boolean isTimedOut() {
+            return this.state.get() == 3;
+        }
+    }
+
+    /**
+     * process the items of a batch request concurrently and stream the results as lines of json (NDJSON)
+     * in the order of their completion. Each result gets the attribute "index" with the position of the item.
+     * At most window items are processed at the same time, so a large batch does not occupy all threads of the
+     * executor. No thread waits for the results: the completion of an item starts the next one, and the completion
+     * of the last item completes the request. Items which are rejected because the queue is full, or which waited
+     * in the queue for longer than the timeout, are answered with an error line with status 503.
+     * A result with status 429 (too many requests) stops the batch: it is written once and the items which were
+     * not started yet are not processed.
+     * The whole batch must be answered within the time which the items need if each of them takes the processing
+     * timeout; after that the stream ends and the threads which process items are interrupted.
+     * If the request does not support asynchronous processing, the items are processed in the calling thread.
+     * @param request
+     * @param response
+     * @param count the number of items
+     * @param window the maximum number of items which are processed concurrently
+     * @param item the processing of one item
+     * @throws IOException
+     */
+    public void stream(final HttpServletRequest request, final HttpServletResponse response, final int count, int window, final Item item) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (!request.isAsyncSupported()) {
+            Batch batch = new Batch(null, response.getOutputStream(), count, item);
+            for (int i = 0; i < count; i++) batch.write(batch.process(i, System.currentTimeMillis()));
+            return;
+        }
+        final AsyncContext context = request.startAsync();
+        if (count == 0) {
+            context.complete();
+            return;
+        }
+        window = Math.max(1, window);
+        context.setTimeout(this.timeout + this.processingTimeout * ((count + window - 1) / window));
+        final Batch batch = new Batch(context, response.getOutputStream(), count, item);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                Log.getLog().warn("batch request " + request.getRequestURI() + " with " + count + " items was not answered in time");
+                batch.timeout();
+            }
+            @Override public void onComplete(AsyncEvent event) {}
+            @Override public void onError(AsyncEvent event) {}
+            @Override public void onStartAsync(AsyncEvent event) {}
+        });
+        for (int i = 0; i < window; i++) batch.next();
+    }
+
+    private class Batch {
+
+        private final AsyncContext context;
+        private final OutputStream os;
+        private final int count;
+        private final Item item;
+        private final AtomicInteger next, done;
+        private final AtomicBoolean completed;
+        private final Set<Thread> workers;
+        private volatile boolean broken; // true if the client is gone or the batch timed out
+        private final AtomicBoolean stopped; // true if an item was rejected by the rate limit
+
+        public Batch(AsyncContext context, OutputStream os, int count, Item item) {
+            this.context = context;
+            this.os = os;
+            this.count = count;
+            this.item = item;
+            this.next = new AtomicInteger(0);
+            this.done = new AtomicInteger(0);
+            this.completed = new AtomicBoolean(false);
+            this.workers = ConcurrentHashMap.newKeySet();
+            this.broken = false;
+            this.stopped = new AtomicBoolean(false);
+        }
+
+        private void processingStarted() {
+            if (this.context == null) return;
+            ServletRequest request = this.context.getRequest();
+            if (request.getAttribute(PROCESSING_START_ATTRIBUTE) == null) request.setAttribute(PROCESSING_START_ATTRIBUTE, System.currentTimeMillis());
+        }
+
+        private void complete() {
+            if (this.context != null && this.completed.compareAndSet(false, true)) this.context.complete();
+        }
+
+        private void timeout() {
+            this.broken = true;
+            for (Thread w: this.workers) w.interrupt();
+            complete();
+        }
+
+        /**
+         * start the next item; if the executor rejects it, the rejection is written and the following item is tried
+         */
+        private void next() {
+            int i;
+            while ((i = this.next.getAndIncrement()) < this.count) {
+                if (this.stopped.get()) {
+                    if (this.done.incrementAndGet() == this.count) {
+                        complete();
+                        return;
+                    }
+                    continue;
+                }
+                final int index = i;
+                final long enqueued = System.currentTimeMillis();
+                try {
+                    AsyncExecutor.this.executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            Thread w = Thread.currentThread();
+                            Batch.this.workers.add(w);
+                            processingStarted();
+                            try {
+                                write(process(index, enqueued));
+                            } finally {
+                                Batch.this.workers.remove(w);
+                                Thread.interrupted(); // clear an interrupt of the timeout, the thread goes back to the pool
+                                done();
+                            }
+                        }
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    write(error(index, 503, "the server is busy, please try again later"));
+                    if (this.done.incrementAndGet() == this.count) {
+                        complete();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void done() {
+            if (this.done.incrementAndGet() == this.count) complete(); else next();
+        }
+
+        private JSONObject process(int index, long enqueued) {
+            if (this.broken || this.stopped.get()) return null;
+            if (System.currentTimeMillis() - enqueued > AsyncExecutor.this.timeout) return error(index, 503, "the server is busy, please try again later");
+            try {
+                JSONObject json = this.item.process(index);
+                if (json == null) return error(index, 400, "no result");
+                if (json.optInt("status") == 429 && !this.stopped.compareAndSet(false, true)) return null; // the batch was stopped already
+                json.put("index", index);
+                return json;
+            } catch (Throwable e) {
+                Log.getLog().warn(e);
+                return error(index, 500, e.getMessage());
+            }
+        }
+
+        private JSONObject error(int index, int status, String message) {
+            JSONObject json = new JSONObject(true);
+            json.put("index", index);
+            json.put("status", status);
+            json.put("error", message == null ? "" : message);
+            return json;
+        }
+
+        private void write(JSONObject json) {
+            if (json == null || this.broken) return;
+            byte[] line = (json.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+            synchronized (this.os) {
+                try {
+                    this.os.write(line);
+                    this.os.flush();
+                } catch (IOException e) {
+                    this.broken = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * run a task with the threads of the executor, i.e. the processing of a message which is not bound to a request
+     * @param task
+     * @return true if the task was accepted, false if the queue is full
+     */
+    public boolean submit(Runnable task) {
+        try {
+            this.executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void sendBusy(final HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", Long.toString(Math.max(1, this.timeout / 1000)));
+        response.sendError(503, "the server is busy, please try again later");
+    }
+
+    /**
+     * @return the number of requests which are processed right now
+     */
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    /**
+     * @return the maximum number of requests which are processed concurrently
+     */
+    public int getThreads() {
+        return this.executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return the number of requests which wait for processing
+     */
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+}
@@ -92,7 +92,16 @@ public class Authentication {
      * @return true if the Authentication is still valid or does not have an expire time set. false otherwise
      */
     public boolean checkExpireTime() {
-        return !this.json.has("expires_on") || this.json.getLong("expires_on") > Instant.now().getEpochSecond();
+        return !isExpired(this.json);
+    }
+
+    /**
+     * Check if the json of an authentication has an expire time which has passed
+     * @param json the authentication entry of a JsonTray
+     * @return true if the entry has expired
+     */
+    public static boolean isExpired(JSONObject json) {
+        return json.has("expires_on") && json.getLong("expires_on") <= Instant.now().getEpochSecond();
     }
 
     /**
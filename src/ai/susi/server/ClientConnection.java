@@ -111,12 +111,52 @@ public class ClientConnection {
      * @throws IOException
      */
     public ClientConnection(String urlstring, boolean useAuthentication) throws IOException {
+        this(urlstring, useAuthentication, defaultRequestConfig);
+    }
+    
+    /**
+     * GET request with a timeout
+     * @param urlstring
+     * @param useAuthentication
+     * @param timeout the connect and socket timeout in milliseconds
+     * @throws IOException
+     */
+    public ClientConnection(String urlstring, boolean useAuthentication, int timeout) throws IOException {
+        this(urlstring, useAuthentication, RequestConfig.copy(defaultRequestConfig)
+                .setSocketTimeout(timeout)
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .build());
+    }
+    
+    /**
+     * GET request with a timeout for a prepared request. Because the socket timeout applies to each read
+     * and not to the whole request, a caller with a deadline must abort the request from another thread
+     * with request.abort(); this also works before the request is executed.
+     * @param request
+     * @param useAuthentication
+     * @param timeout the connect and socket timeout in milliseconds
+     * @throws IOException
+     */
+    public ClientConnection(HttpGet request, boolean useAuthentication, int timeout) throws IOException {
+        this(request, useAuthentication, RequestConfig.copy(defaultRequestConfig)
+                .setSocketTimeout(timeout)
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .build());
+    }
+    
+    private ClientConnection(String urlstring, boolean useAuthentication, RequestConfig requestConfig) throws IOException {
+        this(new HttpGet(urlstring), useAuthentication, requestConfig);
+    }
+    
+    private ClientConnection(HttpGet request, boolean useAuthentication, RequestConfig requestConfig) throws IOException {
     	this.httpClient = HttpClients.custom()
 			.useSystemProperties()
 			.setConnectionManager(getConnctionManager(useAuthentication))
-			.setDefaultRequestConfig(defaultRequestConfig)
+			.setDefaultRequestConfig(requestConfig)
 			.build();
-        this.request = new HttpGet(urlstring);
+        this.request = request;
         this.request.setHeader("User-Agent", USER_AGENT);
         this.init();
     }
@@ -290,6 +330,19 @@ public class ClientConnection {
     	return getRedirect(urlstring, true);
     }
     
+    /**
+     * abort the request and close the connection without reading the rest of the response.
+     * This must be used instead of close() if the content was not read completely and the rest is not needed.
+     */
+    public void abort() {
+        this.request.abort();
+        try {
+            this.inputStream.close();
+        } catch (IOException e) {} finally {
+            this.request.releaseConnection();
+        }
+    }
+    
     public void close() {
         HttpEntity httpEntity = this.httpResponse.getEntity();
         if (httpEntity != null) EntityUtils.consumeQuietly(httpEntity);
@@ -334,25 +387,62 @@ public class ClientConnection {
     
     public static byte[] download(String source_url, boolean useAuthentication) throws IOException {
         try {
-            ClientConnection connection = new ClientConnection(source_url);
-            if (connection.inputStream == null) return null;
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            int count;
-            byte[] buffer = new byte[2048];
-            try {
-                while ((count = connection.inputStream.read(buffer)) > 0) baos.write(buffer, 0, count);
-            } catch (IOException e) {
-            	Log.getLog().warn(e.getMessage());
-            } finally {
-                connection.close();
-            }
-            return baos.toByteArray();
+            return download(new ClientConnection(source_url));
         } catch (IOException e) {
         	Log.getLog().warn(e.getMessage());
             return null;
         }
     }
     
+    /**
+     * download with a timeout
+     * @param source_url
+     * @param useAuthentication
+     * @param timeout the connect and socket timeout in milliseconds
+     * @return the content or null if the download failed or timed out
+     * @throws IOException
+     */
+    public static byte[] download(String source_url, boolean useAuthentication, int timeout) throws IOException {
+        try {
+            return download(new ClientConnection(source_url, useAuthentication, timeout));
+        } catch (IOException e) {
+        	Log.getLog().warn(e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * download a prepared request with a timeout; the request can be aborted from another thread
+     * @param request
+     * @param useAuthentication
+     * @param timeout the connect and socket timeout in milliseconds
+     * @return the content or null if the download failed, timed out or was aborted
+     * @throws IOException
+     */
+    public static byte[] download(HttpGet request, boolean useAuthentication, int timeout) throws IOException {
+        try {
+            return download(new ClientConnection(request, useAuthentication, timeout));
+        } catch (IOException e) {
+            if (!request.isAborted()) Log.getLog().warn(e.getMessage());
+            return null;
+        }
+    }
+    
+    private static byte[] download(ClientConnection connection) {
+        if (connection.inputStream == null) return null;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        int count;
+        byte[] buffer = new byte[2048];
+        try {
+            while ((count = connection.inputStream.read(buffer)) > 0) baos.write(buffer, 0, count);
+        } catch (IOException e) {
+        	Log.getLog().warn(e.getMessage());
+        } finally {
+            connection.close();
+        }
+        return baos.toByteArray();
+    }
+    
     public static byte[] download(String source_url) throws IOException {
     	return download(source_url, true);
     }
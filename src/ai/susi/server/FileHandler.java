@@ -19,19 +19,26 @@
 
 package ai.susi.server;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -39,32 +46,113 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.resource.PathResource;
 import org.eclipse.jetty.util.resource.Resource;
 
+import ai.susi.DAO;
 import ai.susi.tools.ByteBuffer;
 import ai.susi.tools.UTF8;
 
-
+/**
+ * A ResourceHandler with a cache for small files and html files. The html files are cached with
+ * resolved server side includes. Each cached file is kept together with a gzipped variant (if that is smaller)
+ * and strong ETags, so requests are answered from memory and conditional requests get a 304.
+ * The cache is bounded by the size of the cached content; the least recently used files are removed first.
+ * Cached files are invalidated by watching the directories of the files and their includes for changes;
+ * a request for a cached file is answered without any access to the file system. Files in directories which
+ * cannot be watched are checked for changes with their modification time at each access.
+ * Cached files also answer If-Modified-Since and single byte range requests.
+ * Larger files are served by the ResourceHandler, optionally with memory-mapped buffers.
+ */
 public class FileHandler extends ResourceHandler implements Handler {
     
-    private final long CACHE_LIMIT = 128L * 1024L;
+    private final static long CACHE_LIMIT = 128L * 1024L; // files below this size and all html files are cached
+    private final static int GZIP_MIN_LENGTH = 256;
+    private final static int PATHS_LIMIT = 10000; // the maximum number of request paths which are mapped to cached files
     private int expiresSeconds = 0;
+    private final FileCache cache;
+    private final Map<String, CachedFile> paths = new ConcurrentHashMap<>(); // request path to cached file, a hit needs no file system access
+    private final AtomicLong misses = new AtomicLong(0);
+    private final Map<Path, WatchKey> watchedDirs = new ConcurrentHashMap<>();
+    private final Map<File, Set<File>> dependents = new ConcurrentHashMap<>(); // for each file the cached files which include it
+    private final AtomicLong invalidations = new AtomicLong(0);
+    private volatile WatchService watcher = null;
+    private Thread watchThread = null;
     
     /**
      * create a custom ResourceHandler with more caching
      * @param expiresSeconds the time each file shall stay in the cache
      */
     public FileHandler(int expiresSeconds) {
+        this(expiresSeconds, DAO.getConfig("www.cache.size", 32L * 1024L * 1024L));
+    }
+
+    /**
+     * create a custom ResourceHandler with more caching
+     * @param expiresSeconds the time each file shall stay in the cache
+     * @param cacheSize the maximum number of bytes in the file cache
+     */
+    public FileHandler(int expiresSeconds, long cacheSize) {
         this.expiresSeconds = expiresSeconds;
-        //this.setMinMemoryMappedContentLength((int) CACHE_LIMIT);
+        this.cache = new FileCache(cacheSize);
+        this.setEtags(true); // weak ETags for the files which are not cached
+        long mmap = DAO.getConfig("www.mmap.minsize", CACHE_LIMIT); // files larger than that are served from memory-mapped buffers; 0 switches this off
+        if (mmap > 0) this.setMinMemoryMappedContentLength((int) Math.min(Integer.MAX_VALUE, mmap));
     }
-    
+
+    @Override
+    public void doStart() throws Exception {
+        super.doStart();
+        try {
+            this.watcher = newWatchService();
+            this.watchThread = new Thread("FileHandler.watcher") {
+                @Override
+                public void run() {
+                    watch();
+                }
+            };
+            this.watchThread.setDaemon(true);
+            this.watchThread.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            // without a watch service each access checks the modification time of the cached files
+            Log.getLog().warn("no file watch service available: " + e.getMessage());
+            this.watcher = null;
+        }
+    }
+
+    protected WatchService newWatchService() throws IOException {
+        return FileSystems.getDefault().newWatchService();
+    }
+
+    @Override
+    public void doStop() throws Exception {
+        WatchService w = this.watcher;
+        this.watcher = null;
+        if (w != null) w.close();
+        if (this.watchThread != null) this.watchThread.interrupt();
+        this.watchedDirs.clear();
+        this.dependents.clear();
+        this.cache.clear();
+        this.paths.clear();
+        super.doStop();
+    }
+
     @Override
     public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+        if (baseRequest.isHandled()) return;
+        if (HttpMethod.GET.is(request.getMethod()) || HttpMethod.HEAD.is(request.getMethod())) {
+            CachedFile cachedFile = getCachedFile(target);
+            if (cachedFile != null) {
+                baseRequest.setHandled(true);
+                serve(cachedFile, request, response);
+                return;
+            }
+        }
         // use the ResourceHandler to handle the request. This method calls doResponseHeaders internally
         super.handle(target, baseRequest, request, response);
     }
@@ -113,61 +201,339 @@ public class FileHandler extends ResourceHandler implements Handler {
         response.setDateHeader(HttpHeader.EXPIRES.asString(), System.currentTimeMillis() + expiresSeconds * 1000);
     }
 
-    @Override
-    public Resource getResource(String path) {
-        Resource resource = super.getResource(path);
-        if (resource == null) return null;
-        if (!(resource instanceof PathResource) || !resource.exists()) return resource;
+    /**
+     * get a file from the cache or load it into the cache
+     * @param path the path of the request
+     * @return the cached file or null if the file cannot be cached and must be served by the ResourceHandler
+     * @throws IOException
+     */
+    private CachedFile getCachedFile(String path) throws IOException {
+        CachedFile cachedFile = this.paths.get(path);
+        if (cachedFile != null) {
+            if (cachedFile.isValid()) return cachedFile;
+            this.paths.remove(path, cachedFile);
+        }
+        this.misses.incrementAndGet();
+
+        Resource resource = getResource(path);
+        if (resource == null || !(resource instanceof PathResource) || !resource.exists()) return null;
+        File file = resource.getFile();
+        if (file.isDirectory()) {
+            if (!path.endsWith("/")) return null; // the ResourceHandler sends a redirect
+            file = getWelcomeFile(file);
+            if (file == null) return null;
+        }
+        if (file.length() >= CACHE_LIMIT && !file.getName().endsWith(".html")) return null;
+        file = file.getCanonicalFile();
+
+        cachedFile = this.cache.get(file);
+        if (cachedFile != null && cachedFile.isValid()) {
+            putPath(path, cachedFile);
+            return cachedFile;
+        }
+
+        // the directory is watched before the file is read, so a change during reading is noticed
+        long invalidationsBefore = this.invalidations.get();
+        boolean watched = watch(file);
+        cachedFile = new CachedFile(file, getMimeType(file));
+        for (File include: cachedFile.includes) watched &= watch(include);
+        cachedFile.watched = watched;
+        synchronized (this.dependents) { // the cleanup must not remove the dependents before the file is in the cache
+            for (File include: cachedFile.includes) this.dependents.computeIfAbsent(include, f -> ConcurrentHashMap.newKeySet()).add(file);
+            if (this.invalidations.get() == invalidationsBefore) {
+                this.cache.put(file, cachedFile);
+                putPath(path, cachedFile);
+            }
+        }
+        return cachedFile;
+    }
+
+    private void putPath(String path, CachedFile cachedFile) {
+        // the paths are not bounded by the cache size; many different paths for the same files only cost a new lookup
+        if (this.paths.size() >= PATHS_LIMIT) this.paths.clear();
+        this.paths.put(path, cachedFile);
+    }
+
+    private File getWelcomeFile(File dir) {
+        String[] welcomeFiles = getWelcomeFiles();
+        if (welcomeFiles == null) return null;
+        for (String welcome: welcomeFiles) {
+            File f = new File(dir, welcome);
+            if (f.isFile()) return f;
+        }
+        return null;
+    }
+
+    private String getMimeType(File file) {
+        String mimeType = getMimeTypes().getMimeByExtension(file.getName());
+        if (mimeType == null && file.getName().endsWith(".css")) mimeType = "text/css";
+        return mimeType == null ? "application/octet-stream" : mimeType;
+    }
+
+    private void serve(CachedFile cachedFile, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // a range refers to the identity encoding, therefore range requests are not answered with the gzip variant
+        String range = request.getHeader(HttpHeader.RANGE.asString());
+        String ifRange = request.getHeader(HttpHeader.IF_RANGE.asString());
+        if (range != null && ifRange != null && !ifRange.equals(cachedFile.etag)) range = null; // the client has another version, send it all
+        boolean gzip = range == null && cachedFile.gzip != null && acceptsGzip(request.getHeader(HttpHeader.ACCEPT_ENCODING.asString()));
+        String etag = gzip ? cachedFile.gzipEtag : cachedFile.etag;
+        response.setHeader(HttpHeader.ETAG.asString(), etag);
+        response.setHeader(HttpHeader.ACCEPT_RANGES.asString(), "bytes");
+        if (cachedFile.gzip != null) response.setHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+        setCaching(response, this.expiresSeconds);
+        String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.asString());
+        if (ifNoneMatch != null ? ResponseCache.isNotModified(ifNoneMatch, etag) : isNotModifiedSince(request, cachedFile.lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] body = gzip ? cachedFile.gzip : cachedFile.body;
+        int start = 0, end = body.length;
+        long[] r = range == null ? null : parseRange(range, body.length);
+        if (r != null) {
+            if (r[0] < 0) {
+                response.setHeader(HttpHeader.CONTENT_RANGE.asString(), "bytes */" + body.length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = (int) r[0];
+            end = (int) r[1] + 1;
+            response.setHeader(HttpHeader.CONTENT_RANGE.asString(), "bytes " + r[0] + "-" + r[1] + "/" + body.length);
+        }
+        response.setStatus(r == null ? HttpServletResponse.SC_OK : HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType(cachedFile.mimeType);
+        if (gzip) response.setHeader(HttpHeader.CONTENT_ENCODING.asString(), "gzip"); // the GzipHandler does not compress this again
+        response.setContentLength(end - start);
+        if (!HttpMethod.HEAD.is(request.getMethod())) response.getOutputStream().write(body, start, end - start);
+    }
+
+    private static boolean isNotModifiedSince(HttpServletRequest request, long lastModified) {
+        long ifModifiedSince;
         try {
-            File f = resource.getFile();
-            if (f.isDirectory() && !path.equals("/")) return resource;
-            CacheResource cache = resourceCache.get(f);
-            if (cache != null) return cache;
-            if (f.length() < CACHE_LIMIT || f.getName().endsWith(".html") || path.equals("/")) {
-                cache = new CacheResource((PathResource) resource);
-                resourceCache.put(f, cache);
-                return cache;
+            ifModifiedSince = request.getDateHeader(HttpHeader.IF_MODIFIED_SINCE.asString());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // http dates have a resolution of seconds
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * parse a single byte range. Multiple ranges are not supported; they are ignored as the http standard allows.
+     * @param range the value of the Range header
+     * @param length the length of the content
+     * @return the first and the last position of the range, {-1, -1} if the range cannot be satisfied
+     *         or null if the range is not supported and the whole content shall be sent
+     */
+    static long[] parseRange(String range, long length) {
+        range = range.trim();
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) return null;
+        String spec = range.substring(6).trim();
+        int p = spec.indexOf('-');
+        if (p < 0) return null;
+        try {
+            String first = spec.substring(0, p).trim(), last = spec.substring(p + 1).trim();
+            long start, end;
+            if (first.length() == 0) {
+                // a suffix range: the last n bytes
+                if (last.length() == 0) return null;
+                long n = Long.parseLong(last);
+                if (n <= 0) return new long[]{-1, -1};
+                start = Math.max(0, length - n);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                if (last.length() == 0) {
+                    end = length - 1;
+                } else {
+                    end = Long.parseLong(last);
+                    if (end < start) return null; // a syntactically invalid range is ignored
+                    end = Math.min(end, length - 1);
+                }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (start < 0 || start >= length) return new long[]{-1, -1};
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
         }
-        return resource;
     }
 
-    private final Map<File, CacheResource> resourceCache = new ConcurrentHashMap<>();
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String coding: acceptEncoding.split(",")) {
+            String[] c = coding.trim().split(";");
+            if (!c[0].trim().equals("gzip")) continue;
+            return c.length < 2 || !c[1].replace(" ", "").matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    /**
+     * watch the directory of a file
+     * @param file
+     * @return true if the directory is watched, false if changes of the file must be detected with the modification time
+     */
+    private boolean watch(File file) {
+        WatchService w = this.watcher;
+        if (w == null) return false;
+        WatchKey key = this.watchedDirs.computeIfAbsent(file.getParentFile().toPath(), dir -> {
+            try {
+                return dir.register(w, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException | ClosedWatchServiceException e) {
+                return null; // this is tried again at the next access
+            }
+        });
+        return key != null && key.isValid();
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                WatchService w = this.watcher;
+                if (w == null) return;
+                key = w.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event: key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    this.invalidations.incrementAndGet();
+                    this.cache.clear();
+                    continue;
+                }
+                invalidate(dir.resolve((Path) event.context()).toFile());
+            }
+            if (!key.reset()) {
+                // the directory is not watched any more, i.e. because it was deleted
+                this.watchedDirs.remove(dir);
+                invalidateDirectory(dir.toFile());
+            }
+        }
+    }
+
+    private void invalidateDirectory(File dir) {
+        for (CachedFile cachedFile: this.cache.values()) {
+            boolean inDir = dir.equals(cachedFile.file.getParentFile());
+            for (File include: cachedFile.includes) inDir |= dir.equals(include.getParentFile());
+            if (inDir) invalidate(cachedFile.file);
+        }
+    }
+
+    private void invalidate(File file) {
+        this.invalidations.incrementAndGet();
+        this.cache.remove(file);
+        Set<File> d = this.dependents.remove(file);
+        if (d != null) for (File f: d) this.cache.remove(f);
+    }
+
+    /**
+     * remove cached files which were deleted or changed and forget the includes of files which are not
+     * cached any more. The watcher removes changed files at once, but the includes of files which were
+     * evicted from the cache are only removed here.
+     * @return the number of removed cache entries and includes
+     */
+    public int cleanup() {
+        int c = 0;
+        for (CachedFile cachedFile: this.cache.values()) {
+            if (!cachedFile.file.exists() || cachedFile.lastModified < cachedFile.actualLastModified()) {
+                this.cache.remove(cachedFile.file);
+                c++;
+            }
+        }
+        this.paths.values().removeIf(cachedFile -> cachedFile.invalid);
+        synchronized (this.dependents) {
+            Iterator<Set<File>> i = this.dependents.values().iterator();
+            while (i.hasNext()) {
+                Set<File> d = i.next();
+                d.removeIf(f -> !this.cache.contains(f));
+                if (d.isEmpty()) {i.remove(); c++;}
+            }
+        }
+        return c;
+    }
+
+    /**
+     * @return the number of includes of cached files
+     */
+    public int getIncludeSize() {
+        return this.dependents.size();
+    }
+
+    /**
+     * @return the number of bytes in the file cache
+     */
+    public long getCacheBytes() {
+        return this.cache.bytes();
+    }
+
+    /**
+     * @return the number of requests which were not answered from the cache without an access to the file system
+     */
+    public long getCacheMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the number of files in the file cache
+     */
+    public int getCacheSize() {
+        return this.cache.size();
+    }
+
     private final static byte[] SSI_START = "<!--#include file=\"".getBytes();
     private final static byte[] SSI_END   = "\" -->".getBytes();
     
-    private static class CacheResource extends Resource {
+    private static class CachedFile {
 
-        private byte[] buffer;
-        private long lastModified;
-        private File file;
-        private List<File> includes;
+        private final File file;
+        private final String mimeType;
+        private final byte[] body, gzip;
+        private final String etag, gzipEtag;
+        private final long lastModified;
+        private final List<File> includes;
+        private volatile boolean watched; // true if the directories of the file and all includes are watched
+        private volatile boolean invalid; // true if the file was removed from the cache
         
-        public CacheResource(PathResource pathResource) throws IOException {
-            this.file = pathResource.getFile();
-            if (this.file.isDirectory()) this.file = new File(this.file, "index.html");
+        public CachedFile(File file, String mimeType) throws IOException {
+            this.file = file;
+            this.mimeType = mimeType;
             this.includes = new ArrayList<>(8);
-            initCache(System.currentTimeMillis());
-            pathResource.close();
-            
+            this.lastModified = file.lastModified();
+            byte[] b = Files.readAllBytes(file.toPath());
+            if (file.getName().endsWith(".html")) b = insertSSI(b);
+            this.body = b;
+            this.gzip = isCompressible(mimeType) ? gzip(b) : null;
+            String hash = ResponseCache.hash(b);
+            this.etag = '"' + hash + '"';
+            this.gzipEtag = '"' + hash + "-gz" + '"';
         }
-        
-        private void initCache(long nextLastModified) throws IOException {
-            this.buffer = Files.readAllBytes(this.file.toPath());
-            if (this.file.getName().endsWith(".html")) this.buffer = insertSSI(this.buffer);
-            this.lastModified = nextLastModified;
+
+        public long size() {
+            return this.body.length + (this.gzip == null ? 0 : this.gzip.length);
+        }
+
+        /**
+         * a watched file is valid until the watcher removes it from the cache, other files are checked for changes
+         */
+        public boolean isValid() {
+            return !this.invalid && (this.watched || this.lastModified >= actualLastModified());
+        }
+
+        public long actualLastModified() {
+            long l = this.file.lastModified();
+            for (File d: this.includes) l = Math.max(l, d.lastModified());
+            return l;
         }
         
         private byte[] insertSSI(byte[] b) throws IOException {
-            this.includes.clear();
             for (int p = findSSI_start(b, 0); p >= 0; p = findSSI_start(b, p)) {
                 int q = findSSI_end(b, p);
                 if (q < 0) break;
                 byte[] f = new byte[q - p - SSI_START.length];
                 System.arraycopy(b, p + SSI_START.length, f, 0, f.length);
                 File ff = new File(this.file.getParent(), UTF8.String(f)).getCanonicalFile();
+                this.includes.add(ff); // a missing include is also watched, it may be created later
                 if (!ff.exists()) {
                     byte[] b0 = new byte[b.length - (q - p) - SSI_END.length];
                     System.arraycopy(b, 0, b0, 0, p);
@@ -175,7 +541,6 @@ public class FileHandler extends ResourceHandler implements Handler {
                     b = b0;
                     continue;
                 }
-                this.includes.add(ff);
                 byte[] i = Files.readAllBytes(ff.toPath());
                 byte[] b0 = new byte[b.length - (q - p) - SSI_END.length + i.length];
                 System.arraycopy(b, 0, b0, 0, p);
@@ -194,61 +559,82 @@ public class FileHandler extends ResourceHandler implements Handler {
             return ByteBuffer.indexOf(b, SSI_END, p);
         }
 
-        @Override
-        public boolean exists() {
-            return true;
+        private static boolean isCompressible(String mimeType) {
+            return mimeType.startsWith("text/") || mimeType.equals("application/javascript") || mimeType.equals("application/json") ||
+                   mimeType.equals("application/xml") || mimeType.equals("image/svg+xml");
         }
 
-        @Override
-        public boolean isDirectory() {
-            return false;
+        /**
+         * @return the gzipped content or null if compression does not make it considerably smaller
+         */
+        private static byte[] gzip(byte[] b) throws IOException {
+            if (b.length < GZIP_MIN_LENGTH) return null;
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(b.length / 2);
+            GZIPOutputStream zos = new GZIPOutputStream(baos);
+            zos.write(b);
+            zos.close();
+            return baos.size() < b.length * 9 / 10 ? baos.toByteArray() : null;
+        }
+    }
+
+    /**
+     * a LRU cache which is bounded by the size of the cached files
+     */
+    private static class FileCache {
+
+        private final long maxBytes;
+        private final LinkedHashMap<File, CachedFile> files;
+        private long bytes;
+
+        public FileCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+            this.files = new LinkedHashMap<>(16, 0.75f, true); // access order
+            this.bytes = 0;
         }
 
-        private long actualLastModified() {
-            long l = this.file.lastModified();
-            for (File d: this.includes) l = Math.max(l, d.lastModified());
-            return l;
+        public synchronized CachedFile get(File file) {
+            return this.files.get(file);
         }
-        
-        @Override
-        public long lastModified() {
-            long l = actualLastModified();
-            if (actualLastModified() > this.lastModified) try {initCache(l);} catch (IOException e) {}
-            this.lastModified = l;
-            return this.lastModified;
+
+        public synchronized void put(File file, CachedFile cachedFile) {
+            CachedFile old = this.files.put(file, cachedFile);
+            if (old != null && old != cachedFile) {this.bytes -= old.size(); old.invalid = true;}
+            this.bytes += cachedFile.size();
+            Iterator<CachedFile> i = this.files.values().iterator();
+            while (this.bytes > this.maxBytes && i.hasNext()) {
+                CachedFile evicted = i.next();
+                this.bytes -= evicted.size();
+                evicted.invalid = true;
+                i.remove();
+            }
         }
 
-        @Override
-        public long length() {
-            return this.buffer.length;
+        public synchronized void remove(File file) {
+            CachedFile old = this.files.remove(file);
+            if (old != null) {this.bytes -= old.size(); old.invalid = true;}
         }
 
-        @Override
-        public InputStream getInputStream() throws IOException {
-            long l = actualLastModified();
-            if (actualLastModified() > this.lastModified) initCache(l);
-            return new ByteArrayInputStream(this.buffer);
+        public synchronized boolean contains(File file) {
+            return this.files.containsKey(file);
         }
 
-        @Override
-        public ReadableByteChannel getReadableByteChannel() throws IOException {
-            return Channels.newChannel(this.getInputStream());
+        public synchronized List<CachedFile> values() {
+            return new ArrayList<>(this.files.values());
         }
 
-        @Override
-        public String getName() {
-            return this.file.getName();
+        public synchronized void clear() {
+            for (CachedFile cachedFile: this.files.values()) cachedFile.invalid = true;
+            this.files.clear();
+            this.bytes = 0;
         }
 
-        @Override public void close() {}
-        @Override public String[] list() {throw new UnsupportedOperationException();}
-        @Override public boolean delete() throws SecurityException {throw new UnsupportedOperationException();}
-        @Override public Resource addPath(String arg0) throws IOException, MalformedURLException {throw new UnsupportedOperationException();}
-        @Override public File getFile() throws IOException {throw new UnsupportedOperationException();}
-        @Override public URL getURL() {throw new UnsupportedOperationException();}
-        @Override public boolean isContainedIn(Resource arg0) throws MalformedURLException {throw new UnsupportedOperationException();}
-        @Override public boolean renameTo(Resource arg0) throws SecurityException {throw new UnsupportedOperationException();}
+        public synchronized int size() {
+            return this.files.size();
+        }
+
+        public synchronized long bytes() {
+            return this.bytes;
+        }
     }
     
-    
 }
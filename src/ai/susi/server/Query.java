@@ -20,6 +20,7 @@
 
 package ai.susi.server;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.HashMap;
@@ -39,6 +40,8 @@ public class Query {
     private HttpServletRequest request;
     private Map<String, String> qm;
     public AccessTracker.Track track;
+    private long retryAfter;
+    private boolean blacklisted;
     
     public Query(final HttpServletRequest request) {
         this.qm = new HashMap<>();
@@ -55,11 +58,13 @@ public class Query {
         // start tracking: get calling thread and start tracking for that
         this.track = DAO.access.startTracking(request.getServletPath(), clientHost);
         this.track.setTimeSinceLastAccess(this.track.getDate().getTime() - RemoteAccess.latestVisit(request.getServletPath(), clientHost));
-        this.track.setDoSBlackout(SusiServer.blacklistedHosts.contains(clientHost) || (!this.track.isLocalhostAccess() && (this.track.getTimeSinceLastAccess() < DAO.getConfig("DoS.blackout", 100))));
+        this.retryAfter = this.track.isLocalhostAccess() ? 0 : RemoteAccess.limiter.acquire(request.getServletPath(), clientHost);
+        this.blacklisted = SusiServer.blacklistedHosts.contains(clientHost);
+        this.track.setDoSBlackout(this.blacklisted || this.retryAfter > 0);
         this.track.setDoSServicereduction(!this.track.isLocalhostAccess() && (this.track.getTimeSinceLastAccess() < DAO.getConfig("DoS.servicereduction", 1000)));
     }
     public void finalize() {
-        this.track.finalize();
+        this.track.finish();
     }
     public void initGET(final Map<String, String> qm) {
         this.qm = qm;
@@ -87,8 +92,19 @@ public class Query {
     public boolean isDoS_servicereduction() {
         return this.track.isDoSServicereduction();
     }
+    /**
+     * answer a request which was rejected by the DoS protection with a 429 status code.
+     * Only a rejection by the rate limiter gets a Retry-After header, so the client knows when
+     * it may try again; blacklisted hosts are not invited to come back.
+     * @param response
+     * @throws IOException
+     */
+    public void sendDoSError(final HttpServletResponse response) throws IOException {
+        if (!this.blacklisted && this.retryAfter > 0) response.setHeader("Retry-After", Long.toString(Math.max(1, (this.retryAfter + 999) / 1000)));
+        response.sendError(429, "your request frequency is too high");
+    }
     public void recordEvent(String eventName, Object eventValue) {
-        this.track.put(AccessTracker.EVENT_PREFIX + eventName, eventValue);
+        this.track.recordEvent(eventName, eventValue);
     }
     public String get(String key, String dflt) {
         String val = qm == null ? request.getParameter(key) : qm.get(key);
@@ -0,0 +1,197 @@
+/**
+ *  RateLimiter
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ai.susi.DAO;
+
+/**
+ * A lock-free rate limiter for the DoS protection of the servlets.
+ * The limiter implements the generic cell rate algorithm (GCRA), which is equivalent to a token bucket
+ * but needs only one number per client: the theoretical arrival time (TAT) of the next request.
+ * A request is accepted if it does not arrive earlier than TAT minus the burst tolerance; then
+ * TAT is moved forward by the emission interval with a single compare-and-set.
+ *
+ * Rates are configured per servlet path with the keys
+ *   DoS.rate[.servletPath]  - the number of requests per second which a client may do
+ *   DoS.burst[.servletPath] - the number of requests which a client may do at once
+ * A client which has been idle long enough has the same state as an unknown client, therefore
+ * idle clients can be evicted without loss of information. If the number of clients exceeds
+ * the limit even after eviction, the least recently seen clients are evicted, so a flood of
+ * requests from many hosts cannot lock out new clients.
+ */
+public class RateLimiter {
+
+    public final static double DEFAULT_RATE = 10.0d; // requests per second
+    public final static int DEFAULT_BURST = 20;
+    public final static int DEFAULT_MAX_CLIENTS = 100000;
+
+    private final int maxClients;
+    private final Map<String, Limit> limits;
+
+    public RateLimiter(int maxClients) {
+        this.maxClients = maxClients;
+        this.limits = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * set the rate for a servlet path explicitly, overriding the configuration
+     * @param servletPath
+     * @param requestsPerSecond
+     * @param burst
+     * @return self
+     */
+    public RateLimiter setRate(String servletPath, double requestsPerSecond, int burst) {
+        this.limits.put(servletPath, new Limit(requestsPerSecond, burst));
+        return this;
+    }
+
+    /**
+     * check if a client may do a request to a servlet. This consumes one token if the request is accepted.
+     * @param servletPath
+     * @param client the client host
+     * @return 0 if the request is accepted, otherwise the number of milliseconds until the client may try again
+     */
+    public long acquire(String servletPath, String client) {
+        return getLimit(servletPath).acquire(client, System.nanoTime());
+    }
+
+    /**
+     * get the time when a client has been seen latest at a servlet
+     * @param servletPath
+     * @param client
+     * @return the time in milliseconds since epoch or -1 if the client is not known
+     */
+    public long latestVisit(String servletPath, String client) {
+        Limit limit = this.limits.get(servletPath);
+        if (limit == null) return -1;
+        Bucket bucket = limit.buckets.get(client);
+        return bucket == null ? -1 : bucket.lastAccess;
+    }
+
+    /**
+     * remove all clients which are idle: their bucket would be completely filled again
+     * @return the number of removed clients
+     */
+    public int cleanup() {
+        long now = System.nanoTime();
+        int c = 0;
+        for (Limit limit: this.limits.values()) c += limit.evictIdle(now);
+        return c;
+    }
+
+    public int size() {
+        int c = 0;
+        for (Limit limit: this.limits.values()) c += limit.buckets.size();
+        return c;
+    }
+
+    private Limit getLimit(String servletPath) {
+        Limit limit = this.limits.get(servletPath);
+        if (limit != null) return limit;
+        return this.limits.computeIfAbsent(servletPath, path -> new Limit(
+                DAO.getConfig("DoS.rate." + path, DAO.getConfig("DoS.rate", DEFAULT_RATE)),
+                (int) DAO.getConfig("DoS.burst." + path, DAO.getConfig("DoS.burst", (long) DEFAULT_BURST))));
+    }
+
+    private static class Bucket {
+        private final AtomicLong tat; // the theoretical arrival time in nanoseconds
+        private volatile long lastAccess; // the latest time when the client was seen in milliseconds
+        public Bucket(long tat) {
+            this.tat = new AtomicLong(tat);
+            this.lastAccess = -1;
+        }
+    }
+
+    private class Limit {
+
+        private final long interval; // the emission interval in nanoseconds
+        private final long tolerance; // the burst tolerance in nanoseconds
+        private final Map<String, Bucket> buckets;
+
+        public Limit(double requestsPerSecond, int burst) {
+            this.interval = (long) (1000000000.0d / Math.max(requestsPerSecond, 1.0e-6));
+            this.tolerance = this.interval * Math.max(burst - 1, 0);
+            this.buckets = new ConcurrentHashMap<>();
+        }
+
+        public long acquire(String client, long now) {
+            Bucket bucket = getBucket(client, now);
+            bucket.lastAccess = System.currentTimeMillis();
+            while (true) {
+                long tat = bucket.tat.get();
+                long newTat = Math.max(tat, now) + this.interval;
+                long allowAt = newTat - this.interval - this.tolerance;
+                if (allowAt > now) return Math.max(1, (allowAt - now) / 1000000);
+                if (bucket.tat.compareAndSet(tat, newTat)) return 0;
+            }
+        }
+
+        private Bucket getBucket(String client, long now) {
+            Bucket bucket = this.buckets.get(client);
+            if (bucket != null) return bucket;
+            if (this.buckets.size() >= RateLimiter.this.maxClients) shrink(now);
+            return this.buckets.computeIfAbsent(client, c -> new Bucket(now));
+        }
+
+        /**
+         * shrink the bucket map if it is full: first idle clients are removed, then the least recently
+         * seen ones until the map has 10% headroom. Because of the headroom the full scan happens rarely.
+         * An evicted client which is still active starts again with a full bucket.
+         */
+        private synchronized void shrink(long now) {
+            int maxClients = RateLimiter.this.maxClients;
+            if (this.buckets.size() < maxClients) return; // another thread did this already
+            evictIdle(now);
+            int overflow = this.buckets.size() - (maxClients - maxClients / 10);
+            if (overflow <= 0) return;
+            // take a snapshot of the access times because they change while we sort
+            List<Object[]> entries = new ArrayList<>(this.buckets.size());
+            for (Map.Entry<String, Bucket> entry: this.buckets.entrySet()) {
+                entries.add(new Object[]{entry.getKey(), entry.getValue(), entry.getValue().lastAccess});
+            }
+            entries.sort((a, b) -> Long.compare((Long) a[2], (Long) b[2]));
+            for (int i = 0; i < overflow && i < entries.size(); i++) {
+                Object[] entry = entries.get(i);
+                this.buckets.remove((String) entry[0], (Bucket) entry[1]);
+            }
+        }
+
+        /**
+         * remove buckets which would be full again. A concurrent acquire on an evicted bucket
+         * is lost, which can only grant one more request to a client that was idle anyway.
+         */
+        public int evictIdle(long now) {
+            int c = 0;
+            Iterator<Bucket> i = this.buckets.values().iterator();
+            while (i.hasNext()) {
+                if (i.next().tat.get() <= now) {i.remove(); c++;}
+            }
+            return c;
+        }
+    }
+
+}
@@ -50,7 +50,9 @@ import ai.susi.tools.UTF8;
  */
 public class RemoteAccess {
 
+    public static final long PEER_EXPIRY = 60L * 60L * 1000L; // peers which were not seen within that time are removed by the caretaker
     public static Map<String, Map<String, RemoteAccess>> history = new ConcurrentHashMap<String, Map<String, RemoteAccess>>();
+    public static RateLimiter limiter = new RateLimiter(RateLimiter.DEFAULT_MAX_CLIENTS);
     
     public static Query evaluate(final HttpServletRequest request) {
         try{ request.setCharacterEncoding("UTF-8");} catch (UnsupportedEncodingException e){} // set character encoding before any request is made
@@ -68,11 +70,10 @@ public class RemoteAccess {
         Map<String, RemoteAccess> hmap = history.get(request.getServletPath());
         if (hmap == null) {hmap = new ConcurrentHashMap<>(); history.put(request.getServletPath(), hmap);}
         if (httpport == null || httpsport == null) {
-            // if port configuration is omitted, just update the value if it exist
+            // if port configuration is omitted, just update the value if it exist;
+            // only peers are stored here, the access of all other clients is tracked by the rate limiter
             RemoteAccess ra = hmap.get(remoteHost);
-            if (ra == null) {
-                hmap.put(remoteHost, new RemoteAccess(remoteHost, path, httpport, httpsport, peername));
-            } else {
+            if (ra != null) {
                 assert ra.remoteHost.equals(remoteHost);
                 ra.localPath = path;
                 ra.accessTime = System.currentTimeMillis();
@@ -85,11 +86,24 @@ public class RemoteAccess {
         return post;
     }
     
+    /**
+     * remove all peers which were not seen for the given time
+     * @param maxAge the time in milliseconds
+     * @return the number of removed peers
+     */
+    public static int cleanup(long maxAge) {
+        long pivotTime = System.currentTimeMillis() - maxAge;
+        int c = 0;
+        for (Map<String, RemoteAccess> hmap: history.values()) {
+            int s = hmap.size();
+            hmap.values().removeIf(ra -> ra.accessTime < pivotTime);
+            c += s - hmap.size();
+        }
+        return c;
+    }
+    
     public static long latestVisit(String servlet, String remoteHost) {
-        Map<String, RemoteAccess> hmap = history.get(servlet);
-        if (hmap == null) {hmap = new ConcurrentHashMap<>(); history.put(servlet, hmap);}
-        RemoteAccess ra = hmap.get(remoteHost);
-        return ra == null ? -1 : ra.accessTime;
+        return limiter.latestVisit(servlet, remoteHost);
     }
     
     public static String hostHash(String remoteHost) {
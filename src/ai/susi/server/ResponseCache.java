@@ -0,0 +1,133 @@
+/**
+ *  ResponseCache
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ai.susi.tools.UTF8;
+
+/**
+ * A cache for serialized api responses. The cache is bounded by the sum of the size of all cached
+ * responses; if the cache is full, the least recently used responses are removed.
+ * Each cached response carries a hash of its content which is used to compute strong ETags.
+ */
+public class ResponseCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> cache;
+    private long bytes;
+
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true); // access order
+        this.bytes = 0;
+    }
+
+    public static class Entry {
+        public final byte[] body;
+        public final String hash;
+        public final int expires; // the expiry time in seconds for the http caching headers or -1 if not set
+
+        public Entry(byte[] body, int expires) {
+            this.body = body;
+            this.hash = hash(body);
+            this.expires = expires;
+        }
+
+        /**
+         * compute a strong ETag for a response which consists of the cached body and additional parts
+         * @param parts strings which are also part of the response, may contain null
+         * @return a quoted ETag
+         */
+        public String etag(String... parts) {
+            if (parts.length == 0) return '"' + this.hash + '"';
+            StringBuilder sb = new StringBuilder(this.hash);
+            for (String part: parts) sb.append('|').append(part == null ? "" : part);
+            return '"' + hash(UTF8.getBytes(sb.toString())) + '"';
+        }
+    }
+
+    public synchronized Entry get(String key) {
+        return this.cache.get(key);
+    }
+
+    public synchronized Entry put(String key, byte[] body, int expires) {
+        Entry entry = new Entry(body, expires);
+        Entry old = this.cache.put(key, entry);
+        if (old != null) this.bytes -= old.body.length;
+        this.bytes += body.length;
+        // remove the least recently used entries; a single response larger than the cache is not kept
+        Iterator<Map.Entry<String, Entry>> i = this.cache.entrySet().iterator();
+        while (this.bytes > this.maxBytes && i.hasNext()) {
+            this.bytes -= i.next().getValue().body.length;
+            i.remove();
+        }
+        return entry;
+    }
+
+    public synchronized void clear() {
+        this.cache.clear();
+        this.bytes = 0;
+    }
+
+    public synchronized int size() {
+        return this.cache.size();
+    }
+
+    public synchronized long bytes() {
+        return this.bytes;
+    }
+
+    /**
+     * check if an If-None-Match request header matches a given ETag
+     * @param ifNoneMatch the content of the If-None-Match header, may be null
+     * @param etag the quoted ETag of the current response
+     * @return true if the client has the current response already and a 304 can be sent
+     */
+    public static boolean isNotModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) return false;
+        for (String tag: ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static String hash(byte[] b) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(b);
+            char[] c = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                c[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+                c[2 * i + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(c);
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(java.util.Arrays.hashCode(b)); // every jvm has MD5, this does not happen
+        }
+    }
+
+}
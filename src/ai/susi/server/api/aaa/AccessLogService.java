@@ -0,0 +1,104 @@
+/**
+ *  AccessLogService
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server.api.aaa;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONObject;
+
+import ai.susi.DAO;
+import ai.susi.json.JsonObjectWithDefault;
+import ai.susi.server.APIException;
+import ai.susi.server.APIHandler;
+import ai.susi.server.AbstractAPIHandler;
+import ai.susi.server.AccessIndex;
+import ai.susi.server.Authorization;
+import ai.susi.server.BaseUserRole;
+import ai.susi.server.Query;
+
+/**
+ * Queries of the access log index:
+ * show=requests: requests per servlet per minute, optional for one servlet
+ * show=hosts: the hosts with the most requests, limited by count
+ * show=host: requests of one host per minute
+ * show=latency: percentiles of the runtime, optional for one servlet
+ * The time range is given with from and to in milliseconds since epoch or with minutes until now (default 60).
+ */
+public class AccessLogService extends AbstractAPIHandler implements APIHandler {
+
+    private static final long serialVersionUID = -3415203856281926521L;
+
+    @Override
+    public BaseUserRole getMinimalBaseUserRole() {
+        return BaseUserRole.ADMIN;
+    }
+
+    @Override
+    public JSONObject getDefaultPermissions(BaseUserRole baseUserRole) {
+        return null;
+    }
+
+    @Override
+    public String getAPIPath() {
+        return "/aaa/accesslog.json";
+    }
+
+    @Override
+    public JSONObject serviceImpl(Query post, HttpServletResponse response, Authorization rights, final JsonObjectWithDefault permissions) throws APIException {
+        AccessIndex index = DAO.access.getIndex();
+        long to = post.get("to", System.currentTimeMillis());
+        long from = post.get("from", to - post.get("minutes", 60) * AccessIndex.MINUTE);
+        if (from > to) throw new APIException(400, "from must be before to");
+        String servlet = post.get("servlet", "");
+        if (servlet.length() == 0) servlet = null;
+
+        JSONObject result = new JSONObject(true);
+        result.put("from", from);
+        result.put("to", to);
+        switch (post.get("show", "")) {
+            case "requests":
+                result.put("requests", index.requestsPerMinute(from, to, servlet));
+                break;
+            case "hosts":
+                int count = post.get("count", 10);
+                if (count < 1) throw new APIException(400, "count must be positive");
+                result.put("hosts", index.topHosts(from, to, count));
+                break;
+            case "host":
+                String host = post.get("host", "");
+                if (host.length() == 0) throw new APIException(400, "No 'host' parameter specified");
+                result.put("host", host);
+                result.put("requests", index.hostPerMinute(host, from, to));
+                break;
+            case "latency":
+                String[] p = post.get("percentiles", new String[]{"50", "90", "95", "99"}, ",");
+                double[] percentiles = new double[p.length];
+                try {
+                    for (int i = 0; i < p.length; i++) percentiles[i] = Double.parseDouble(p[i].trim());
+                } catch (NumberFormatException e) {
+                    throw new APIException(400, "bad 'percentiles' parameter");
+                }
+                result.put("latency", index.latency(from, to, servlet, percentiles));
+                break;
+            default: throw new APIException(400, "No 'show' parameter specified");
+        }
+        return result;
+    }
+}
@@ -48,7 +48,7 @@ public class AccessServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         Query post = RemoteAccess.evaluate(request);
-        if (post.isDoS_servicereduction() || post.isDoS_blackout()) {response.sendError(503, "your request frequency is too high"); return;} // DoS protection
+        if (post.isDoS_servicereduction() || post.isDoS_blackout()) {post.sendDoSError(response); return;} // DoS protection
         
         boolean anonymize = !post.isLocalhostAccess();
         
@@ -64,10 +64,11 @@ public class AccessServlet extends HttpServlet {
         json.put("access", access);
         int maxcount = anonymize ? 100 : 1000;
         for (Track track: tracks) {
-            if (anonymize && !track.get("class").equals("SearchServlet")) continue;
+            JSONObject t = track.toJSON();
+            if (anonymize && !"SearchServlet".equals(t.optString("class"))) continue;
             JSONObject a = new JSONObject(true);
-            for (String key: track.keySet()) {
-                Object value = track.get(key);
+            for (String key: t.keySet()) {
+                Object value = t.get(key);
                 if (anonymize && "host".equals(key)) {
                     a.put("host-anonymized", Integer.toHexString(Math.abs(value.hashCode())));
                 } else {
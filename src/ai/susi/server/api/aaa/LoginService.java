@@ -359,13 +359,11 @@ public class LoginService extends AbstractAPIHandler implements APIHandler {
 		}
 
 		// check if too many invalid login attempts were made already
-		JSONObject invalidLogins = authorization.getAccounting().getRequests(this.getClass().getCanonicalName());
 		long period = permissions.getLong("periodSeconds", 600) * 1000; // get time period in which wrong logins are counted (e.g. the last 10 minutes)
-		int counter = 0;
-		for(String key : invalidLogins.keySet()){
-			if(Long.parseLong(key, 10) > System.currentTimeMillis() - period) counter++;
-		}
-		if(counter > permissions.getInt("maxInvalidLogins", 10)){
+		int maxInvalidLogins = permissions.getInt("maxInvalidLogins", 10);
+		// the accounting must be able to hold more invalid logins than the limit, otherwise the counter never exceeds it
+		int counter = authorization.getAccounting().reserve(this.getClass().getCanonicalName(), maxInvalidLogins + 1).countRequests(this.getClass().getCanonicalName(), period);
+		if(counter > maxInvalidLogins){
 			authorization.setPermission(this, "blockedUntil", Instant.now().getEpochSecond() + permissions.getInt("blockTimeSeconds", 120));
 			throw new APIException(403, "Too many invalid login attempts. Try again in "
 					+ permissions.getInt("blockTimeSeconds", 120) + " seconds");
@@ -57,6 +57,35 @@ public class AppsService extends AbstractAPIHandler implements APIHandler {
         return null;
     }
 
+    // the modification stamp of the apps is computed at most once in this time
+    private final static long STAMP_RECHECK_MILLIS = 1000;
+    private static volatile String appsStamp = null;
+    private static volatile long appsStampTime = 0;
+
+    @Override
+    public String getCacheValidator(Query query) {
+        long now = System.currentTimeMillis();
+        String stamp = appsStamp;
+        if (stamp != null && now - appsStampTime < STAMP_RECHECK_MILLIS) return stamp;
+        stamp = computeAppsStamp();
+        appsStamp = stamp;
+        appsStampTime = now;
+        return stamp;
+    }
+
+    private static String computeAppsStamp() {
+        // the apps change if an app directory or an app.json is added, removed or modified
+        File apps = new File(DAO.html_dir, "apps");
+        long modified = apps.lastModified();
+        String[] appnames = apps.list();
+        if (appnames == null) return Long.toString(modified);
+        for (String appname: appnames) {
+            File apppath = new File(apps, appname);
+            modified = Math.max(modified, Math.max(apppath.lastModified(), new File(apppath, "app.json").lastModified()));
+        }
+        return Long.toString(modified) + "-" + appnames.length;
+    }
+
     @Override
     public JSONObject serviceImpl(Query query, HttpServletResponse response, Authorization auth, final JsonObjectWithDefault permissions) throws APIException {
 
@@ -0,0 +1,62 @@
+/**
+ *  MetricsServlet
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server.api.cms;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import ai.susi.server.Query;
+import ai.susi.server.RemoteAccess;
+import ai.susi.tools.Metrics;
+
+/**
+ * The metrics of the server in the Prometheus text format, to be scraped by a monitoring system.
+ * Only available from localhost.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -2519370411262719045L;
+
+    @Override
+    protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+        doGet(request, response);
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+        Query post = RemoteAccess.evaluate(request);
+        if (post.isDoS_blackout()) {post.sendDoSError(response); return;} // DoS protection
+        if (!post.isLocalhostAccess()) {response.sendError(403, "access only allowed from localhost, your request comes from " + post.getClientHost()); return;} // the metrics show internal hosts and the load
+
+        post.setResponse(response, "text/plain; version=0.0.4");
+        response.setHeader("Cache-Control", "no-cache");
+        Writer writer = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+        Metrics.write(writer);
+        post.finalize();
+    }
+
+}
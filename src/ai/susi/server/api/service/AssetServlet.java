@@ -46,7 +46,7 @@ public class AssetServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         Query post = RemoteAccess.evaluate(request);
-        if (post.isDoS_blackout()) {response.sendError(503, "your request frequency is too high"); return;} // DoS protection
+        if (post.isDoS_blackout()) {post.sendDoSError(response); return;} // DoS protection
         
         // parse arguments
         String screen_name = post.get("screen_name", "");
@@ -81,7 +81,7 @@ public class AssetServlet extends HttpServlet {
         Query post = RemoteAccess.evaluate(request);
                 
         // manage DoS
-        if (post.isDoS_blackout()) {response.sendError(503, "your request frequency is too high"); return;}
+        if (post.isDoS_blackout()) {post.sendDoSError(response); return;}
 
         Map<String, byte[]> m = RemoteAccess.getPostMap(request);
         byte[] data = m.get("data");
@@ -0,0 +1,169 @@
+/**
+ *  BatchServlet
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server.api.susi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import ai.susi.DAO;
+import ai.susi.mind.SusiRecall;
+import ai.susi.server.AbstractAPIHandler;
+import ai.susi.server.ClientIdentity;
+import ai.susi.server.Query;
+import ai.susi.server.RemoteAccess;
+
+/**
+ * Answer many chat queries with one request, i.e. for the evaluation of FAQ lists or regression checks of skills.
+ * The queries are given as json array in the attribute "queries" or as the request body with content type application/json.
+ * An element of the array is either a query string or an object with the attribute "q" and the optional attributes
+ * "timezoneOffset", "language", "count", "latitude", "longitude" and "client". The default values of these attributes
+ * can be given as request attributes.
+ * The "client" attribute names a separate conversation of the requesting user; it cannot be used to talk as another user.
+ * The queries are answered concurrently by the mind executor and the answers are streamed as lines of json (NDJSON)
+ * in the order of their completion; each answer has the attribute "index" with the position of its query.
+ * All queries of a conversation are answered with the recall of the conversation at the start of the batch; the
+ * recall is loaded only once for each conversation.
+ * Each query is charged to the rate limit of chat.json (DoS.rate./susi/chat.json); if a query exceeds the limit, the
+ * batch ends with a line with status 429 and the attribute "retryAfter" in milliseconds.
+ *
+ * example:
+ * curl -H "Content-Type: application/json" -d '["hello", {"q":"what time is it", "timezoneOffset":-60}]' http://localhost:4000/susi/batch.json
+ */
+public class BatchServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -2738016722314983474L;
+
+    public final static String RATE_LIMIT_PATH = "/susi/chat.json";
+
+    @Override
+    protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+        Query post = RemoteAccess.evaluate(request);
+        JSONArray queries = null;
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.startsWith("application/json")) {
+            queries = parseQueries(readBody(request));
+        } else {
+            post.initPOST(RemoteAccess.getPostMap(request));
+        }
+        process(request, response, post, queries);
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+        Query post = RemoteAccess.evaluate(request);
+        process(request, response, post, null);
+    }
+
+    private void process(final HttpServletRequest request, final HttpServletResponse response, final Query post, JSONArray queries) throws IOException {
+        if (post.isDoS_blackout()) {post.sendDoSError(response); return;} // DoS protection
+        if (queries == null) queries = parseQueries(post.get("queries", ""));
+        if (queries == null) {
+            response.sendError(400, "the request must contain a json array of queries");
+            return;
+        }
+        int maxQueries = (int) DAO.getConfig("batch.maxqueries", 1000L);
+        if (queries.length() > maxQueries) {
+            response.sendError(400, "too many queries, the maximum is " + maxQueries);
+            return;
+        }
+
+        // the defaults for all queries
+        final int count = post.get("count", 1);
+        final int timezoneOffset = post.get("timezoneOffset", 0);
+        final double latitude = post.get("latitude", Double.NaN);
+        final double longitude = post.get("longitude", Double.NaN);
+        final String language = post.get("language", "en");
+
+        final ClientIdentity identity = AbstractAPIHandler.getIdentity(request, response, post);
+        final String clientHost = post.isLocalhostAccess() ? null : post.getClientHost(); // localhost is not rate limited
+        try {
+            DAO.susi.observe(); // get a database update
+        } catch (IOException e) {
+            DAO.log(e.getMessage());
+        }
+
+        // the recall is loaded once for each conversation
+        final Map<String, SusiRecall> recalls = new ConcurrentHashMap<>();
+        final JSONArray batch = queries;
+        DAO.mind_executor.stream(request, response, batch.length(), (int) DAO.getConfig("batch.concurrency", 8L), index -> {
+            long retryAfter = clientHost == null ? 0 : RemoteAccess.limiter.acquire(RATE_LIMIT_PATH, clientHost);
+            if (retryAfter > 0) return new JSONObject(true).put("status", 429).put("error", "your request frequency is too high").put("retryAfter", retryAfter);
+            Object o = batch.get(index);
+            JSONObject query = o instanceof JSONObject ? (JSONObject) o : new JSONObject().put("q", o.toString());
+            ClientIdentity conversation = query.has("client") ? getConversation(identity, query.getString("client")) : identity;
+            SusiRecall recall = recalls.computeIfAbsent(conversation.getClient(), client -> DAO.susi.recall(client));
+            return SusiService.answer(
+                    query.optString("q", "").trim(),
+                    query.optInt("count", count),
+                    query.optInt("timezoneOffset", timezoneOffset),
+                    query.optDouble("latitude", latitude),
+                    query.optDouble("longitude", longitude),
+                    query.optString("language", language),
+                    conversation, recall);
+        });
+        post.finalize();
+    }
+
+    /**
+     * a conversation of a user is a separate identity which is derived from the identity of the user
+     * @param identity the identity of the user
+     * @param client the name of the conversation
+     * @return the identity of the conversation
+     */
+    public static ClientIdentity getConversation(ClientIdentity identity, String client) {
+        String name = client.replaceAll("[^A-Za-z0-9_.@-]", "_");
+        if (name.length() > 64) name = name.substring(0, 64);
+        return new ClientIdentity(identity.getType(), identity.getName() + "#" + name);
+    }
+
+    private static JSONArray parseQueries(String s) {
+        s = s.trim();
+        if (!s.startsWith("[")) return null;
+        try {
+            return new JSONArray(s);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static String readBody(HttpServletRequest request) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        InputStream is = request.getInputStream();
+        byte[] b = new byte[4096];
+        int c;
+        while ((c = is.read(b)) > 0) baos.write(b, 0, c);
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
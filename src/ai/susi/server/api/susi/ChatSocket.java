@@ -0,0 +1,219 @@
+/**
+ *  ChatSocket
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server.api.susi;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import ai.susi.DAO;
+import ai.susi.server.AsyncExecutor;
+import ai.susi.server.ClientIdentity;
+import ai.susi.server.RateLimiter;
+import ai.susi.tools.Metrics;
+
+/**
+ * A chat connection of one client. The client is identified once when the connection is opened and the identity
+ * is kept for the lifetime of the connection, so a message is answered without the identification of a chat.json
+ * request. The recall of the latest cognitions is maintained by the memory of the client.
+ *
+ * A message is either a query string or a json object with the attribute "q" and the optional attributes
+ * "id", "timezoneOffset", "language", "count", "latitude" and "longitude". Every message is answered with the
+ * cognition json as it is returned by chat.json; the "id" of the message is copied into the answer.
+ * The messages of a connection are answered one after another by the mind executor, so the answer of a
+ * slow console skill is pushed when it is ready while the connection continues to accept messages.
+ * Messages which cannot be queued are answered with an error with status 503. Each message is subject to the
+ * rate limit of the client at the path /susi/chat.ws, in the same way as the requests of chat.json; a message
+ * which exceeds the rate is answered with an error with status 429 and the attribute "retryAfter" in milliseconds.
+ */
+public class ChatSocket extends WebSocketAdapter {
+
+    private final static AtomicInteger connections = new AtomicInteger(0);
+    private final static Metrics.Counter messages = Metrics.counter("susi_websocket_messages_total", "Number of chat messages received by websockets").labels();
+    static {
+        Metrics.gauge("susi_websocket_connections", "Number of open chat websockets", () -> connections.get());
+    }
+
+    public final static String RATE_LIMIT_PATH = "/susi/chat.ws";
+
+    public static int getConnectionCount() {
+        return connections.get();
+    }
+
+    private final ClientIdentity identity;
+    private final AsyncExecutor executor;
+    private final RateLimiter limiter;
+    private final String client; // the client host for the rate limiter, null if the client is not limited
+    private final int maxQueue;
+    private final Deque<JSONObject> queue; // messages which wait for an answer
+    private boolean busy; // true if a message of this connection is processed or scheduled
+
+    /**
+     * @param identity the identity of the client
+     * @param executor the executor which answers the messages
+     * @param limiter the rate limiter for the messages
+     * @param client the client host for the rate limiter or null if the client is not limited, i.e. for localhost
+     * @param maxQueue the maximum number of messages which wait for an answer
+     */
+    public ChatSocket(ClientIdentity identity, AsyncExecutor executor, RateLimiter limiter, String client, int maxQueue) {
+        this.identity = identity;
+        this.executor = executor;
+        this.limiter = limiter;
+        this.client = client;
+        this.maxQueue = maxQueue;
+        this.queue = new ArrayDeque<>();
+        this.busy = false;
+    }
+
+    @Override
+    public void onWebSocketConnect(Session session) {
+        super.onWebSocketConnect(session);
+        connections.incrementAndGet();
+        JSONObject json = new JSONObject(true);
+        JSONObject sessionInfo = new JSONObject(true);
+        sessionInfo.put("identity", this.identity.toJSON());
+        json.put("session", sessionInfo);
+        send(json);
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        super.onWebSocketClose(statusCode, reason);
+        connections.decrementAndGet();
+        synchronized (this) {
+            this.queue.clear();
+        }
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+        messages.inc();
+        JSONObject query;
+        message = message.trim();
+        if (message.startsWith("{")) {
+            try {
+                query = new JSONObject(message);
+            } catch (JSONException e) {
+                send(error(null, 400, "the message is not a valid json object"));
+                return;
+            }
+        } else {
+            query = new JSONObject(true).put("q", message);
+        }
+        long retryAfter = this.client == null ? 0 : this.limiter.acquire(RATE_LIMIT_PATH, this.client);
+        if (retryAfter > 0) {
+            send(error(query.opt("id"), 429, "your request frequency is too high").put("retryAfter", retryAfter));
+            return;
+        }
+        synchronized (this) {
+            if (this.queue.size() >= this.maxQueue) {
+                send(error(query.opt("id"), 503, "too many messages, please wait for the answers"));
+                return;
+            }
+            this.queue.add(query);
+            if (this.busy) return;
+            this.busy = true;
+        }
+        schedule();
+    }
+
+    /**
+     * schedule the processing of the next message; must only be called by the owner of the busy flag
+     */
+    private void schedule() {
+        if (this.executor.submit(this::processNext)) return;
+        // the executor is overloaded: reject all waiting messages
+        List<JSONObject> rejected;
+        synchronized (this) {
+            rejected = new ArrayList<>(this.queue);
+            this.queue.clear();
+            this.busy = false;
+        }
+        for (JSONObject query: rejected) send(error(query.opt("id"), 503, "the server is busy, please try again later"));
+    }
+
+    private void processNext() {
+        JSONObject query;
+        synchronized (this) {
+            query = this.queue.poll();
+            if (query == null) {
+                this.busy = false;
+                return;
+            }
+        }
+        try {
+            send(answer(query));
+        } catch (Throwable e) {
+            Log.getLog().warn(e);
+            send(error(query.opt("id"), 500, e.getMessage()));
+        }
+        synchronized (this) {
+            if (this.queue.isEmpty()) {
+                this.busy = false;
+                return;
+            }
+        }
+        schedule();
+    }
+
+    private JSONObject answer(JSONObject query) {
+        try {
+            DAO.susi.observe(); // get a database update
+        } catch (IOException e) {
+            DAO.log(e.getMessage());
+        }
+
+        JSONObject json = SusiService.answer(
+                query.optString("q", "").trim(),
+                query.optInt("count", 1),
+                query.optInt("timezoneOffset", 0),
+                query.optDouble("latitude", Double.NaN),
+                query.optDouble("longitude", Double.NaN),
+                query.optString("language", "en"),
+                this.identity, DAO.susi.recall(this.identity.getClient()));
+
+        if (query.has("id")) json.put("id", query.get("id"));
+        return json;
+    }
+
+    private static JSONObject error(Object id, int status, String message) {
+        JSONObject json = new JSONObject(true);
+        if (id != null) json.put("id", id);
+        json.put("status", status);
+        json.put("error", message == null ? "" : message);
+        return json;
+    }
+
+    private void send(JSONObject json) {
+        Session session = this.getSession();
+        if (session == null || !session.isOpen()) return;
+        session.getRemote().sendStringByFuture(json.toString());
+    }
+
+}
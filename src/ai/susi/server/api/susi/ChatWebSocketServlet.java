@@ -0,0 +1,106 @@
+/**
+ *  ChatWebSocketServlet
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.server.api.susi;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+import ai.susi.DAO;
+import ai.susi.server.AbstractAPIHandler;
+import ai.susi.server.ClientIdentity;
+import ai.susi.server.Query;
+import ai.susi.server.RemoteAccess;
+
+/**
+ * The websocket endpoint for chat clients. The client is identified with the upgrade request, with a login cookie,
+ * a session or an access token in the same way as for chat.json; then the connection is handled by a ChatSocket.
+ * The messages of a connection are limited by the rate limiter of the DoS protection with the keys
+ * DoS.rate./susi/chat.ws and DoS.burst./susi/chat.ws.
+ * Browsers send the login cookie with the upgrade request of any page, so upgrades from pages of other origins are
+ * rejected unless the origin is listed in websocket.origins; otherwise a foreign page could chat as the logged-in user.
+ *
+ * The websocket is configured with the keys
+ *   websocket.idletimeout - the time in milliseconds after which an idle connection is closed
+ *   websocket.queue       - the number of messages of one connection which may wait for an answer
+ *   websocket.origins     - a comma-separated list of origins of other hosts which may open a websocket, i.e. https://chat.susi.ai
+ *
+ * example:
+ * wscat -c ws://localhost:4000/susi/chat.ws
+ */
+public class ChatWebSocketServlet extends WebSocketServlet {
+
+    private static final long serialVersionUID = 4316730963278520175L;
+
+    private static final String IDENTITY_ATTRIBUTE = "ai.susi.identity";
+    private static final String CLIENT_ATTRIBUTE = "ai.susi.client";
+
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        factory.getPolicy().setIdleTimeout(DAO.getConfig("websocket.idletimeout", 600000L));
+        factory.getPolicy().setMaxTextMessageSize(65536);
+        final int maxQueue = (int) DAO.getConfig("websocket.queue", 16L);
+        factory.setCreator((request, response) -> {
+            Object identity = request.getServletAttribute(IDENTITY_ATTRIBUTE);
+            if (!(identity instanceof ClientIdentity)) return null;
+            Object client = request.getServletAttribute(CLIENT_ATTRIBUTE);
+            return new ChatSocket((ClientIdentity) identity, DAO.mind_executor, RemoteAccess.limiter, client instanceof String ? (String) client : null, maxQueue);
+        });
+    }
+
+    /**
+     * check the origin of an upgrade request
+     * @param request the upgrade request
+     * @return true if the request has no origin (it does not come from a browser), comes from a page of this server or from an allowed origin
+     */
+    static boolean isAllowedOrigin(HttpServletRequest request) {
+        String origin = request.getHeader("Origin");
+        if (origin == null) return true;
+        try {
+            String authority = new URI(origin).getAuthority();
+            if (authority != null && authority.equalsIgnoreCase(request.getHeader("Host"))) return true;
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        for (String allowed: DAO.getConfig("websocket.origins", new String[0], ",")) {
+            if (allowed.trim().equalsIgnoreCase(origin)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        Query post = RemoteAccess.evaluate(request);
+        if (post.isDoS_blackout()) {post.sendDoSError(response); return;} // DoS protection
+        if (!isAllowedOrigin(request)) {response.sendError(403, "websocket connections are not allowed from origin " + request.getHeader("Origin")); return;} // cross-site websocket hijacking
+        request.setAttribute(IDENTITY_ATTRIBUTE, AbstractAPIHandler.getIdentity(request, response, post));
+        if (!post.isLocalhostAccess()) request.setAttribute(CLIENT_ATTRIBUTE, post.getClientHost()); // localhost is not rate limited
+        super.service(request, response);
+        post.finalize();
+    }
+
+}
@@ -19,11 +19,14 @@
 
 package ai.susi.server.api.susi;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLEncoder;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.json.JSONArray;
@@ -34,6 +37,7 @@ import ai.susi.DAO;
 import ai.susi.json.JsonObjectWithDefault;
 import ai.susi.json.JsonPath;
 import ai.susi.mind.SusiProcedures;
+import ai.susi.mind.SusiTable;
 import ai.susi.mind.SusiThought;
 import ai.susi.mind.SusiTransfer;
 import ai.susi.server.APIException;
@@ -43,6 +47,7 @@ import ai.susi.server.Authorization;
 import ai.susi.server.BaseUserRole;
 import ai.susi.server.ClientConnection;
 import ai.susi.server.Query;
+import ai.susi.tools.Metrics;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -74,11 +79,10 @@ public class ConsoleService extends AbstractAPIHandler implements APIHandler {
             SusiThought json = new SusiThought();
             try {
                 String testquery = matcher.group(2);
-                JSONTokener serviceResponse = new JSONTokener(new ByteArrayInputStream(loadData(serviceURL, testquery)));
-                JSONArray data = JsonPath.parse(serviceResponse, path);
+                JSONArray data = loadPath(serviceName, serviceURL(serviceURL, testquery), path);
                 json.setQuery(testquery);
-                SusiTransfer transfer = new SusiTransfer(matcher.group(1));
-                if (data != null) json.setData(transfer.conclude(data));
+                SusiTransfer transfer = SusiTransfer.compile(matcher.group(1));
+                if (data != null) json.setTable(transfer.conclude(SusiTable.fromJSON(data)));
                 json.setHits(json.getCount());
             } catch (Throwable e) {
                 //e.printStackTrace(); // probably a time-out
@@ -88,25 +92,131 @@ public class ConsoleService extends AbstractAPIHandler implements APIHandler {
     }
     
     public static byte[] loadData(String serviceURL, String testquery) throws IOException {
+        return loadData(null, serviceURL, testquery);
+    }
+
+    /**
+     * load the response of a configured service
+     * @param service the name of the service, used as label of the metrics
+     * @param serviceURL the url of the service, with a $query$ placeholder or ending with the query parameter
+     * @param testquery the query
+     * @return the response, without a jsonp function call
+     * @throws IOException
+     */
+    public static byte[] loadData(String service, String serviceURL, String testquery) throws IOException {
+        return load(service, serviceURL(serviceURL, testquery));
+    }
+
+    private static String serviceURL(String serviceURL, String testquery) throws IOException {
         String encodedQuery = URLEncoder.encode(testquery, "UTF-8");
         int qp = serviceURL.indexOf("$query$");
-        String url = qp < 0 ? serviceURL + encodedQuery : serviceURL.substring(0,  qp) + encodedQuery + serviceURL.substring(qp + 7);
-        return loadData(url);
+        return qp < 0 ? serviceURL + encodedQuery : serviceURL.substring(0,  qp) + encodedQuery + serviceURL.substring(qp + 7);
     }
     
+    private final static Metrics.Family<Metrics.Histogram> fetchDuration = Metrics.histogram("susi_console_fetch_duration_seconds", "Time to load the data of a console service", "service");
+    private final static Metrics.Family<Metrics.Counter> fetchErrors = Metrics.counter("susi_console_fetch_errors_total", "Number of failed loads of the data of a console service", "service");
+
+    private final static int MAX_SERVICE_LABELS = 64; // services beyond this number share the label OTHER_SERVICE
+    private final static String OTHER_SERVICE = "other";
+    private final static Set<String> serviceLabels = ConcurrentHashMap.newKeySet();
+
+    /**
+     * the metrics label of a service. The urls of anonymous console rules come from the clients, so they are
+     * not used as label: each label creates a histogram which is never removed.
+     * @param service the name of a configured service or null for anonymous requests
+     * @return the service name or OTHER_SERVICE
+     */
+    private static String serviceLabel(String service) {
+        if (service == null) return OTHER_SERVICE;
+        if (serviceLabels.contains(service)) return service;
+        synchronized (serviceLabels) {
+            if (serviceLabels.size() >= MAX_SERVICE_LABELS) return OTHER_SERVICE;
+            serviceLabels.add(service);
+        }
+        return service;
+    }
+
+    /**
+     * load the json of a service and select the data with a json path. The response is not read into memory,
+     * only the selected part of the json is parsed into objects. If the evaluation of the path ends before the
+     * end of the response, the request is aborted, so the rest of the response is not downloaded.
+     * @param url the url of the service; the response may also be jsonp
+     * @param jsonPath the path to the data
+     * @return the data or null if the path syntax is wrong
+     * @throws IOException
+     */
+    public static JSONArray loadPath(String url, String jsonPath) throws IOException {
+        return loadPath(null, url, jsonPath);
+    }
+
+    /**
+     * load the json of a configured service and select the data with a json path, see loadPath(String, String)
+     * @param service the name of the service, used as label of the metrics; null for anonymous requests
+     */
+    public static JSONArray loadPath(String service, String url, String jsonPath) throws IOException {
+        String label = serviceLabel(service);
+        long start = System.nanoTime();
+        ClientConnection cc;
+        try {
+            cc = new ClientConnection(url);
+        } catch (IOException e) {
+            fetchErrors.labels(label).inc();
+            throw e;
+        }
+        boolean complete = false;
+        try {
+            JSONArray data = JsonPath.parse(skipJsonp(cc.inputStream), jsonPath);
+            complete = cc.inputStream.read() < 0;
+            return data;
+        } catch (IOException e) {
+            fetchErrors.labels(label).inc();
+            throw e;
+        } finally {
+            if (complete) cc.close(); else cc.abort();
+            fetchDuration.labels(label).observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * skip the function call of a jsonp response, i.e. "callback(" in front of the json
+     */
+    private static InputStream skipJsonp(BufferedInputStream is) throws IOException {
+        is.mark(1024);
+        int b;
+        while ((b = is.read()) >= 0 && b <= 32);
+        // a function name followed by '('
+        while (b == '_' || b == '$' || b == '.' || Character.isLetterOrDigit(b)) b = is.read();
+        while (b >= 0 && b <= 32) b = is.read();
+        if (b != '(') is.reset();
+        return is;
+    }
+
     public static byte[] loadData(String url) throws IOException {
-        ClientConnection cc = new ClientConnection(url);
+        return load(null, url);
+    }
+
+    private static byte[] load(String service, String url) throws IOException {
+        String label = serviceLabel(service);
+        long start = System.nanoTime();
+        ClientConnection cc;
+        try {
+            cc = new ClientConnection(url);
+        } catch (IOException e) {
+            fetchErrors.labels(label).inc();
+            throw e;
+        }
         
         // fully read the input stream
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         int n;
         byte[] buffer = new byte[16384];
-        try {while ((n = cc.inputStream.read(buffer, 0, buffer.length)) != -1) baos.write(buffer, 0, n);} catch (IOException e) {}
+        try {while ((n = cc.inputStream.read(buffer, 0, buffer.length)) != -1) baos.write(buffer, 0, n);} catch (IOException e) {fetchErrors.labels(label).inc();}
         baos.flush();
         byte[] b = baos.toByteArray();
         
         // finished, close
         cc.close();
+        fetchDuration.labels(label).observeNanos(System.nanoTime() - start);
         
         // check if this is jsonp
         //System.out.println("DEBUG CONSOLE:" + new String(b, StandardCharsets.UTF_8));
@@ -132,22 +242,22 @@ public class ConsoleService extends AbstractAPIHandler implements APIHandler {
             String subquery = matcher.group(2).trim();
             if (!subquery.endsWith(";")) subquery = subquery + ";";
             String filter_name = matcher.group(3);
-            JSONArray a0 = dbAccess.inspire("SELECT " + subquery).getData();
-            JSONArray a1 = new JSONArray();
-            Set<String> filter_set = new SusiTransfer(matcher.group(4)).keys();
-            a0.forEach(o -> {
-                JSONObject j = (JSONObject) o;
-                if (j.has(filter_name) && filter_set.contains(j.getString(filter_name))) a1.put(j);
-            });
-            SusiTransfer transfer = new SusiTransfer(matcher.group(1));
+            SusiTable t0 = dbAccess.inspire("SELECT " + subquery).getTable();
+            SusiTable t1 = new SusiTable();
+            Set<String> filter_set = SusiTransfer.compile(matcher.group(4)).keys();
+            for (int row = 0; row < t0.size(); row++) {
+                Object filter_value = t0.get(row, filter_name);
+                if (filter_value instanceof String && filter_set.contains(filter_value)) t1.appendRows(t0, row, row + 1);
+            }
+            SusiTransfer transfer = SusiTransfer.compile(matcher.group(1));
             return new SusiThought()
-                    .setOffset(0).setHits(a0.length())
-                    .setData(transfer.conclude(a1));
+                    .setOffset(0).setHits(t0.size())
+                    .setTable(transfer.conclude(t1));
         });
         dbAccess.put(Pattern.compile("SELECT +?(.*?) +?FROM +?rss +?WHERE +?url ??= ??'(.*?)' ??;"), (flow, matcher) -> {
             SusiThought json = RSSReaderService.readRSS(matcher.group(2));
-            SusiTransfer transfer = new SusiTransfer(matcher.group(1));
-            json.setData(transfer.conclude(json.getData()));
+            SusiTransfer transfer = SusiTransfer.compile(matcher.group(1));
+            json.setTable(transfer.conclude(json.getTable()));
             return json;
         });
         dbAccess.put(Pattern.compile("SELECT +?(.*?) +?FROM +?wolframalpha +?WHERE +?query ??= ??'(.*?)' ??;"), (flow, matcher) -> {
@@ -156,7 +266,7 @@ public class ConsoleService extends AbstractAPIHandler implements APIHandler {
                 String query = matcher.group(2);
                 String appid = DAO.getConfig("wolframalpha.appid", "");
                 String serviceURL = "https://api.wolframalpha.com/v2/query?input=$query$&format=plaintext&output=JSON&appid=" + appid;
-                JSONTokener serviceResponse = new JSONTokener(new ByteArrayInputStream(loadData(serviceURL, query)));
+                JSONTokener serviceResponse = new JSONTokener(new ByteArrayInputStream(loadData("wolframalpha", serviceURL, query)));
                 JSONObject wa = new JSONObject(serviceResponse);
                 JSONArray pods = wa.getJSONObject("queryresult").getJSONArray("pods");
                 // get the relevant pod
@@ -168,8 +278,8 @@ public class ConsoleService extends AbstractAPIHandler implements APIHandler {
                 if (p >= 0) response = response.substring(p + 1).trim();
                 subpod.put("plaintext", response);
                 json.setQuery(query);
-                SusiTransfer transfer = new SusiTransfer(matcher.group(1));
-                json.setData(transfer.conclude(new JSONArray().put(subpod)));
+                SusiTransfer transfer = SusiTransfer.compile(matcher.group(1));
+                json.setTable(transfer.conclude(SusiTable.fromJSON(new JSONArray().put(subpod))));
                 json.setHits(json.getCount());
             } catch (Throwable e) {
                 // probably a time-out or a json error
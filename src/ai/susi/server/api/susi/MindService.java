@@ -51,14 +51,18 @@ public class MindService extends AbstractAPIHandler implements APIHandler {
     }
     
     @Override
-    public JSONObject serviceImpl(Query post, HttpServletResponse response, Authorization user, final JsonObjectWithDefault permissions) throws APIException {
-
+    public String getCacheValidator(Query post) {
         try {
             DAO.susi.observe(); // get a database update
         } catch (IOException e) {
             DAO.log(e.getMessage());
         }
-        
+        return Long.toString(DAO.susi.getVersion());
+    }
+    
+    @Override
+    public JSONObject serviceImpl(Query post, HttpServletResponse response, Authorization user, final JsonObjectWithDefault permissions) throws APIException {
+
         JSONObject json = DAO.susi.getMind();
         return json;
     }
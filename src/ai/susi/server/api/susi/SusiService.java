@@ -32,15 +32,17 @@ import org.json.JSONTokener;
 
 import ai.susi.DAO;
 import ai.susi.json.JsonObjectWithDefault;
-import ai.susi.mind.SusiArgument;
 import ai.susi.mind.SusiCognition;
 import ai.susi.mind.SusiMind;
+import ai.susi.mind.SusiRecall;
 import ai.susi.mind.SusiThought;
 import ai.susi.server.APIException;
 import ai.susi.server.APIHandler;
 import ai.susi.server.AbstractAPIHandler;
+import ai.susi.server.AsyncExecutor;
 import ai.susi.server.Authorization;
 import ai.susi.server.BaseUserRole;
+import ai.susi.server.ClientIdentity;
 import ai.susi.server.Query;
 
 import javax.servlet.http.HttpServletResponse;
@@ -60,6 +62,11 @@ public class SusiService extends AbstractAPIHandler implements APIHandler {
     public String getAPIPath() {
         return "/susi/chat.json";
     }
+
+    @Override
+    public AsyncExecutor getAsyncExecutor() {
+        return DAO.mind_executor; // answers may call external services and must not block the server threads
+    }
     
     @Override
     public JSONObject serviceImpl(Query post, HttpServletResponse response, Authorization user, final JsonObjectWithDefault permissions) throws APIException {
@@ -77,11 +84,25 @@ public class SusiService extends AbstractAPIHandler implements APIHandler {
             DAO.log(e.getMessage());
         }
         
-        // compute a recall
-        SusiArgument observation_argument = new SusiArgument();
-        List<SusiCognition> cognitions = DAO.susi.getMemories().getCognitions(user.getIdentity().getClient());
-        cognitions.forEach(cognition -> observation_argument.think(cognition.recallDispute()));
-        SusiThought recall = observation_argument.mindmeld(false);
+        ClientIdentity identity = user.getIdentity();
+        return answer(q, count, timezoneOffset, latitude, longitude, language, identity, DAO.susi.recall(identity.getClient()));
+    }
+    
+    /**
+     * answer a query and memorize the cognition
+     * @param q the query
+     * @param count the maximum number of answers
+     * @param timezoneOffset in minutes
+     * @param latitude or NaN
+     * @param longitude or NaN
+     * @param language ISO 639-1 code
+     * @param identity the identity of the client
+     * @param recalled the recall of the client from DAO.susi.recall(identity.getClient()); it can be shared among queries
+     * @return the cognition json
+     */
+    public static JSONObject answer(String q, int count, int timezoneOffset, double latitude, double longitude, String language, ClientIdentity identity, SusiRecall recalled) {
+        // melt the recall into one thought
+        SusiThought recall = recalled.mindmeld(null);
         
         // find out if we are dreaming
         String etherpad_dream = recall.getObservation("_etherpad_dream");
@@ -92,7 +113,7 @@ public class SusiService extends AbstractAPIHandler implements APIHandler {
             String etherpadUrlstub = DAO.getConfig("etherpad.urlstub", "");
             String padurl = etherpadUrlstub + "/api/1/getText?apikey=" + etherpadApikey + "&padID=$query$";
             try {
-                JSONTokener serviceResponse = new JSONTokener(new ByteArrayInputStream(ConsoleService.loadData(padurl, etherpad_dream)));
+                JSONTokener serviceResponse = new JSONTokener(new ByteArrayInputStream(ConsoleService.loadData("etherpad", padurl, etherpad_dream)));
                 JSONObject json = new JSONObject(serviceResponse);
                 String text = json.getJSONObject("data").getString("text");
                 // fill an empty mind with the dream
@@ -100,9 +121,9 @@ public class SusiService extends AbstractAPIHandler implements APIHandler {
                 JSONObject rules = dream.readSkills(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)));
                 dream.learn(rules);
                 // susi is now dreaming.. Try to find an answer out of the dream
-                SusiCognition cognition = new SusiCognition(dream, q, timezoneOffset, latitude, longitude, count, user.getIdentity());
+                SusiCognition cognition = new SusiCognition(dream, q, timezoneOffset, latitude, longitude, count, identity);
                 if (cognition.getAnswers().size() > 0) {
-                    DAO.susi.getMemories().addCognition(user.getIdentity().getClient(), cognition);
+                    DAO.susi.getMemories().addCognition(identity.getClient(), cognition);
                     return cognition.getJSON();
                 }
             } catch (JSONException | IOException e) {
@@ -111,9 +132,9 @@ public class SusiService extends AbstractAPIHandler implements APIHandler {
         }
         
         // answer with built-in skills
-        SusiCognition cognition = new SusiCognition(DAO.susi, q, timezoneOffset, latitude, longitude, count, user.getIdentity());
+        SusiCognition cognition = new SusiCognition(DAO.susi, q, timezoneOffset, latitude, longitude, count, identity, recalled);
         cognition.setLanguage(language);
-        DAO.susi.getMemories().addCognition(user.getIdentity().getClient(), cognition);
+        DAO.susi.getMemories().addCognition(identity.getClient(), cognition);
         JSONObject json = cognition.getJSON();
         return json;
     }
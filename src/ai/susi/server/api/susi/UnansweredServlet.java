@@ -33,12 +33,16 @@ import ai.susi.mind.SusiMemory.TokenMapList;
 import ai.susi.server.FileHandler;
 import ai.susi.server.Query;
 import ai.susi.server.RemoteAccess;
+import ai.susi.server.ResponseCache;
 import ai.susi.tools.UTF8;
 
 public class UnansweredServlet extends HttpServlet {
 
     private static final long serialVersionUID = -7095346224124198L;
 
+    // only the latest statistics are needed; the cache is only a small buffer for concurrent calls with different versions
+    private static final ResponseCache cache = new ResponseCache(4L * 1024L * 1024L);
+
     @Override
     protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
         doGet(request, response);
@@ -48,6 +52,25 @@ public class UnansweredServlet extends HttpServlet {
     protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
         Query post = RemoteAccess.evaluate(request);
 
+        // the statistics depend on the unanswered list and on the tokenizer of the mind
+        String validator = DAO.susi.getVersion() + "-" + DAO.susi.getMemories().getUnansweredVersion();
+        ResponseCache.Entry entry = cache.get(validator);
+        if (entry == null) entry = cache.put(validator, UTF8.getBytes(unansweredStatistics()), 60);
+        String etag = entry.etag();
+
+        FileHandler.setCaching(response, entry.expires);
+        response.setHeader("ETag", etag);
+        if (ResponseCache.isNotModified(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            post.finalize();
+            return;
+        }
+        post.setResponse(response, "text/plain");
+        response.getOutputStream().write(entry.body);
+        post.finalize();
+    }
+
+    private static String unansweredStatistics() {
         final StringBuilder buffer = new StringBuilder(1000);
         List<TokenMapList> tokenstats = DAO.susi.unanswered2tokenizedstats();
         tokenstats.forEach(tml -> {
@@ -77,10 +100,7 @@ public class UnansweredServlet extends HttpServlet {
         }
         */
         
-        FileHandler.setCaching(response, 60);
-        post.setResponse(response, "text/plain");
-        response.getOutputStream().write(UTF8.getBytes(buffer.toString()));
-        post.finalize();
+        return buffer.toString();
     }
     
 }
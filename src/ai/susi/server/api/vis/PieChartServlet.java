@@ -65,7 +65,7 @@ public class PieChartServlet extends HttpServlet {
 
 		// Get the json data to visualize as a key value pair of data=
 
-		if (post.isDoS_blackout()) { response.sendError(503, "Your request frequency is too high"); return; }
+		if (post.isDoS_blackout()) { post.sendDoSError(response); return; }
 
 		// Get the data json string passed as stream parameter
 		String data = post.get("data", "");
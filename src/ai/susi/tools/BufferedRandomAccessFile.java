@@ -27,6 +27,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -41,6 +46,8 @@ import org.junit.Before;
  * which is in turn an optimized version of the RandomAccessFile class as described by Nick Zhang on JavaWorld.com. The article can be found at http://www.javaworld.com/javaworld/javatips/jw-javatip26.html
  * The getNextLine method was rewritten in such a way that it returns a byte[] rather than a string which was not UTF-8 - friendly in it's original version.
  * The whole class was not concurrency-safe. Synchronization has been added to ensure consistency of buffer and seek position.
+ * Positional reads with read(byte[], long) do not use the buffer and the seek position: they read with an own file channel
+ * and are not synchronized, so concurrent readers do not block each other or the appender.
  */
 public class BufferedRandomAccessFile extends RandomAccessFile {
     
@@ -50,6 +57,9 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
     private long real_pos = 0;
     
     private final int BUF_SIZE;
+    private final String filename;
+    private volatile FileChannel reader; // the channel for positional reads
+    private volatile boolean closed = false;
 
     /**
      * Creates a new instance of the BufferedRandomAccessFile.
@@ -61,6 +71,8 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
      */
     public BufferedRandomAccessFile(String filename, String mode, int bufsize) throws IOException {
         super(filename, mode);
+        this.filename = filename;
+        this.reader = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
         invalidate();
         BUF_SIZE = bufsize;
         buffer = new byte[BUF_SIZE];
@@ -169,9 +181,48 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
         }
     }
     
-    public synchronized void read(final byte[] b, final long pos) throws IOException {
-        seekPrivate(pos);
-        read(b, 0, b.length);
+    /**
+     * Read bytes at a given position. This does not change the seek position of the file and it is not synchronized:
+     * any number of threads may read concurrently while lines are appended.
+     * @param b the buffer which is filled with the bytes at the position
+     * @param pos the position in the file
+     * @throws IOException
+     */
+    public void read(final byte[] b, final long pos) throws IOException {
+        java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(b);
+        long p = pos;
+        while (bb.hasRemaining()) {
+            FileChannel channel = this.reader;
+            int n;
+            try {
+                n = channel.read(bb, p);
+            } catch (ClosedByInterruptException e) {
+                // an interrupt of a reading thread closes the channel: this reader fails but the channel is opened again for other readers
+                reopen(channel);
+                throw e;
+            } catch (ClosedChannelException e) {
+                // another reader was interrupted (AsynchronousCloseException) or the channel was replaced
+                if (this.closed) throw e;
+                reopen(channel);
+                continue;
+            }
+            if (n < 0) return; // end of file
+            p += n;
+        }
+    }
+
+    private synchronized void reopen(FileChannel channel) throws IOException {
+        if (this.closed || this.reader != channel) return;
+        this.reader = FileChannel.open(Paths.get(this.filename), StandardOpenOption.READ);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            this.closed = true;
+        }
+        this.reader.close();
+        super.close();
     }
     
     /**
@@ -189,6 +240,20 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
         return seekpos;
     }
     
+    /**
+     * add a block of lines at the end of the file
+     * @param b the lines, each terminated with '\n'
+     * @return the seek position where the block started
+     * @throws IOException
+     */
+    public synchronized long append(final byte[] b) throws IOException {
+        long seekpos = this.length();
+        this.seekPrivate(seekpos); // go to end of file
+        this.write(b);
+        this.invalidate();
+        return seekpos;
+    }
+    
     /**
      * Reading of text lines will produce index information along with the parsed text.
      * To get the exact number of bytes, we do not depend on a utf-8 - parsing string but
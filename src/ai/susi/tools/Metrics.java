@@ -0,0 +1,304 @@
+/**
+ *  Metrics
+ *  Copyright 19.10.2026 by the SUSI.AI contributors
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *  
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai.susi.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A registry of meters which are exported in the Prometheus text format.
+ * Counters and histograms are based on LongAdder, so recording a value is lock-free and does not
+ * contend between threads. Gauges are computed when the metrics are exported.
+ * Meters are organized in families with a metric name and label names; the meters for single label
+ * values should be kept in fields by the code which records them, so the hot path does not need a lookup.
+ */
+public class Metrics {
+
+    public final static double[] DEFAULT_BUCKETS = new double[]{0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10}; // seconds
+
+    private final static Map<String, Collector> registry = new LinkedHashMap<>();
+
+    static {
+        // jvm meters
+        gauge("jvm_memory_bytes_used", "Used bytes of the jvm memory area", "area", () -> {
+            Map<String, Number> m = new LinkedHashMap<>();
+            m.put("heap", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+            m.put("nonheap", ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed());
+            return m;
+        });
+        gauge("jvm_memory_bytes_max", "Maximum bytes of the jvm heap", () -> Runtime.getRuntime().maxMemory());
+        gauge("jvm_threads_current", "Current number of jvm threads", () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        register(new Collector("jvm_gc_collection_seconds", "Time spent in the garbage collectors", "summary") {
+            @Override
+            void write(StringBuilder sb) {
+                for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+                    String labels = formatLabels(new String[]{"gc"}, new String[]{gc.getName()}, null, null);
+                    sb.append(this.name).append("_count").append(labels).append(' ').append(gc.getCollectionCount()).append('\n');
+                    sb.append(this.name).append("_sum").append(labels).append(' ').append(gc.getCollectionTime() / 1000.0d).append('\n');
+                }
+            }
+        });
+    }
+
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+        public void inc() {
+            this.value.increment();
+        }
+        public void add(long n) {
+            this.value.add(n);
+        }
+        public long get() {
+            return this.value.sum();
+        }
+    }
+
+    public static class Histogram {
+        private final double[] bounds; // seconds
+        private final long[] nanoBounds;
+        private final LongAdder[] buckets; // the last bucket counts the values above all bounds
+        private final LongAdder sum; // nanoseconds
+
+        public Histogram(double[] bounds) {
+            this.bounds = bounds;
+            this.nanoBounds = new long[bounds.length];
+            for (int i = 0; i < bounds.length; i++) this.nanoBounds[i] = (long) (bounds[i] * 1.0e9);
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < this.buckets.length; i++) this.buckets[i] = new LongAdder();
+            this.sum = new LongAdder();
+        }
+
+        public void observeNanos(long nanos) {
+            int i = 0;
+            while (i < this.nanoBounds.length && nanos > this.nanoBounds[i]) i++;
+            this.buckets[i].increment();
+            this.sum.add(nanos);
+        }
+
+        public void observeMillis(long millis) {
+            observeNanos(millis * 1000000L);
+        }
+
+        public long getCount() {
+            long c = 0;
+            for (LongAdder b: this.buckets) c += b.sum();
+            return c;
+        }
+
+        public double getSum() {
+            return this.sum.sum() / 1.0e9;
+        }
+    }
+
+    private static abstract class Collector {
+        final String name, help, type;
+        Collector(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+        abstract void write(StringBuilder sb);
+    }
+
+    /**
+     * a family of meters of the same type which are distinguished by label values
+     */
+    public static class Family<T> extends Collector {
+
+        private final String[] labelNames;
+        private final Function<String[], T> factory;
+        private final Map<List<String>, T> meters;
+
+        private Family(String name, String help, String type, String[] labelNames, Function<String[], T> factory) {
+            super(name, help, type);
+            this.labelNames = labelNames;
+            this.factory = factory;
+            this.meters = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * get the meter for the given label values; the meter is created if it does not exist
+         * @param labelValues one value for each label name
+         * @return the meter
+         */
+        public T labels(String... labelValues) {
+            if (labelValues.length != this.labelNames.length) throw new IllegalArgumentException("metric " + this.name + " needs " + this.labelNames.length + " label values");
+            List<String> key = Arrays.asList(labelValues);
+            T meter = this.meters.get(key);
+            if (meter != null) return meter;
+            return this.meters.computeIfAbsent(key, k -> this.factory.apply(labelValues));
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            for (Map.Entry<List<String>, T> entry: this.meters.entrySet()) {
+                String[] labelValues = entry.getKey().toArray(new String[this.labelNames.length]);
+                T meter = entry.getValue();
+                if (meter instanceof Counter) {
+                    sb.append(this.name).append(formatLabels(this.labelNames, labelValues, null, null)).append(' ').append(((Counter) meter).get()).append('\n');
+                } else if (meter instanceof Histogram) {
+                    Histogram h = (Histogram) meter;
+                    long cumulative = 0;
+                    for (int i = 0; i < h.buckets.length; i++) {
+                        cumulative += h.buckets[i].sum();
+                        String le = i < h.bounds.length ? Double.toString(h.bounds[i]) : "+Inf";
+                        sb.append(this.name).append("_bucket").append(formatLabels(this.labelNames, labelValues, "le", le)).append(' ').append(cumulative).append('\n');
+                    }
+                    String labels = formatLabels(this.labelNames, labelValues, null, null);
+                    sb.append(this.name).append("_sum").append(labels).append(' ').append(h.getSum()).append('\n');
+                    sb.append(this.name).append("_count").append(labels).append(' ').append(cumulative).append('\n');
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Family<T> family(String name, String help, String type, String[] labelNames, Function<String[], T> factory) {
+        synchronized (registry) {
+            Collector c = registry.get(name);
+            if (c != null) return (Family<T>) c;
+            Family<T> family = new Family<>(name, help, type, labelNames, factory);
+            registry.put(name, family);
+            return family;
+        }
+    }
+
+    private static void register(Collector collector) {
+        synchronized (registry) {
+            registry.put(collector.name, collector);
+        }
+    }
+
+    /**
+     * get or create a counter family
+     * @param name the metric name; counter names should end with _total
+     * @param help a description of the metric
+     * @param labelNames
+     * @return the family of counters
+     */
+    public static Family<Counter> counter(String name, String help, String... labelNames) {
+        return family(name, help, "counter", labelNames, labelValues -> new Counter());
+    }
+
+    /**
+     * get or create a histogram family with the default buckets
+     * @param name the metric name; histograms of durations should end with _seconds
+     * @param help a description of the metric
+     * @param labelNames
+     * @return the family of histograms
+     */
+    public static Family<Histogram> histogram(String name, String help, String... labelNames) {
+        return family(name, help, "histogram", labelNames, labelValues -> new Histogram(DEFAULT_BUCKETS));
+    }
+
+    /**
+     * register a gauge which is computed when the metrics are exported. A gauge with the same name is replaced.
+     * @param name the metric name
+     * @param help a description of the metric
+     * @param value the supplier of the value; if it returns null, the gauge is not exported
+     */
+    public static void gauge(String name, String help, final Supplier<Number> value) {
+        register(new Collector(name, help, "gauge") {
+            @Override
+            void write(StringBuilder sb) {
+                Number n = value.get();
+                if (n != null) sb.append(this.name).append(' ').append(n).append('\n');
+            }
+        });
+    }
+
+    /**
+     * register a gauge with one label which is computed when the metrics are exported. A gauge with the same name is replaced.
+     * @param name the metric name
+     * @param help a description of the metric
+     * @param labelName the name of the label
+     * @param values the supplier of a map from label values to values; if it returns null, the gauge is not exported
+     */
+    public static void gauge(String name, String help, final String labelName, final Supplier<Map<String, Number>> values) {
+        register(new Collector(name, help, "gauge") {
+            @Override
+            void write(StringBuilder sb) {
+                Map<String, Number> m = values.get();
+                if (m != null) for (Map.Entry<String, Number> entry: m.entrySet()) {
+                    sb.append(this.name).append(formatLabels(new String[]{labelName}, new String[]{entry.getKey()}, null, null)).append(' ').append(entry.getValue()).append('\n');
+                }
+            }
+        });
+    }
+
+    private static String formatLabels(String[] names, String[] values, String extraName, String extraValue) {
+        if (names.length == 0 && extraName == null) return "";
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(names[i]).append("=\"").append(escape(values[i])).append('"');
+        }
+        if (extraName != null) {
+            if (names.length > 0) sb.append(',');
+            sb.append(extraName).append("=\"").append(escape(extraValue)).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String escape(String s) {
+        if (s == null) return "";
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * write all metrics in the Prometheus text format (version 0.0.4)
+     * @param writer
+     * @throws IOException
+     */
+    public static void write(Writer writer) throws IOException {
+        List<Collector> collectors;
+        synchronized (registry) {
+            collectors = new ArrayList<>(registry.values());
+        }
+        StringBuilder sb = new StringBuilder(1024);
+        for (Collector collector: collectors) {
+            StringBuilder values = new StringBuilder();
+            try {
+                collector.write(values);
+            } catch (RuntimeException e) {
+                continue; // a gauge of a component which is not available
+            }
+            if (values.length() == 0) continue;
+            sb.append("# HELP ").append(collector.name).append(' ').append(collector.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            sb.append("# TYPE ").append(collector.name).append(' ').append(collector.type).append('\n');
+            sb.append(values);
+        }
+        writer.write(sb.toString());
+        writer.flush();
+    }
+
+}
@@ -39,6 +39,7 @@ import java.util.regex.Matcher;
 public class TimeoutMatcher {
 
     private final static ExecutorService EXECUTOR = Executors.newCachedThreadPool();
+    private final static Metrics.Counter TIMEOUTS = Metrics.counter("susi_matcher_timeouts_total", "Number of regular expression matches which were terminated by a timeout").labels();
 
     private final Matcher matcher;
     
@@ -55,7 +56,10 @@ public class TimeoutMatcher {
         });
         try {
             return future.get(1, TimeUnit.SECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+        } catch (TimeoutException e) {
+            TIMEOUTS.inc();
+            return false;
+        } catch (InterruptedException | ExecutionException e) {
             return false;
         }
     }
@@ -69,7 +73,10 @@ public class TimeoutMatcher {
         });
         try {
             return future.get(1, TimeUnit.SECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+        } catch (TimeoutException e) {
+            TIMEOUTS.inc();
+            return false;
+        } catch (InterruptedException | ExecutionException e) {
             return false;
         }
     }
@@ -1393,11 +1393,15 @@ public class JSONObject {
         String hhhh;
         int i;
         int len = string.length();
+        int run = 0; // start of a sequence of characters which need no escaping
 
         w.write('"');
         for (i = 0; i < len; i += 1) {
             b = c;
             c = string.charAt(i);
+            if (c >= ' ' && c != '\\' && c != '"' && c != '/' && c < '\u0080' || c >= '\u00a0' && (c < '\u2000' || c >= '\u2100')) continue;
+            if (run < i) w.write(string, run, i - run);
+            run = i + 1;
             switch (c) {
             case '\\':
             case '"':
@@ -1437,6 +1441,7 @@ public class JSONObject {
                 }
             }
         }
+        if (run < len) w.write(string, run, len - run);
         w.write('"');
         return w;
     }
@@ -1824,7 +1829,7 @@ public class JSONObject {
 
             if (length == 1) {
                 Object key = keys.next();
-                writer.write(quote(key.toString()));
+                quote(key.toString(), writer);
                 writer.write(':');
                 if (indentFactor > 0) {
                     writer.write(' ');
@@ -1841,7 +1846,7 @@ public class JSONObject {
                         writer.write('\n');
                     }
                     indent(writer, newindent);
-                    writer.write(quote(key.toString()));
+                    quote(key.toString(), writer);
                     writer.write(':');
                     if (indentFactor > 0) {
                         writer.write(' ');
@@ -0,0 +1,94 @@
+package ai.susi;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Random;
+
+import org.json.JSONObject;
+
+import ai.susi.json.JsonTray;
+import ai.susi.mind.SusiMemory;
+import ai.susi.server.AccountingStore;
+import ai.susi.server.Authentication;
+import ai.susi.server.RateLimiter;
+
+/**
+ * synthetic requests of clients which come and go: the structures which hold client data must not
+ * grow with the number of clients which were ever seen. This soak test is not part of the unit tests, run it with the main method.
+ */
+public class CaretakerBenchmark {
+
+    private static long used(Runtime runtime) {
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) for (File g: files) delete(g);
+        f.delete();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File dir = Files.createTempDirectory("caretaker").toFile();
+        final AccountingStore accounting = new AccountingStore(1000000, 200);
+        final RateLimiter limiter = new RateLimiter(1000000).setRate("/susi/chat.json", 1000.0d, 1);
+        final JsonTray authentication = new JsonTray(new File(dir, "authentication.json"), new File(dir, "authentication_session.json"), 1000000);
+        File memoryDir = new File(dir, "memory");
+        memoryDir.mkdirs();
+        final SusiMemory memory = new SusiMemory(memoryDir, 10);
+        Caretaker caretaker = new Caretaker();
+        caretaker.register("accounting", 50, 100, 0.1d, () -> accounting.cleanup());
+        caretaker.register("ratelimiter", 50, 100, 0.1d, () -> limiter.cleanup());
+        caretaker.register("authentication", 50, 100, 0.1d, () -> authentication.removeIf(Authentication::isExpired));
+        caretaker.register("identities", 50, 100, 0.1d, () -> memory.cleanupIdentities(200));
+        caretaker.start();
+
+        int requests = 2000000, clientRequests = 20;
+        Random r = new Random(0);
+        Runtime runtime = Runtime.getRuntime();
+        long[] heap = new long[10]; // the used heap after each tenth of the requests
+        long start = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < requests; i++) {
+                // each client does a number of requests; some clients come back later
+                int client = r.nextInt(10) == 0 ? r.nextInt(i / clientRequests + 1) : i / clientRequests;
+                String host = "10." + (client >> 16) + "." + ((client >> 8) & 0xff) + "." + (client & 0xff);
+                accounting.get("host:" + host).addRequest("/susi/chat.json", "q=" + i);
+                limiter.acquire("/susi/chat.json", host);
+                if (i % 100 == 0) authentication.put("access_token:" + i, new JSONObject().put("expires_on", Instant.now().getEpochSecond() - 1), false);
+                if (i % 1000 == 0) memory.getIdentity("host_" + host);
+                if (i % (requests / 10) == requests / 10 - 1) heap[i / (requests / 10)] = used(runtime);
+            }
+            long time = System.currentTimeMillis() - start;
+            Thread.sleep(300); // one more run of all tasks
+            long end = used(runtime);
+            StringBuilder sb = new StringBuilder();
+            for (long h: heap) sb.append(' ').append(h / 1024 / 1024);
+            System.out.println("soak of " + requests + " requests from " + (requests / clientRequests) + " clients in " + time + " ms: used heap in MB" + sb +
+                    ", after the cleanup " + end / 1024 / 1024 + "; remaining accounting " + accounting.size() + ", rate limiter " + limiter.size() +
+                    ", authentication " + authentication.size() + ", identities " + memory.getIdentityCacheSize());
+            int clients = requests / clientRequests;
+            assertTrue(accounting.size() < clients / 10);
+            assertTrue(limiter.size() < clients / 10);
+            assertTrue(authentication.size() < requests / 100 / 10);
+            assertTrue(memory.getIdentityCacheSize() < requests / 1000 / 2);
+            // the heap follows the number of recently active clients, which grows with the request rate after the warm-up,
+            // but it does not grow with the number of all clients
+            long firstHalf = 0, secondHalf = 0;
+            for (int i = 1; i < 5; i++) firstHalf = Math.max(firstHalf, heap[i]);
+            for (int i = 5; i < 10; i++) secondHalf = Math.max(secondHalf, heap[i]);
+            assertTrue(secondHalf < 2 * firstHalf + 16L * 1024L * 1024L);
+            assertTrue(end < heap[0] + 8L * 1024L * 1024L);
+        } finally {
+            caretaker.shutdown();
+            caretaker.join();
+            delete(dir);
+        }
+    }
+
+}
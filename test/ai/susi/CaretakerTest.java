@@ -0,0 +1,61 @@
+package ai.susi;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class CaretakerTest {
+
+    private static JSONObject task(Caretaker caretaker, String name) {
+        JSONArray tasks = caretaker.toJSON();
+        for (int i = 0; i < tasks.length(); i++) if (tasks.getJSONObject(i).getString("name").equals(name)) return tasks.getJSONObject(i);
+        return null;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timeout", System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void schedule() throws InterruptedException {
+        final AtomicInteger fast = new AtomicInteger(0), slow = new AtomicInteger(0), failing = new AtomicInteger(0);
+        final List<Long> fastStarts = new CopyOnWriteArrayList<>(), slowStarts = new CopyOnWriteArrayList<>();
+        Caretaker caretaker = new Caretaker();
+        caretaker.register("fast", 50, 1000, 0.1d, () -> {fastStarts.add(System.currentTimeMillis()); return fast.incrementAndGet();});
+        caretaker.register("slow", 10, 5, 0.0d, () -> {slowStarts.add(System.currentTimeMillis()); Thread.sleep(50); return slow.incrementAndGet();}); // always over budget
+        caretaker.register("failing", 200, 1000, 0.1d, () -> {failing.incrementAndGet(); throw new IOException("failure");});
+        caretaker.start();
+        await(() -> fast.get() >= 10 && slow.get() >= 4 && failing.get() >= 2);
+        await(() -> slowStarts.size() > slow.get()); // shut down while the slow job is running
+        caretaker.shutdown();
+        caretaker.join();
+
+        // a load of the machine may delay a run but never bring it forward:
+        // the fast task waits at least 45 milliseconds between two runs
+        for (int i = 1; i < fastStarts.size(); i++) assertTrue(fastStarts.get(i) - fastStarts.get(i - 1) >= 45);
+        // the slow task waits 8 * 10 milliseconds after each run of 50 milliseconds; without the stretch of the period it would wait 10 milliseconds.
+        // One millisecond is left for the resolution of the clock.
+        for (int i = 1; i < slowStarts.size(); i++) assertTrue(slowStarts.get(i) - slowStarts.get(i - 1) >= 50 + 8 * 10 - 1);
+        // a failure does not stop a task
+        assertTrue(failing.get() >= 2);
+        assertEquals(fast.get(), task(caretaker, "fast").getInt("runs"));
+        assertEquals(fast.get() * (fast.get() + 1) / 2, task(caretaker, "fast").getInt("removed"));
+        // the shutdown does not interrupt the running job, it finishes with its full runtime
+        assertEquals(slowStarts.size(), slow.get());
+        assertEquals(slow.get(), task(caretaker, "slow").getInt("runs"));
+        assertTrue(task(caretaker, "slow").getLong("runtime") >= 50);
+    }
+
+}
@@ -0,0 +1,166 @@
+package ai.susi.geo;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ai.susi.graphics.RasterPlotter;
+
+/**
+ * the tile cache is tested with a local tile server which generates a png for each tile
+ */
+public class TileCacheTest {
+
+    private Server server;
+    private String url;
+    private File dir;
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private final ConcurrentHashMap<String, AtomicInteger> tileRequests = new ConcurrentHashMap<>();
+    private volatile long delay = 0;
+    private volatile boolean down = false;
+
+    /**
+     * the color of a generated tile
+     */
+    private static int color(int z, int x, int y) {
+        return ((x * 37 + z) & 0xff) << 16 | ((y * 59) & 0xff) << 8 | (z * 11) & 0xff;
+    }
+
+    @Before
+    public void startTileServer() throws Exception {
+        this.server = new Server(0);
+        this.server.setStopTimeout(100);
+        this.server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                requests.incrementAndGet();
+                tileRequests.computeIfAbsent(target, t -> new AtomicInteger(0)).incrementAndGet();
+                if (delay > 0) try {Thread.sleep(delay);} catch (InterruptedException e) {}
+                String[] zxy = target.substring(1, target.length() - 4).split("/");
+                if (down || !target.endsWith(".png") || zxy.length != 3) {
+                    response.sendError(404);
+                    baseRequest.setHandled(true);
+                    return;
+                }
+                BufferedImage bi = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+                int c = color(Integer.parseInt(zxy[0]), Integer.parseInt(zxy[1]), Integer.parseInt(zxy[2]));
+                for (int x = 0; x < 256; x++) for (int y = 0; y < 256; y++) bi.setRGB(x, y, (x == 0 || y == 0) ? 0 : c);
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ImageIO.write(bi, "png", baos);
+                response.setStatus(200);
+                response.setContentType("image/png");
+                response.getOutputStream().write(baos.toByteArray());
+                baseRequest.setHandled(true);
+            }
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + ((ServerConnector) this.server.getConnectors()[0]).getLocalPort();
+        this.dir = Files.createTempDirectory("tiles").toFile();
+    }
+
+    @After
+    public void stopTileServer() throws Exception {
+        this.server.stop();
+        delete(this.dir);
+    }
+
+    private static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) for (File g: files) delete(g);
+        f.delete();
+    }
+
+    private TileCache cache(long expiry) {
+        return new TileCache(this.dir, new String[]{this.url}, 64, expiry, 4, 5000);
+    }
+
+    @Test
+    public void levels() throws Exception {
+        OSMTile.TileCoordinates t = new OSMTile.TileCoordinates(100, 200, 10);
+        TileCache cache = cache(60000);
+        BufferedImage bi = cache.get(t).get();
+        assertEquals(color(10, 100, 200), bi.getRGB(128, 128) & 0xffffff);
+        assertEquals(1, this.requests.get());
+        assertTrue(new File(this.dir, "10/100/200.png").exists());
+
+        // the second request is answered from RAM
+        assertSame(bi, cache.get(t).get());
+        assertEquals(1, this.requests.get());
+        cache.close();
+
+        // a new cache reads the tile from disk
+        cache = cache(60000);
+        assertEquals(color(10, 100, 200), cache.get(t).get().getRGB(128, 128) & 0xffffff);
+        assertEquals(1, this.requests.get());
+        cache.close();
+
+        // an expired tile is loaded again; if the server is down, the expired tile is used
+        cache = cache(0);
+        assertNotNull(cache.get(t).get());
+        assertEquals(2, this.requests.get());
+        cache.clear();
+        this.down = true;
+        assertEquals(color(10, 100, 200), cache.get(t).get().getRGB(128, 128) & 0xffffff);
+        assertNull(cache.get(new OSMTile.TileCoordinates(1, 1, 10)).get());
+        assertEquals(1, cache.getRamSize()); // failures are not cached
+        cache.close();
+    }
+
+    @Test
+    public void coalescing() throws Exception {
+        this.delay = 300;
+        final TileCache cache = cache(60000);
+        final OSMTile.TileCoordinates t = new OSMTile.TileCoordinates(5, 6, 7);
+        List<CompletableFuture<BufferedImage>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) futures.add(cache.get(t));
+        for (CompletableFuture<BufferedImage> f: futures) assertEquals(color(7, 5, 6), f.get().getRGB(1, 1) & 0xffffff);
+        assertEquals(1, this.requests.get());
+        cache.close();
+    }
+
+    @Test
+    public void combined() throws Exception {
+        TileCache cache = cache(60000);
+        OSMTile.TileCoordinates t = new OSMTile.TileCoordinates(50, 60, 8);
+        this.delay = 50; // the latency of a tile server
+        RasterPlotter m = OSMTile.getCombinedTiles(cache, t, 5, 3);
+        assertEquals(256 * 5, m.getWidth());
+        assertEquals(256 * 3, m.getHeight());
+        assertEquals(15, this.requests.get());
+        for (int i = 0; i < 5; i++) for (int j = 0; j < 3; j++) {
+            assertEquals(color(8, 48 + i, 59 + j), m.getImage().getRGB(256 * i + 128, 256 * j + 128) & 0xffffff);
+        }
+        for (AtomicInteger c: this.tileRequests.values()) assertEquals(1, c.get());
+
+        // the next frames are rendered from RAM and, after a restart, from disk without requests to the tile server
+        for (int r = 0; r < 3; r++) OSMTile.getCombinedTiles(cache, t, 5, 3);
+        assertEquals(15, this.requests.get());
+        cache.close();
+        cache = cache(60000);
+        OSMTile.getCombinedTiles(cache, t, 5, 3);
+        assertEquals(15, this.requests.get());
+        cache.close();
+    }
+
+}
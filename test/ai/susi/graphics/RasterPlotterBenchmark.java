@@ -0,0 +1,45 @@
+package ai.susi.graphics;
+
+import java.awt.image.BufferedImage;
+
+import ai.susi.graphics.RasterPlotter.DrawMode;
+import ai.susi.graphics.RasterPlotter.FilterMode;
+
+/**
+ * the time to render a map frame of 5x3 tiles and a markdown page.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class RasterPlotterBenchmark {
+
+    public static void main(String[] args) {
+        BufferedImage[] tiles = new BufferedImage[15];
+        for (int i = 0; i < tiles.length; i++) tiles[i] = RasterPlotterTest.random(256, 256, i);
+        BufferedImage marker = RasterPlotterTest.random(25, 40, 99);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 60; i++) text.append("THE QUICK BROWN FOX JUMPS OVER THE LAZY DOG ").append(i).append('\n');
+        String[] lines = text.toString().split("\n");
+        int rounds = 20;
+        long map = 0, markdown = 0;
+        for (int r = 0; r < rounds + 5; r++) {
+            long start = System.nanoTime();
+            RasterPlotter m = new RasterPlotter(256 * 5, 256 * 3, DrawMode.MODE_REPLACE, "FFFFFF");
+            for (int i = 0; i < 5; i++) for (int j = 0; j < 3; j++) m.insertBitmap(tiles[i * 3 + j], 256 * i, 256 * j);
+            m.setDrawMode(DrawMode.MODE_SUB);
+            m.setColor(0xffffff);
+            PrintTool.print(m, 6, 12, 0, "BERLIN", -1, false, 100);
+            m.insertBitmap(marker, 628, 344, FilterMode.FILTER_ANTIALIASING);
+            m.blur(0, 0, m.getWidth() - 1, m.getHeight() - 1);
+            long t = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            RasterPlotter p = new RasterPlotter(6 * 80 + 5, lines.length * 8 + 5, DrawMode.MODE_SUB, 0xffffff);
+            p.setColor(RasterPlotter.invertColor(0x000000));
+            for (int l = 0; l < lines.length; l++) PrintTool.print(p, 2, 7 + 8 * l, 0, lines[l], -1, false, 100);
+            p.insertBitmap(marker, 0, 0, DrawMode.MODE_SUB, 50);
+            long u = System.nanoTime() - start;
+            if (r >= 5) {map += t; markdown += u;} // the first rounds warm up the jit
+        }
+        System.out.println("map frame " + (map / rounds / 1000) + " us, markdown page " + (markdown / rounds / 1000) + " us");
+    }
+
+}
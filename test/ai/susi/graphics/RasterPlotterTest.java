@@ -0,0 +1,123 @@
+package ai.susi.graphics;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ai.susi.graphics.RasterPlotter.DrawMode;
+
+public class RasterPlotterTest {
+
+    static BufferedImage random(int width, int height, long seed) {
+        Random r = new Random(seed);
+        BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) for (int y = 0; y < height; y++) bi.setRGB(x, y, r.nextInt(0x1000000));
+        return bi;
+    }
+
+    private static int[] pixels(RasterPlotter m) {
+        return m.getImage().getRGB(0, 0, m.getWidth(), m.getHeight(), null, 0, m.getWidth());
+    }
+
+    @Test
+    public void plot() throws InterruptedException {
+        RasterPlotter m = new RasterPlotter(20, 10, DrawMode.MODE_ADD, 0x101010);
+        m.setColor(0xf08040);
+        m.plot(1, 1, 100);
+        m.plot(2, 1, 50);
+        m.plot(-1, 1, 100); // outside
+        assertEquals(0xff9050, m.getImage().getRGB(1, 1) & 0xffffff); // the red channel is clipped
+        assertEquals(0x885030, m.getImage().getRGB(2, 1) & 0xffffff);
+        m.setDrawMode(DrawMode.MODE_SUB);
+        m.setColor(0xffffff); // the sub mode uses the inverted color
+        m.plot(1, 1, 100);
+        assertEquals(0, m.getImage().getRGB(1, 1) & 0xffffff);
+        m.setDrawMode(DrawMode.MODE_REPLACE);
+        m.setColor(0x204060);
+        m.plot(3, 3, 100);
+        m.plot(4, 3, 50);
+        assertEquals(0x204060, m.getImage().getRGB(3, 3) & 0xffffff);
+        assertEquals(0x182838, m.getImage().getRGB(4, 3) & 0xffffff);
+
+        // threads which draw into different areas of the same plotter
+        final RasterPlotter p = new RasterPlotter(400, 400, DrawMode.MODE_ADD, 0);
+        p.setColor(0x010203);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int t0 = t;
+            threads[t] = new Thread(() -> {
+                for (int n = 0; n < 10; n++) for (int x = 0; x < 400; x++) for (int y = t0 * 100; y < t0 * 100 + 100; y++) p.plot(x, y, 100);
+            });
+            threads[t].start();
+        }
+        for (Thread t: threads) t.join();
+        for (int rgb: pixels(p)) assertEquals(0x0a141e, rgb & 0xffffff);
+    }
+
+    @Test
+    public void insertBitmap() {
+        BufferedImage bi = random(300, 300, 1);
+        int trans = bi.getRGB(7, 7);
+        RasterPlotter m = new RasterPlotter(500, 400, DrawMode.MODE_REPLACE, 0x336699);
+        m.insertBitmap(bi, 250, -50, trans);
+        for (int x = 0; x < 500; x++) for (int y = 0; y < 400; y++) {
+            boolean inside = x >= 250 && y < 250;
+            int expected = inside && bi.getRGB(x - 250, y + 50) != trans ? bi.getRGB(x - 250, y + 50) : 0xff336699;
+            assertEquals(x + "," + y, expected, m.getImage().getRGB(x, y));
+        }
+
+        // blend modes
+        BufferedImage b = random(400, 300, 2);
+        RasterPlotter add = new RasterPlotter(400, 300, DrawMode.MODE_REPLACE, 0x000000);
+        add.insertBitmap(bi, 0, 0);
+        int[] before = pixels(add);
+        add.insertBitmap(b, 0, 0, DrawMode.MODE_ADD, 100);
+        int[] after = pixels(add);
+        RasterPlotter sub = new RasterPlotter(400, 300, DrawMode.MODE_REPLACE, 0x000000);
+        sub.insertBitmap(bi, 0, 0);
+        sub.insertBitmap(b, 0, 0, DrawMode.MODE_SUB, 50);
+        int[] subbed = pixels(sub);
+        for (int x = 0; x < 400; x++) for (int y = 0; y < 300; y++) {
+            int i = y * 400 + x;
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int c = before[i] >> shift & 0xff, d = b.getRGB(x, y) >> shift & 0xff;
+                assertEquals(Math.min(255, c + d), after[i] >> shift & 0xff);
+                assertEquals(Math.max(0, c - d / 2), subbed[i] >> shift & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void blur() {
+        int width = 600, height = 400;
+        BufferedImage bi = random(width, height, 3);
+        RasterPlotter m = new RasterPlotter(width, height, DrawMode.MODE_REPLACE, 0);
+        m.insertBitmap(bi, 0, 0);
+        m.blur(10, 20, width, height);
+        for (int x = 0; x < width; x++) for (int y = 0; y < height; y++) {
+            int expected = bi.getRGB(x, y) & 0xffffff;
+            if (x >= 10 && y >= 20) {
+                int[] sum = new int[3];
+                int n = 0;
+                int[][] neighbours = {{0, 0}, {-1, 0}, {0, -1}, {1, 0}, {0, 1}};
+                for (int[] d: neighbours) {
+                    int nx = x + d[0], ny = y + d[1];
+                    if (nx < 10 || ny < 20 || nx >= width || ny >= height) continue;
+                    int rgb = bi.getRGB(nx, ny);
+                    sum[0] += rgb >> 16 & 0xff; sum[1] += rgb >> 8 & 0xff; sum[2] += rgb & 0xff;
+                    n++;
+                }
+                expected = (sum[0] / n) << 16 | (sum[1] / n) << 8 | (sum[2] / n);
+            }
+            assertEquals(x + "," + y, expected, m.getImage().getRGB(x, y) & 0xffffff);
+        }
+        m.invert(0, 0, width - 1, height - 1);
+        m.invert(0, 0, width - 1, height - 1);
+        m.insertBitmap(bi, 0, 0);
+        assertArrayEquals(bi.getRGB(0, 0, width, height, null, 0, width), pixels(m));
+    }
+
+}
@@ -0,0 +1,37 @@
+package ai.susi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * the time to open a data set when the index is built from the dump and when the persistent index is mapped.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class JsonDatasetBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("jsondataset").toFile();
+        int records = 200000;
+        JsonDatasetTest.dump(dir, "test_201501_00000001.txt", records);
+        long start = System.nanoTime();
+        JsonDataset dataset = JsonDatasetTest.open(dir);
+        long buildTime = System.nanoTime() - start;
+        dataset.close();
+        start = System.nanoTime();
+        dataset = JsonDatasetTest.open(dir);
+        long openTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < records; i++) if (dataset.get("screen_name", "user" + i) != null) found++;
+        long lookupTime = (System.nanoTime() - start) / records;
+        assertEquals(records, found);
+        dataset.close();
+        System.out.println("data set of " + records + " records: index build " + buildTime / 1000000 + " ms, open of mapped index " +
+                openTime / 1000000 + " ms, lookup " + lookupTime + " ns");
+        JsonDatasetTest.delete(dir);
+    }
+
+}
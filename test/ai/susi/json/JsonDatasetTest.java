@@ -0,0 +1,78 @@
+package ai.susi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class JsonDatasetTest {
+
+    private final static JsonDataset.Column[] COLUMNS = new JsonDataset.Column[]{
+            new JsonDataset.Column("id", false),
+            new JsonDataset.Column("screen_name", true)
+    };
+
+    static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) for (File g: files) delete(g);
+        f.delete();
+    }
+
+    /**
+     * write a dump of a past month to the own directory as it would have been written by a previous run
+     */
+    static File dump(File dir, String name, int records) throws IOException {
+        File own = new File(dir, "own");
+        own.mkdirs();
+        File dump = new File(own, name);
+        try (Writer w = new OutputStreamWriter(Files.newOutputStream(dump.toPath()), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < records; i++) {
+                w.write(new JSONObject(true).put("$P", "I").put("id", "id" + i).put("screen_name", "User" + i).put("count", i).toString());
+                w.write('\n');
+            }
+            w.write(new JSONObject(true).put("$P", "I").put("id", "id0").put("screen_name", "User0").put("count", -1).toString());
+            w.write('\n');
+        }
+        return dump;
+    }
+
+    static JsonDataset open(File dir) throws IOException {
+        return new JsonDataset(dir, "test_", COLUMNS, null, null, JsonRepository.REWRITABLE_MODE, false, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void mappedIndex() throws IOException {
+        File dir = Files.createTempDirectory("jsondataset").toFile();
+        dump(dir, "test_201501_00000001.txt", 100);
+        dump(dir, "test_201502_00000002.txt", 10);
+
+        JsonDataset dataset = open(dir);
+        assertEquals(2, dataset.mapped.size());
+        assertEquals(110, dataset.size());
+        assertEquals(50, dataset.get("id", "id50").getJSON().getInt("count"));
+        assertEquals(-1, dataset.get("id", "id0").getJSON().getInt("count")); // the latest record of the latest dump
+        assertEquals(5, dataset.get("screen_name", "USER5").getJSON().getInt("count")); // the latest dump
+        assertNull(dataset.get("id", "id100"));
+        dataset.putUnique(new JSONObject(true).put("id", "id100").put("screen_name", "new").put("count", 100));
+        assertEquals(100, dataset.get("id", "id100").getJSON().getInt("count"));
+        dataset.close();
+
+        // the index files are used again
+        File index = new File(new File(dir, "index"), "test_201501_00000001.txt.id.idx");
+        long modified = index.lastModified();
+        dataset = open(dir);
+        assertEquals(modified, index.lastModified());
+        assertEquals(50, dataset.get("id", "id50").getJSON().getInt("count"));
+        assertEquals(100, dataset.get("id", "id100").getJSON().getInt("count")); // from the current dump
+        dataset.close();
+        delete(dir);
+    }
+
+}
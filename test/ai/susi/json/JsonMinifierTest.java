@@ -2,6 +2,16 @@ package ai.susi.json;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONObjectTest;
 import org.junit.Test;
@@ -19,4 +29,97 @@ public class JsonMinifierTest {
         assertEquals(json.toString(), challenge.toString());
     }
 
+    private final static String[] LANGUAGES = new String[]{"en", "de", "fr", "es"};
+
+    private static List<JSONObject> records(int count) {
+        List<JSONObject> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new JSONObject(true)
+                    .put("id_str", Long.toString(800000000000000000L + i * 7919L))
+                    .put("created_at", "2026-10-" + (10 + i % 9) + "T12:" + (10 + i % 50) + ":00.000Z")
+                    .put("screen_name", "user" + (i % 97))
+                    .put("text", "what is the weather in " + (i % 3 == 0 ? "Frankfurt" : "Berlin") + " tomorrow #" + i)
+                    .put("language", LANGUAGES[i % LANGUAGES.length])
+                    .put("retweet_count", i % 13)
+                    .put("favourites_count", i % 5)
+                    .put("place", new JSONObject(true).put("country", "Germany").put("lat", 50.11 + (i % 10) * 0.01).put("lon", 8.68))
+                    .put("hashtags", new JSONArray().put("weather").put("susi")));
+        }
+        return records;
+    }
+
+    @Test
+    public void dictionary() throws IOException {
+        List<JSONObject> records = records(200);
+        JsonMinifier minifier = new JsonMinifier(Deflater.BEST_SPEED, 100);
+        List<JsonMinifier.JsonCapsuleFactory> capsules = new ArrayList<>();
+        for (JSONObject json: records) capsules.add(minifier.minify(json));
+        assertTrue(capsules.get(150).length() < capsules.get(50).length()); // the first records were compressed without the dictionary
+        for (int i = 0; i < records.size(); i++) assertEquals(records.get(i).toString(), capsules.get(i).getJSON().toString());
+
+        // a new dictionary does not break existing capsules
+        minifier.train(records(10));
+        JsonMinifier.JsonCapsuleFactory capsule = minifier.minify(records.get(0));
+        assertEquals(records.get(0).toString(), capsule.getJSON().toString());
+        assertEquals(records.get(199).toString(), capsules.get(199).getJSON().toString());
+
+        // the state can be stored and capsules are decoded with a minifier which loads it
+        File state = File.createTempFile("minifier", ".json");
+        minifier.store(state);
+        JsonMinifier loaded = new JsonMinifier(state, Deflater.BEST_SPEED, 100);
+        assertEquals(capsule.length(), loaded.minify(records.get(0)).length());
+        assertEquals(records.get(0).toString(), loaded.minify(records.get(0)).getJSON().toString());
+        state.delete();
+
+        // small records which do not compress are stored raw
+        JsonMinifier.JsonCapsuleFactory small = new JsonMinifier(Deflater.BEST_SPEED, 0).minify(new JSONObject().put("a", 1));
+        assertEquals("{\"a\":1}", small.getJSON().toString());
+        assertEquals(8, small.length());
+    }
+
+    /**
+     * the capsules as they were created before: each minified record gzipped at the best compression
+     */
+    private static byte[] gzip(JSONObject jo) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+        try {
+            GZIPOutputStream out = new GZIPOutputStream(baos, 1024){{def.setLevel(Deflater.BEST_COMPRESSION);}};
+            OutputStreamWriter osw = new OutputStreamWriter(out);
+            jo.write(osw);
+            osw.close();
+        } catch (IOException e) {}
+        return baos.toByteArray();
+    }
+
+    /**
+     * the compression ratio and throughput of per-record gzip compared to the deflate codec with and without dictionary
+     */
+    @Test
+    public void benchmark() {
+        List<JSONObject> records = records(20000);
+        long raw = 0;
+        for (JSONObject json: records) raw += json.toString().length();
+        for (int round = 0; round < 2; round++) { // the first round is the warm-up
+            long start = System.nanoTime(), bytes = 0;
+            for (JSONObject json: records) bytes += gzip(json).length + 1;
+            long time = (System.nanoTime() - start) / records.size();
+            if (round == 1) System.out.println("capsules of " + records.size() + " records with " + raw / records.size() + " bytes: gzip level 9 " +
+                    bytes / records.size() + " bytes, " + time + " ns");
+            for (int[] config: new int[][]{{1, 0}, {1, 1000}, {6, 1000}, {9, 1000}}) {
+                JsonMinifier minifier = new JsonMinifier(config[0], config[1]);
+                List<JsonMinifier.JsonCapsuleFactory> capsules = new ArrayList<>(records.size());
+                start = System.nanoTime();
+                for (JSONObject json: records) capsules.add(minifier.minify(json));
+                time = (System.nanoTime() - start) / records.size();
+                bytes = 0;
+                for (JsonMinifier.JsonCapsuleFactory capsule: capsules) bytes += capsule.length();
+                start = System.nanoTime();
+                for (JsonMinifier.JsonCapsuleFactory capsule: capsules) capsule.getJSON();
+                long decodeTime = (System.nanoTime() - start) / records.size();
+                if (round == 1) System.out.println("capsules with deflate level " + config[0] + (config[1] == 0 ? " without" : " with") + " dictionary: " +
+                        bytes / records.size() + " bytes, " + time + " ns, decode " + decodeTime + " ns");
+            }
+        }
+    }
+
 }
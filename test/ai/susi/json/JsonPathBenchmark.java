@@ -0,0 +1,73 @@
+package ai.susi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * the evaluation of paths on a multi-MB json file: with a DOM of the whole file as it was done for console services
+ * before and with the stream parser. This is not part of the unit tests, run it with the main method.
+ */
+public class JsonPathBenchmark {
+
+    private static File fixture(int books) throws IOException {
+        File f = File.createTempFile("jsonpath", ".json");
+        f.deleteOnExit();
+        try (Writer w = new OutputStreamWriter(Files.newOutputStream(f.toPath()), StandardCharsets.UTF_8)) {
+            w.write("{\"meta\":{\"count\":" + books + "},\"store\":{\"book\":[");
+            for (int i = 0; i < books; i++) {
+                if (i > 0) w.write(',');
+                w.write(new JSONObject(true).put("id", i).put("author", "author " + i).put("title", "a book about the number " + i)
+                        .put("tags", new JSONArray().put("tag" + (i % 7)).put("tag" + (i % 11))).put("price", i * 0.01d).toString());
+            }
+            w.write("],\"summary\":{\"title\":\"the summary\"}}}");
+        }
+        return f;
+    }
+
+    private static long allocated() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static InputStream open(File f) throws IOException {
+        return new BufferedInputStream(new FileInputStream(f));
+    }
+
+    public static void main(String[] args) throws IOException {
+        File f = fixture(40000);
+        for (String path: new String[]{"$.meta.count", "$.store.summary.title", "$.store.book[*].title"}) {
+            long domTime = 0, streamTime = 0, domBytes = 0, streamBytes = 0;
+            int domLength = 0, streamLength = 0;
+            for (int round = 0; round < 3; round++) { // the first rounds are the warm-up
+                long a = allocated(), start = System.nanoTime();
+                byte[] b = Files.readAllBytes(f.toPath());
+                domLength = JsonPath.parse(new JSONTokener(new ByteArrayInputStream(b)), path).length();
+                domTime = System.nanoTime() - start; domBytes = allocated() - a;
+                a = allocated(); start = System.nanoTime();
+                try (InputStream is = open(f)) {
+                    streamLength = JsonPath.parse(is, path).length();
+                }
+                streamTime = System.nanoTime() - start; streamBytes = allocated() - a;
+            }
+            assertEquals(domLength, streamLength);
+            System.out.println("json path " + path + " on " + (f.length() / 1024) + " KB: dom " + domTime / 1000000 + " ms, " + domBytes / 1024 + " KB allocated; stream " +
+                    streamTime / 1000000 + " ms, " + streamBytes / 1024 + " KB allocated");
+        }
+        f.delete();
+    }
+
+}
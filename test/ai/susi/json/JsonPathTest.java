@@ -0,0 +1,82 @@
+package ai.susi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.junit.Test;
+
+public class JsonPathTest {
+
+    private final static String store = "{\"store\": {" +
+            "\"book\": [" +
+            "{\"category\": \"reference\", \"author\": \"Nigel Rees\", \"title\": \"Sayings of the Century\", \"price\": 8.95}," +
+            "{\"category\": \"fiction\", \"author\": \"Evelyn Waugh\", \"title\": \"Sword of Honour\", \"price\": 12.99}," +
+            "{\"category\": \"fiction\", \"author\": \"Herman Melville\", \"title\": \"Moby Dick\", \"isbn\": \"0-553-21311-3\", \"price\": 8.99}," +
+            "{\"category\": \"fiction\", \"author\": \"J. R. R. Tolkien\", \"title\": \"The Lord of the Rings\", \"isbn\": \"0-395-19395-8\", \"price\": 22.99}" +
+            "]," +
+            "\"bicycle\": {\"color\": \"red\", \"price\": 19.95}" +
+            "}}";
+
+    private static JSONArray stream(String json, String path) throws IOException {
+        return JsonPath.parseRaw(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), path);
+    }
+
+    private static JSONArray dom(String json, String path) {
+        return JsonPath.parseRaw(new JSONTokener(json), path);
+    }
+
+    private static void assertPath(String expected, String path) throws IOException {
+        assertEquals(path, expected, stream(store, path).toString());
+        assertEquals(path, new JSONArray(expected).length(), dom(store, path).length());
+    }
+
+    @Test
+    public void paths() throws IOException {
+        assertPath("[\"Nigel Rees\",\"Evelyn Waugh\",\"Herman Melville\",\"J. R. R. Tolkien\"]", "$.store.book[*].author");
+        assertPath("[\"Nigel Rees\",\"Evelyn Waugh\",\"Herman Melville\",\"J. R. R. Tolkien\"]", "$..author");
+        assertPath("[8.95,12.99,8.99,22.99,19.95]", "$.store..price");
+        assertPath("[\"Moby Dick\"]", "$..book[2].title");
+        assertPath("[\"The Lord of the Rings\"]", "$..book[-1].title");
+        assertPath("[\"Nigel Rees\",\"Evelyn Waugh\"]", "$.store.book[0:2].author");
+        assertPath("[\"Nigel Rees\",\"Herman Melville\"]", "$.store.book[::2].author");
+        assertPath("[\"The Lord of the Rings\",\"Moby Dick\"]", "$.store.book[-1:-3:-1].title");
+        assertPath("[\"0-553-21311-3\",\"0-395-19395-8\"]", "$..isbn");
+        assertPath("[\"red\"]", "$.store..color");
+        assertEquals(2, stream(store, "$.store.*").length());
+        assertEquals(dom(store, "$.store.bicycle").toString(), stream(store, "$.store.bicycle").toString());
+
+        // a definite path returns the selected array or a single row
+        assertEquals(4, JsonPath.parse(new ByteArrayInputStream(store.getBytes(StandardCharsets.UTF_8)), "$.store.book").length());
+        assertEquals("[{\"object\":\"Moby Dick\"}]", JsonPath.parse(new ByteArrayInputStream(store.getBytes(StandardCharsets.UTF_8)), "$.store.book[2].title").toString());
+        assertEquals("[{\"object\":\"red\"}]", JsonPath.parse(new ByteArrayInputStream(store.getBytes(StandardCharsets.UTF_8)), "$['store']['bicycle']['color']").toString());
+        // wildcards of atoms are wrapped into rows
+        assertEquals("[{\"object\":\"Nigel Rees\"},{\"object\":\"Evelyn Waugh\"},{\"object\":\"Herman Melville\"},{\"object\":\"J. R. R. Tolkien\"}]",
+                JsonPath.parse(new ByteArrayInputStream(store.getBytes(StandardCharsets.UTF_8)), "$..author").toString());
+
+        assertNull(JsonPath.compile("store.book"));
+        assertNull(stream(store, "$.store.book[x]"));
+        try {
+            stream(store, "$.store.car");
+            fail();
+        } catch (JSONException e) {}
+    }
+
+    @Test
+    public void legacy() throws IOException {
+        String yql = "{\"query\":{\"count\":1,\"created\":\"2017-03-13T12:41:55Z\",\"lang\":\"de-DE\",\"results\":{\"row\":{\"symbol\":\"YHOO\",\"price\":\"45.98\",\"date\":\"3/10/2017\"}}}}";
+        JSONObject row = stream(yql, "$.query.results.row").getJSONObject(0);
+        assertEquals("YHOO", row.getString("symbol"));
+        assertEquals("symbol", row.getString("k0"));
+        assertEquals(3, row.getInt("mapsize"));
+        assertEquals("[1,2]", stream("[1,2]", "$").toString());
+        assertEquals("[{\"object\":\"b\"}]", JsonPath.parse(new ByteArrayInputStream("{\"a\":[\"a\",\"b\"]}".getBytes(StandardCharsets.UTF_8)), "$.a[1]").toString());
+    }
+
+}
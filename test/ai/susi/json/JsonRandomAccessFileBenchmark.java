@@ -0,0 +1,70 @@
+package ai.susi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * concurrent random reads of records with a seek and read under a lock compared to positional reads.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class JsonRandomAccessFileBenchmark {
+
+    private static long run(int threads, final ReadFunction read) throws InterruptedException {
+        Thread[] t = new Thread[threads];
+        final int reads = 400000 / threads;
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            t[i] = new Thread() {
+                public void run() {
+                    Random r = new Random(getId());
+                    try {
+                        for (int j = 0; j < reads; j++) read.read(r.nextInt(JsonRandomAccessFileTest.RECORDS));
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                }
+            };
+            t[i].start();
+        }
+        for (Thread thread: t) thread.join();
+        return (System.nanoTime() - start) / (reads * threads);
+    }
+
+    private interface ReadFunction {
+        public void read(int record) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File f = File.createTempFile("jsonraf", ".txt");
+        JsonRandomAccessFile file = new JsonRandomAccessFile(f, 1);
+        final JsonRandomAccessFile.ReaderJsonFactory[] factories = new JsonRandomAccessFile.ReaderJsonFactory[JsonRandomAccessFileTest.RECORDS];
+        JsonFactory[] jf = JsonRandomAccessFileTest.fill(file);
+        for (int i = 0; i < JsonRandomAccessFileTest.RECORDS; i++) factories[i] = (JsonRandomAccessFile.ReaderJsonFactory) jf[i];
+        final RandomAccessFile raf = new RandomAccessFile(f, "r");
+        for (int threads: new int[]{1, 8, 64}) {
+            long lockedTime = 0, positionalTime = 0;
+            for (int round = 0; round < 2; round++) { // the first round is the warm-up
+                lockedTime = run(threads, record -> {
+                    byte[] b = new byte[factories[record].getLength()];
+                    synchronized (raf) {
+                        raf.seek(factories[record].getIndex());
+                        raf.readFully(b);
+                    }
+                });
+                positionalTime = run(threads, record -> {
+                    byte[] b = new byte[factories[record].getLength()];
+                    file.read(b, factories[record].getIndex());
+                });
+            }
+            System.out.println("random read of records with " + threads + " threads: seek and read with lock " + lockedTime + " ns, positional read " + positionalTime + " ns");
+        }
+        raf.close();
+        file.close();
+        f.delete();
+    }
+
+}
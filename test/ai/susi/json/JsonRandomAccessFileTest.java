@@ -0,0 +1,71 @@
+package ai.susi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import ai.susi.tools.UTF8;
+
+public class JsonRandomAccessFileTest {
+
+    final static int RECORDS = 100000;
+
+    static JsonFactory[] fill(JsonRandomAccessFile file) throws IOException {
+        JsonFactory[] factories = new JsonFactory[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            byte[] b = UTF8.getBytes(new JSONObject(true).put("id", i).put("text", "record number " + i).toString());
+            factories[i] = file.getJsonFactory(file.appendLine(b), b.length);
+        }
+        return factories;
+    }
+
+    @Test
+    public void positionalRead() throws IOException, InterruptedException {
+        File f = File.createTempFile("jsonraf", ".txt");
+        JsonRandomAccessFile file = new JsonRandomAccessFile(f, 1);
+        final JsonFactory[] factories = fill(file);
+
+        // read while lines are appended
+        final AtomicInteger errors = new AtomicInteger(0);
+        Thread[] readers = new Thread[8];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread() {
+                public void run() {
+                    Random r = new Random(getId());
+                    for (int i = 0; i < 20000; i++) {
+                        int j = r.nextInt(RECORDS);
+                        try {
+                            if (factories[j].getJSON().getInt("id") != j) errors.incrementAndGet();
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            readers[t].start();
+        }
+        for (int i = 0; i < 10000; i++) file.appendLine(UTF8.getBytes("{\"id\":-1}"));
+        for (Thread t: readers) t.join();
+        assertEquals(0, errors.get());
+
+        // an interrupted reader does not break the file for other readers
+        Thread.currentThread().interrupt();
+        try {
+            factories[5].getJSON();
+            fail();
+        } catch (ClosedByInterruptException e) {
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(5, factories[5].getJSON().getInt("id"));
+        file.close();
+        f.delete();
+    }
+
+}
@@ -0,0 +1,63 @@
+package ai.susi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.json.JSONObject;
+
+/**
+ * the append throughput of writers which write each record to the dump and of writers which use the buffer.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class JsonRepositoryBenchmark {
+
+    private final static int RECORDS = 200000;
+
+    private static long run(int threads, JsonRepository repository, boolean buffered) throws InterruptedException {
+        final Date date = new Date();
+        Thread[] t = new Thread[threads];
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            final int thread = i;
+            t[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < RECORDS / threads; j++) {
+                            if (buffered) repository.buffer(date, JsonRepositoryTest.record(thread, j)); else repository.write(new JSONObject(JsonRepositoryTest.record(thread, j)));
+                        }
+                    } catch (IOException e) {
+                        fail(e.getMessage());
+                    }
+                }
+            };
+            t[i].start();
+        }
+        for (Thread thread: t) thread.join();
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        for (int threads: new int[]{1, 8, 64}) {
+            long writeTime = 0, bufferTime = 0;
+            for (int round = 0; round < 2; round++) { // the first round is the warm-up
+                File dir = JsonRepositoryTest.tempDir();
+                JsonRepository repository = new JsonRepository(dir, "test_", null, JsonRepository.REWRITABLE_MODE, false, 1);
+                writeTime = run(threads, repository, false);
+                repository.close();
+                JsonRepositoryTest.delete(dir);
+                dir = JsonRepositoryTest.tempDir();
+                repository = new JsonRepository(dir, "test_", null, JsonRepository.REWRITABLE_MODE, false, 1);
+                bufferTime = run(threads, repository, true);
+                repository.close();
+                assertEquals(RECORDS / threads * threads, JsonRepositoryTest.dump(dir).size());
+                JsonRepositoryTest.delete(dir);
+            }
+            System.out.println("append of " + RECORDS + " records with " + threads + " threads: write " + RECORDS * 1000000000L / writeTime +
+                    " records/s, buffer " + RECORDS * 1000000000L / bufferTime + " records/s");
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package ai.susi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class JsonRepositoryTest {
+
+    static File tempDir() throws IOException {
+        File dir = Files.createTempDirectory("jsonrepository").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) for (File g: files) delete(g);
+        f.delete();
+    }
+
+    static List<JSONObject> dump(File dir) throws IOException {
+        List<JSONObject> records = new ArrayList<>();
+        File[] files = new File(dir, "own").listFiles();
+        for (File f: files) for (String line: Files.readAllLines(f.toPath(), StandardCharsets.UTF_8)) {
+            if (line.length() > 0) records.add(new JSONObject(line));
+        }
+        return records;
+    }
+
+    static Map<String, Object> record(int thread, int i) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("thread", thread);
+        map.put("count", i);
+        map.put("query", "what is the meaning of life " + i);
+        return map;
+    }
+
+    @Test
+    public void buffer() throws IOException {
+        File dir = tempDir();
+        JsonRepository repository = new JsonRepository(dir, "test_", null, JsonRepository.REWRITABLE_MODE, false, 1);
+        Date date = new Date();
+        for (int i = 0; i < 10; i++) repository.buffer(date, record(0, i));
+        assertEquals(10, repository.getBufferShardCount());
+        JSONObject first = repository.getBufferShard().getJSONObject(0);
+        assertEquals(0, first.getInt("count"));
+        assertTrue(first.has("$D"));
+        repository.flush();
+        assertEquals(0, repository.getBufferShardCount());
+        assertEquals(10, dump(dir).size());
+        repository.write(new JSONObject().put("count", 10));
+        for (int i = 11; i < 20; i++) repository.buffer(date, record(0, i));
+        repository.close();
+        List<JSONObject> records = dump(dir);
+        assertEquals(20, records.size());
+        for (int i = 0; i < 20; i++) assertEquals(i, records.get(i).getInt("count"));
+        delete(dir);
+    }
+
+    /**
+     * a rotated dump is compressed only when its last writer is done
+     */
+    @Test
+    public void rotation() throws IOException, InterruptedException {
+        File dir = tempDir();
+        JsonRepository repository = new JsonRepository(dir, "test_", null, JsonRepository.COMPRESSED_MODE, true, 1);
+        repository.write(new JSONObject().put("count", 0));
+        JsonRepository.Dump held = repository.acquire();
+        File source = new File(held.file.getName());
+        Thread.sleep(10); // the name of a new dump is random with the time as seed
+        repository.rotation = 0;
+        repository.write(new JSONObject().put("count", 1));
+        assertNotSame(held, repository.json_log);
+        Thread.sleep(100);
+        assertTrue(source.exists());
+        held.file.appendLine("{\"count\":2}".getBytes(StandardCharsets.UTF_8));
+        repository.release(held);
+        File dest = new File(source.getParentFile(), source.getName() + ".gz");
+        for (int i = 0; i < 100 && source.exists(); i++) Thread.sleep(50);
+        assertFalse(source.exists());
+        assertTrue(dest.exists());
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(dest)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) if (line.length() > 0) lines.add(line);
+        }
+        assertEquals(2, lines.size());
+        assertEquals(2, new JSONObject(lines.get(1)).getInt("count"));
+        repository.close();
+        delete(dir);
+    }
+
+}
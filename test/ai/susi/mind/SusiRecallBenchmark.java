@@ -0,0 +1,35 @@
+package ai.susi.mind;
+
+import ai.susi.server.ClientIdentity;
+
+/**
+ * the recall of a client with many cognitions: recomputed from the memories compared to the maintained recall.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class SusiRecallBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        SusiRecallTest test = new SusiRecallTest();
+        test.setUp();
+        try {
+            SusiMind mind = test.mind;
+            ClientIdentity identity = new ClientIdentity("host:localhost");
+            String client = identity.getClient();
+            for (String q: SusiRecallTest.tutorial) mind.getMemories().addCognition(client, new SusiCognition(mind, q, 0, 0, 0, 1, identity));
+            int rounds = 20000;
+            long recomputeTime = 0, recallTime = 0;
+            for (int warmup = 0; warmup < 2; warmup++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) SusiRecallTest.recompute(mind, client, SusiRecallTest.observation());
+                recomputeTime = (System.nanoTime() - start) / rounds;
+                start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) mind.recall(client).mindmeld(SusiRecallTest.observation());
+                recallTime = (System.nanoTime() - start) / rounds;
+            }
+            System.out.println("recall of " + mind.recall(client).size() + " cognitions: recomputed " + recomputeTime + " ns, maintained " + recallTime + " ns");
+        } finally {
+            test.tearDown();
+        }
+    }
+
+}
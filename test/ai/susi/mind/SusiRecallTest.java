@@ -0,0 +1,132 @@
+package ai.susi.mind;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ai.susi.DAO;
+import ai.susi.server.ClientIdentity;
+
+public class SusiRecallTest {
+
+    final static String[] tutorial = new String[]{
+            "reset test.", "roses are red", "susi is a hack", "What is your favorite dish",
+            "Bonjour", "Buenos días", "Ciao", "May I work for you?", "May I get a beer?",
+            "For one dollar I can buy a beer", "Someday I buy a car", "I really like bitburger beer",
+            "What beer is the best?", "How do I feel?", "I am bored.", "How do I feel?",
+            "I am so happy!", "Shall I eat?", "compute 10 to the power of 3"
+    };
+
+    private File tmp;
+    SusiMind mind;
+
+    @Before
+    public void setUp() throws Exception {
+        this.tmp = Files.createTempDirectory("recall").toFile();
+        this.mind = newMind();
+        DAO.susi = this.mind;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DAO.susi = null;
+        delete(this.tmp);
+    }
+
+    private static void delete(File f) {
+        if (f.isDirectory()) for (File c: f.listFiles()) delete(c);
+        f.delete();
+    }
+
+    private SusiMind newMind() throws Exception {
+        SusiMind mind = new SusiMind(this.tmp);
+        mind.learn(mind.readSkills(new BufferedReader(new StringReader(SusiTutorialTest.testFile))));
+        return mind;
+    }
+
+    static SusiThought observation() {
+        SusiThought observation = new SusiThought();
+        observation.addObservation("timezoneOffset", "0");
+        observation.addObservation("latitude", "0.0");
+        observation.addObservation("longitude", "0.0");
+        return observation;
+    }
+
+    /**
+     * the recall as it was computed for every chat before it was maintained by the identity
+     */
+    static SusiThought recompute(SusiMind mind, String client, SusiThought observation) {
+        SusiArgument argument = new SusiArgument();
+        if (observation != null && observation.length() > 0) argument.think(observation);
+        mind.getMemories().getCognitions(client).forEach(cognition -> argument.think(cognition.recallDispute()));
+        return argument.mindmeld(false);
+    }
+
+    private static List<String> considerations(SusiMind mind, String query, SusiThought recall, String client) {
+        query = SusiPhrase.normalizeExpression(query);
+        List<String> arguments = new ArrayList<>();
+        for (SusiIdea idea: mind.creativity(query, recall, 100)) {
+            SusiArgument argument = idea.getSkill().consideration(query, recall, idea.getIntent(), mind, client);
+            if (argument != null) arguments.add(argument.mindmeld(true).toString());
+        }
+        return arguments;
+    }
+
+    private static void assertSameRecall(SusiMind mind, String client, SusiThought observation) {
+        SusiThought expected = recompute(mind, client, observation);
+        SusiThought recall = mind.recall(client).mindmeld(observation);
+        assertEquals(expected.toString(), recall.toString());
+        assertEquals(expected.getTimes(), recall.getTimes());
+    }
+
+    @Test
+    public void tutorial() throws Exception {
+        ClientIdentity identity = new ClientIdentity("host:localhost");
+        String client = identity.getClient();
+        for (String q: tutorial) {
+            SusiThought observation = observation();
+            assertSameRecall(this.mind, client, observation);
+            assertSameRecall(this.mind, client, null);
+            // the arguments which lead to the answers are identical
+            assertEquals(
+                    considerations(this.mind, q, recompute(this.mind, client, observation), client),
+                    considerations(this.mind, q, this.mind.recall(client).mindmeld(observation), client));
+            SusiCognition cognition = new SusiCognition(this.mind, q, 0, 0, 0, 1, identity);
+            this.mind.getMemories().addCognition(client, cognition);
+        }
+        // the attention is exceeded and cognitions are forgotten
+        assertTrue(this.mind.recall(client).size() < tutorial.length);
+        assertEquals(this.mind.getMemories().getCognitions(client).size(), this.mind.recall(client).size());
+        assertEquals("You will be happy, whatever I say!", new SusiCognition(this.mind, "Shall I eat?", 0, 0, 0, 1, identity).getExpression());
+
+        // a recall of a memory dump
+        SusiMind reloaded = newMind();
+        assertSameRecall(reloaded, client, observation());
+        reloaded.getMemories().addCognition(client, new SusiCognition(reloaded, "How do I feel?", 0, 0, 0, 1, identity));
+        assertSameRecall(reloaded, client, observation());
+    }
+
+    @Test
+    public void overlappingObservation() throws Exception {
+        ClientIdentity identity = new ClientIdentity("host:localhost");
+        String client = identity.getClient();
+        for (String q: new String[]{"I am bored.", "I really like bitburger beer", "How do I feel?"}) {
+            this.mind.getMemories().addCognition(client, new SusiCognition(this.mind, q, 0, 0, 0, 1, identity));
+        }
+        SusiThought observation = new SusiThought();
+        observation.addObservation("_mood", "excited");
+        assertSameRecall(this.mind, client, observation);
+        observation.addObservation("_mood", "inactive");
+        assertSameRecall(this.mind, client, observation);
+    }
+
+}
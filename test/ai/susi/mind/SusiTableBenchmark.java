@@ -0,0 +1,44 @@
+package ai.susi.mind;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * the cost of a mindmeld of two thoughts with json rows and with a columnar table.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class SusiTableBenchmark {
+
+    private final static int ROUNDS = 100000;
+
+    public static void main(String[] args) {
+        JSONArray data = SusiTableTest.sample();
+        SusiTable table = SusiTable.fromJSON(data);
+        long jsonTime = 0, tableTime = 0, count = 0;
+        for (int round = 0; round < 2; round++) { // the first round is the warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                JSONArray melted = new JSONArray();
+                for (int j = 0; j < 2; j++) for (int r = 0; r < data.length(); r++) {
+                    JSONObject row = new JSONObject(true);
+                    row.putAll(data.getJSONObject(r));
+                    melted.put(row);
+                }
+                count += melted.length();
+            }
+            jsonTime = (System.nanoTime() - start) / ROUNDS;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                SusiTable melted = new SusiTable();
+                for (int j = 0; j < 2; j++) melted.appendRows(table, 0, table.size());
+                count -= melted.size();
+            }
+            tableTime = (System.nanoTime() - start) / ROUNDS;
+        }
+        System.out.println("concatenation of tables with json rows: " + jsonTime + " ns, columnar: " + tableTime + " ns");
+        assertEquals(0, count);
+    }
+
+}
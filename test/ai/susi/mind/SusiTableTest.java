@@ -0,0 +1,71 @@
+package ai.susi.mind;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class SusiTableTest {
+
+    static JSONArray sample() {
+        return new JSONArray()
+                .put(new JSONObject(true).put("query", "roses are red").put("answer", "susi is a hack").put("count", 3))
+                .put(new JSONObject(true).put("query", "bonjour").put("score", 0.5d).put("_mood", "happy"))
+                .put(new JSONObject(true).put("query", "ciao").put("count", 4L).put("flag", true).put("list", new JSONArray().put(1)));
+    }
+
+    @Test
+    public void roundtrip() {
+        JSONArray json = sample();
+        SusiTable table = SusiTable.fromJSON(json);
+        assertEquals(3, table.size());
+        assertEquals(json.toString(), table.toJSONString());
+        assertEquals(json.toString(), table.toJSONArray().toString());
+        assertEquals("{\"data\":" + json.toString() + "}", new JSONObject(true).put("data", table).toString());
+        assertEquals(Long.valueOf(4), table.get(2, "count")); // a long makes the column a long column
+        assertEquals(true, table.get(2, "flag"));
+        assertNull(table.get(0, "score"));
+        assertEquals("happy", table.find("_mood"));
+        assertEquals(1, table.findRow("_mood"));
+
+        // a value of another type changes the column to an object column
+        table.put(0, "score", "high");
+        assertEquals("high", table.get(0, "score"));
+        assertEquals(0.5d, table.get(1, "score"));
+
+        table.insertRow(1);
+        assertEquals(4, table.size());
+        assertTrue(table.getRow(1).keys().isEmpty());
+        assertEquals("bonjour", table.get(2, "query"));
+        table.removeRow(1);
+        table.removeRow(0);
+        assertEquals("[{\"query\":\"bonjour\",\"score\":0.5,\"_mood\":\"happy\"},{\"query\":\"ciao\",\"count\":4,\"flag\":true,\"list\":[1]}]", table.toJSONString());
+    }
+
+    @Test
+    public void thought() {
+        SusiThought thought = new SusiThought()
+                .addObservation("query", "what beer is the best?")
+                .addObservation("answer", "I bet you like bitburger beer!");
+        thought.addObservation("query", "I really like bitburger beer");
+        thought.addObservation("_history", "bitburger");
+        assertEquals(2, thought.getCount());
+        assertEquals("I really like bitburger beer", thought.getObservation("query"));
+        assertEquals(2, thought.getObservations("query").size());
+        assertEquals(new JSONObject(thought.toString()).getJSONArray("data").toString(), thought.getData().toString());
+
+        // a clone shares the table
+        SusiThought clone = new SusiThought(thought);
+        assertEquals(thought, clone);
+        assertNotEquals(thought, new SusiThought(new JSONObject(thought.toString())));
+        assertEquals(thought.getData().toString(), new SusiThought(new JSONObject(thought.toString())).getData().toString());
+
+        // merge as it is done in a mindmeld
+        SusiThought melted = new SusiThought().mergeData(sample()).mergeTable(thought.getTable());
+        assertEquals(5, melted.getCount()); // all rows have a query
+        assertEquals("I really like bitburger beer", melted.getTable().get(3, "query"));
+        assertEquals("bitburger", melted.getTable().find("_history"));
+    }
+
+}
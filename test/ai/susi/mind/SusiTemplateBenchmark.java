@@ -0,0 +1,35 @@
+package ai.susi.mind;
+
+import static org.junit.Assert.*;
+
+/**
+ * the cost of the unification of tutorial-style answers with several variables: search and replace compared to a compiled template.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class SusiTemplateBenchmark {
+
+    private final static int ROUNDS = 200000;
+
+    public static void main(String[] args) {
+        SusiArgument argument = SusiTemplateTest.argument();
+        String[] answers = new String[]{
+                "Yeah, I believe $1$ is a god price for a $2$",
+                "$name$ says: you then should have one $_beerbrand$ and not another $2$!",
+                "You asked '$0$', before that we talked about $_history$ and $_beerbrand$."
+        };
+        SusiTemplate[] templates = new SusiTemplate[answers.length];
+        for (int i = 0; i < answers.length; i++) templates[i] = SusiTemplate.compile(answers[i]);
+        long substituteTime = 0, templateTime = 0, length = 0;
+        for (int round = 0; round < 2; round++) { // the first round is the warm-up
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) length += SusiTemplate.substitute(argument, answers[i % answers.length], false, Integer.MAX_VALUE).length();
+            substituteTime = (System.nanoTime() - start) / ROUNDS;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) length -= templates[i % templates.length].unify(argument, false, Integer.MAX_VALUE).length();
+            templateTime = (System.nanoTime() - start) / ROUNDS;
+        }
+        System.out.println("unification with search and replace: " + substituteTime + " ns, with a compiled template: " + templateTime + " ns");
+        assertEquals(0, length);
+    }
+
+}
@@ -0,0 +1,82 @@
+package ai.susi.mind;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SusiTemplateTest {
+
+    static SusiArgument argument() {
+        SusiThought recall = new SusiThought()
+                .addObservation("query", "what beer is the best?")
+                .addObservation("answer", "I bet you like bitburger beer!")
+                .addObservation("_history", "beer")
+                .addObservation("_beerbrand", "bitburger");
+        recall.addObservation("query", "I really like bitburger beer");
+        recall.addObservation("_history", "bitburger");
+        SusiThought matcher = new SusiThought()
+                .addObservation("0", "for one dollar I can buy a beer")
+                .addObservation("1", "one dollar")
+                .addObservation("2", "beer")
+                .addObservation("name", "Susi");
+        return new SusiArgument().think(recall).think(matcher);
+    }
+
+    private static void assertUnification(SusiArgument argument, String statement, boolean urlencode, int depth) {
+        assertEquals(statement, SusiTemplate.substitute(argument, statement, urlencode, depth), SusiTemplate.compile(statement).unify(argument, urlencode, depth));
+    }
+
+    @Test
+    public void unification() {
+        SusiArgument argument = argument();
+        String[] statements = new String[]{
+                "Hello",
+                "Yeah, I believe $1$ is a god price for a $2$",
+                "I bet you like $_beerbrand$ beer!",
+                "$name$, $name$ and $_history$",
+                "$1$$2$",
+                "the $unknown$ variable",
+                "costs $5 for $1$",
+                "$ odd $",
+                "$$",
+                "$1$ at the end $",
+                "costs $5\nor $6",
+                "costs $5\nor $1$ and $2$",
+                "$\n$1$ for $2$ \n$"
+        };
+        for (String statement: statements) {
+            assertUnification(argument, statement, false, Integer.MAX_VALUE);
+            assertUnification(argument, statement, true, Integer.MAX_VALUE);
+            assertUnification(argument, statement, false, 0);
+        }
+        assertEquals("Yeah, I believe one dollar is a god price for a beer", argument.unify("Yeah, I believe $1$ is a god price for a $2$", false));
+        assertEquals("one+dollar", argument.unify("$1$", true));
+        assertEquals("bitburger", argument.unify("$_history$", false));
+        assertNull(argument.unify("$_beerbrand$", false, 0));
+        assertNull(argument.unify("the $unknown$ variable", false));
+        // a variable does not span lines
+        assertEquals("costs $5\nor $6", argument.unify("costs $5\nor $6", false));
+        assertEquals("costs $5\nor one dollar and beer", argument.unify("costs $5\nor $1$ and $2$", false));
+
+        // a value which contains a variable is unified again
+        argument.think(new SusiThought().addObservation("3", "$name$"));
+        assertUnification(argument, "hello $3$", false, Integer.MAX_VALUE);
+        assertEquals("hello Susi", argument.unify("hello $3$", false));
+
+        // a thought unifies as much as possible
+        SusiThought thought = new SusiThought().addObservation("1", "one dollar");
+        assertEquals(SusiTemplate.substitute(thought, "$1$ and $2$", false), thought.unify("$1$ and $2$", false));
+        assertEquals("one dollar and $2$", thought.unify("$1$ and $2$", false));
+    }
+
+    @Test
+    public void actionTemplates() {
+        SusiAction action = new SusiAction(SusiAction.answerAction(new String[]{"Yes you may get a $2$!"}));
+        SusiAction copy = action.copy();
+        assertSame(action.getTemplates(), copy.getTemplates());
+        copy.execution(argument(), null, "");
+        assertEquals("Yes you may get a beer!", copy.getStringAttr("expression"));
+        assertEquals("Yes you may get a $2$!", action.getTemplates().get(0).getStatement());
+    }
+
+}
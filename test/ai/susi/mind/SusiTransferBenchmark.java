@@ -0,0 +1,47 @@
+package ai.susi.mind;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.google.common.util.concurrent.AtomicDouble;
+
+/**
+ * the aggregation of the rows of a thought: on json rows as it was computed before and with a compiled transfer on columns.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class SusiTransferBenchmark {
+
+    /**
+     * the aggregation as it was computed before the transfers were compiled
+     */
+    private static JSONArray sumJSON(String expression, JSONArray choices) {
+        String aggregator = expression.substring(0, expression.indexOf(" AS "));
+        String c = aggregator.substring(4, aggregator.length() - 1);
+        final AtomicDouble sum = new AtomicDouble(0.0d);
+        choices.forEach(json -> sum.addAndGet(((JSONObject) json).getDouble(c)));
+        return new JSONArray().put(new JSONObject().put(expression.substring(expression.indexOf(" AS ") + 4), sum.get()));
+    }
+
+    public static void main(String[] args) {
+        for (int rows: new int[]{10000, 100000}) {
+            JSONArray data = SusiTransferTest.sample(rows);
+            SusiTable table = SusiTable.fromJSON(data);
+            String expression = "SUM(price) AS total";
+            int rounds = 2000000 / rows;
+            long jsonTime = 0, tableTime = 0;
+            for (int warmup = 0; warmup < 2; warmup++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) sumJSON(expression, data);
+                jsonTime = (System.nanoTime() - start) / rounds;
+                start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) SusiTransfer.compile(expression).conclude(table);
+                tableTime = (System.nanoTime() - start) / rounds;
+            }
+            assertEquals(sumJSON(expression, data).toString(), SusiTransfer.compile(expression).conclude(table).toJSONString());
+            System.out.println("aggregation of " + rows + " rows: json rows " + jsonTime + " ns, compiled on columns " + tableTime + " ns");
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package ai.susi.mind;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class SusiTransferTest {
+
+    static JSONArray sample(int rows) {
+        JSONArray a = new JSONArray();
+        for (int i = 0; i < rows; i++) a.put(new JSONObject(true)
+                .put("name", "n" + i)
+                .put("count", i + 1)
+                .put("price", (i % 10) + 0.5d)
+                .put("location", new JSONObject(true).put("lat", 50.0d + i).put("lon", 8.0d))
+                .put("names", new JSONArray().put("first" + i).put("last" + i)));
+        return a;
+    }
+
+    @Test
+    public void selection() {
+        JSONArray data = sample(3);
+        assertEquals(
+                "[{\"latitude\":50,\"firstname\":\"first0\",\"n\":2,\"name\":\"n0\"},{\"latitude\":51,\"firstname\":\"first1\",\"n\":2,\"name\":\"n1\"},{\"latitude\":52,\"firstname\":\"first2\",\"n\":2,\"name\":\"n2\"}]",
+                SusiTransfer.compile("location.lat AS latitude, names[0] AS firstname, names.length AS n, 'name'").conclude(data).toString());
+        assertEquals(data.toString(), SusiTransfer.compile("*").conclude(data).toString());
+        assertEquals("[]", SusiTransfer.compile("unknown AS u").conclude(data).toString());
+        assertEquals("{\"latitude\":50}", SusiTransfer.compile("location.lat AS latitude").extract(data.getJSONObject(0)).toString());
+        assertSame(SusiTransfer.compile("location.lat AS latitude"), SusiTransfer.compile("location.lat AS latitude"));
+    }
+
+    @Test
+    public void aggregation() {
+        JSONArray data = sample(4);
+        assertEquals("[{\"c\":4}]", SusiTransfer.compile("COUNT(*) AS c").conclude(data).toString());
+        assertEquals("[{\"m\":4}]", SusiTransfer.compile("MAX(count) AS m").conclude(data).toString());
+        assertEquals("[{\"m\":0.5}]", SusiTransfer.compile("MIN(price) AS m").conclude(data).toString());
+        assertEquals("[{\"s\":10}]", SusiTransfer.compile("SUM(count) AS s").conclude(data).toString());
+        assertEquals("[{\"a\":2.5}]", SusiTransfer.compile("AVG(count) AS a").conclude(data).toString());
+        assertEquals("[{\"p\":10,\"name\":\"n0\"},{\"p\":20,\"name\":\"n1\"},{\"p\":30,\"name\":\"n2\"},{\"p\":40,\"name\":\"n3\"}]",
+                SusiTransfer.compile("PERCENT(count) AS p, name").conclude(data).toString());
+
+        // numbers in strings are parsed
+        JSONArray strings = new JSONArray().put(new JSONObject().put("v", "1.5")).put(new JSONObject().put("v", "2"));
+        assertEquals("[{\"s\":3.5}]", SusiTransfer.compile("SUM(v) AS s").conclude(strings).toString());
+    }
+
+}
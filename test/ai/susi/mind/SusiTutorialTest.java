@@ -130,7 +130,7 @@ public class SusiTutorialTest {
         }
     }
 
-    private final static String testFile = 
+    final static String testFile = 
                     "# susi EzD tutorial playground\n" +
                     "::prior\n" +
                     "reset test.\n" +
@@ -0,0 +1,50 @@
+package ai.susi.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * the index of a week of access logs: the time to load it and to answer queries compared to a scan of the logs.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class AccessIndexBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("accessindex").toFile();
+        long now = System.currentTimeMillis();
+        int perDay = 200000;
+        AccessIndexTest.logs(dir, 7, perDay, now);
+        long start = System.nanoTime();
+        AccessIndex index = new AccessIndex(dir, "access_", now);
+        long buildTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        index = new AccessIndex(dir, "access_", now);
+        long loadTime = System.nanoTime() - start;
+
+        long hour = now - 60 * AccessIndex.MINUTE, week = now - 7 * AccessIndexTest.DAY;
+        long queryTime = 0;
+        for (int round = 0; round < 2; round++) { // the first round is the warm-up
+            start = System.nanoTime();
+            index.requestsPerMinute(hour, now, null);
+            index.topHosts(hour, now, 10);
+            index.latency(hour, now, "/susi/chat.json", new double[]{50, 90, 99});
+            index.topHosts(week, now, 10);
+            index.latency(week, now, null, new double[]{50, 90, 99});
+            queryTime = System.nanoTime() - start;
+        }
+        start = System.nanoTime();
+        final Map<String, Integer> hosts = new HashMap<>();
+        for (File f: AccessLog.getFiles(dir, "access_")) AccessLog.read(f, e -> {
+            Integer c = hosts.get(e.host);
+            hosts.put(e.host, c == null ? 1 : c + 1);
+        });
+        long scanTime = System.nanoTime() - start;
+        System.out.println("access index of " + 7 * perDay + " records in 7 days: build " + buildTime / 1000000 + " ms, load of rollups " + loadTime / 1000000 +
+                " ms, five queries " + queryTime / 1000 + " us, one scan of the logs " + scanTime / 1000000 + " ms");
+        AccessIndexTest.delete(dir);
+    }
+
+}
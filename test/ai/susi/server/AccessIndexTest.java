@@ -0,0 +1,136 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class AccessIndexTest {
+
+    final static long DAY = 24L * 60L * AccessIndex.MINUTE;
+    private final static String[] SERVLETS = new String[]{"/susi/chat.json", "/susi/memory.json", "/aaa/login.json", "/cms/getSkill.json"};
+
+    static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) for (File g: files) delete(g);
+        f.delete();
+    }
+
+    /**
+     * write synthetic access logs for a number of days until now
+     * @return the time of the first record
+     */
+    static long logs(File dir, int days, int perDay, long now) throws IOException {
+        AccessLog log = new AccessLog(dir, "access_", 64L * 1024L * 1024L);
+        Random r = new Random(days);
+        long start = (now / DAY - days + 1) * DAY;
+        long interval = (now - start) / ((long) perDay * days);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        long time = start;
+        for (int i = 0; i < perDay * days; i++) {
+            int busy = r.nextInt(100) < 95 ? 5 + r.nextInt(200) : 1000 + r.nextInt(5000);
+            int host = (int) Math.min(1999, Math.abs(r.nextGaussian() * 300));
+            AccessLog.encode(out, time, busy, 1000, AccessLog.FLAG_FINISHED, "10.0." + (host / 250) + "." + (host % 250), SERVLETS[r.nextInt(SERVLETS.length)], "", "");
+            long next = time + interval;
+            if (baos.size() > 1 << 20 || next / DAY != time / DAY || i == perDay * days - 1) {
+                out.flush();
+                log.append(baos.toByteArray(), time); // a batch never spans two days
+                baos.reset();
+            }
+            time = next;
+        }
+        log.close();
+        return start;
+    }
+
+    @Test
+    public void index() throws IOException {
+        File dir = Files.createTempDirectory("accessindex").toFile();
+        long now = System.currentTimeMillis();
+        logs(dir, 3, 5000, now);
+        AccessIndex index = new AccessIndex(dir, "access_", now);
+        File rollup = new File(dir, "access_" + AccessLog.day(now - DAY) + ".idx");
+        assertTrue(rollup.exists());
+        assertFalse(new File(dir, "access_" + AccessLog.day(now) + ".idx").exists()); // the current day is not complete
+
+        // compare with a scan of the log
+        final long from = now - 2 * DAY, to = now;
+        final Map<String, Integer> hosts = new HashMap<>();
+        final AtomicInteger chat = new AtomicInteger(0), all = new AtomicInteger(0);
+        for (File f: AccessLog.getFiles(dir, "access_")) AccessLog.read(f, e -> {
+            if (e.start / AccessIndex.MINUTE < from / AccessIndex.MINUTE || e.start / AccessIndex.MINUTE > to / AccessIndex.MINUTE) return;
+            all.incrementAndGet();
+            if (e.servlet.equals("/susi/chat.json")) chat.incrementAndGet();
+            Integer c = hosts.get(e.host);
+            hosts.put(e.host, c == null ? 1 : c + 1);
+        });
+        int count = 0;
+        JSONArray requests = index.requestsPerMinute(from, to, "/susi/chat.json");
+        for (int i = 0; i < requests.length(); i++) count += requests.getJSONObject(i).getJSONObject("requests").getInt("/susi/chat.json");
+        assertEquals(chat.get(), count);
+        JSONArray top = index.topHosts(from, to, 3);
+        assertEquals(3, top.length());
+        assertEquals(hosts.get(top.getJSONObject(0).getString("host")).intValue(), top.getJSONObject(0).getInt("requests"));
+        for (Integer c: hosts.values()) assertTrue(c <= top.getJSONObject(0).getInt("requests"));
+        int hostCount = 0;
+        JSONArray host = index.hostPerMinute(top.getJSONObject(0).getString("host"), from, to);
+        for (int i = 0; i < host.length(); i++) hostCount += host.getJSONObject(i).getInt("requests");
+        assertEquals(top.getJSONObject(0).getInt("requests"), hostCount);
+        JSONObject latency = index.latency(from, to, null, new double[]{50, 99});
+        assertEquals(all.get(), latency.getInt("requests"));
+        assertTrue(latency.getJSONObject("percentiles").getLong("50") <= 256);
+        assertTrue(latency.getJSONObject("percentiles").getLong("99") >= 1000);
+
+        // the rollups are used again
+        long modified = rollup.lastModified();
+        AccessIndex reopened = new AccessIndex(dir, "access_", now);
+        assertEquals(modified, rollup.lastModified());
+        assertEquals(latency.toString(), reopened.latency(from, to, null, new double[]{50, 99}).toString());
+        assertEquals(top.toString(), reopened.topHosts(from, to, 3).toString());
+
+        // live records
+        reopened.add(now, "/susi/chat.json", "192.168.0.1", 10, AccessLog.FLAG_FINISHED);
+        assertEquals(1, reopened.hostPerMinute("192.168.0.1", now - AccessIndex.MINUTE, now).length());
+        delete(dir);
+    }
+
+    /**
+     * hosts which only occur in evicted minutes are removed from the host dictionary
+     */
+    @Test
+    public void evict() throws IOException {
+        File dir = Files.createTempDirectory("accessindex").toFile();
+        long now = System.currentTimeMillis();
+        AccessIndex index = new AccessIndex(dir, "access_", now);
+        for (int i = 0; i < 100; i++) index.add(now - AccessIndex.RETENTION - DAY, "/susi/chat.json", "10.0.0." + i, 10, AccessLog.FLAG_FINISHED);
+        index.add(now, "/susi/chat.json", "10.0.1.1", 10, AccessLog.FLAG_FINISHED);
+        index.add(now, "/susi/chat.json", "10.0.0.50", 10, AccessLog.FLAG_FINISHED);
+        index.add(now, "/susi/chat.json", "10.0.0.50", 10, AccessLog.FLAG_FINISHED);
+        assertEquals(101, index.hostCount());
+        index.evict(now);
+        assertEquals(2, index.hostCount());
+        JSONArray top = index.topHosts(now - AccessIndex.MINUTE, now, 10);
+        assertEquals(2, top.length());
+        assertEquals("10.0.0.50", top.getJSONObject(0).getString("host"));
+        assertEquals(2, top.getJSONObject(0).getInt("requests"));
+        assertEquals("10.0.1.1", top.getJSONObject(1).getString("host"));
+        assertEquals(1, index.hostPerMinute("10.0.1.1", now - AccessIndex.MINUTE, now).length());
+        assertEquals(0, index.topHosts(now - AccessIndex.MINUTE, now, 0).length());
+        index.add(now, "/susi/chat.json", "10.0.2.1", 10, AccessLog.FLAG_FINISHED);
+        assertEquals(3, index.topHosts(now - AccessIndex.MINUTE, now, 10).length());
+        delete(dir);
+    }
+
+}
@@ -0,0 +1,64 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * requests at a rate of 20000 per second from several threads for two seconds; all tracks must be written.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class AccessTrackerBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File dir = Files.createTempDirectory("accesstracker").toFile();
+        final AccessTracker tracker = new AccessTracker(dir, "access_", 60000, 3000);
+        tracker.start();
+        final int rate = 20000, seconds = 2, threads = 8;
+        final AtomicInteger requests = new AtomicInteger(0);
+        final Map<String, String> query = new HashMap<>();
+        query.put("q", "what is the weather in Frankfurt");
+        query.put("timezoneOffset", "-120");
+        Thread[] t = new Thread[threads];
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < threads; i++) {
+            final int thread = i;
+            t[i] = new Thread() {
+                public void run() {
+                    int n = 0;
+                    while (true) {
+                        long due = start + (long) n * threads * 1000L / rate;
+                        long now = System.currentTimeMillis();
+                        if (now - start >= seconds * 1000L) break;
+                        if (due > now) try {Thread.sleep(due - now);} catch (InterruptedException e) {}
+                        AccessTracker.Track track = tracker.startTracking("/susi/chat.json", "10.0." + thread + "." + (n % 200));
+                        track.setTimeSinceLastAccess(1000);
+                        track.setQuery(query);
+                        track.finish();
+                        requests.incrementAndGet();
+                        n++;
+                    }
+                }
+            };
+            t[i].start();
+        }
+        for (Thread thread: t) thread.join();
+        long time = System.currentTimeMillis() - start;
+        tracker.close();
+        long bytes = 0;
+        for (File f: AccessLog.getFiles(dir, "access_")) bytes += f.length();
+        int written = AccessTrackerTest.read(dir).size();
+        System.out.println("access tracking of " + requests.get() + " requests in " + time + " ms (" + (requests.get() * 1000L / time) + " per second): " +
+                written + " written, " + tracker.getDroppedCount() + " dropped, " + (bytes / Math.max(1, written)) + " bytes per track");
+        assertEquals(requests.get(), written);
+        assertEquals(0, tracker.getDroppedCount());
+        assertTrue(requests.get() * 1000L / time > rate * 9 / 10);
+        AccessTrackerTest.delete(dir);
+    }
+
+}
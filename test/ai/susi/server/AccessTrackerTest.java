@@ -0,0 +1,113 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class AccessTrackerTest {
+
+    static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) for (File g: files) delete(g);
+        f.delete();
+    }
+
+    static List<AccessLog.Entry> read(File dir) throws IOException {
+        final List<AccessLog.Entry> entries = new ArrayList<>();
+        for (File f: AccessLog.getFiles(dir, "access_")) AccessLog.read(f, e -> {
+            AccessLog.Entry c = new AccessLog.Entry();
+            c.start = e.start; c.busy = e.busy; c.idle = e.idle; c.flags = e.flags;
+            c.host = e.host; c.servlet = e.servlet; c.query = e.query; c.events = e.events;
+            entries.add(c);
+        });
+        return entries;
+    }
+
+    @Test
+    public void tracks() throws IOException {
+        File dir = Files.createTempDirectory("accesstracker").toFile();
+        AccessTracker tracker = new AccessTracker(dir, "access_", 60000, 100);
+        tracker.start();
+        AccessTracker.Track track = tracker.startTracking("/susi/chat.json", "127.0.0.1");
+        track.setTimeSinceLastAccess(500);
+        Map<String, String> query = new HashMap<>();
+        query.put("q", "hello");
+        track.setQuery(query);
+        track.recordEvent("answer", "hi");
+        track.finish();
+        AccessTracker.Track pending = tracker.startTracking("/susi/memory.json", "192.168.1.1");
+        pending.setDoSBlackout(true);
+        assertEquals(1, tracker.getPendingCount());
+        JSONObject json = track.toJSON();
+        assertEquals("127.0.0.1", json.getString("host"));
+        assertEquals("hi", json.getString("event_answer"));
+        assertEquals("hello", json.getJSONObject("query").getString("q"));
+        assertTrue(json.has("busy"));
+        tracker.close();
+
+        List<AccessLog.Entry> entries = read(dir);
+        assertEquals(2, entries.size());
+        AccessLog.Entry e = entries.get(0);
+        assertEquals("/susi/chat.json", e.servlet);
+        assertEquals(500, e.idle);
+        assertTrue(e.is(AccessLog.FLAG_LOCAL) && e.is(AccessLog.FLAG_FINISHED));
+        assertEquals("{\"q\":\"hello\"}", e.query);
+        assertEquals("{\"answer\":\"hi\"}", e.events);
+        e = entries.get(1);
+        assertEquals("192.168.1.1", e.host);
+        assertTrue(e.is(AccessLog.FLAG_CLOSED) && e.is(AccessLog.FLAG_DOS_BLACKOUT) && !e.is(AccessLog.FLAG_FINISHED));
+        assertEquals(-1, e.busy);
+        assertEquals(2, tracker.getWrittenCount());
+        assertEquals(0, tracker.getDroppedCount());
+        delete(dir);
+    }
+
+    @Test
+    public void rotation() throws IOException {
+        File dir = Files.createTempDirectory("accesslog").toFile();
+        AccessLog log = new AccessLog(dir, "access_", 1000);
+        byte[] batch = new byte[600];
+        long now = System.currentTimeMillis();
+        log.append(batch, now);
+        log.append(batch, now); // size rotation
+        log.append(batch, now + 86400000L); // daily rotation
+        log.close();
+        assertEquals(3, AccessLog.getFiles(dir, "access_").size());
+        log = new AccessLog(dir, "access_", 1000);
+        log.append(batch, now); // a restart starts a new file
+        log.close();
+        assertEquals(4, AccessLog.getFiles(dir, "access_").size());
+        delete(dir);
+    }
+
+    /**
+     * sequence numbers beyond 999 are ordered numerically and existing files are never overwritten
+     */
+    @Test
+    public void sequence() throws IOException {
+        File dir = Files.createTempDirectory("accesslog").toFile();
+        long now = System.currentTimeMillis();
+        String day = AccessLog.day(now);
+        Files.write(new File(dir, "access_" + day + "_999.bin").toPath(), new byte[]{1, 2, 3});
+        Files.write(new File(dir, "access_" + day + "_1000.bin").toPath(), new byte[]{4, 5, 6});
+        List<File> files = new ArrayList<>(AccessLog.getFiles(dir, "access_"));
+        assertEquals("access_" + day + "_1000.bin", files.get(1).getName());
+        AccessLog log = new AccessLog(dir, "access_", 1000);
+        log.append(new byte[10], now);
+        log.close();
+        assertEquals("access_" + day + "_1001.bin", log.getCurrentFile().getName());
+        assertEquals(3, new File(dir, "access_" + day + "_1000.bin").length());
+        assertEquals(3, new File(dir, "access_" + day + "_999.bin").length());
+        delete(dir);
+    }
+
+}
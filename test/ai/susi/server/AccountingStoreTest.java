@@ -0,0 +1,97 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AccountingStoreTest {
+
+    @Test
+    public void noLostUpdates() throws Exception {
+        final AccountingStore store = new AccountingStore(1000, Accounting.ONE_HOUR_MILLIS);
+        final int threads = 16, clients = 10, requests = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int tt = t;
+            Thread w = new Thread() {
+                public void run() {
+                    try {start.await();} catch (InterruptedException e) {}
+                    for (int i = 0; i < requests; i++) {
+                        store.get("host:client" + ((i + tt) % clients)).addRequest("/susi/chat.json", "q=" + i);
+                    }
+                }
+            };
+            w.start();
+            workers.add(w);
+        }
+        start.countDown();
+        for (Thread w: workers) w.join();
+
+        long total = 0;
+        for (int c = 0; c < clients; c++) {
+            Accounting a = store.get("host:client" + c);
+            total += a.totalRequests("/susi/chat.json");
+            // the ring buffer keeps only the latest requests
+            assertEquals(Accounting.DEFAULT_CAPACITY, a.countRequests("/susi/chat.json", Accounting.ONE_HOUR_MILLIS));
+            assertEquals(Accounting.DEFAULT_CAPACITY, a.getRequests("/susi/chat.json").length());
+        }
+        assertEquals((long) threads * requests, total);
+        assertEquals(clients, store.size());
+    }
+
+    @Test
+    public void boundedMemory() throws Exception {
+        final int maxSize = 1000, threads = 8, clientsPerThread = 50000;
+        final AccountingStore store = new AccountingStore(maxSize, Accounting.ONE_HOUR_MILLIS);
+        final AtomicInteger maxObserved = new AtomicInteger(0);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int tt = t;
+            Thread w = new Thread() {
+                public void run() {
+                    for (int i = 0; i < clientsPerThread; i++) {
+                        store.get("host:" + tt + "." + i).addRequest("/susi/chat.json", "");
+                        maxObserved.accumulateAndGet(store.size(), Math::max);
+                    }
+                }
+            };
+            w.start();
+            workers.add(w);
+        }
+        for (Thread w: workers) w.join();
+        // the store may exceed the limit only by the number of concurrent writers
+        assertTrue(maxObserved.get() <= maxSize + threads);
+        assertTrue(store.size() <= maxSize);
+    }
+
+    @Test
+    public void expiry() throws Exception {
+        AccountingStore store = new AccountingStore(1000, 50);
+        store.get("host:a").addRequest("/aaa/login.json", "invalid login");
+        Thread.sleep(100);
+        store.get("host:b").addRequest("/aaa/login.json", "invalid login");
+        assertEquals(1, store.cleanup());
+        assertEquals(1, store.size());
+        assertEquals(1, store.get("host:b").countRequests("/aaa/login.json", 1000));
+        assertEquals(0, store.get("host:b").countRequests("/susi/chat.json", 1000));
+    }
+
+    @Test
+    public void reservedCapacity() throws Exception {
+        Accounting a = new AccountingStore(1000, Accounting.ONE_HOUR_MILLIS).get("host:a");
+        for (int i = 0; i < 10; i++) a.addRequest("/aaa/login.json", "invalid login");
+        // a limit above the default capacity must still be exceeded by the count
+        int limit = Accounting.DEFAULT_CAPACITY + 10;
+        a.reserve("/aaa/login.json", limit + 1);
+        for (int i = 10; i <= limit; i++) a.addRequest("/aaa/login.json", "invalid login");
+        assertEquals(limit + 1, a.countRequests("/aaa/login.json", Accounting.ONE_HOUR_MILLIS));
+        assertEquals(limit + 1, a.getRequests("/aaa/login.json").length());
+    }
+
+}
@@ -0,0 +1,85 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import ai.susi.server.AdmissionControl.Endpoint;
+
+/**
+ * replay test with twice the capacity of the server: without admission control the queue grows until all
+ * answers are too late, with admission control the excess requests are rejected and the others are in time.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class AdmissionControlBenchmark {
+
+    private final static int WORKERS = 4;
+    private final static long SERVICE_TIME = 10; // milliseconds: the capacity is 400 requests per second
+    private final static long DEADLINE = 200; // the time after which the client does not wait any more
+    private final static int RATE = 800; // twice the capacity
+    private final static int REQUESTS = 1600;
+
+    private static class Replay {
+        final AtomicInteger good = new AtomicInteger(0), late = new AtomicInteger(0), rejected = new AtomicInteger(0);
+        final AtomicInteger authGood = new AtomicInteger(0), anonGood = new AtomicInteger(0);
+        int authTotal = 0, anonTotal = 0;
+        long time;
+    }
+
+    /**
+     * replay a request sequence with a constant arrival rate against an executor
+     * @param ac the admission control or null if all requests are admitted
+     */
+    private static Replay replay(final AdmissionControl ac) throws Exception {
+        final Replay replay = new Replay();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(WORKERS, WORKERS, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>());
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            long arrival = start + i * 1000000000L / RATE;
+            while (System.nanoTime() < arrival) LockSupport.parkNanos(100000);
+            final long arrivalTime = System.nanoTime();
+            final boolean authenticated = i % 5 == 0;
+            if (authenticated) replay.authTotal++; else replay.anonTotal++;
+            if (ac != null && ac.admit(Endpoint.CHAT, authenticated, executor.getQueue().size(), WORKERS) > 0) {
+                replay.rejected.incrementAndGet();
+                continue;
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long serviceStart = System.nanoTime();
+                    LockSupport.parkNanos(SERVICE_TIME * 1000000L);
+                    long now = System.nanoTime();
+                    if (ac != null) ac.release(Endpoint.CHAT, (now - serviceStart) / 1000000L);
+                    if ((now - arrivalTime) / 1000000L <= DEADLINE) {
+                        replay.good.incrementAndGet();
+                        (authenticated ? replay.authGood : replay.anonGood).incrementAndGet();
+                    } else {
+                        replay.late.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        replay.time = (System.nanoTime() - start) / 1000000L;
+        return replay;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Replay plain = replay(null);
+        Replay admission = replay(new AdmissionControl().setLimit(Endpoint.CHAT, 1000, DEADLINE / 2));
+        System.out.println("2x overload without admission control: " + plain.good.get() + " in time, " + plain.late.get() + " late, " + plain.rejected.get() + " rejected, " + plain.time + " ms");
+        System.out.println("2x overload with admission control   : " + admission.good.get() + " in time, " + admission.late.get() + " late, " + admission.rejected.get() + " rejected, " + admission.time + " ms");
+        System.out.println("authenticated in time: " + admission.authGood.get() + "/" + admission.authTotal + ", anonymous in time: " + admission.anonGood.get() + "/" + admission.anonTotal);
+        assertTrue(admission.good.get() > 2 * plain.good.get());
+        assertTrue(admission.late.get() < admission.good.get() / 10);
+        // authenticated users are preferred
+        assertTrue((double) admission.authGood.get() / admission.authTotal > (double) admission.anonGood.get() / admission.anonTotal);
+    }
+
+}
@@ -0,0 +1,134 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.Test;
+
+import ai.susi.server.AdmissionControl.Endpoint;
+
+public class AdmissionControlTest {
+
+    @Test
+    public void classify() {
+        assertEquals(Endpoint.CHAT, Endpoint.classify("/susi/chat.json"));
+        assertEquals(Endpoint.CHAT, Endpoint.classify("/susi/batch.json"));
+        assertEquals(Endpoint.CHAT, Endpoint.classify("/susi/chat.ws"));
+        assertEquals(Endpoint.CONSOLE, Endpoint.classify("/susi/console.json"));
+        assertEquals(Endpoint.AAA, Endpoint.classify("/aaa/login.json"));
+        assertEquals(Endpoint.API, Endpoint.classify("/susi/mind.json"));
+        assertEquals(Endpoint.API, Endpoint.classify("/vis/map.png"));
+        assertEquals(Endpoint.STATIC, Endpoint.classify("/index.html"));
+        assertEquals(Endpoint.STATIC, Endpoint.classify("/"));
+    }
+
+    @Test
+    public void inFlightLimit() {
+        AdmissionControl ac = new AdmissionControl().setLimit(Endpoint.AAA, 4, 1000);
+        // anonymous users get 3 of 4 slots, the last slot is reserved for authenticated users
+        for (int i = 0; i < 3; i++) assertEquals(0, ac.admit(Endpoint.AAA, false, 0, 1));
+        assertTrue(ac.admit(Endpoint.AAA, false, 0, 1) > 0);
+        assertEquals(0, ac.admit(Endpoint.AAA, true, 0, 1));
+        assertTrue(ac.admit(Endpoint.AAA, true, 0, 1) > 0);
+        assertEquals(4, ac.getGate(Endpoint.AAA).getInFlight());
+        // other endpoint classes are not affected
+        assertEquals(0, ac.admit(Endpoint.CHAT, false, 0, 1));
+        ac.release(Endpoint.AAA, 10);
+        assertEquals(0, ac.admit(Endpoint.AAA, true, 0, 1));
+        assertEquals(2, ac.getGate(Endpoint.AAA).getRejected());
+    }
+
+    @Test
+    public void queueWait() {
+        AdmissionControl ac = new AdmissionControl().setLimit(Endpoint.CHAT, 1000, 1000);
+        for (int i = 0; i < 50; i++) {assertEquals(0, ac.admit(Endpoint.CHAT, true, 0, 1)); ac.release(Endpoint.CHAT, 100);}
+        // the average service time is now about 100 ms: a queue of 8 requests for 1 worker can be served within 1 second
+        assertEquals(0, ac.admit(Endpoint.CHAT, true, 8, 1));
+        assertEquals(0, ac.admit(Endpoint.CHAT, true, 80, 10));
+        assertTrue(ac.admit(Endpoint.CHAT, true, 12, 1) >= 1000);
+        // anonymous users get only a share of the latency target
+        assertTrue(ac.admit(Endpoint.CHAT, false, 9, 1) > 0);
+    }
+
+    @Test
+    public void unprocessedRequests() {
+        AdmissionControl ac = new AdmissionControl().setLimit(Endpoint.CHAT, 10, 1000);
+        assertEquals(0, ac.admit(Endpoint.CHAT, true, 0, 1));
+        ac.release(Endpoint.CHAT, 100);
+        double serviceTime = ac.getGate(Endpoint.CHAT).getServiceTime();
+        // a request which timed out in the queue does not change the service time
+        assertEquals(0, ac.admit(Endpoint.CHAT, true, 0, 1));
+        ac.release(Endpoint.CHAT, -1);
+        assertEquals(serviceTime, ac.getGate(Endpoint.CHAT).getServiceTime(), 0.0d);
+        assertEquals(0, ac.getGate(Endpoint.CHAT).getInFlight());
+    }
+
+    /**
+     * chat requests wait in the queue of an executor with one thread; the service time must not include that wait
+     */
+    @Test
+    public void serviceTimeWithoutQueueWait() throws Exception {
+        final AsyncExecutor executor = new AsyncExecutor("mind", 1, 100, 30000);
+        final AdmissionControl ac = new AdmissionControl().setLimit(Endpoint.CHAT, 1000, 100000);
+        ServletContextHandler servletHandler = new ServletContextHandler();
+        ServletHolder holder = new ServletHolder(new HttpServlet() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+                executor.execute(request, response, (rq, rs) -> {
+                    try {Thread.sleep(100);} catch (InterruptedException e) {}
+                    rs.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+                });
+            }
+        });
+        holder.setAsyncSupported(true);
+        servletHandler.addServlet(holder, "/susi/chat.json");
+        ac.setHandler(servletHandler);
+        Server server = new Server(0);
+        server.setHandler(ac);
+        server.setStopTimeout(100);
+        server.start();
+        try {
+            final String url = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/susi/chat.json";
+            List<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Thread t = new Thread() {
+                    public void run() {
+                        try {
+                            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                            assertEquals(200, connection.getResponseCode());
+                            connection.disconnect();
+                        } catch (IOException e) {}
+                    }
+                };
+                t.start();
+                clients.add(t);
+            }
+            for (Thread t: clients) t.join();
+            long start = System.currentTimeMillis();
+            while (ac.getGate(Endpoint.CHAT).getInFlight() > 0 && System.currentTimeMillis() - start < 2000) Thread.sleep(10);
+            // five samples of 100 ms give an average of about 41 ms; with the queue wait of up to 400 ms it would be above 100 ms
+            double serviceTime = ac.getGate(Endpoint.CHAT).getServiceTime();
+            assertTrue("service time = " + serviceTime, serviceTime > 30 && serviceTime < 60);
+        } finally {
+            server.stop();
+            executor.shutdown();
+        }
+    }
+
+}
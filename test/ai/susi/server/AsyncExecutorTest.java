@@ -0,0 +1,278 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.HandlerList;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * load test with slow chat requests and static file requests on a server with a small thread pool
+ */
+public class AsyncExecutorTest {
+
+    private final static long CHAT_DELAY = 500; // the time of a slow console skill
+
+    @SuppressWarnings("serial")
+    private static class SlowChatServlet extends HttpServlet {
+        private final AsyncExecutor executor;
+        public SlowChatServlet(AsyncExecutor executor) {
+            this.executor = executor;
+        }
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+            AsyncExecutor.Task task = (rq, rs) -> {
+                try {Thread.sleep(CHAT_DELAY);} catch (InterruptedException e) {}
+                rs.setContentType("application/javascript");
+                rs.getOutputStream().write("{\"answer\":42}\n".getBytes(StandardCharsets.UTF_8));
+            };
+            if (this.executor == null) task.process(request, response); else this.executor.execute(request, response, task);
+        }
+    }
+
+    private static Server startServer(AsyncExecutor executor, File htroot) throws Exception {
+        QueuedThreadPool pool = new QueuedThreadPool(16, 8);
+        Server server = new Server(pool);
+        ServerConnector connector = new ServerConnector(server, 1, 1);
+        connector.setPort(0);
+        server.addConnector(connector);
+        ServletContextHandler servletHandler = new ServletContextHandler();
+        ServletHolder chatHolder = new ServletHolder(new SlowChatServlet(executor));
+        chatHolder.setAsyncSupported(true);
+        servletHandler.addServlet(chatHolder, "/susi/chat.json");
+        FileHandler fileHandler = new FileHandler(0);
+        fileHandler.setResourceBase(htroot.getAbsolutePath());
+        HandlerList handlers = new HandlerList();
+        handlers.setHandlers(new Handler[]{fileHandler, servletHandler});
+        server.setHandler(handlers);
+        server.setStopTimeout(100);
+        server.start();
+        return server;
+    }
+
+    private static int get(String urlstring) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(urlstring).openConnection();
+        connection.setReadTimeout(60000);
+        try {
+            int status = connection.getResponseCode();
+            InputStream is = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (is != null) {while (is.read() >= 0); is.close();}
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * run a burst of slow chat requests and measure the latency of static file requests during the burst
+     * @return the maximum latency of the static file requests in milliseconds
+     */
+    private static long load(AsyncExecutor executor, int chats, AtomicInteger ok, AtomicInteger busy) throws Exception {
+        File htroot = Files.createTempDirectory("htroot").toFile();
+        File index = new File(htroot, "index.html");
+        Files.write(index.toPath(), "<html><body>susi</body></html>".getBytes(StandardCharsets.UTF_8));
+        Server server = startServer(executor, htroot);
+        final String stub = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        try {
+            List<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < chats; i++) {
+                Thread t = new Thread() {
+                    public void run() {
+                        try {
+                            int status = get(stub + "/susi/chat.json?q=slow");
+                            if (status == 200) ok.incrementAndGet();
+                            if (status == 503) busy.incrementAndGet();
+                        } catch (IOException e) {}
+                    }
+                };
+                t.start();
+                clients.add(t);
+            }
+            Thread.sleep(100); // let the chats occupy the server
+            long maxLatency = 0;
+            for (int i = 0; i < 10; i++) {
+                long start = System.currentTimeMillis();
+                assertEquals(200, get(stub + "/index.html"));
+                maxLatency = Math.max(maxLatency, System.currentTimeMillis() - start);
+            }
+            for (Thread t: clients) t.join();
+            return maxLatency;
+        } finally {
+            server.stop();
+            index.delete();
+            htroot.delete();
+        }
+    }
+
+    @Test
+    public void staticFilesDuringSlowChats() throws Exception {
+        AtomicInteger ok = new AtomicInteger(0), busy = new AtomicInteger(0);
+        load(null, 40, ok, busy);
+        assertEquals(40, ok.get());
+
+        ok.set(0);
+        AsyncExecutor executor = new AsyncExecutor("mind", 20, 100, 30000);
+        long asyncLatency = load(executor, 40, ok, busy);
+        executor.shutdown();
+        assertEquals(40, ok.get());
+        assertEquals(0, busy.get());
+
+        assertTrue("latency = " + asyncLatency, asyncLatency < CHAT_DELAY);
+    }
+
+    private final static long ITEM_DELAY = 50;
+
+    @SuppressWarnings("serial")
+    private static class BatchServlet extends HttpServlet {
+        private final AsyncExecutor executor;
+        private final AtomicInteger concurrent = new AtomicInteger(0), maxConcurrent = new AtomicInteger(0);
+        public BatchServlet(AsyncExecutor executor) {
+            this.executor = executor;
+        }
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+            int count = Integer.parseInt(request.getParameter("count"));
+            int limit = request.getParameter("limit") == null ? count : Integer.parseInt(request.getParameter("limit"));
+            this.executor.stream(request, response, count, 4, index -> {
+                if (index >= limit) return new JSONObject().put("status", 429);
+                int c = this.concurrent.incrementAndGet();
+                this.maxConcurrent.accumulateAndGet(c, Math::max);
+                try {Thread.sleep(ITEM_DELAY);} catch (InterruptedException e) {}
+                this.concurrent.decrementAndGet();
+                if (index == 7) throw new RuntimeException("failed");
+                return new JSONObject().put("answer", index * 2);
+            });
+        }
+    }
+
+    @Test
+    public void stream() throws Exception {
+        AsyncExecutor executor = new AsyncExecutor("mind", 16, 100, 30000);
+        BatchServlet batch = new BatchServlet(executor);
+        Server server = new Server(0);
+        ServletContextHandler servletHandler = new ServletContextHandler();
+        ServletHolder holder = new ServletHolder(batch);
+        holder.setAsyncSupported(true);
+        servletHandler.addServlet(holder, "/susi/batch.json");
+        server.setHandler(servletHandler);
+        server.start();
+        try {
+            String stub = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+            long start = System.currentTimeMillis();
+            HttpURLConnection connection = (HttpURLConnection) new URL(stub + "/susi/batch.json?count=40").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("application/x-ndjson;charset=utf-8", connection.getContentType().toLowerCase().replace(" ", ""));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+            Set<Integer> indexes = new HashSet<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JSONObject json = new JSONObject(line);
+                int index = json.getInt("index");
+                assertTrue(indexes.add(index));
+                if (index == 7) assertEquals(500, json.getInt("status")); else assertEquals(index * 2, json.getInt("answer"));
+            }
+            reader.close();
+            long time = System.currentTimeMillis() - start;
+            assertEquals(40, indexes.size());
+            assertEquals(4, batch.maxConcurrent.get());
+            assertTrue(time < 40 * ITEM_DELAY);
+
+            // a rate limit stops the batch with one line
+            connection = (HttpURLConnection) new URL(stub + "/susi/batch.json?count=40&limit=10").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+            indexes.clear();
+            int limited = 0;
+            while ((line = reader.readLine()) != null) {
+                JSONObject json = new JSONObject(line);
+                if (json.optInt("status") == 429) limited++; else assertTrue(indexes.add(json.getInt("index")));
+            }
+            reader.close();
+            assertEquals(1, limited);
+            assertEquals(10, indexes.size());
+
+            // an empty batch
+            connection = (HttpURLConnection) new URL(stub + "/susi/batch.json?count=0").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(-1, connection.getInputStream().read());
+        } finally {
+            server.stop();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void overload() throws Exception {
+        // one thread and a short queue: the requests which do not fit are rejected or time out in the queue
+        AtomicInteger ok = new AtomicInteger(0), busy = new AtomicInteger(0);
+        AsyncExecutor executor = new AsyncExecutor("mind", 1, 2, 800);
+        load(executor, 10, ok, busy);
+        executor.shutdown();
+        assertTrue("ok = " + ok.get(), ok.get() >= 1 && ok.get() <= 3);
+        assertEquals(10, ok.get() + busy.get());
+    }
+
+    @Test
+    public void processingTimeout() throws Exception {
+        AsyncExecutor executor = new AsyncExecutor("mind", 1, 2, 200, 300);
+        final AtomicInteger interrupted = new AtomicInteger(0);
+        Server server = new Server(0);
+        ServletContextHandler servletHandler = new ServletContextHandler();
+        ServletHolder holder = new ServletHolder(new HttpServlet() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+                executor.execute(request, response, (rq, rs) -> {
+                    // a stuck task
+                    try {Thread.sleep(60000);} catch (InterruptedException e) {interrupted.incrementAndGet();}
+                });
+            }
+        });
+        holder.setAsyncSupported(true);
+        servletHandler.addServlet(holder, "/susi/chat.json");
+        server.setHandler(servletHandler);
+        server.setStopTimeout(100);
+        server.start();
+        try {
+            String stub = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+            long start = System.currentTimeMillis();
+            assertEquals(504, get(stub + "/susi/chat.json?q=stuck"));
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            // the stuck thread is interrupted and free again
+            start = System.currentTimeMillis();
+            while (executor.getActiveCount() > 0 && System.currentTimeMillis() - start < 2000) Thread.sleep(10);
+            assertEquals(0, executor.getActiveCount());
+            assertEquals(1, interrupted.get());
+        } finally {
+            server.stop();
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.WatchService;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileHandlerTest {
+
+    private File htroot;
+    private Server server;
+    private FileHandler fileHandler;
+    private String stub;
+
+    private static class Response {
+        int status;
+        String etag, encoding;
+        byte[] body;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        this.htroot = Files.createTempDirectory("htroot").toFile();
+        write("index.html", "<html><body><!--#include file=\"menu.html\" -->susi</body></html>");
+        write("menu.html", "<nav>menu</nav>");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) sb.append("var susi").append(i).append(" = ").append(i).append(";\n");
+        write("susi.js", sb.toString());
+        this.server = new Server(0);
+        this.fileHandler = new FileHandler(0, 20000);
+        this.fileHandler.setWelcomeFiles(new String[]{"index.html"});
+        this.fileHandler.setResourceBase(this.htroot.getAbsolutePath());
+        this.server.setHandler(this.fileHandler);
+        this.server.start();
+        this.stub = "http://127.0.0.1:" + ((ServerConnector) this.server.getConnectors()[0]).getLocalPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.stop();
+        for (File f: this.htroot.listFiles()) f.delete();
+        this.htroot.delete();
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(new File(this.htroot, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response get(String path, String ifNoneMatch, boolean gzip) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.stub + path).openConnection();
+        if (ifNoneMatch != null) connection.setRequestProperty("If-None-Match", ifNoneMatch);
+        connection.setRequestProperty("Accept-Encoding", gzip ? "gzip, deflate" : "identity");
+        try {
+            Response response = new Response();
+            response.status = connection.getResponseCode();
+            response.etag = connection.getHeaderField("ETag");
+            response.encoding = connection.getHeaderField("Content-Encoding");
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            if (response.status == 200) {
+                InputStream is = connection.getInputStream();
+                if ("gzip".equals(response.encoding)) is = new GZIPInputStream(is);
+                byte[] b = new byte[4096];
+                int c;
+                while ((c = is.read(b)) > 0) baos.write(b, 0, c);
+                is.close();
+            }
+            response.body = baos.toByteArray();
+            return response;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void includesAndETags() throws Exception {
+        Response r = get("/", null, false);
+        assertEquals(200, r.status);
+        assertEquals("<html><body><nav>menu</nav>susi</body></html>", new String(r.body, StandardCharsets.UTF_8));
+        assertNotNull(r.etag);
+        assertTrue(r.etag.startsWith("\""));
+        assertEquals(r.etag, get("/index.html", null, false).etag);
+
+        // conditional request
+        Response r304 = get("/index.html", r.etag, false);
+        assertEquals(304, r304.status);
+        assertEquals(0, r304.body.length);
+        assertEquals(200, get("/index.html", "\"other\"", false).status);
+    }
+
+    @Test
+    public void gzipVariant() throws Exception {
+        Response plain = get("/susi.js", null, false);
+        Response gzip = get("/susi.js", null, true);
+        assertNull(plain.encoding);
+        assertEquals("gzip", gzip.encoding);
+        assertArrayEquals(plain.body, gzip.body);
+        assertNotEquals(plain.etag, gzip.etag);
+        assertEquals(304, get("/susi.js", gzip.etag, true).status);
+        assertEquals(200, get("/susi.js", gzip.etag, false).status);
+    }
+
+    @Test
+    public void invalidation() throws Exception {
+        Response r = get("/index.html", null, false);
+        assertEquals("<html><body><nav>menu</nav>susi</body></html>", new String(r.body, StandardCharsets.UTF_8));
+        // a change of an include invalidates the including file
+        write("menu.html", "<nav>new menu</nav>");
+        String content = null;
+        for (int i = 0; i < 100; i++) {
+            content = new String(get("/index.html", null, false).body, StandardCharsets.UTF_8);
+            if (content.contains("new menu")) break;
+            Thread.sleep(100);
+        }
+        assertEquals("<html><body><nav>new menu</nav>susi</body></html>", content);
+        Response changed = get("/index.html", r.etag, false);
+        assertEquals(200, changed.status);
+        assertNotEquals(r.etag, changed.etag);
+    }
+
+    @Test
+    public void boundedCache() throws Exception {
+        for (int i = 0; i < 100; i++) write("file" + i + ".txt", "content of file number " + i + " with some padding to fill the cache ..........................................................................................................................................................");
+        for (int i = 0; i < 100; i++) assertEquals(200, get("/file" + i + ".txt", null, false).status);
+        assertTrue(this.fileHandler.getCacheBytes() <= 20000);
+        assertTrue(this.fileHandler.getCacheSize() < 100);
+    }
+
+    @Test
+    public void hitsWithoutFileSystemAccess() throws Exception {
+        assertEquals(200, get("/index.html", null, false).status);
+        long misses = this.fileHandler.getCacheMisses();
+        for (int i = 0; i < 10; i++) assertEquals(200, get("/index.html", null, false).status);
+        assertEquals(misses, this.fileHandler.getCacheMisses());
+    }
+
+    @Test
+    public void rangeAndModifiedSince() throws Exception {
+        byte[] full = get("/susi.js", null, false).body;
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.stub + "/susi.js").openConnection();
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        connection.setRequestProperty("Range", "bytes=10-19");
+        assertEquals(206, connection.getResponseCode());
+        assertEquals("bytes 10-19/" + full.length, connection.getHeaderField("Content-Range"));
+        assertNull(connection.getHeaderField("Content-Encoding"));
+        byte[] part = new byte[10];
+        InputStream is = connection.getInputStream();
+        for (int p = 0; p < 10;) p += is.read(part, p, 10 - p);
+        assertEquals(-1, is.read());
+        is.close();
+        assertEquals(new String(full, 10, 10, StandardCharsets.UTF_8), new String(part, StandardCharsets.UTF_8));
+
+        connection = (HttpURLConnection) new URL(this.stub + "/susi.js").openConnection();
+        connection.setRequestProperty("Range", "bytes=" + full.length + "-");
+        assertEquals(416, connection.getResponseCode());
+        assertEquals("bytes */" + full.length, connection.getHeaderField("Content-Range"));
+
+        assertArrayEquals(new long[]{full.length - 5, full.length - 1}, FileHandler.parseRange("bytes=-5", full.length));
+        assertNull(FileHandler.parseRange("bytes=0-1,5-6", full.length));
+
+        connection = (HttpURLConnection) new URL(this.stub + "/susi.js").openConnection();
+        connection.setIfModifiedSince(System.currentTimeMillis() + 10000);
+        assertEquals(304, connection.getResponseCode());
+        connection = (HttpURLConnection) new URL(this.stub + "/susi.js").openConnection();
+        connection.setIfModifiedSince(new File(this.htroot, "susi.js").lastModified() - 10000);
+        assertEquals(200, connection.getResponseCode());
+    }
+
+    @Test
+    public void unwatchedDirectories() throws Exception {
+        // without a watch service, the modification time of cached files is checked at each access
+        Server server = new Server(0);
+        FileHandler fileHandler = new FileHandler(0, 20000) {
+            @Override
+            protected WatchService newWatchService() throws IOException {
+                throw new IOException("no watch service");
+            }
+        };
+        fileHandler.setResourceBase(this.htroot.getAbsolutePath());
+        server.setHandler(fileHandler);
+        server.start();
+        try {
+            String stub = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+            this.stub = stub;
+            assertEquals("<html><body><nav>menu</nav>susi</body></html>", new String(get("/index.html", null, false).body, StandardCharsets.UTF_8));
+            File menu = new File(this.htroot, "menu.html");
+            long modified = menu.lastModified();
+            write("menu.html", "<nav>new menu</nav>");
+            menu.setLastModified(modified + 2000);
+            assertEquals("<html><body><nav>new menu</nav>susi</body></html>", new String(get("/index.html", null, false).body, StandardCharsets.UTF_8));
+        } finally {
+            server.stop();
+        }
+    }
+
+}
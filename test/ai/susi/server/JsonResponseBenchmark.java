@@ -0,0 +1,44 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import org.json.JSONObject;
+
+/**
+ * compares the allocation and time of the streaming json response writer with the former string rendering.
+ * The allocation is measured with the per-thread allocation counter of the jvm.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class JsonResponseBenchmark {
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static final OutputStream NULL_STREAM = new OutputStream() {
+        @Override public void write(int b) throws IOException {}
+        @Override public void write(byte[] b, int off, int len) throws IOException {}
+    };
+
+    public static void main(String[] args) throws Exception {
+        JSONObject json = JsonResponseTest.largeResponse(50000);
+        for (int i = 0; i < 3; i++) { // warm-up
+            JsonResponseTest.writeString(NULL_STREAM, json, null, false);
+            AbstractAPIHandler.writeJSON(NULL_STREAM, json, null, false);
+        }
+        long a0 = allocatedBytes(), t0 = System.nanoTime();
+        JsonResponseTest.writeString(NULL_STREAM, json, null, false);
+        long a1 = allocatedBytes(), t1 = System.nanoTime();
+        AbstractAPIHandler.writeJSON(NULL_STREAM, json, null, false);
+        long a2 = allocatedBytes(), t2 = System.nanoTime();
+        long stringAlloc = a1 - a0, streamAlloc = a2 - a1;
+        System.out.println("json response string rendering: " + (stringAlloc / 1024) + " kB allocated, " + ((t1 - t0) / 1000000) + " ms");
+        System.out.println("json response streaming       : " + (streamAlloc / 1024) + " kB allocated, " + ((t2 - t1) / 1000000) + " ms");
+        assertTrue(streamAlloc < stringAlloc);
+    }
+
+}
@@ -0,0 +1,59 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * compares the streaming json response writer with the former string rendering
+ */
+public class JsonResponseTest {
+
+    static JSONObject largeResponse(int size) {
+        JSONObject json = new JSONObject(true);
+        JSONArray users = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            JSONObject user = new JSONObject(true);
+            user.put("name", "email:user" + i + "@example.com");
+            user.put("userRole", "user");
+            user.put("signup", "2017-06-01T12:00:00.000Z");
+            user.put("lastLoginIP", "10.0." + (i / 256 % 256) + "." + (i % 256));
+            user.put("count", i);
+            users.put(user);
+        }
+        json.put("users", users);
+        json.put("accepted", true);
+        return json;
+    }
+
+    // this is what AbstractAPIHandler did before
+    static void writeString(OutputStream os, JSONObject json, String callback, boolean minified) {
+        PrintWriter sos = new PrintWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        if (callback != null) sos.print(callback + "(");
+        sos.print(json.toString(minified ? 0 : 2));
+        if (callback != null) sos.print(");\n");
+        sos.print('\n');
+        sos.flush();
+    }
+
+    @Test
+    public void sameOutput() throws Exception {
+        JSONObject json = largeResponse(100);
+        for (String callback: new String[]{null, "cb"}) for (boolean minified: new boolean[]{true, false}) {
+            ByteArrayOutputStream a = new ByteArrayOutputStream();
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            writeString(a, json, callback, minified);
+            AbstractAPIHandler.writeJSON(b, json, callback, minified);
+            assertArrayEquals(a.toByteArray(), b.toByteArray());
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * the peer requests are tested with embedded peers which answer with an injected delay
+ */
+public class PeerRequestTest {
+
+    private final List<Server> peers = new ArrayList<>();
+
+    private String startPeer(final int id, final long delay, final int status) throws Exception {
+        Server server = new Server(0);
+        server.setStopTimeout(100);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                try {Thread.sleep(delay);} catch (InterruptedException e) {}
+                response.setStatus(status);
+                response.setContentType("application/javascript");
+                response.getWriter().write(new JSONObject().put("peer", id).put("q", request.getParameter("q")).toString());
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+        this.peers.add(server);
+        return "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/susi/peer.json?q=test";
+    }
+
+    /**
+     * a peer which sends one byte in each interval, so the socket timeout never fires
+     */
+    private String startTricklingPeer(final long interval, final int bytes) throws Exception {
+        Server server = new Server(0);
+        server.setStopTimeout(100);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                response.setStatus(200);
+                response.setContentType("application/javascript");
+                try {
+                    for (int i = 0; i < bytes; i++) {
+                        response.getOutputStream().write(' ');
+                        response.flushBuffer();
+                        Thread.sleep(interval);
+                    }
+                } catch (InterruptedException | IOException e) {}
+            }
+        });
+        server.start();
+        this.peers.add(server);
+        return "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/susi/peer.json?q=test";
+    }
+
+    @After
+    public void stopPeers() throws Exception {
+        for (Server server: this.peers) server.stop();
+        this.peers.clear();
+    }
+
+    @Test
+    public void concurrentRequests() throws Exception {
+        String[] urls = new String[]{startPeer(0, 500, 200), startPeer(1, 500, 200), startPeer(2, 500, 200)};
+        long start = System.currentTimeMillis();
+        JSONObject[] results = AbstractAPIHandler.requestPeers(urls, 5000, false);
+        long time = System.currentTimeMillis() - start;
+        for (int i = 0; i < urls.length; i++) {
+            assertEquals(i, results[i].getInt("peer"));
+            assertEquals("test", results[i].getString("q"));
+        }
+        // the peers are requested at the same time, a sequential request would take at least 1500 milliseconds
+        assertTrue("time = " + time, time < 1400);
+    }
+
+    @Test
+    public void deadline() throws Exception {
+        String[] urls = new String[]{startPeer(0, 0, 200), startPeer(1, 5000, 200), startPeer(2, 100, 200)};
+        long start = System.currentTimeMillis();
+        JSONObject[] results = AbstractAPIHandler.requestPeers(urls, 1000, false);
+        long time = System.currentTimeMillis() - start;
+        assertEquals(0, results[0].getInt("peer"));
+        assertNull(results[1]);
+        assertEquals(2, results[2].getInt("peer"));
+        assertTrue("time = " + time, time >= 1000 && time < 2500);
+    }
+
+    @Test
+    public void firstResult() throws Exception {
+        String[] urls = new String[]{startPeer(0, 5000, 200), startPeer(1, 100, 200)};
+        long start = System.currentTimeMillis();
+        JSONObject[] results = AbstractAPIHandler.requestPeers(urls, 10000, true);
+        long time = System.currentTimeMillis() - start;
+        assertNull(results[0]);
+        assertEquals(1, results[1].getInt("peer"));
+        assertTrue("time = " + time, time < 2500);
+    }
+
+    @Test
+    public void failingPeers() throws Exception {
+        String[] urls = new String[]{startPeer(0, 0, 500), startPeer(1, 0, 200), "http://127.0.0.1:1/susi/peer.json"};
+        // failed requests do not count as first result
+        JSONObject[] results = AbstractAPIHandler.requestPeers(urls, 5000, true);
+        assertNull(results[0]);
+        assertEquals(1, results[1].getInt("peer"));
+        assertNull(results[2]);
+    }
+
+    @Test
+    public void abortAtDeadline() throws Exception {
+        String[] urls = new String[]{startTricklingPeer(100, 100)};
+        JSONObject[] results = AbstractAPIHandler.requestPeers(urls, 500, false);
+        assertNull(results[0]);
+        // the request is aborted at the deadline, it does not keep a thread until the peer has finished after 10 seconds
+        long start = System.currentTimeMillis();
+        while (AbstractAPIHandler.peerExecutor.getActiveCount() > 0 && System.currentTimeMillis() - start < 2000) Thread.sleep(10);
+        assertEquals(0, AbstractAPIHandler.peerExecutor.getActiveCount());
+    }
+
+}
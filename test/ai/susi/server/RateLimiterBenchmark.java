@@ -0,0 +1,34 @@
+package ai.susi.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * microbenchmark for the hot path of the rate limiter: a known client which is not limited.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class RateLimiterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final RateLimiter limiter = new RateLimiter(100000).setRate("/susi/chat.json", 1.0e9, 1000000);
+        final int threads = 4, clients = 1000, loops = 1000000;
+        for (int i = 0; i < loops; i++) limiter.acquire("/susi/chat.json", "client" + (i % clients)); // warm-up
+        List<Thread> workers = new ArrayList<>();
+        final String[] names = new String[clients];
+        for (int i = 0; i < clients; i++) names[i] = "client" + i;
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread() {
+                public void run() {
+                    for (int i = 0; i < loops; i++) limiter.acquire("/susi/chat.json", names[i % clients]);
+                }
+            };
+            w.start();
+            workers.add(w);
+        }
+        for (Thread w: workers) w.join();
+        long time = System.nanoTime() - start;
+        System.out.println("RateLimiter.acquire: " + (time / ((long) threads * loops)) + " ns/op with " + threads + " threads");
+    }
+
+}
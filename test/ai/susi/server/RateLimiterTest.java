@@ -0,0 +1,70 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    public void burstAndRate() throws Exception {
+        RateLimiter limiter = new RateLimiter(1000).setRate("/susi/chat.json", 10, 5);
+        for (int i = 0; i < 5; i++) assertEquals(0, limiter.acquire("/susi/chat.json", "1.2.3.4"));
+        long retry = limiter.acquire("/susi/chat.json", "1.2.3.4");
+        assertTrue(retry > 0 && retry <= 100);
+        // other clients and other servlets are not affected
+        assertEquals(0, limiter.acquire("/susi/chat.json", "5.6.7.8"));
+        assertEquals(0, limiter.acquire("/susi/status.json", "1.2.3.4"));
+        // one token is refilled after the emission interval
+        Thread.sleep(retry + 10);
+        assertEquals(0, limiter.acquire("/susi/chat.json", "1.2.3.4"));
+        assertTrue(limiter.acquire("/susi/chat.json", "1.2.3.4") > 0);
+        assertTrue(limiter.latestVisit("/susi/chat.json", "1.2.3.4") > 0);
+        assertEquals(-1, limiter.latestVisit("/susi/chat.json", "9.9.9.9"));
+    }
+
+    @Test
+    public void concurrentAcquire() throws Exception {
+        // with a very low rate, exactly the burst must be granted regardless of concurrency
+        final RateLimiter limiter = new RateLimiter(1000).setRate("/susi/chat.json", 0.001, 100);
+        final AtomicLong granted = new AtomicLong(0);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread w = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 1000; i++) if (limiter.acquire("/susi/chat.json", "1.2.3.4") == 0) granted.incrementAndGet();
+                }
+            };
+            w.start();
+            workers.add(w);
+        }
+        for (Thread w: workers) w.join();
+        assertEquals(100, granted.get());
+    }
+
+    @Test
+    public void boundedMemory() throws Exception {
+        RateLimiter limiter = new RateLimiter(100).setRate("/susi/chat.json", 1000000, 1);
+        for (int i = 0; i < 10000; i++) limiter.acquire("/susi/chat.json", "10.0." + (i / 256) + "." + (i % 256));
+        assertTrue(limiter.size() <= 100);
+        Thread.sleep(1);
+        limiter.cleanup();
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    public void floodDoesNotLockOutNewClients() throws Exception {
+        RateLimiter limiter = new RateLimiter(100).setRate("/susi/chat.json", 0.001, 1);
+        // a flood from many hosts which all exhaust their bucket
+        for (int i = 0; i < 10000; i++) limiter.acquire("/susi/chat.json", "10.0." + (i / 256) + "." + (i % 256));
+        assertTrue(limiter.size() <= 100);
+        // a new client still gets its own bucket
+        assertEquals(0, limiter.acquire("/susi/chat.json", "1.2.3.4"));
+        assertTrue(limiter.acquire("/susi/chat.json", "1.2.3.4") > 0);
+    }
+
+}
@@ -0,0 +1,76 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * benchmark of clients polling a large read-mostly resource like /susi/mind.json.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class ResponseCacheBenchmark {
+
+    private static JSONObject mind(int size) {
+        JSONObject mind = new JSONObject(true);
+        for (int i = 0; i < size; i++) {
+            JSONObject skill = new JSONObject(true);
+            skill.put("phrases", new JSONArray().put(new JSONObject().put("expression", "what is " + i).put("type", "pattern")));
+            skill.put("actions", new JSONArray().put(new JSONObject().put("expression", "it is " + i).put("type", "answer")));
+            skill.put("hash", i);
+            mind.put("key" + i, new JSONArray().put(skill));
+        }
+        return mind;
+    }
+
+    private static byte[] serialize(JSONObject json) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(baos, StandardCharsets.UTF_8);
+        json.write(writer, 2, 0);
+        writer.close();
+        return baos.toByteArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int polls = 200;
+        ResponseCache cache = new ResponseCache(64L * 1024L * 1024L);
+        JSONObject mind = mind(5000);
+        String validator = "1";
+
+        // without cache: render the result for each poll
+        long t0 = System.nanoTime();
+        long bytes = 0;
+        for (int i = 0; i < polls; i++) bytes += serialize(mind(5000)).length;
+        long t1 = System.nanoTime();
+
+        // with cache: the result is rendered once, each poll delivers the cached bytes
+        String etag = null;
+        for (int i = 0; i < polls; i++) {
+            ResponseCache.Entry entry = cache.get(validator);
+            if (entry == null) entry = cache.put(validator, serialize(mind), -1);
+            etag = entry.etag("{\"identity\":{}}", null);
+            bytes += entry.body.length;
+        }
+        long t2 = System.nanoTime();
+
+        // with cache and conditional requests: the client sends the etag and gets a 304 without content
+        int notModified = 0;
+        for (int i = 0; i < polls; i++) {
+            ResponseCache.Entry entry = cache.get(validator);
+            if (ResponseCache.isNotModified(etag, entry.etag("{\"identity\":{}}", null))) notModified++;
+        }
+        long t3 = System.nanoTime();
+
+        assertEquals(polls, notModified);
+        assertTrue(bytes > 0);
+        System.out.println("polling without cache: " + ((t1 - t0) / polls / 1000) + " us/poll");
+        System.out.println("polling with cache   : " + ((t2 - t1) / polls / 1000) + " us/poll");
+        System.out.println("polling with etag    : " + ((t3 - t2) / polls / 1000) + " us/poll");
+    }
+
+}
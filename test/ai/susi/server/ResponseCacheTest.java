@@ -0,0 +1,59 @@
+package ai.susi.server;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void boundedBySize() {
+        ResponseCache cache = new ResponseCache(1000);
+        for (int i = 0; i < 100; i++) cache.put("key" + i, new byte[100], -1);
+        assertEquals(10, cache.size());
+        assertEquals(1000, cache.bytes());
+        assertNull(cache.get("key0"));
+        assertNotNull(cache.get("key99"));
+        // the least recently used entry is removed first
+        cache.get("key90");
+        cache.put("key100", new byte[100], -1);
+        assertNotNull(cache.get("key90"));
+        assertNull(cache.get("key91"));
+        // a response which is larger than the cache is not kept
+        cache.put("large", new byte[2000], -1);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    public void etag() {
+        ResponseCache cache = new ResponseCache(1000);
+        ResponseCache.Entry a = cache.put("a", "{\"a\":1}".getBytes(StandardCharsets.UTF_8), -1);
+        ResponseCache.Entry b = cache.put("b", "{\"a\":1}".getBytes(StandardCharsets.UTF_8), -1);
+        ResponseCache.Entry c = cache.put("c", "{\"a\":2}".getBytes(StandardCharsets.UTF_8), -1);
+        assertEquals(a.etag(), b.etag());
+        assertNotEquals(a.etag(), c.etag());
+        assertEquals(a.etag("s1", null), b.etag("s1", null));
+        assertNotEquals(a.etag("s1", null), a.etag("s2", null));
+        assertNotEquals(a.etag("s1", null), a.etag("s1", "callback"));
+        assertTrue(a.etag().startsWith("\"") && a.etag().endsWith("\""));
+
+        assertTrue(ResponseCache.isNotModified(a.etag(), a.etag()));
+        assertTrue(ResponseCache.isNotModified("\"xyz\", " + a.etag(), a.etag()));
+        assertTrue(ResponseCache.isNotModified("*", a.etag()));
+        assertFalse(ResponseCache.isNotModified(null, a.etag()));
+        assertFalse(ResponseCache.isNotModified(c.etag(), a.etag()));
+    }
+
+    @Test
+    public void credentialsAreNoCacheKeys() {
+        assertTrue(AbstractAPIHandler.isCacheKeyAttribute("category"));
+        assertFalse(AbstractAPIHandler.isCacheKeyAttribute("callback"));
+        assertFalse(AbstractAPIHandler.isCacheKeyAttribute("access_token"));
+        assertFalse(AbstractAPIHandler.isCacheKeyAttribute("login"));
+        assertFalse(AbstractAPIHandler.isCacheKeyAttribute("password"));
+    }
+
+}
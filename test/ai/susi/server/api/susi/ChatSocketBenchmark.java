@@ -0,0 +1,75 @@
+package ai.susi.server.api.susi;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.json.JSONObject;
+
+/**
+ * open thousands of concurrent connections from different clients; every connection sends a message when all connections are open.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class ChatSocketBenchmark {
+
+    private final static int SOCKETS = 2000;
+
+    private static void load(URI uri) throws Exception {
+        WebSocketClient wsclient = new WebSocketClient();
+        wsclient.start();
+        try {
+            final CountDownLatch answered = new CountDownLatch(SOCKETS);
+            final AtomicInteger answers = new AtomicInteger(0);
+            List<Session> sessions = new ArrayList<>();
+            long start = System.currentTimeMillis();
+            List<Future<Session>> connects = new ArrayList<>();
+            for (int i = 0; i < SOCKETS; i++) {
+                // every connection comes from another client
+                ClientUpgradeRequest request = new ClientUpgradeRequest();
+                request.setHeader("X-Real-IP", "10.0." + (i / 250) + "." + (i % 250));
+                connects.add(wsclient.connect(new WebSocketAdapter() {
+                    @Override
+                    public void onWebSocketText(String message) {
+                        if (new JSONObject(message).has("answers")) {
+                            answers.incrementAndGet();
+                            answered.countDown();
+                        }
+                    }
+                }, uri, request));
+            }
+            for (Future<Session> connect: connects) sessions.add(connect.get(60, TimeUnit.SECONDS));
+            long connected = System.currentTimeMillis();
+            assertEquals(SOCKETS, ChatSocket.getConnectionCount());
+
+            for (Session session: sessions) session.getRemote().sendStringByFuture("I am so happy!");
+            assertTrue(answered.await(120, TimeUnit.SECONDS));
+            long done = System.currentTimeMillis();
+            System.out.println(SOCKETS + " websockets connected in " + (connected - start) + " ms, answered in " + (done - connected) + " ms");
+            assertEquals(SOCKETS, answers.get());
+            for (Session session: sessions) session.close();
+        } finally {
+            wsclient.stop();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ChatSocketTest test = new ChatSocketTest();
+        test.setUp();
+        try {
+            load(test.uri);
+        } finally {
+            test.tearDown();
+        }
+    }
+
+}
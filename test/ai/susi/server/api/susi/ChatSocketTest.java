@@ -0,0 +1,195 @@
+package ai.susi.server.api.susi;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ai.susi.DAO;
+import ai.susi.json.JsonTray;
+import ai.susi.mind.SusiMind;
+import ai.susi.server.AccessTracker;
+import ai.susi.server.AsyncExecutor;
+import ai.susi.server.RateLimiter;
+import ai.susi.server.RemoteAccess;
+
+public class ChatSocketTest {
+
+    private final static String skills =
+            "I am so happy!\n" +
+            "Good for you!^excited^>_mood\n" +
+            "\n" +
+            "How do I feel?\n" +
+            "?$_mood$:You are $_mood$.:I don't know your mood.\n" +
+            "\n";
+
+    private File tmp;
+    private Server server;
+    URI uri;
+
+    @Before
+    public void setUp() throws Exception {
+        this.tmp = Files.createTempDirectory("chatsocket").toFile();
+        DAO.susi = new SusiMind(new File(this.tmp, "memory"));
+        DAO.susi.learn(DAO.susi.readSkills(new BufferedReader(new StringReader(skills))));
+        DAO.authentication = new JsonTray(new File(this.tmp, "authentication.json"), new File(this.tmp, "authentication_session.json"), 10000);
+        DAO.access = new AccessTracker(new File(this.tmp, "log"), "access", 60000, 3000);
+        DAO.mind_executor = new AsyncExecutor("mind", 8, 10000, 30000);
+
+        this.server = new Server(new QueuedThreadPool(200, 8));
+        ServerConnector connector = new ServerConnector(this.server);
+        connector.setPort(0);
+        connector.setAcceptQueueSize(4096);
+        this.server.addConnector(connector);
+        ServletContextHandler servletHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        servletHandler.addServlet(ChatWebSocketServlet.class, "/susi/chat.ws");
+        this.server.setHandler(servletHandler);
+        this.server.start();
+        this.uri = new URI("ws://127.0.0.1:" + connector.getLocalPort() + "/susi/chat.ws");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.stop();
+        DAO.mind_executor.shutdown();
+        DAO.mind_executor = null;
+        DAO.susi = null;
+        DAO.authentication = null;
+        DAO.access = null;
+        delete(this.tmp);
+    }
+
+    private static void delete(File f) {
+        if (f.isDirectory()) for (File c: f.listFiles()) delete(c);
+        f.delete();
+    }
+
+    private static class Client extends WebSocketAdapter {
+        final BlockingQueue<JSONObject> received = new LinkedBlockingQueue<>();
+        @Override
+        public void onWebSocketText(String message) {
+            this.received.add(new JSONObject(message));
+        }
+        JSONObject next() throws InterruptedException {
+            JSONObject json = this.received.poll(30, TimeUnit.SECONDS);
+            assertNotNull("no message received", json);
+            return json;
+        }
+    }
+
+    private static String expression(JSONObject answer) {
+        return answer.getJSONArray("answers").getJSONObject(0).getJSONArray("actions").getJSONObject(0).getString("expression");
+    }
+
+    @Test
+    public void conversation() throws Exception {
+        WebSocketClient wsclient = new WebSocketClient();
+        wsclient.start();
+        try {
+            Client client = new Client();
+            Session session = wsclient.connect(client, this.uri).get(10, TimeUnit.SECONDS);
+            JSONObject welcome = client.next();
+            assertTrue(welcome.getJSONObject("session").getJSONObject("identity").getBoolean("anonymous"));
+
+            session.getRemote().sendString("{\"q\":\"I am so happy!\",\"id\":1}");
+            JSONObject answer = client.next();
+            assertEquals(1, answer.getInt("id"));
+            assertEquals("Good for you!", expression(answer));
+
+            // the answer must be remembered within the connection
+            session.getRemote().sendString("How do I feel?");
+            assertEquals("You are excited.", expression(client.next()));
+
+            // messages are answered in order
+            for (int i = 0; i < 10; i++) session.getRemote().sendString("{\"q\":\"How do I feel?\",\"id\":" + i + "}");
+            for (int i = 0; i < 10; i++) assertEquals(i, client.next().getInt("id"));
+
+            session.getRemote().sendString("{not json");
+            assertEquals(400, client.next().getInt("status"));
+            session.close();
+        } finally {
+            wsclient.stop();
+        }
+    }
+
+    @Test
+    public void origin() throws Exception {
+        WebSocketClient wsclient = new WebSocketClient();
+        wsclient.start();
+        try {
+            // a page of this server may connect
+            ClientUpgradeRequest request = new ClientUpgradeRequest();
+            request.setHeader("Origin", "http://" + this.uri.getAuthority());
+            Client client = new Client();
+            Session session = wsclient.connect(client, this.uri, request).get(10, TimeUnit.SECONDS);
+            client.next(); // the welcome message
+            session.close();
+
+            // a page of another host must not use the login of the user
+            request = new ClientUpgradeRequest();
+            request.setHeader("Origin", "http://evil.example.com");
+            try {
+                wsclient.connect(new Client(), this.uri, request).get(10, TimeUnit.SECONDS);
+                fail("upgrade from a foreign origin accepted");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("403"));
+            }
+        } finally {
+            wsclient.stop();
+        }
+    }
+
+    @Test
+    public void rateLimit() throws Exception {
+        // the upgrade request takes one token, then two messages are allowed
+        RemoteAccess.limiter.setRate(ChatSocket.RATE_LIMIT_PATH, 0.001, 3);
+        WebSocketClient wsclient = new WebSocketClient();
+        wsclient.start();
+        try {
+            Client client = new Client();
+            ClientUpgradeRequest request = new ClientUpgradeRequest();
+            request.setHeader("X-Real-IP", "10.1.2.3");
+            Session session = wsclient.connect(client, this.uri, request).get(10, TimeUnit.SECONDS);
+            client.next(); // the welcome message
+            for (int i = 0; i < 3; i++) session.getRemote().sendString("{\"q\":\"I am so happy!\",\"id\":" + i + "}");
+            Set<Integer> ok = new HashSet<>();
+            JSONObject limited = null;
+            for (int i = 0; i < 3; i++) {
+                JSONObject answer = client.next();
+                if (answer.has("status")) limited = answer; else ok.add(answer.getInt("id"));
+            }
+            assertEquals(2, ok.size());
+            assertNotNull(limited);
+            assertEquals(2, limited.getInt("id"));
+            assertEquals(429, limited.getInt("status"));
+            assertTrue(limited.getLong("retryAfter") > 0);
+            session.close();
+        } finally {
+            wsclient.stop();
+            RemoteAccess.limiter.setRate(ChatSocket.RATE_LIMIT_PATH, RateLimiter.DEFAULT_RATE, RateLimiter.DEFAULT_BURST);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package ai.susi.server.api.susi;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * the console data is loaded from an embedded service which sends a large response slowly
+ */
+public class ConsoleServiceTest {
+
+    private final static int CHUNKS = 200, CHUNK_SIZE = 65536;
+
+    private Server server;
+    private String url;
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicBoolean aborted = new AtomicBoolean(false);
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = new Server(0);
+        this.server.setStopTimeout(100);
+        this.server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                response.setStatus(200);
+                response.setContentType("application/json");
+                byte[] chunk = new byte[CHUNK_SIZE];
+                Arrays.fill(chunk, (byte) 'x');
+                try {
+                    OutputStream os = response.getOutputStream();
+                    os.write("{\"meta\":{\"count\":42},\"rest\":\"".getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                    for (int i = 0; i < CHUNKS; i++) {
+                        Thread.sleep(10);
+                        os.write(chunk);
+                        os.flush();
+                        written.addAndGet(chunk.length);
+                    }
+                    os.write("\"}".getBytes(StandardCharsets.UTF_8));
+                } catch (IOException | InterruptedException e) {
+                    aborted.set(true);
+                } finally {
+                    finished.countDown();
+                }
+            }
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + ((ServerConnector) this.server.getConnectors()[0]).getLocalPort() + "/data.json";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.stop();
+    }
+
+    @Test
+    public void definitePathAbortsTheDownload() throws Exception {
+        long start = System.currentTimeMillis();
+        JSONArray data = ConsoleService.loadPath(this.url, "$.meta.count");
+        long time = System.currentTimeMillis() - start;
+        assertEquals(42, data.getJSONObject(0).getInt("object"));
+        // the whole response takes at least CHUNKS * 10 milliseconds
+        assertTrue("time = " + time, time < CHUNKS * 10 / 2);
+        // the service notices that the client is gone and the rest of the response is not sent
+        assertTrue(this.finished.await(10, TimeUnit.SECONDS));
+        assertTrue(this.aborted.get());
+        assertTrue("written = " + this.written.get(), this.written.get() < (long) CHUNKS * CHUNK_SIZE / 2);
+    }
+
+}
@@ -0,0 +1,55 @@
+package ai.susi.tools;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the cost of recording a value from many threads, compared with a shared atomic counter.
+ * This is not part of the unit tests, run it with the main method.
+ */
+public class MetricsBenchmark {
+
+    private final static int THREADS = 8, RECORDS = 1000000;
+
+    /**
+     * run a task concurrently
+     * @return the time in nanoseconds per call and thread
+     */
+    private static long run(final Runnable task) throws Exception {
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread worker = new Thread() {
+                public void run() {
+                    for (int i = 0; i < RECORDS; i++) task.run();
+                }
+            };
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker: workers) worker.join();
+        return (System.nanoTime() - start) / RECORDS;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Metrics.Counter counter = Metrics.counter("test_benchmark_total", "").labels();
+        final Metrics.Histogram histogram = Metrics.histogram("test_benchmark_seconds", "").labels();
+        final AtomicLong atomic = new AtomicLong(0);
+        long counterTime = 0, atomicTime = 0, histogramTime = 0;
+        for (int round = 0; round < 2; round++) { // the first round is the warm-up
+            counterTime = run(() -> counter.inc());
+            atomicTime = run(() -> atomic.incrementAndGet());
+            histogramTime = run(() -> histogram.observeNanos(atomic.get() & 0xffffffL));
+        }
+        System.out.println("metrics with " + THREADS + " threads, LongAdder counter: " + counterTime + " ns per record and thread");
+        System.out.println("metrics with " + THREADS + " threads, shared AtomicLong: " + atomicTime + " ns per record and thread");
+        System.out.println("metrics with " + THREADS + " threads, histogram        : " + histogramTime + " ns per record and thread");
+        assertEquals(2L * THREADS * RECORDS, counter.get());
+        assertTrue(counterTime < 10000);
+        assertTrue(histogramTime < 10000);
+    }
+
+}
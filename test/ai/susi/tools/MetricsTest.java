@@ -0,0 +1,74 @@
+package ai.susi.tools;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MetricsTest {
+
+    private static String export() throws Exception {
+        StringWriter writer = new StringWriter();
+        Metrics.write(writer);
+        return writer.toString();
+    }
+
+    @Test
+    public void format() throws Exception {
+        Metrics.Family<Metrics.Counter> counter = Metrics.counter("test_format_total", "A test counter", "api");
+        counter.labels("/susi/chat.json").add(3);
+        counter.labels("a\"b").inc();
+        assertSame(counter, Metrics.counter("test_format_total", "A test counter", "api"));
+        Metrics.Histogram histogram = Metrics.histogram("test_format_seconds", "A test histogram", "api").labels("x");
+        histogram.observeMillis(3);
+        histogram.observeMillis(70);
+        histogram.observeMillis(20000);
+        Metrics.gauge("test_format_gauge", "A test gauge", () -> 42);
+        Metrics.gauge("test_format_absent", "A gauge without value", () -> null);
+
+        String text = export();
+        assertTrue(text.contains("# HELP test_format_total A test counter\n# TYPE test_format_total counter\n"));
+        assertTrue(text.contains("test_format_total{api=\"/susi/chat.json\"} 3\n"));
+        assertTrue(text.contains("test_format_total{api=\"a\\\"b\"} 1\n"));
+        assertTrue(text.contains("# TYPE test_format_seconds histogram\n"));
+        assertTrue(text.contains("test_format_seconds_bucket{api=\"x\",le=\"0.005\"} 1\n"));
+        assertTrue(text.contains("test_format_seconds_bucket{api=\"x\",le=\"0.05\"} 1\n"));
+        assertTrue(text.contains("test_format_seconds_bucket{api=\"x\",le=\"0.1\"} 2\n"));
+        assertTrue(text.contains("test_format_seconds_bucket{api=\"x\",le=\"10.0\"} 2\n"));
+        assertTrue(text.contains("test_format_seconds_bucket{api=\"x\",le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("test_format_seconds_sum{api=\"x\"} 20.073\n"));
+        assertTrue(text.contains("test_format_seconds_count{api=\"x\"} 3\n"));
+        assertTrue(text.contains("# TYPE test_format_gauge gauge\ntest_format_gauge 42\n"));
+        assertFalse(text.contains("test_format_absent"));
+        assertTrue(text.contains("jvm_memory_bytes_used{area=\"heap\"} "));
+        assertTrue(text.contains("jvm_gc_collection_seconds_count{gc="));
+    }
+
+    @Test
+    public void concurrentUpdates() throws Exception {
+        final Metrics.Counter counter = Metrics.counter("test_concurrent_total", "").labels();
+        final Metrics.Histogram histogram = Metrics.histogram("test_concurrent_seconds", "").labels();
+        final int threads = 8, increments = 100000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread() {
+                public void run() {
+                    for (int i = 0; i < increments; i++) {
+                        counter.inc();
+                        histogram.observeNanos(i);
+                    }
+                }
+            };
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker: workers) worker.join();
+        assertEquals(threads * increments, counter.get());
+        assertEquals(threads * increments, histogram.getCount());
+        assertEquals(threads * ((long) increments * (increments - 1) / 2) / 1.0e9, histogram.getSum(), 1.0e-9);
+    }
+
+}